@@ -44,14 +44,16 @@ public class AlertInfoController {
      * Handles GET requests to retrieve personal information filtered by last name.
      *
      * @param lastName the last name used to filter persons
+     * @param fuzzy    true to also match the last names sounding like the given one, closest first; false by default
      * @return ResponseEntity containing:
      * - HTTP 200 OK and a list of PersonInfoDto if matching persons are found,
      * - HTTP 404 Not Found if no persons match the provided last name
      */
     @GetMapping("/personInfo")
-    public ResponseEntity<List<PersonInfoDto>> getPersonInfo(@RequestParam String lastName) {
-        log.info("Request received for /personInfo with lastName: {}", lastName);
-        List<PersonInfoDto> result = alertInfoService.getPersonInfoByLastName(lastName);
+    public ResponseEntity<List<PersonInfoDto>> getPersonInfo(@RequestParam String lastName,
+                                                             @RequestParam(defaultValue = "false") boolean fuzzy) {
+        log.info("Request received for /personInfo with lastName: {}, fuzzy: {}", lastName, fuzzy);
+        List<PersonInfoDto> result = alertInfoService.getPersonInfoByLastName(lastName, fuzzy);
 
         if (result.isEmpty()) {
             log.warn("No persons found with lastName: {}", lastName);
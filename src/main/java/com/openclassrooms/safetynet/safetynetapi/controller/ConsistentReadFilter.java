@@ -0,0 +1,42 @@
+package com.openclassrooms.safetynet.safetynetapi.controller;
+
+import com.openclassrooms.safetynet.safetynetapi.repository.DataLoader;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Serves every GET request from a single version of the data.
+ *
+ * <p>Alert endpoints combine several repository lookups. The data is pinned for the duration of the request, so
+ * that a reload of the data file happening meanwhile never mixes old and new records in one response.
+ * Requests that modify the data are not pinned, as their changes must apply to the latest data.</p>
+ */
+@Component
+public class ConsistentReadFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private DataLoader dataLoader;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!HttpMethod.GET.matches(request.getMethod())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        dataLoader.pinDataFile();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            dataLoader.unpinDataFile();
+        }
+    }
+}
@@ -107,6 +107,44 @@ public class MedicalRecordController {
 
     }
 
+    /**
+     * Adds several medical records at once, for bulk imports.
+     *
+     * <p>The records are saved as one batch, validated as a whole and persisted with a single write.
+     * If one of them is invalid, none is added and the exception is handled globally.</p>
+     *
+     * @param medicalRecordDTOs the medical records to add, provided in the request body
+     * @return a ResponseEntity containing the saved records and HTTP status 201 (Created)
+     * @throws MedicalRecordAlreadyExistsException if a record already exists for one of the persons
+     */
+    @PostMapping("/medicalrecords")
+    public ResponseEntity<List<MedicalRecordDTO>> addMedicalRecords(@RequestBody List<MedicalRecordDTO> medicalRecordDTOs) {
+
+        List<MedicalRecordDTO> savedDTOs = medicalRecordService.saveAllMedicalRecords(medicalRecordDTOs);
+
+        log.info("{} medical records added successfully.", savedDTOs.size());
+        return ResponseEntity.status(HttpStatus.CREATED).body(savedDTOs);
+    }
+
+    /**
+     * Updates several medical records at once, for bulk imports.
+     *
+     * <p>The records are updated as one batch, validated as a whole and persisted with a single write.
+     * If one of them does not exist, none is updated and a MedicalRecordNotFoundException is handled globally.</p>
+     *
+     * @param medicalRecordDTOs the medical records containing updated information, provided in the request body
+     * @return a ResponseEntity containing the updated records and HTTP status 200 (OK)
+     * @throws MedicalRecordNotFoundException if a record to update is not found
+     */
+    @PutMapping("/medicalrecords")
+    public ResponseEntity<List<MedicalRecordDTO>> updateMedicalRecords(@RequestBody List<MedicalRecordDTO> medicalRecordDTOs) {
+
+        List<MedicalRecordDTO> updatedDTOs = medicalRecordService.updateAllMedicalRecords(medicalRecordDTOs);
+
+        log.info("{} medical records successfully updated.", updatedDTOs.size());
+        return ResponseEntity.ok(updatedDTOs);
+    }
+
     /**
      * Deletes a medical record identified by first name and last name.
      *
@@ -98,6 +98,42 @@ public class PersonController {
         return ResponseEntity.ok(updated);
     }
 
+    /**
+     * Adds several persons at once, for bulk imports.
+     * <p>
+     * The persons are saved as one batch, validated as a whole and persisted with a single write.
+     * If one of them already exists, none is added and a PersonAlreadyExistsException is handled globally.
+     * </p>
+     *
+     * @param personDTOs the persons to add
+     * @return a ResponseEntity with status 201 Created and the saved persons in the body
+     * @throws PersonAlreadyExistsException if a person already exists in the system
+     */
+    @PostMapping("/persons")
+    public ResponseEntity<List<PersonDTO>> addPersons(@RequestBody List<PersonDTO> personDTOs) {
+        List<PersonDTO> saved = personService.saveAll(personDTOs);
+        log.info("{} person(s) added successfully.", saved.size());
+        return ResponseEntity.status(HttpStatus.CREATED).body(saved);
+    }
+
+    /**
+     * Updates several persons at once, for bulk imports.
+     * <p>
+     * The persons are updated as one batch, validated as a whole and persisted with a single write.
+     * If one of them does not exist, none is updated and a PersonNotFoundException is handled globally.
+     * </p>
+     *
+     * @param personDTOs the person data to update
+     * @return a ResponseEntity with status 200 OK and the updated persons in the body
+     * @throws PersonNotFoundException if a person to update is not found
+     */
+    @PutMapping("/persons")
+    public ResponseEntity<List<PersonDTO>> updatePersons(@RequestBody List<PersonDTO> personDTOs) {
+        List<PersonDTO> updated = personService.updateAll(personDTOs);
+        log.info("{} person(s) updated successfully.", updated.size());
+        return ResponseEntity.ok(updated);
+    }
+
     @DeleteMapping("/person")
     public ResponseEntity<String> deletePerson(@RequestParam String firstName, @RequestParam String lastName) {
         personService.delete(firstName, lastName);
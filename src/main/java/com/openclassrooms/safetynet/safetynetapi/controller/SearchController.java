@@ -0,0 +1,41 @@
+package com.openclassrooms.safetynet.safetynetapi.controller;
+
+import com.openclassrooms.safetynet.safetynetapi.dto.SuggestionsDTO;
+import com.openclassrooms.safetynet.safetynetapi.service.SearchService;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller completing partially typed names and addresses, so that dispatchers can find the exact values
+ * expected by endpoints such as /personInfo and /fire.
+ */
+@Log4j2
+@RestController
+public class SearchController {
+
+    static final int MAX_LIMIT = 50;
+
+    @Autowired
+    private SearchService searchService;
+
+    /**
+     * Suggests the names and addresses starting with the given prefix.
+     *
+     * @param query the typed prefix, provided as the query parameter "q" (case-insensitive)
+     * @param limit the maximum number of names, and of addresses, between 1 and 50; 10 by default
+     * @return a ResponseEntity containing HTTP 200 OK and the suggested names and addresses, possibly empty
+     */
+    @GetMapping("/search/suggest")
+    public ResponseEntity<SuggestionsDTO> suggest(@RequestParam("q") String query,
+                                                  @RequestParam(defaultValue = "10") int limit) {
+        int boundedLimit = Math.clamp(limit, 1, MAX_LIMIT);
+        SuggestionsDTO suggestions = searchService.suggest(query, boundedLimit);
+        log.info("Suggestions for '{}': {} name(s), {} address(es)", query,
+                suggestions.getNames().size(), suggestions.getAddresses().size());
+        return ResponseEntity.ok(suggestions);
+    }
+}
@@ -0,0 +1,19 @@
+package com.openclassrooms.safetynet.safetynetapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing the completions of a partially typed name or address.
+ * <p>
+ * Names are given as "first last" and addresses as stored, each list in alphabetical order.
+ * </p>
+ */
+@Getter
+@AllArgsConstructor
+public class SuggestionsDTO {
+    private List<String> names;
+    private List<String> addresses;
+}
@@ -96,4 +96,19 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
     }
 
+    /**
+     * Handles attempts to modify data on an instance that serves a read-only snapshot.
+     * The method is allowed on the resource, but this instance does not accept writes, so the request
+     * is answered as unavailable rather than not allowed.
+     *
+     * @param ex the exception containing the error message indicating the data is read-only
+     * @return a 503 Service Unavailable HTTP response with the exception message as the response body
+     */
+    @ExceptionHandler(ReadOnlyDataException.class)
+    public ResponseEntity<String> handleReadOnlyData(ReadOnlyDataException ex) {
+        log.warn("Cannot perform operation, data is read-only: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ex.getMessage() + ". Send changes to an instance serving writable data.");
     }
+
+}
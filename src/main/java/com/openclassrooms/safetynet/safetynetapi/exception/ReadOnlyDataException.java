@@ -0,0 +1,7 @@
+package com.openclassrooms.safetynet.safetynetapi.exception;
+
+public class ReadOnlyDataException extends RuntimeException {
+    public ReadOnlyDataException(String message) {
+        super(message);
+    }
+}
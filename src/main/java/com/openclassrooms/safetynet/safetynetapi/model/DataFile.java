@@ -1,14 +1,26 @@
 package com.openclassrooms.safetynet.safetynetapi.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents the data structure holding all records loaded from the data file.
  * Contains lists of persons, fire stations, and medical records.
+ *
+ * <p>The indexes built by the repositories over these lists are attached to the DataFile itself, so that every
+ * version of the data comes with its own indexes. They are never serialized.</p>
+ *
+ * <p>Once published by the DataLoader, a DataFile is one immutable version of the data: its lists, their records
+ * and its indexes are never modified. A mutation builds the next version from a {@link #copy()}, replacing the
+ * records it changes by new ones.</p>
  */
 @Getter
 @Setter
@@ -18,4 +30,52 @@ public class DataFile {
     private List<FireStation> fireStations;
     @JsonProperty("medicalrecords")
     private List<MedicalRecord> medicalRecords;
+
+    /**
+     * The sequence of the last mutation journal entry held by this data, or null if no journal entry was ever
+     * applied to it. Entries up to this sequence are not replayed on top of it.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long journalSequence;
+
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final transient Map<Object, Object> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a copy of this data sharing its lists and its indexes, to be changed into the next version of the
+     * data by replacing them, while this version is left unchanged.
+     *
+     * @return the copy
+     */
+    public DataFile copy() {
+        DataFile copy = new DataFile();
+        copy.persons = persons;
+        copy.fireStations = fireStations;
+        copy.medicalRecords = medicalRecords;
+        copy.journalSequence = journalSequence;
+        copy.indexes.putAll(indexes);
+        return copy;
+    }
+
+    /**
+     * Returns the index attached to this data by the given owner.
+     *
+     * @param owner the object that built the index, usually the declaration of the indexes of a repository
+     * @return the index, or null if it was not built yet
+     */
+    public Object getIndex(Object owner) {
+        return indexes.get(owner);
+    }
+
+    /**
+     * Attaches an index built over this data, replacing any index of the same owner.
+     *
+     * @param owner the object that built the index
+     * @param index the index
+     */
+    public void putIndex(Object owner, Object index) {
+        indexes.put(owner, index);
+    }
 }
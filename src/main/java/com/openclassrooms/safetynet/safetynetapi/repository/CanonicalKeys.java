@@ -0,0 +1,172 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Canonical keys of names, addresses and cities, shared by the repositories, their indexes and the mutation replay,
+ * so that they all match records the same way.
+ *
+ * <p>A canonical key is the value trimmed, with its runs of whitespace collapsed into a single space, and
+ * case-folded. Two values match when their canonical keys are equal, which replaces the repeated
+ * {@code trim().replaceAll("\\s+", " ")} and {@code equalsIgnoreCase} calls.</p>
+ *
+ * <p>Most values are ASCII: they are checked, and folded if needed, in a single pass without a regular expression.
+ * A value that is already canonical, as most lookups are, is returned as is, without any allocation. Other values
+ * go through {@link String#toLowerCase(Locale)}.</p>
+ *
+ * <p>The keys of indexed records are interned with {@link #intern(String)}: equal keys are then the same String
+ * instance, shared by every index that uses them, and comparing two of them is a reference check. Keys built from
+ * lookup values with {@link #of(String)} are not interned; looking them up in an index costs one hash and at most
+ * one comparison. Saves, index maintenance and reloads do intern new keys, so the pool only holds its keys weakly:
+ * a key is evicted once no index of any loaded DataFile references it any more, and the pool stays bounded by the
+ * distinct keys of the data in use.</p>
+ */
+public final class CanonicalKeys {
+
+    /**
+     * Interned keys, weakly held. Only the write paths intern, so a synchronized map is enough.
+     */
+    private static final Map<String, WeakReference<String>> POOL = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * The canonical key of a first and last name.
+     *
+     * @param firstName the canonical first name
+     * @param lastName  the canonical last name
+     */
+    public record Name(String firstName, String lastName) {
+    }
+
+    private CanonicalKeys() {
+    }
+
+    /**
+     * Returns the canonical key of a value, without interning it. To use for lookups.
+     *
+     * @param value the value, may be null
+     * @return the canonical key; the value itself if already canonical, and an empty key for null
+     */
+    public static String of(String value) {
+        if (value == null) {
+            return "";
+        }
+        int length = value.length();
+        boolean afterSpace = true;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80 || (c >= 'A' && c <= 'Z') || (c <= ' ' && (c != ' ' || afterSpace))) {
+                return fold(value);
+            }
+            afterSpace = c == ' ';
+        }
+        return afterSpace && length > 0 ? fold(value) : value;
+    }
+
+    /**
+     * Returns the canonical key of a value, interned in the pool. To use for the keys of indexed records.
+     * The key stays pooled as long as something references it.
+     *
+     * @param value the value, may be null
+     * @return the pooled canonical key
+     */
+    public static String intern(String value) {
+        String key = of(value);
+        synchronized (POOL) {
+            WeakReference<String> reference = POOL.get(key);
+            String pooled = reference == null ? null : reference.get();
+            if (pooled != null) {
+                return pooled;
+            }
+            POOL.put(key, new WeakReference<>(key));
+            return key;
+        }
+    }
+
+    /**
+     * Returns the canonical key of a name, without interning it. To use for lookups.
+     *
+     * @param firstName the first name, may be null
+     * @param lastName  the last name, may be null
+     * @return the canonical name
+     */
+    public static Name name(String firstName, String lastName) {
+        return new Name(of(firstName), of(lastName));
+    }
+
+    /**
+     * Returns the canonical key of a name, made of interned keys. To use for the keys of indexed records.
+     *
+     * @param firstName the first name, may be null
+     * @param lastName  the last name, may be null
+     * @return the canonical name
+     */
+    public static Name internName(String firstName, String lastName) {
+        return new Name(intern(firstName), intern(lastName));
+    }
+
+    /**
+     * Tells whether two values have the same canonical key.
+     *
+     * @param value the value to compare
+     * @param key   a canonical key
+     * @return true if the value matches the key
+     */
+    public static boolean matches(String value, String key) {
+        return of(value).equals(key);
+    }
+
+    /**
+     * @return the number of interned keys not evicted yet
+     */
+    static int poolSize() {
+        return POOL.size();
+    }
+
+    /**
+     * Folds a value that is not canonical yet, in place in a char array while it is ASCII.
+     */
+    private static String fold(String value) {
+        int length = value.length();
+        char[] folded = new char[length];
+        int size = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                return foldUnicode(value);
+            }
+            if (c <= ' ') {
+                pendingSpace = size > 0;
+            } else {
+                if (pendingSpace) {
+                    folded[size++] = ' ';
+                    pendingSpace = false;
+                }
+                folded[size++] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+            }
+        }
+        return new String(folded, 0, size);
+    }
+
+    private static String foldUnicode(String value) {
+        StringBuilder folded = new StringBuilder(value.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c <= ' ' || Character.isWhitespace(c)) {
+                pendingSpace = folded.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    folded.append(' ');
+                    pendingSpace = false;
+                }
+                folded.append(c);
+            }
+        }
+        return folded.toString().toLowerCase(Locale.ROOT);
+    }
+}
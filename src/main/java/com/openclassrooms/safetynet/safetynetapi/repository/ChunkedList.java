@@ -0,0 +1,257 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * An immutable list whose changed copies share most of their records, for the collections of the repositories.
+ *
+ * <p>The records are split into chunks, each an array that is never modified once published. A change copies the
+ * chunk it touches and the array of chunks, and shares every other chunk with the current list, so that it costs
+ * the size of a chunk rather than the size of the list. Chunks hold about the square root of the size, like the
+ * shards of a {@link ShardedMap}, and the list is split again once the chunks are too many or too empty, which
+ * happens after a number of changes proportional to the size.</p>
+ *
+ * <p>The chunk of every record is kept in a {@link ShardedMap}, so that replacing or removing a record only
+ * searches its chunk. Records are told apart by identity, as they have no equals method; null records are kept
+ * in the list, but cannot be replaced nor removed.</p>
+ *
+ * @param <T> the type of the records
+ */
+final class ChunkedList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int MIN_CHUNK_SIZE = 64;
+    private static final ChunkedList<?> EMPTY = of(List.of());
+
+    private final Object[][] chunks;
+    /**
+     * The position in the list of the first record of each chunk.
+     */
+    private final int[] starts;
+    private final int chunkSize;
+    private final int size;
+    private final ShardedMap<T, Integer> chunkOf;
+
+    private ChunkedList(Object[][] chunks, int[] starts, int chunkSize, int size, ShardedMap<T, Integer> chunkOf) {
+        this.chunks = chunks;
+        this.starts = starts;
+        this.chunkSize = chunkSize;
+        this.size = size;
+        this.chunkOf = chunkOf;
+    }
+
+    /**
+     * @param <T> the type of the records
+     * @return the empty list
+     */
+    @SuppressWarnings("unchecked")
+    static <T> ChunkedList<T> empty() {
+        return (ChunkedList<T>) EMPTY;
+    }
+
+    /**
+     * @param records the records of the list, in their order
+     * @param <T>     the type of the records
+     * @return a list of these records, which does not depend on the given list
+     */
+    @SuppressWarnings("unchecked")
+    static <T> ChunkedList<T> of(List<T> records) {
+        if (records instanceof ChunkedList<T> chunked) {
+            return chunked;
+        }
+        int size = records.size();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (int) Math.sqrt(size));
+        int count = Math.max(1, (size + chunkSize - 1) / chunkSize);
+        Object[][] chunks = new Object[count][];
+        int[] starts = new int[count];
+        Map<T, Integer> chunkOf = HashMap.newHashMap(size);
+        Object[] all = records.toArray();
+        for (int chunk = 0; chunk < count; chunk++) {
+            int start = chunk * chunkSize;
+            chunks[chunk] = Arrays.copyOfRange(all, Math.min(start, size), Math.min(start + chunkSize, size));
+            starts[chunk] = Math.min(start, size);
+            for (Object record : chunks[chunk]) {
+                if (record != null) {
+                    chunkOf.put((T) record, chunk);
+                }
+            }
+        }
+        return new ChunkedList<>(chunks, starts, chunkSize, size, ShardedMap.of(chunkOf));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        int chunk = chunkAt(index);
+        return (T) chunks[chunk][index - starts[chunk]];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int chunk;
+            private int offset;
+
+            @Override
+            public boolean hasNext() {
+                while (chunk < chunks.length && offset == chunks[chunk].length) {
+                    chunk++;
+                    offset = 0;
+                }
+                return chunk < chunks.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (T) chunks[chunk][offset++];
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> action) {
+        for (Object[] chunk : chunks) {
+            for (Object record : chunk) {
+                action.accept((T) record);
+            }
+        }
+    }
+
+    /**
+     * @param record the record to add at the end
+     * @return a list with this record; this list is left unchanged
+     */
+    ChunkedList<T> with(T record) {
+        int last = chunks.length - 1;
+        if (chunks[last].length < chunkSize) {
+            Object[][] nextChunks = chunks.clone();
+            nextChunks[last] = Arrays.copyOf(chunks[last], chunks[last].length + 1);
+            nextChunks[last][chunks[last].length] = record;
+            return new ChunkedList<>(nextChunks, starts, chunkSize, size + 1, locate(chunkOf, record, last));
+        }
+        if (chunks.length >= 2 * chunkSize) {
+            // The chunks are too many for the size: split the list again
+            return of(appended(record));
+        }
+        Object[][] nextChunks = Arrays.copyOf(chunks, chunks.length + 1);
+        nextChunks[chunks.length] = new Object[]{record};
+        int[] nextStarts = Arrays.copyOf(starts, starts.length + 1);
+        nextStarts[starts.length] = size;
+        return new ChunkedList<>(nextChunks, nextStarts, chunkSize, size + 1, locate(chunkOf, record, chunks.length));
+    }
+
+    /**
+     * @param current the record to replace, told apart from equal ones by identity
+     * @param updated the record set at its position
+     * @return a list with this change, or null if the list does not have the record; this list is left unchanged
+     */
+    ChunkedList<T> replace(T current, T updated) {
+        int chunk = chunkOf(current);
+        int offset = offsetIn(chunk, current);
+        if (offset < 0) {
+            return null;
+        }
+        Object[][] nextChunks = chunks.clone();
+        nextChunks[chunk] = chunks[chunk].clone();
+        nextChunks[chunk][offset] = updated;
+        return new ChunkedList<>(nextChunks, starts, chunkSize, size,
+                locate(chunkOf.with(current, null), updated, chunk));
+    }
+
+    /**
+     * @param record the record to remove, told apart from equal ones by identity
+     * @return a list without this record, or null if the list does not have it; this list is left unchanged
+     */
+    ChunkedList<T> without(T record) {
+        int chunk = chunkOf(record);
+        int offset = offsetIn(chunk, record);
+        if (offset < 0) {
+            return null;
+        }
+        Object[] current = chunks[chunk];
+        Object[] next = new Object[current.length - 1];
+        System.arraycopy(current, 0, next, 0, offset);
+        System.arraycopy(current, offset + 1, next, offset, next.length - offset);
+        // An emptied chunk is kept, so that the chunks of the other records do not move
+        Object[][] nextChunks = chunks.clone();
+        nextChunks[chunk] = next;
+        int[] nextStarts = starts.clone();
+        for (int i = chunk + 1; i < nextStarts.length; i++) {
+            nextStarts[i]--;
+        }
+        ChunkedList<T> list = new ChunkedList<>(nextChunks, nextStarts, chunkSize, size - 1, chunkOf.with(record, null));
+        // The chunks are too empty for the size: split the list again
+        return chunks.length > 1 && 4L * list.size < (long) chunks.length * chunkSize ? of(list.toArray()) : list;
+    }
+
+    private Object[] appended(T record) {
+        Object[] all = toArray(new Object[size + 1]);
+        all[size] = record;
+        return all;
+    }
+
+    private static <T> ChunkedList<T> of(Object[] records) {
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>) Arrays.asList(records);
+        return of(list);
+    }
+
+    private static <T> ShardedMap<T, Integer> locate(ShardedMap<T, Integer> chunkOf, T record, int chunk) {
+        return record == null ? chunkOf : chunkOf.with(record, chunk);
+    }
+
+    private int chunkOf(T record) {
+        Integer chunk = record == null ? null : chunkOf.get(record);
+        return chunk == null ? -1 : chunk;
+    }
+
+    private int offsetIn(int chunk, T record) {
+        if (chunk < 0) {
+            return -1;
+        }
+        Object[] records = chunks[chunk];
+        for (int i = 0; i < records.length; i++) {
+            if (records[i] == record) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The last chunk starting at or before the index, which skips the emptied chunks starting there too.
+     */
+    private int chunkAt(int index) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
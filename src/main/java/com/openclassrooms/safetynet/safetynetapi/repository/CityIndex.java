@@ -0,0 +1,205 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Persons grouped by canonical city, along with the distinct emails of each city, declared by the
+ * {@link InMemoryPersonRepository}.
+ *
+ * <p>A city may have hundreds of thousands of residents, so its group is not copied on every change as a
+ * {@link KeyIndex} group would be: each city keeps its residents in the order they were indexed, in a
+ * {@link ShardedSortedMap} keyed by a sequence given to each person when indexed, along with the distinct emails of
+ * its residents, counted so that an email only disappears with its last resident; persons without an email are
+ * left out of the emails. The index is immutable, and a change only copies a shard of each of these maps.</p>
+ *
+ * <p>An update that keeps the city replaces the person at its sequence, so that the residents, and the emails
+ * they bring, stay in the order of the list.</p>
+ */
+class CityIndex implements SecondaryIndex<Person> {
+
+    private final ShardedMap<String, City> byCity;
+    /**
+     * The sequence of every indexed person, by identity as persons have no equals method.
+     */
+    private final ShardedMap<Person, Long> sequences;
+    private final long nextSequence;
+
+    CityIndex() {
+        this(ShardedMap.empty(), ShardedMap.empty(), 0L);
+    }
+
+    private CityIndex(ShardedMap<String, City> byCity, ShardedMap<Person, Long> sequences, long nextSequence) {
+        this.byCity = byCity;
+        this.sequences = sequences;
+        this.nextSequence = nextSequence;
+    }
+
+    @Override
+    public CityIndex build(List<Person> persons) {
+        Map<String, List<Map.Entry<Long, Person>>> residents = new HashMap<>();
+        Map<String, Map<String, EmailCount>> emailCounts = new HashMap<>();
+        Map<String, List<Map.Entry<Long, String>>> emails = new HashMap<>();
+        Map<Person, Long> personSequences = new IdentityHashMap<>();
+        long sequence = 0L;
+        for (Person person : persons) {
+            if (personSequences.containsKey(person)) {
+                continue;
+            }
+            String city = CanonicalKeys.intern(person.getCity());
+            personSequences.put(person, sequence);
+            residents.computeIfAbsent(city, c -> new ArrayList<>()).add(Map.entry(sequence, person));
+            if (person.getEmail() != null) {
+                Map<String, EmailCount> counts = emailCounts.computeIfAbsent(city, c -> new HashMap<>());
+                EmailCount count = counts.get(person.getEmail());
+                if (count == null) {
+                    counts.put(person.getEmail(), new EmailCount(sequence, 1));
+                    emails.computeIfAbsent(city, c -> new ArrayList<>()).add(Map.entry(sequence, person.getEmail()));
+                } else {
+                    counts.put(person.getEmail(), new EmailCount(count.sequence(), count.count() + 1));
+                }
+            }
+            sequence++;
+        }
+        Map<String, City> cities = new HashMap<>();
+        for (Map.Entry<String, List<Map.Entry<Long, Person>>> city : residents.entrySet()) {
+            cities.put(city.getKey(), new City(ShardedSortedMap.ofSorted(city.getValue()),
+                    ShardedMap.of(emailCounts.getOrDefault(city.getKey(), Map.of())),
+                    ShardedSortedMap.ofSorted(emails.getOrDefault(city.getKey(), List.of()))));
+        }
+        return new CityIndex(ShardedMap.of(cities), ShardedMap.of(personSequences), sequence);
+    }
+
+    @Override
+    public CityIndex add(Person person) {
+        if (sequences.get(person) != null) {
+            return this;
+        }
+        long sequence = nextSequence;
+        ShardedMap<String, City> next = byCity.compute(CanonicalKeys.intern(person.getCity()),
+                (c, city) -> (city == null ? City.EMPTY : city).add(sequence, person));
+        return new CityIndex(next, sequences.with(person, sequence), sequence + 1);
+    }
+
+    @Override
+    public CityIndex remove(Person person) {
+        Long sequence = sequences.get(person);
+        if (sequence == null) {
+            return this;
+        }
+        ShardedMap<String, City> next = byCity.compute(CanonicalKeys.intern(person.getCity()),
+                (c, city) -> city == null ? null : city.remove(sequence, person));
+        return new CityIndex(next, sequences.with(person, null), nextSequence);
+    }
+
+    /**
+     * Replaces the person in place when the city does not change, keeping its sequence, as a {@link KeyIndex}
+     * keeps the position of a record in its group.
+     *
+     * @param current the indexed person
+     * @param updated the person replacing it
+     * @return the index with the new person
+     */
+    @Override
+    public CityIndex replace(Person current, Person updated) {
+        Long sequence = sequences.get(current);
+        if (sequence == null || sequences.get(updated) != null
+                || !CanonicalKeys.of(current.getCity()).equals(CanonicalKeys.of(updated.getCity()))) {
+            return remove(current).add(updated);
+        }
+        long emailSequence = nextSequence;
+        ShardedMap<String, City> next = byCity.compute(CanonicalKeys.intern(current.getCity()),
+                (c, city) -> city == null ? null : city.replace(sequence, current, updated, emailSequence));
+        return new CityIndex(next, sequences.with(current, null).with(updated, sequence), emailSequence + 1);
+    }
+
+    /**
+     * @param city the city to look up
+     * @return a copy of the residents of this city; empty if none
+     */
+    List<Person> findByCity(String city) {
+        City residents = byCity.get(CanonicalKeys.of(city));
+        return residents == null ? new ArrayList<>() : residents.residents().values();
+    }
+
+    /**
+     * @param city the city to look up
+     * @return a copy of the distinct emails of the residents of this city; empty if none
+     */
+    List<String> findEmailsByCity(String city) {
+        City residents = byCity.get(CanonicalKeys.of(city));
+        return residents == null ? new ArrayList<>() : residents.emails().values();
+    }
+
+    /**
+     * The number of residents of a city having an email, and the key of the email in the emails of the city.
+     */
+    private record EmailCount(long sequence, int count) {
+    }
+
+    /**
+     * The residents of one city and their distinct emails, both in the order they were indexed.
+     */
+    private record City(ShardedSortedMap<Long, Person> residents, ShardedMap<String, EmailCount> emailCounts,
+                        ShardedSortedMap<Long, String> emails) {
+
+        private static final City EMPTY = new City(ShardedSortedMap.empty(), ShardedMap.empty(), ShardedSortedMap.empty());
+
+        private City add(long sequence, Person person) {
+            return new City(residents.with(sequence, person), emailCounts, emails).withEmail(sequence, person.getEmail());
+        }
+
+        /**
+         * @return the city without this resident, or null if it has no resident left
+         */
+        private City remove(long sequence, Person person) {
+            ShardedSortedMap<Long, Person> remaining = residents.with(sequence, null);
+            if (remaining.size() == 0) {
+                return null;
+            }
+            return new City(remaining, emailCounts, emails).withoutEmail(person.getEmail());
+        }
+
+        /**
+         * Replaces a resident at its sequence. A new email of the resident is keyed by that sequence too, unless the
+         * email it replaces is still there, held by other residents: the new email is then keyed by a fresh sequence.
+         */
+        private City replace(long sequence, Person current, Person updated, long freshSequence) {
+            City replaced = new City(residents.with(sequence, updated), emailCounts, emails);
+            if (Objects.equals(current.getEmail(), updated.getEmail())) {
+                return replaced;
+            }
+            City withoutEmail = replaced.withoutEmail(current.getEmail());
+            return withoutEmail.withEmail(withoutEmail.emails.get(sequence) == null ? sequence : freshSequence,
+                    updated.getEmail());
+        }
+
+        private City withEmail(long sequence, String email) {
+            if (email == null) {
+                return this;
+            }
+            EmailCount count = emailCounts.get(email);
+            if (count == null) {
+                return new City(residents, emailCounts.with(email, new EmailCount(sequence, 1)), emails.with(sequence, email));
+            }
+            return new City(residents, emailCounts.with(email, new EmailCount(count.sequence(), count.count() + 1)), emails);
+        }
+
+        private City withoutEmail(String email) {
+            if (email == null) {
+                return this;
+            }
+            EmailCount count = emailCounts.get(email);
+            if (count.count() == 1) {
+                return new City(residents, emailCounts.with(email, null), emails.with(count.sequence(), null));
+            }
+            return new City(residents, emailCounts.with(email, new EmailCount(count.sequence(), count.count() - 1)), emails);
+        }
+    }
+}
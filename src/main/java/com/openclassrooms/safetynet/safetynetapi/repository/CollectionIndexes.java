@@ -0,0 +1,157 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The indexes a repository declares over one collection of the data, and the changes to this collection.
+ *
+ * <p>Each version of the data gets its own {@link RecordIndexes}, attached to its DataFile, so that a reloaded data
+ * file comes with indexes of its own records. A repository declares its indexes once, as constants:</p>
+ * <pre>{@code
+ * private static final CollectionIndexes<Person> INDEXES =
+ *         new CollectionIndexes<>(DataFile::getPersons, DataFile::setPersons, BY_NAME, BY_ADDRESS);
+ * }</pre>
+ *
+ * <p>The list of records and its indexes are both immutable. A mutation applies its change to the next version of
+ * the data built by {@link DataLoader#mutate}, with {@link #add}, {@link #replace} or {@link #remove}, which set a
+ * new list and new indexes on it together. The version being read is never modified, so readers never lock. The
+ * list is a {@link ChunkedList}, which shares most of its records with the previous version and knows the chunk of
+ * each record, so that a change costs about the square root of the size of the collection, like the indexes.</p>
+ *
+ * @param <T> the type of the records
+ */
+final class CollectionIndexes<T> {
+
+    private final Function<DataFile, List<T>> records;
+    private final BiConsumer<DataFile, List<T>> setter;
+    private final List<IndexDefinition<T, ?>> definitions;
+
+    /**
+     * @param records     the collection of a DataFile the indexes are built over
+     * @param setter      sets a new version of the collection on a DataFile
+     * @param definitions the declared indexes
+     */
+    @SafeVarargs
+    CollectionIndexes(Function<DataFile, List<T>> records, BiConsumer<DataFile, List<T>> setter,
+                      IndexDefinition<T, ?>... definitions) {
+        this.records = records;
+        this.setter = setter;
+        this.definitions = List.of(definitions);
+    }
+
+    /**
+     * Publishes the records of the given data as a {@link ChunkedList}, then builds the indexes and attaches them to
+     * the DataFile, replacing any previous ones. A collection missing from the data is published as empty.
+     * Mapped records are read-only already and are looked up in the key tables of their snapshot, so no index is
+     * built over them.
+     *
+     * @param data the data to index, not yet published
+     * @return the built indexes, or null for mapped records
+     */
+    RecordIndexes<T> build(DataFile data) {
+        List<T> collection = recordsOf(data);
+        if (collection instanceof MappedRecordList<T>) {
+            return null;
+        }
+        collection = ChunkedList.of(collection);
+        setter.accept(data, collection);
+        RecordIndexes<T> indexes = new RecordIndexes<>(definitions, collection);
+        data.putIndex(this, indexes);
+        return indexes;
+    }
+
+    /**
+     * Returns the indexes of the given data. Data that was never prepared, such as data built by hand, has no
+     * indexes attached: its indexes are then built on every call, and not attached.
+     *
+     * @param data the data the indexes belong to
+     * @return the indexes of this data
+     * @throws IllegalStateException if the records are mapped, as they must be looked up in their key tables
+     */
+    @SuppressWarnings("unchecked")
+    RecordIndexes<T> of(DataFile data) {
+        RecordIndexes<T> indexes = (RecordIndexes<T>) data.getIndex(this);
+        if (indexes != null) {
+            return indexes;
+        }
+        List<T> collection = recordsOf(data);
+        if (collection instanceof MappedRecordList<T>) {
+            throw new IllegalStateException("Mapped records are looked up in the key tables of their snapshot");
+        }
+        return new RecordIndexes<>(definitions, collection);
+    }
+
+    /**
+     * Adds a record at the end of the collection of the given data, and indexes it.
+     *
+     * @param data   the next version of the data, being mutated
+     * @param record the added record
+     */
+    void add(DataFile data, T record) {
+        publish(data, chunked(data).with(record), of(data).add(record));
+    }
+
+    /**
+     * Replaces a record of the collection of the given data by another one, at the same position.
+     *
+     * @param data    the next version of the data, being mutated
+     * @param current the record to replace, told apart from equal ones by identity
+     * @param updated the record replacing it
+     * @return true if the record was found and replaced
+     */
+    boolean replace(DataFile data, T current, T updated) {
+        ChunkedList<T> next = chunked(data).replace(current, updated);
+        if (next == null) {
+            return false;
+        }
+        publish(data, next, of(data).replace(current, updated));
+        return true;
+    }
+
+    /**
+     * Removes records from the collection of the given data.
+     *
+     * @param data    the next version of the data, being mutated
+     * @param removed the records to remove, told apart from equal ones by identity
+     * @return true if at least one record was removed
+     */
+    boolean remove(DataFile data, List<T> removed) {
+        ChunkedList<T> list = chunked(data);
+        RecordIndexes<T> indexes = of(data);
+        boolean changed = false;
+        for (T record : removed) {
+            ChunkedList<T> next = list.without(record);
+            if (next != null) {
+                list = next;
+                indexes = indexes.remove(record);
+                changed = true;
+            }
+        }
+        if (changed) {
+            publish(data, list, indexes);
+        }
+        return changed;
+    }
+
+    private void publish(DataFile data, ChunkedList<T> next, RecordIndexes<T> indexes) {
+        setter.accept(data, next);
+        data.putIndex(this, indexes);
+    }
+
+    /**
+     * The collection of the data being mutated, as published by {@link #build} or by the last mutation, or split
+     * into chunks for data that was never prepared.
+     */
+    private ChunkedList<T> chunked(DataFile data) {
+        return ChunkedList.of(recordsOf(data));
+    }
+
+    private List<T> recordsOf(DataFile data) {
+        List<T> collection = records.apply(data);
+        return collection == null ? List.of() : collection;
+    }
+}
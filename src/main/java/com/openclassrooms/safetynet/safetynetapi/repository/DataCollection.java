@@ -0,0 +1,44 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+
+/**
+ * The collections making up the dataset.
+ *
+ * <p>In the SPLIT layout each collection is persisted to its own file, so a mutation only rewrites
+ * the collection it changed.</p>
+ */
+public enum DataCollection {
+    PERSONS("persons"),
+    FIRE_STATIONS("firestations"),
+    MEDICAL_RECORDS("medicalrecords");
+
+    private final String fieldName;
+
+    DataCollection(String fieldName) {
+        this.fieldName = fieldName;
+    }
+
+    /**
+     * Returns the name of the collection in the data file, also used to name its file in the SPLIT layout.
+     *
+     * @return the field name, e.g. "firestations"
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * Sets this collection of the target DataFile to the list held by the source DataFile.
+     *
+     * @param source the DataFile to take the list from
+     * @param target the DataFile to update
+     */
+    void copy(DataFile source, DataFile target) {
+        switch (this) {
+            case PERSONS -> target.setPersons(source.getPersons());
+            case FIRE_STATIONS -> target.setFireStations(source.getFireStations());
+            case MEDICAL_RECORDS -> target.setMedicalRecords(source.getMedicalRecords());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Watches the data file(s) and reloads them when another process replaces them, without restarting the application.
+ *
+ * <p>Enabled with "data.reload.enabled". A WatchService thread waits for changes in the folder of the data file.
+ * Since a file is often written in several steps, the reload waits until no change has been seen for
+ * "data.reload.debounce-ms", then calls {@link DataLoader#reloadIfChanged()} on this thread: the new data is
+ * parsed in the background and swapped in at once, while requests keep being served from the previous data.</p>
+ *
+ * <p>Writes made by the DataLoader itself are recognized and do not trigger a reload. If the new file cannot be read,
+ * the current data is kept until the file changes again.</p>
+ */
+@Log4j2
+@Component
+public class DataFileReloader {
+
+    private final DataLoader dataLoader;
+    private final boolean enabled;
+    private final long debounceMillis;
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * @param dataLoader     the DataLoader whose files are watched
+     * @param enabled        true to watch the data file(s)
+     * @param debounceMillis the quiet time, in milliseconds, awaited after a change before reloading
+     */
+    public DataFileReloader(DataLoader dataLoader,
+                            @Value("${data.reload.enabled:false}") boolean enabled,
+                            @Value("${data.reload.debounce-ms:500}") long debounceMillis) {
+        this.dataLoader = dataLoader;
+        this.enabled = enabled;
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Starts watching the folder of the data file, if enabled.
+     *
+     * @throws IOException if the folder cannot be watched
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path directory = dataLoader.getDataFilePaths().getFirst().toAbsolutePath().getParent();
+        Set<Path> fileNames = dataLoader.getDataFilePaths().stream()
+                .map(Path::getFileName)
+                .collect(Collectors.toSet());
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        watcher = new Thread(() -> watch(fileNames), "data-reload");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("Watching '{}' for new data files {}", directory, fileNames);
+    }
+
+    /**
+     * Stops watching the data file(s).
+     */
+    @PreDestroy
+    public void stop() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+            watcher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (IOException e) {
+            log.error("Failed to close the data file watcher: {}", e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void watch(Set<Path> fileNames) {
+        boolean pending = false;
+        try {
+            while (true) {
+                WatchKey key = pending ? watchService.poll(debounceMillis, TimeUnit.MILLISECONDS) : watchService.take();
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileNames.contains((Path) event.context())) {
+                            pending = true;
+                        }
+                    }
+                    key.reset();
+                    continue;
+                }
+                // No change for a whole debounce period
+                pending = reload();
+            }
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Data file watcher closed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reloads the data file(s) if they changed.
+     *
+     * @return true if the reload must be tried again, because it was put off by a write of the DataLoader
+     */
+    private boolean reload() {
+        try {
+            return !dataLoader.reloadIfChanged() && dataLoader.hasExternalChanges();
+        } catch (RuntimeException e) {
+            log.error("Failed to reload the data file, the current data is kept: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+}
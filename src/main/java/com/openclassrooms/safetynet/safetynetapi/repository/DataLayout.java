@@ -0,0 +1,14 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+/**
+ * How the dataset is laid out on disk.
+ */
+public enum DataLayout {
+    /** One data file holding every collection. */
+    SINGLE,
+    /**
+     * One file per collection, next to the configured data file: "data.json" is stored as "data.persons.json",
+     * "data.firestations.json" and "data.medicalrecords.json".
+     */
+    SPLIT
+}
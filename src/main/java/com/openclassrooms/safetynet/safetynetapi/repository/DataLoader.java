@@ -1,8 +1,11 @@
 package com.openclassrooms.safetynet.safetynetapi.repository;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.openclassrooms.safetynet.safetynetapi.exception.ReadOnlyDataException;
 import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,6 +14,28 @@ import org.springframework.stereotype.Component;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Spring component responsible for loading and saving application data from/to a JSON file.
@@ -22,28 +47,238 @@ import java.io.InputStream;
  *
  * <p>This class provides access to the loaded data via a getter method, and supports saving any changes back to
  * the external JSON file.</p>
+ *
+ * <p>The repositories persist every mutation through {@link #recordMutation(JournalEntry)}, which honours the
+ * {@link Durability} mode set by "data.durability". In SYNC mode, the default, the file is written before the
+ * request returns. In MEMORY_ONLY mode nothing is ever written.</p>
+ *
+ * <p>In WRITE_BEHIND mode, saving only marks the dataset dirty.
+ * A background flusher then writes one snapshot per flush window ("data.write-behind.window-ms"),
+ * coalescing every mutation made during that window. PERIODIC mode works the same way, but the dirty data is
+ * written at a fixed rate ("data.snapshot.interval-seconds"). Pending changes are always flushed on shutdown.</p>
+ *
+ * <p>In JOURNAL mode, repositories record each mutation with
+ * {@link #recordMutation(JournalEntry)}, which appends it to a {@link MutationJournal} instead of rewriting
+ * the data file. The journal is replayed on top of the snapshot when loading, and compacted into a new
+ * snapshot in the background once it grows past "data.journal.compaction-threshold-bytes".</p>
+ *
+ * <p>In DELTA mode, the keys of the changed records are tracked per collection by a {@link DeltaLog}, and each
+ * write-behind flush writes a checksummed delta segment with only these records. Segments are replayed on top of
+ * the snapshot when loading, and merged into a new snapshot in the background once they grow past
+ * "data.delta.merge-threshold-bytes".</p>
+ *
+ * <p>Snapshots are written by a {@link SnapshotWriter} from the current version of the data, taken under the
+ * mutation lock shared with the repositories. In write-behind and journal modes the serialization therefore
+ * runs on the background thread while request threads keep publishing new versions.</p>
+ *
+ * <p>The repositories run their mutations with {@link #mutate(Supplier)}. Snapshots are written under a separate
+ * I/O lock, which may be held while taking the mutation lock, but is never taken while holding it: in SYNC mode
+ * the collections are captured when the mutation ends, and written once the mutation lock is released. Captures
+ * are numbered, so a capture is never written over a newer one. The journal is the exception: in JOURNAL mode the
+ * entries of a mutation are appended, and forced to disk under the ALWAYS policy, while the mutation lock is
+ * held and before the mutation is published, so the journal keeps the order of the versions and a mutation that
+ * cannot be appended is never seen by readers. Writers therefore wait for each other's appends.</p>
+ *
+ * <p>JSON and Smile files are read by a {@link SnapshotReader}, which streams the records into the mutable lists
+ * that the repositories then adopt as their storage, without any intermediate copy.</p>
+ *
+ * <p>Snapshots are written in the format set by "data.snapshot.format": JSON, or SMILE for a binary encoding that
+ * loads faster. The format of an existing file is detected from its header, so a JSON file can always be imported
+ * and is converted on the next save.</p>
+ *
+ * <p>JSON and Smile snapshots can also be gzip-compressed while they are written, with "data.snapshot.compression"
+ * and "data.snapshot.compression-level". Compressed files are detected and inflated on load.</p>
+ *
+ * <p>When "data.read-only" is set, the data file must be a MAPPED snapshot. It is memory-mapped instead of being
+ * loaded, and its lists decode records on access, so startup does not depend on the dataset size and records
+ * stay off the heap. Repositories then use these lists as they are, look records up in the key tables of the
+ * snapshot rather than in indexes of their own, and any change is rejected with a
+ * {@link ReadOnlyDataException}.</p>
+ *
+ * <p>With "data.layout=SPLIT" every collection is stored in its own file (see {@link DataLayout}), and a mutation
+ * only rewrites the file of the collection it changed. An existing single data file is migrated on startup,
+ * then renamed with a ".migrated" suffix.</p>
+ *
+ * <p>The repositories do not keep their own lists: they always go through {@link #getDataFile()}. A new data file
+ * dropped in place can thus be loaded with {@link #reloadIfChanged()}, typically by the {@link DataFileReloader}:
+ * it is parsed off to the side, then published with a single reference swap. Request threads can pin the data
+ * they started with (see {@link #pinDataFile()}) so that one request never combines old and new data.
+ * The repository indexes of the new data are built before the swap, by the preparer registered with
+ * {@link #setDataPreparer(Consumer)}.</p>
+ *
+ * <p>Every version of the data is an immutable DataFile: its lists, the indexes of the repositories and the
+ * households are published together with a single reference swap. Mutations are serialized by the mutation lock
+ * and change a copy of the current version, published when the mutation ends (see {@link #mutate(Supplier)}),
+ * while readers read the current version without any lock, and snapshot writes only hold the lock to take it.</p>
  */
 
 @Log4j2
 @Component
 public class DataLoader {
 
+    private static final Set<DataCollection> ALL_COLLECTIONS = Collections.unmodifiableSet(EnumSet.allOf(DataCollection.class));
+
     private final ObjectMapper objectMapper;
+    private final ObjectMapper smileMapper;
     private final String dataFilePath;
+    private final DataLayout layout;
+    @Getter
+    private final boolean readOnly;
+    private final Durability durability;
+    private final long flushWindowMillis;
+    private final MutationJournal journal;
+    private final long compactionThresholdBytes;
+    private final DeltaLog deltaLog;
+    private final long deltaMergeThresholdBytes;
+    private final SnapshotReader jsonReader;
+    private final SnapshotReader smileReader;
+    private final SnapshotWriter snapshotWriter;
+    private final Object mutationLock = new Object();
+    private final Object ioLock = new Object();
+
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong dirtySinceNanos = new AtomicLong();
+    private final AtomicLong pendingMutations = new AtomicLong();
+    private final Set<DataCollection> dirtyCollections = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<List<JournalEntry>> batchedMutations = new ThreadLocal<>();
+    private final ThreadLocal<PendingWrite> pendingWrites = new ThreadLocal<>();
+    private final ThreadLocal<DataFile> drafts = new ThreadLocal<>();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final ThreadLocal<DataFile> pinnedDataFile = new ThreadLocal<>();
+    private final Map<Path, FileVersion> knownVersions = new ConcurrentHashMap<>();
+    private final AtomicInteger writesInProgress = new AtomicInteger();
+    // Guarded by the mutation lock
+    private long captureSequence;
+    // Guarded by the I/O lock
+    private final Map<DataCollection, Long> writtenSequences = new EnumMap<>(DataCollection.class);
 
     @Getter
-    private DataFile dataFile;
+    private final FlushMetrics flushMetrics = new FlushMetrics();
+
+    private volatile DataFile dataFile;
+    private volatile Consumer<DataFile> dataPreparer;
+
+    /**
+     * The size and modification time of a data file, used to tell a new file apart from the one last read or written.
+     */
+    private record FileVersion(long size, long modifiedMillis) {
+    }
+
+    /**
+     * Collections captured under the mutation lock, to be written without it. The sequence tells captures apart,
+     * so that a capture is not written over a newer one.
+     */
+    private record SnapshotCapture(DataFile snapshot, Set<DataCollection> collections, long sequence) {
+    }
+
+    /**
+     * The collections a SYNC mutation modified: they are captured when the mutation ends, still under the mutation
+     * lock, then written once the lock is released.
+     */
+    private final class PendingWrite {
+
+        private final Set<DataCollection> collections = EnumSet.noneOf(DataCollection.class);
+        private SnapshotCapture capture;
+
+        private void capture() {
+            if (collections.isEmpty()) {
+                return;
+            }
+            capture = captureSnapshot(layout == DataLayout.SINGLE ? ALL_COLLECTIONS : collections);
+            // Counted before the mutation lock is released, so that a reload does not race with the write
+            writesInProgress.incrementAndGet();
+        }
+
+        private void write() {
+            if (capture == null) {
+                return;
+            }
+            try {
+                synchronized (ioLock) {
+                    writeCapture(capture);
+                }
+            } finally {
+                writesInProgress.decrementAndGet();
+            }
+        }
+    }
 
     /**
-     * Constructs a DataLoader with the given ObjectMapper and data file path.
+     * Constructs a DataLoader with the given ObjectMapper, data file path and persistence settings.
      *
-     * @param objectMapper the ObjectMapper used for JSON serialization and deserialization
-     * @param dataFilePath the path to the external JSON data file (injected from application properties)
+     * @param objectMapper             the ObjectMapper used for JSON serialization and deserialization
+     * @param dataFilePath             the path to the external JSON data file (injected from application properties)
+     * @param durability               how and when mutations are persisted
+     * @param flushWindowMillis        the time in milliseconds a dirty dataset waits before being flushed in write-behind mode
+     * @param snapshotIntervalSeconds  the period of the snapshots in PERIODIC mode
+     * @param fsyncPolicy              when journal appends are forced to disk
+     * @param fsyncIntervalMillis      the period of the background fsync when the policy is INTERVAL
+     * @param compactionThresholdBytes the journal size that triggers a background compaction
+     * @param snapshotFormat           the encoding used to write the data file
+     * @param readOnly                 true to map a MAPPED data file read-only instead of loading it
+     * @param layout                   whether the collections share one data file or have one file each
+     * @param compression              the compression applied to JSON and Smile snapshots
+     * @param compressionLevel         the deflate level, from 1 to 9, of compressed snapshots
+     * @param deltaMergeThresholdBytes the size of the delta segments that triggers a background merge in DELTA mode
      */
     public DataLoader(ObjectMapper objectMapper,
-                      @Value("${data.file.path}") String dataFilePath) {
+                      @Value("${data.file.path}") String dataFilePath,
+                      @Value("${data.durability:SYNC}") Durability durability,
+                      @Value("${data.write-behind.window-ms:500}") long flushWindowMillis,
+                      @Value("${data.snapshot.interval-seconds:60}") long snapshotIntervalSeconds,
+                      @Value("${data.journal.fsync:INTERVAL}") MutationJournal.FsyncPolicy fsyncPolicy,
+                      @Value("${data.journal.fsync-interval-ms:1000}") long fsyncIntervalMillis,
+                      @Value("${data.journal.compaction-threshold-bytes:1048576}") long compactionThresholdBytes,
+                      @Value("${data.snapshot.format:JSON}") SnapshotFormat snapshotFormat,
+                      @Value("${data.read-only:false}") boolean readOnly,
+                      @Value("${data.layout:SINGLE}") DataLayout layout,
+                      @Value("${data.snapshot.compression:NONE}") SnapshotCompression compression,
+                      @Value("${data.snapshot.compression-level:6}") int compressionLevel,
+                      @Value("${data.delta.merge-threshold-bytes:1048576}") long deltaMergeThresholdBytes) {
+        if (readOnly && durability != Durability.MEMORY_ONLY) {
+            log.warn("Data is read-only: durability {} is ignored, nothing will be written", durability);
+            durability = Durability.MEMORY_ONLY;
+        }
+        if (snapshotFormat == SnapshotFormat.MAPPED && compression != SnapshotCompression.NONE) {
+            log.warn("MAPPED snapshots are read in place: compression {} is ignored", compression);
+            compression = SnapshotCompression.NONE;
+        }
         this.objectMapper = objectMapper;
+        this.smileMapper = objectMapper.copyWith(new SmileFactory());
         this.dataFilePath = dataFilePath;
+        this.layout = layout;
+        this.readOnly = readOnly;
+        this.durability = durability;
+        this.flushWindowMillis = flushWindowMillis;
+        this.journal = durability == Durability.JOURNAL
+                ? new MutationJournal(objectMapper, Paths.get(dataFilePath + ".journal"), fsyncPolicy)
+                : null;
+        this.compactionThresholdBytes = compactionThresholdBytes;
+        this.deltaLog = durability == Durability.DELTA ? new DeltaLog(objectMapper, Paths.get(dataFilePath)) : null;
+        this.deltaMergeThresholdBytes = deltaMergeThresholdBytes;
+        this.jsonReader = new SnapshotReader(objectMapper);
+        this.smileReader = new SnapshotReader(smileMapper);
+        this.snapshotWriter = snapshotFormat == SnapshotFormat.MAPPED
+                ? new MappedSnapshotWriter(smileMapper)
+                : new SnapshotWriter(mapperFor(snapshotFormat), compression, compressionLevel);
+        boolean background = durability == Durability.WRITE_BEHIND || durability == Durability.PERIODIC
+                || durability == Durability.JOURNAL || durability == Durability.DELTA;
+        this.scheduler = background ? new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "data-persistence");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        if (scheduler != null) {
+            // On shutdown the pending flush runs right away instead of waiting for the end of its window
+            scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        }
+        if (journal != null && fsyncPolicy == MutationJournal.FsyncPolicy.INTERVAL) {
+            scheduler.scheduleWithFixedDelay(journal::sync, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (durability == Durability.PERIODIC) {
+            scheduler.scheduleAtFixedRate(this::flush, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
     }
 
     /**
@@ -53,55 +288,465 @@ public class DataLoader {
      * Otherwise, it loads the default data from the bundled resource file "data.json" and
      * creates the external file with this default content for future use.</p>
      *
+     * <p>When the journal is enabled, its entries are then replayed on top of the loaded data and folded
+     * into a new snapshot, so that the application always starts with an empty journal.</p>
+     *
+     * <p>In the SPLIT layout the collection files are read instead. If the single data file still exists,
+     * it is loaded and migrated to collection files first.</p>
+     *
+     * <p>In read-only mode the external file(s) must exist and be MAPPED snapshots, which are mapped
+     * without reading their records.</p>
+     *
      * <p>Throws a RuntimeException if the file cannot be read or if the default resource file is missing.</p>
      */
     @PostConstruct
     public void loadJsonFile() {
+        long start = System.nanoTime();
         File file = new File(dataFilePath);
+        if (journal != null) {
+            journal.close();
+        }
 
-        if (file.exists()) {
-            log.info("Loading data from external file '{}'", dataFilePath);
-            try {
-                dataFile = objectMapper.readValue(file, DataFile.class);
-                log.info("Successfully loaded data from '{}'", dataFilePath);
-            } catch (IOException e) {
-                log.error("Failed to read external file '{}'", dataFilePath, e);
-                throw new RuntimeException("Cannot read data file", e);
+        Map<Path, FileVersion> versions = currentVersions();
+        Map<DataCollection, Long> heldSequences = new EnumMap<>(DataCollection.class);
+        DataFile external = readExternalData(heldSequences);
+        if (external != null) {
+            dataFile = external;
+            knownVersions.clear();
+            knownVersions.putAll(versions);
+            if (readOnly) {
+                prepareData(dataFile);
+                logLoadTime(start);
+                return;
+            }
+            if (file.exists() && layout == DataLayout.SPLIT && durability != Durability.MEMORY_ONLY) {
+                migrateToSplitLayout(file.toPath());
             }
+        } else if (readOnly) {
+            // Reports the missing MAPPED snapshot
+            mapReadOnly();
         } else {
             log.warn("External file '{}' not found. Loading default from resources.", dataFilePath);
             try (InputStream is = getClass().getClassLoader().getResourceAsStream("data.json")) {
                 if (is == null) throw new RuntimeException("Default 'data.json' not found in resources!");
-                dataFile = objectMapper.readValue(is, DataFile.class);
+                dataFile = jsonReader.read(is);
                 log.info("Loaded default data from resources. Saving to '{}'", dataFilePath);
-                saveJsonFile(); // Create the external file on first run
+                if (durability != Durability.MEMORY_ONLY) {
+                    writeJsonFile(); // Create the external file on first run
+                }
             } catch (IOException e) {
                 log.error("Error loading fallback JSON", e);
                 throw new RuntimeException("Error loading fallback JSON", e);
             }
         }
+
+        if (journal != null) {
+            foldJournal(heldSequences);
+        }
+        if (deltaLog != null) {
+            foldDeltas();
+        }
+        prepareData(dataFile);
+        logLoadTime(start);
+    }
+
+    private void logLoadTime(long start) {
+        log.info("Data loaded in {} ms ({} persons, {} fire stations, {} medical records)",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), dataFile.getPersons().size(),
+                dataFile.getFireStations().size(), dataFile.getMedicalRecords().size());
+    }
+
+    /**
+     * Registers the task that prepares newly loaded data for the repositories, typically by building their indexes.
+     * It runs on every data loaded after the registration, before the data is published, on the loading thread.
+     *
+     * @param dataPreparer the task preparing a DataFile
+     */
+    public void setDataPreparer(Consumer<DataFile> dataPreparer) {
+        this.dataPreparer = dataPreparer;
+    }
+
+    private void prepareData(DataFile data) {
+        Consumer<DataFile> preparer = dataPreparer;
+        if (preparer != null) {
+            preparer.accept(data);
+        }
+    }
+
+    /**
+     * @return the number of mutations applied in memory but not flushed yet in write-behind, periodic and delta modes
+     */
+    public long getPendingMutationCount() {
+        return pendingMutations.get();
+    }
+
+    /**
+     * @return the time in milliseconds since the oldest mutation not flushed yet was applied, or 0 if none is pending
+     */
+    public long getPendingLagMillis() {
+        long dirtySince = dirtySinceNanos.get();
+        return dirtySince == 0L ? 0L : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - dirtySince);
+    }
+
+    /**
+     * Returns the data currently served: within a mutation, the next version it is changing; otherwise the
+     * version pinned by the calling thread if any, or else the latest one.
+     *
+     * <p>Mutations and reloads replace the whole DataFile, never its lists one by one, so the collections of a
+     * DataFile, their indexes and households always belong to the same version of the data.</p>
+     *
+     * @return the data used by the repositories
+     */
+    public DataFile getDataFile() {
+        DataFile draft = drafts.get();
+        if (draft != null) {
+            return draft;
+        }
+        DataFile pinned = pinnedDataFile.get();
+        return pinned != null ? pinned : dataFile;
+    }
+
+    /**
+     * Pins the current data to the calling thread until {@link #unpinDataFile()}, so that every repository read
+     * it makes sees the same version of the data even if a reload or a mutation happens meanwhile.
+     *
+     * <p>Mutations still apply to the latest data, but a pinned thread does not see the versions published after
+     * it pinned the data, its own included.</p>
+     */
+    public void pinDataFile() {
+        pinnedDataFile.set(dataFile);
+    }
+
+    /**
+     * Releases the data pinned by {@link #pinDataFile()}.
+     */
+    public void unpinDataFile() {
+        pinnedDataFile.remove();
+    }
+
+    /**
+     * Returns the files holding the data: the data file and, in the SPLIT layout, the collection files.
+     *
+     * @return the paths of the data files, existing or not
+     */
+    public List<Path> getDataFilePaths() {
+        List<Path> paths = new ArrayList<>();
+        paths.add(Paths.get(dataFilePath));
+        if (layout == DataLayout.SPLIT) {
+            for (DataCollection collection : DataCollection.values()) {
+                paths.add(collectionPath(collection));
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Tells whether the data file(s) differ from the ones last read or written by this DataLoader.
+     *
+     * @return true if a data file was replaced, created or deleted by another process
+     */
+    public boolean hasExternalChanges() {
+        Map<Path, FileVersion> versions = currentVersions();
+        return !versions.isEmpty() && !versions.equals(knownVersions);
+    }
+
+    /**
+     * Loads the data file(s) again if they were replaced since they were last read or written by this DataLoader.
+     *
+     * <p>The new data is read and prepared off to the side, without holding any lock, while requests keep using
+     * the current data. It is then published by swapping the DataFile reference under the mutation lock, so mutations either
+     * apply before the swap or to the new data. Mutations that were not yet written, either pending in
+     * write-behind mode or in the journal, are discarded, since the new file replaces the data they applied to.</p>
+     *
+     * <p>Nothing is done while this DataLoader is writing the files itself, or if no data file exists: callers
+     * should try again later while {@link #hasExternalChanges()} is true.</p>
+     *
+     * @return true if new data was loaded
+     * @throws RuntimeException if the new file cannot be read; the current data is then kept
+     */
+    public boolean reloadIfChanged() {
+        Map<Path, FileVersion> versions = currentVersions();
+        if (writesInProgress.get() > 0 || versions.isEmpty() || versions.equals(knownVersions)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        Map<DataCollection, Long> heldSequences = new EnumMap<>(DataCollection.class);
+        DataFile fresh = readExternalData(heldSequences);
+        if (fresh == null) {
+            return false;
+        }
+        prepareData(fresh);
+        synchronized (mutationLock) {
+            // A write of our own may have replaced the file while it was parsed
+            if (writesInProgress.get() > 0 || !versions.equals(currentVersions())) {
+                log.debug("Data file changed while it was reloaded, reload skipped");
+                return false;
+            }
+            dataFile = fresh;
+            knownVersions.clear();
+            knownVersions.putAll(versions);
+            discardPendingMutations();
+            if (journal != null) {
+                // Entries of the new data must not be skipped when replayed on top of it
+                heldSequences.values().forEach(journal::continueAfter);
+            }
+        }
+        log.info("Reloaded data from '{}' in {} ms ({} persons, {} fire stations, {} medical records)", dataFilePath,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), fresh.getPersons().size(),
+                fresh.getFireStations().size(), fresh.getMedicalRecords().size());
+        Path singleFile = Paths.get(dataFilePath);
+        if (!readOnly && layout == DataLayout.SPLIT && durability != Durability.MEMORY_ONLY && Files.exists(singleFile)) {
+            migrateToSplitLayout(singleFile);
+        }
+        return true;
     }
 
     /**
      * Saves the current data stored in dataFile to the external JSON file specified by dataFilePath.
      *
-     * <p>This method uses the Jackson (ObjectMapper) to serialize the data to a pretty-printed JSON file.</p>
+     * <p>In SYNC and JOURNAL modes the file is written immediately. In WRITE_BEHIND and PERIODIC modes the dataset
+     * is only marked dirty, and the write happens on the background flusher. In MEMORY_ONLY mode nothing is written.</p>
      *
      * @throws RuntimeException if an I/O error occurs while writing to the file.
      */
     public void saveJsonFile() {
-        File file = new File(dataFilePath);
+        if (deltaLog != null) {
+            mergeDeltas();
+            return;
+        }
+        save(ALL_COLLECTIONS);
+    }
+
+    /**
+     * Persists a mutation already applied to the in-memory data.
+     *
+     * <p>When the journal is enabled, the mutation is appended to it and a compaction is scheduled once the
+     * journal passes its size threshold. Otherwise the data is saved like {@link #saveJsonFile()}, but in the
+     * SPLIT layout only the file of the modified collection is written.</p>
+     *
+     * <p>Inside {@link #mutate(Supplier)} or {@link #inBatch(Supplier)}, the mutation is only collected, and is
+     * persisted with the others when the mutation returns, before it is published.</p>
+     *
+     * @param entry the mutation performed by a repository
+     * @throws RuntimeException if the mutation cannot be persisted
+     */
+    public void recordMutation(JournalEntry entry) {
+        List<JournalEntry> batch = batchedMutations.get();
+        if (batch != null) {
+            batch.add(entry);
+            return;
+        }
+        persist(List.of(entry));
+    }
+
+    /**
+     * Runs a repository mutation under the mutation lock, then writes what it modified in SYNC mode.
+     *
+     * <p>The mutation reads a copy of the current data from {@link #getDataFile()}, replaces its lists, indexes
+     * and households with new ones, and records its changes with {@link #recordMutation(JournalEntry)}. The copy
+     * is published as the new version of the data when the mutation returns, so readers see all of the mutation or
+     * none of it. The changes recorded meanwhile are persisted together just before the copy is published: in
+     * JOURNAL mode they are appended to the journal there, under the lock, while in SYNC mode the modified
+     * collections are captured once the copy is published and written after the lock is released. The data is on
+     * disk when this method returns. A mutation started inside another one joins it.</p>
+     *
+     * <p>If the mutation throws, or its changes cannot be appended to the journal, the copy and the changes it
+     * recorded are dropped, and the current version is left as it was.</p>
+     *
+     * @param mutation the changes to apply
+     * @param <T>      the type of the result
+     * @return the result of the mutation
+     * @throws ReadOnlyDataException if the data is served from a read-only snapshot
+     * @throws RuntimeException if the mutation cannot be persisted
+     */
+    public <T> T mutate(Supplier<T> mutation) {
+        if (readOnly) {
+            // Mutations build new lists rather than modifying the mapped ones, so they are rejected here
+            throw new ReadOnlyDataException("Data is served from a read-only snapshot, changes are not accepted");
+        }
+        if (drafts.get() != null) {
+            return mutation.get();
+        }
+        PendingWrite pending = new PendingWrite();
         try {
-            objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, dataFile);
-            log.info("Successfully saved data to '{}'", dataFilePath);
-        } catch (IOException e) {
-            log.error("Error saving JSON to '{}': {}", dataFilePath, e.getMessage(), e);
-            throw new RuntimeException("Error saving json file: " + e.getMessage(), e);
+            synchronized (mutationLock) {
+                List<JournalEntry> entries = new ArrayList<>();
+                pendingWrites.set(pending);
+                batchedMutations.set(entries);
+                drafts.set(dataFile.copy());
+                try {
+                    T result = mutation.get();
+                    if (!entries.isEmpty()) {
+                        log.debug("Persisting {} mutation(s)", entries.size());
+                        persist(entries);
+                    }
+                    dataFile = drafts.get();
+                    pending.capture();
+                    return result;
+                } finally {
+                    // A failed mutation leaves the current version as it was, and its pending write is dropped
+                    drafts.remove();
+                    batchedMutations.remove();
+                    pendingWrites.remove();
+                }
+            }
+        } finally {
+            pending.write();
         }
     }
 
     /**
-     * Deletes the JSON data file at the specified path.
+     * Runs several repository mutations as one batch that is persisted once.
+     *
+     * <p>The mutations are applied in memory as they run, while the mutation lock is held for the whole batch,
+     * so no other thread can interleave its own changes, and are published together when the batch ends. The
+     * mutations recorded meanwhile are persisted together like those of {@link #mutate(Supplier)}: one journal
+     * append with a single fsync, or one write of the modified collections. A batch started inside another batch
+     * joins it.</p>
+     *
+     * <p>A batch is all or nothing: if it throws, none of its mutations is published nor persisted, so callers
+     * can validate each change inside the batch, against the data the batch changes.</p>
+     *
+     * @param mutations the repository calls to run
+     * @param <T>       the type of the result
+     * @return the result of the mutations
+     * @throws RuntimeException if the batch cannot be persisted
+     */
+    public <T> T inBatch(Supplier<T> mutations) {
+        // Every mutation already collects what it records, and persists it once
+        return mutate(mutations);
+    }
+
+    /**
+     * Writes any pending write-behind or periodic changes to the external JSON file.
+     *
+     * <p>Does nothing when the dataset is not dirty. If the write fails, the pending changes are kept
+     * and a new flush is scheduled.</p>
+     */
+    public void flush() {
+        synchronized (ioLock) {
+            flushDirty();
+        }
+    }
+
+    private void flushDirty() {
+        flushScheduled.set(false);
+        long dirtySince = dirtySinceNanos.getAndSet(0L);
+        if (dirtySince == 0L) {
+            return;
+        }
+        long mutations = pendingMutations.getAndSet(0L);
+        Set<DataCollection> collections = EnumSet.noneOf(DataCollection.class);
+        for (DataCollection collection : DataCollection.values()) {
+            if (dirtyCollections.remove(collection)) {
+                collections.add(collection);
+            }
+        }
+        try {
+            if (deltaLog != null) {
+                writeDelta();
+            } else {
+                writeCollections(collections);
+            }
+            long lagMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - dirtySince);
+            flushMetrics.recordFlush(mutations, lagMillis);
+            log.debug("Flushed {} coalesced mutation(s) to '{}' after {} ms", mutations, dataFilePath, lagMillis);
+        } catch (RuntimeException e) {
+            flushMetrics.recordFailure();
+            dirtySinceNanos.compareAndSet(0L, dirtySince);
+            pendingMutations.addAndGet(mutations);
+            dirtyCollections.addAll(collections);
+            // In PERIODIC mode the next period retries
+            if (durability != Durability.PERIODIC && !scheduler.isShutdown()) {
+                scheduleFlush();
+            }
+        }
+    }
+
+    /**
+     * Folds the journal into a new snapshot of the data file.
+     *
+     * <p>The journal is rotated first, so mutations recorded while the snapshot is written go to a fresh
+     * journal. The rotated entries are deleted once the snapshot is on disk.</p>
+     */
+    public void compactJournal() {
+        if (journal == null) {
+            return;
+        }
+        writesInProgress.incrementAndGet();
+        try {
+            synchronized (ioLock) {
+                long journalSize;
+                Path rotated;
+                SnapshotCapture capture;
+                // The rotation and the capture happen together, so the snapshot holds exactly the rotated entries
+                synchronized (mutationLock) {
+                    journalSize = journal.size();
+                    rotated = journal.rotate();
+                    capture = captureSnapshot(ALL_COLLECTIONS);
+                }
+                writeCapture(capture);
+                Files.deleteIfExists(rotated);
+                log.info("Compacted {} byte(s) of journal into '{}'", journalSize, dataFilePath);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Journal compaction failed, it will be retried: {}", e.getMessage(), e);
+        } finally {
+            writesInProgress.decrementAndGet();
+            compactionScheduled.set(false);
+        }
+    }
+
+    /**
+     * Merges the delta segments into a new snapshot of the data file, then deletes them.
+     *
+     * <p>Runs under the I/O lock, so no segment is written meanwhile. The snapshot may also hold changes
+     * that are not in a segment yet; they are still written to the next segment, which is harmless as applying a
+     * segment is idempotent.</p>
+     */
+    public void mergeDeltas() {
+        if (deltaLog == null) {
+            return;
+        }
+        try {
+            synchronized (ioLock) {
+                long merged = deltaLog.lastSequence();
+                writeCollections(ALL_COLLECTIONS);
+                deltaLog.deleteUpTo(merged);
+                log.info("Merged delta segments up to {} into '{}'", merged, dataFilePath);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Delta merge failed, it will be retried: {}", e.getMessage(), e);
+        } finally {
+            compactionScheduled.set(false);
+        }
+    }
+
+    /**
+     * Flushes pending write-behind changes and closes the journal before the application context closes,
+     * so that no acknowledged mutation is lost on a graceful shutdown.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(flushWindowMillis + 5000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (journal != null) {
+            journal.close();
+        }
+        log.info("Background persistence stopped ({})", flushMetrics);
+    }
+
+    /**
+     * Deletes the JSON data file at the specified path, along with its collection files, its journal and its delta
+     * segments.
      * <p>
      * This method is intended for test purposes only, typically to reset the dataset
      * before reloading fresh test data.
@@ -110,6 +755,498 @@ public class DataLoader {
     public void dropJsonFile() {
         File file = new File(dataFilePath);
         file.delete();
+        for (DataCollection collection : DataCollection.values()) {
+            collectionPath(collection).toFile().delete();
+        }
+        if (journal != null) {
+            journal.close();
+            try {
+                journal.delete();
+            } catch (IOException e) {
+                log.error("Failed to drop the journal of '{}': {}", dataFilePath, e.getMessage(), e);
+            }
+        }
+        if (deltaLog != null) {
+            try {
+                deltaLog.clearDirty();
+                deltaLog.deleteAll();
+            } catch (IOException e) {
+                log.error("Failed to drop the delta segments of '{}': {}", dataFilePath, e.getMessage(), e);
+            }
+        }
         log.info("Successfully dropped data to '{}'", dataFilePath);
     }
+
+    private ObjectMapper mapperFor(SnapshotFormat format) {
+        return format == SnapshotFormat.JSON ? objectMapper : smileMapper;
+    }
+
+    private SnapshotReader readerFor(SnapshotFormat format) {
+        return format == SnapshotFormat.JSON ? jsonReader : smileReader;
+    }
+
+    /**
+     * Reads the snapshot stored in the given file, whatever its format.
+     */
+    private DataFile readSnapshot(Path path) {
+        try {
+            SnapshotFormat format = SnapshotFormat.detect(path);
+            DataFile loaded = format == SnapshotFormat.MAPPED
+                    ? materialize(MappedSnapshot.map(smileMapper, path))
+                    : readerFor(format).read(path);
+            log.info("Successfully loaded {} data from '{}'", format, path);
+            return loaded;
+        } catch (IOException e) {
+            log.error("Failed to read external file '{}'", path, e);
+            throw new RuntimeException("Cannot read data file", e);
+        }
+    }
+
+    /**
+     * Reads one collection from its own file in the SPLIT layout. A missing file is read as an empty collection.
+     */
+    private void readCollection(DataCollection collection, DataFile target, Map<DataCollection, Long> heldSequences) {
+        Path path = collectionPath(collection);
+        if (Files.exists(path)) {
+            DataFile part = readSnapshot(path);
+            collection.copy(part, target);
+            if (part.getJournalSequence() != null) {
+                heldSequences.put(collection, part.getJournalSequence());
+            }
+        } else {
+            log.warn("Collection file '{}' not found, starting with no {}", path, collection.getFieldName());
+            collection.copy(emptyDataFile(), target);
+        }
+    }
+
+    /**
+     * Reads the external data file(s) into a new DataFile, or maps them in read-only mode.
+     *
+     * @param heldSequences receives the journal sequence held by the file of each collection, if any
+     * @return the data read, or null if there is no external data file yet
+     */
+    private DataFile readExternalData(Map<DataCollection, Long> heldSequences) {
+        Path file = Paths.get(dataFilePath);
+        boolean collectionFiles = layout == DataLayout.SPLIT
+                && Arrays.stream(DataCollection.values()).anyMatch(c -> Files.exists(collectionPath(c)));
+        if (readOnly) {
+            return Files.exists(file) || collectionFiles ? mapReadOnly() : null;
+        }
+        if (Files.exists(file)) {
+            log.info("Loading data from external file '{}'", dataFilePath);
+            DataFile loaded = readSnapshot(file);
+            if (loaded.getJournalSequence() != null) {
+                ALL_COLLECTIONS.forEach(collection -> heldSequences.put(collection, loaded.getJournalSequence()));
+            }
+            return loaded;
+        }
+        if (collectionFiles) {
+            DataFile loaded = new DataFile();
+            for (DataCollection collection : DataCollection.values()) {
+                readCollection(collection, loaded, heldSequences);
+            }
+            return loaded;
+        }
+        return null;
+    }
+
+    /**
+     * Writes the data loaded from the single data file to collection files, then renames the single file so
+     * that it is not migrated again. If the process stops before the rename, the migration is simply redone.
+     */
+    private void migrateToSplitLayout(Path singleFile) {
+        writeCollections(ALL_COLLECTIONS);
+        Path migrated = singleFile.resolveSibling(singleFile.getFileName() + ".migrated");
+        writesInProgress.incrementAndGet();
+        try {
+            Files.move(singleFile, migrated, StandardCopyOption.REPLACE_EXISTING);
+            knownVersions.remove(singleFile);
+            log.info("Migrated '{}' to one file per collection, the original file is kept as '{}'", singleFile, migrated);
+        } catch (IOException e) {
+            log.error("Failed to rename migrated file '{}'", singleFile, e);
+            throw new RuntimeException("Cannot migrate data file", e);
+        } finally {
+            writesInProgress.decrementAndGet();
+        }
+    }
+
+    /**
+     * Maps the MAPPED snapshot file(s) as the read-only dataset.
+     */
+    private DataFile mapReadOnly() {
+        DataFile mapped;
+        if (layout == DataLayout.SINGLE) {
+            mapped = mapSnapshot(Paths.get(dataFilePath));
+        } else {
+            mapped = new DataFile();
+            for (DataCollection collection : DataCollection.values()) {
+                collection.copy(mapSnapshot(collectionPath(collection)), mapped);
+            }
+        }
+        log.info("Mapped read-only snapshot '{}' ({} persons, {} fire stations, {} medical records)", dataFilePath,
+                mapped.getPersons().size(), mapped.getFireStations().size(), mapped.getMedicalRecords().size());
+        return mapped;
+    }
+
+    private DataFile mapSnapshot(Path path) {
+        try {
+            if (!Files.exists(path) || SnapshotFormat.detect(path) != SnapshotFormat.MAPPED) {
+                throw new IllegalStateException("Read-only mode requires a MAPPED snapshot at '" + path + "'");
+            }
+            return MappedSnapshot.map(smileMapper, path);
+        } catch (IOException e) {
+            log.error("Failed to map snapshot '{}'", path, e);
+            throw new RuntimeException("Cannot map data file", e);
+        }
+    }
+
+    /**
+     * Decodes every record of a mapped snapshot into mutable lists.
+     */
+    private static DataFile materialize(DataFile mapped) {
+        DataFile loaded = new DataFile();
+        loaded.setPersons(new ArrayList<>(mapped.getPersons()));
+        loaded.setFireStations(new ArrayList<>(mapped.getFireStations()));
+        loaded.setMedicalRecords(new ArrayList<>(mapped.getMedicalRecords()));
+        loaded.setJournalSequence(mapped.getJournalSequence());
+        return loaded;
+    }
+
+    private static DataFile emptyDataFile() {
+        DataFile empty = new DataFile();
+        empty.setPersons(new ArrayList<>());
+        empty.setFireStations(new ArrayList<>());
+        empty.setMedicalRecords(new ArrayList<>());
+        return empty;
+    }
+
+    /**
+     * Returns the file of a collection in the SPLIT layout: "data.json" gives "data.persons.json" for persons.
+     */
+    private Path collectionPath(DataCollection collection) {
+        Path path = Paths.get(dataFilePath);
+        String fileName = path.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        String name = extension > 0
+                ? fileName.substring(0, extension) + "." + collection.getFieldName() + fileName.substring(extension)
+                : fileName + "." + collection.getFieldName();
+        return path.resolveSibling(name);
+    }
+
+    /**
+     * Replays the journal on top of the freshly loaded data, writes the result as the new snapshot,
+     * then reopens an empty journal for the mutations to come.
+     *
+     * @param heldSequences the journal sequence held by the loaded file of each collection
+     */
+    private void foldJournal(Map<DataCollection, Long> heldSequences) {
+        try {
+            int replayed = journal.replay(dataFile, heldSequences);
+            if (replayed > 0) {
+                writeJsonFile();
+                journal.delete();
+            }
+            journal.open();
+        } catch (IOException e) {
+            log.error("Failed to replay the journal of '{}'", dataFilePath, e);
+            throw new RuntimeException("Cannot replay journal", e);
+        }
+    }
+
+    /**
+     * Replays the delta segments on top of the freshly loaded data, writes the result as the new snapshot,
+     * then deletes the segments. Segments after a corrupted one are dropped, and logged by the DeltaLog.
+     */
+    private void foldDeltas() {
+        try {
+            if (deltaLog.segments().isEmpty()) {
+                return;
+            }
+            if (deltaLog.replay(dataFile) > 0) {
+                writeJsonFile();
+            }
+            deltaLog.deleteAll();
+        } catch (IOException e) {
+            log.error("Failed to replay the delta segments of '{}'", dataFilePath, e);
+            throw new RuntimeException("Cannot replay delta segments", e);
+        }
+    }
+
+    /**
+     * Writes the records changed since the last flush as a new delta segment, and schedules a merge once the
+     * segments pass their size threshold. If the segment cannot be written, its keys are marked as changed again.
+     */
+    private void writeDelta() {
+        DeltaLog.Capture capture = null;
+        // Counted from before the capture, like the snapshots, so that a reload does not race with the segment
+        writesInProgress.incrementAndGet();
+        try {
+            synchronized (mutationLock) {
+                capture = deltaLog.capture(dataFile);
+            }
+            if (capture == null) {
+                return;
+            }
+            long bytes = deltaLog.write(capture);
+            flushMetrics.recordWrite(bytes);
+            log.debug("Wrote delta segment {} of '{}' ({} bytes)", capture.segment().getSequence(), dataFilePath, bytes);
+            if (deltaLog.size() >= deltaMergeThresholdBytes && compactionScheduled.compareAndSet(false, true)) {
+                scheduler.execute(this::mergeDeltas);
+            }
+        } catch (IOException e) {
+            if (capture != null) {
+                deltaLog.restore(capture);
+            }
+            log.error("Error writing delta segment of '{}': {}", dataFilePath, e.getMessage(), e);
+            throw new RuntimeException("Error writing delta segment: " + e.getMessage(), e);
+        } finally {
+            writesInProgress.decrementAndGet();
+        }
+    }
+
+    /**
+     * Appends the given mutations to the journal, or saves the collections they modified when there is no journal.
+     */
+    private void persist(List<JournalEntry> entries) {
+        if (journal == null) {
+            Set<DataCollection> collections = EnumSet.noneOf(DataCollection.class);
+            entries.forEach(entry -> collections.add(entry.getOp().getCollection()));
+            if (deltaLog != null) {
+                entries.forEach(deltaLog::markDirty);
+            }
+            save(collections);
+            return;
+        }
+        try {
+            long journalSize = journal.append(entries);
+            if (journalSize >= compactionThresholdBytes && compactionScheduled.compareAndSet(false, true)) {
+                scheduler.execute(this::compactJournal);
+            }
+        } catch (IOException e) {
+            log.error("Error appending {} mutation(s) to the journal: {}", entries.size(), e.getMessage(), e);
+            throw new RuntimeException("Error appending to journal: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the given collections now, marks them dirty, or does nothing, depending on the durability mode.
+     * Inside {@link #mutate(Supplier)}, the collections are written once the mutation ends.
+     */
+    private void save(Set<DataCollection> collections) {
+        switch (durability) {
+            case MEMORY_ONLY -> log.trace("Memory-only data, {} not persisted", collections);
+            case WRITE_BEHIND, PERIODIC, DELTA -> markDirty(collections);
+            default -> {
+                PendingWrite pending = pendingWrites.get();
+                if (pending != null) {
+                    pending.collections.addAll(collections);
+                } else {
+                    writeCollections(collections);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a pending mutation of the given collections. In WRITE_BEHIND and DELTA modes, also schedules a flush at
+     * the end of the current window if none is scheduled yet; in PERIODIC mode the next periodic flush writes them.
+     */
+    private void markDirty(Set<DataCollection> collections) {
+        dirtyCollections.addAll(collections);
+        dirtySinceNanos.compareAndSet(0L, System.nanoTime());
+        pendingMutations.incrementAndGet();
+        if (durability != Durability.PERIODIC && flushScheduled.compareAndSet(false, true)) {
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleFlush() {
+        flushScheduled.set(true);
+        scheduler.schedule(this::flush, flushWindowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Captures a point-in-time copy of dataFile and writes it to the external JSON file.
+     */
+    private void writeJsonFile() {
+        writeCollections(ALL_COLLECTIONS);
+    }
+
+    /**
+     * Captures a point-in-time copy of the given collections and writes them. In the SINGLE layout the whole
+     * file is always written, as it holds every collection.
+     */
+    private void writeCollections(Set<DataCollection> collections) {
+        Set<DataCollection> written = layout == DataLayout.SINGLE ? ALL_COLLECTIONS : collections;
+        if (written.isEmpty()) {
+            return;
+        }
+        // Counted from before the capture, so that a reload never swaps in data that an older snapshot overwrites
+        writesInProgress.incrementAndGet();
+        try {
+            synchronized (ioLock) {
+                writeCapture(captureSnapshot(written));
+            }
+        } finally {
+            writesInProgress.decrementAndGet();
+        }
+    }
+
+    /**
+     * Writes the collections of a capture that no newer capture has written yet. Called under the I/O lock.
+     */
+    private void writeCapture(SnapshotCapture capture) {
+        Set<DataCollection> collections = EnumSet.noneOf(DataCollection.class);
+        for (DataCollection collection : capture.collections()) {
+            if (writtenSequences.getOrDefault(collection, 0L) < capture.sequence()) {
+                collections.add(collection);
+            }
+        }
+        if (collections.isEmpty()) {
+            log.debug("Capture {} skipped, a newer one was already written", capture.sequence());
+            return;
+        }
+        writeSnapshot(capture.snapshot(), collections);
+        collections.forEach(collection -> writtenSequences.put(collection, capture.sequence()));
+    }
+
+    /**
+     * Writes captured collections to the external file(s) through the SnapshotWriter.
+     *
+     * @param snapshot    a copy of the data that no other thread modifies
+     * @param collections the collections captured in the snapshot
+     */
+    private void writeSnapshot(DataFile snapshot, Set<DataCollection> collections) {
+        try {
+            if (layout == DataLayout.SINGLE) {
+                Path path = Paths.get(dataFilePath);
+                long bytes = snapshotWriter.write(snapshot, path);
+                rememberVersion(path);
+                flushMetrics.recordWrite(bytes);
+                log.info("Successfully saved data to '{}' ({} bytes)", dataFilePath, bytes);
+                return;
+            }
+            for (DataCollection collection : collections) {
+                DataFile part = new DataFile();
+                collection.copy(snapshot, part);
+                part.setJournalSequence(snapshot.getJournalSequence());
+                Path path = collectionPath(collection);
+                long bytes = snapshotWriter.write(part, path);
+                rememberVersion(path);
+                flushMetrics.recordWrite(bytes);
+                log.info("Successfully saved {} to '{}' ({} bytes)", collection.getFieldName(), path, bytes);
+            }
+        } catch (IOException e) {
+            log.error("Error saving JSON to '{}': {}", dataFilePath, e.getMessage(), e);
+            throw new RuntimeException("Error saving json file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Records the version of a file this DataLoader has just written, so that it is not reloaded.
+     */
+    private void rememberVersion(Path path) {
+        FileVersion version = versionOf(path);
+        if (version != null) {
+            knownVersions.put(path, version);
+        }
+    }
+
+    /**
+     * Returns the versions of the data files that exist.
+     */
+    private Map<Path, FileVersion> currentVersions() {
+        Map<Path, FileVersion> versions = new HashMap<>();
+        for (Path path : getDataFilePaths()) {
+            FileVersion version = versionOf(path);
+            if (version != null) {
+                versions.put(path, version);
+            }
+        }
+        return versions;
+    }
+
+    private static FileVersion versionOf(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileVersion(attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Drops the mutations that were applied to the replaced data but not written yet. Called under the mutation lock.
+     */
+    private void discardPendingMutations() {
+        long pending = pendingMutations.getAndSet(0L);
+        dirtySinceNanos.set(0L);
+        dirtyCollections.clear();
+        if (pending > 0) {
+            log.warn("{} pending mutation(s) discarded by the reload of '{}'", pending, dataFilePath);
+        }
+        if (deltaLog != null) {
+            try {
+                deltaLog.clearDirty();
+                deltaLog.deleteAll();
+            } catch (IOException e) {
+                log.error("Failed to drop the delta segments of '{}'", dataFilePath, e);
+                throw new RuntimeException("Cannot drop delta segments", e);
+            }
+        }
+        if (journal != null) {
+            try {
+                if (journal.size() > 0) {
+                    log.warn("Journal of '{}' discarded by the reload", dataFilePath);
+                }
+                journal.close();
+                journal.delete();
+                journal.open();
+            } catch (IOException e) {
+                log.error("Failed to reset the journal of '{}'", dataFilePath, e);
+                throw new RuntimeException("Cannot reset journal", e);
+            }
+        }
+    }
+
+    /**
+     * Takes the current version of the given collections of dataFile, under the mutation lock so that the
+     * collections are taken between two mutations.
+     *
+     * <p>The repositories publish every version of their lists as an immutable list, and replace records
+     * rather than modifying them, so neither the lists nor the records are copied. Lists that are not immutable,
+     * such as those of data not prepared by the repositories, are copied. Collections that are not requested are
+     * left null. The snapshot holds every journal entry
+     * appended so far, and records the sequence of the last one.</p>
+     *
+     * @param collections the collections to take
+     * @return a DataFile that is not shared with the repositories, and the sequence of the capture
+     */
+    private SnapshotCapture captureSnapshot(Set<DataCollection> collections) {
+        DataFile snapshot = new DataFile();
+        synchronized (mutationLock) {
+            if (collections.contains(DataCollection.PERSONS)) {
+                snapshot.setPersons(versionOf(dataFile.getPersons()));
+            }
+            if (collections.contains(DataCollection.FIRE_STATIONS)) {
+                snapshot.setFireStations(versionOf(dataFile.getFireStations()));
+            }
+            if (collections.contains(DataCollection.MEDICAL_RECORDS)) {
+                snapshot.setMedicalRecords(versionOf(dataFile.getMedicalRecords()));
+            }
+            if (journal != null) {
+                snapshot.setJournalSequence(journal.lastSequence());
+            }
+            return new SnapshotCapture(snapshot, collections, ++captureSequence);
+        }
+    }
+
+    private static <T> List<T> versionOf(List<T> records) {
+        // Returns the immutable lists published by the repositories as they are
+        return records instanceof ChunkedList<T> ? records : List.copyOf(orEmpty(records));
+    }
+
+    private static <T> List<T> orEmpty(List<T> records) {
+        return records == null ? List.of() : records;
+    }
 }
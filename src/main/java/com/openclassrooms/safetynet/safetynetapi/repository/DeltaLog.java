@@ -0,0 +1,294 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Delta segments written next to the data file in DELTA durability mode: "data.json.delta.1", "data.json.delta.2"...
+ *
+ * <p>The log keeps the keys of the records changed since the last segment, per collection. Each flush writes one
+ * {@link DeltaSegment} with only these records, instead of the whole dataset. Every segment file starts with a
+ * header line holding the CRC32 checksum and the length of its content, and is written to a temporary file
+ * before being renamed into place.</p>
+ *
+ * <p>On startup the segments are replayed in order on top of the base snapshot; the replay stops at the first
+ * segment whose checksum does not match. The segments are merged into a new base snapshot in the background,
+ * then deleted.</p>
+ */
+@Log4j2
+public class DeltaLog {
+
+    private static final String HEADER = "SNDELTA1";
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final String prefix;
+
+    private final Map<DataCollection, Set<String>> dirtyKeys = new EnumMap<>(DataCollection.class);
+    private final Set<DataCollection> replaced = EnumSet.noneOf(DataCollection.class);
+    private long nextSequence = 1;
+
+    /**
+     * A segment captured from the data and not written yet.
+     *
+     * @param segment the changed keys and records
+     * @param content the encoded segment
+     */
+    public record Capture(DeltaSegment segment, byte[] content) {
+    }
+
+    /**
+     * @param objectMapper the ObjectMapper used to encode the segments
+     * @param dataFile     the data file the segments are written next to
+     */
+    public DeltaLog(ObjectMapper objectMapper, Path dataFile) {
+        this.objectMapper = objectMapper;
+        this.directory = dataFile.toAbsolutePath().getParent();
+        this.prefix = dataFile.getFileName() + ".delta.";
+    }
+
+    /**
+     * Records the key changed by a mutation. Called under the DataLoader mutation lock, after the change.
+     *
+     * @param entry the mutation
+     */
+    public synchronized void markDirty(JournalEntry entry) {
+        DataCollection collection = entry.getOp().getCollection();
+        String key = DeltaSegment.keyOf(entry);
+        if (key == null) {
+            replaced.add(collection);
+        } else {
+            dirtyKeys.computeIfAbsent(collection, c -> new HashSet<>()).add(key);
+        }
+    }
+
+    /**
+     * Encodes the changed records of the given data as the next segment, and clears the changed keys.
+     * Must be called under the DataLoader mutation lock, so that no change is half applied.
+     *
+     * @param data the current data
+     * @return the captured segment, or null if nothing changed
+     * @throws IOException if the segment cannot be encoded
+     */
+    public synchronized Capture capture(DataFile data) throws IOException {
+        if (dirtyKeys.isEmpty() && replaced.isEmpty()) {
+            return null;
+        }
+        DeltaSegment segment = new DeltaSegment();
+        segment.setSequence(nextSequence++);
+        segment.getReplaced().addAll(replaced);
+        for (DataCollection collection : DataCollection.values()) {
+            Set<String> keys = dirtyKeys.get(collection);
+            if (replaced.contains(collection)) {
+                collection.copy(DeltaSegment.select(data, collection, null), segment.getRecords());
+            } else if (keys != null) {
+                segment.getKeys().put(collection, keys);
+                collection.copy(DeltaSegment.select(data, collection, keys), segment.getRecords());
+            }
+        }
+        byte[] content = objectMapper.writeValueAsBytes(segment);
+        dirtyKeys.clear();
+        replaced.clear();
+        return new Capture(segment, content);
+    }
+
+    /**
+     * Marks the keys of a segment that could not be written as changed again, so that the next segment holds them.
+     *
+     * @param capture the segment that was not written
+     */
+    public synchronized void restore(Capture capture) {
+        DeltaSegment segment = capture.segment();
+        replaced.addAll(segment.getReplaced());
+        segment.getKeys().forEach((collection, keys) ->
+                dirtyKeys.computeIfAbsent(collection, c -> new HashSet<>()).addAll(keys));
+    }
+
+    /**
+     * Forgets the changed keys, when the data they belong to is replaced.
+     */
+    public synchronized void clearDirty() {
+        dirtyKeys.clear();
+        replaced.clear();
+    }
+
+    /**
+     * Writes a captured segment to its file.
+     *
+     * @param capture the segment to write
+     * @return the size of the file
+     * @throws IOException if the segment cannot be written
+     */
+    public long write(Capture capture) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(capture.content());
+        byte[] header = String.format("%s %08x %d\n", HEADER, crc.getValue(), capture.content().length)
+                .getBytes(StandardCharsets.US_ASCII);
+        Path target = segmentPath(capture.segment().getSequence());
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer[] buffers = {ByteBuffer.wrap(header), ByteBuffer.wrap(capture.content())};
+                while (buffers[1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return header.length + capture.content().length;
+    }
+
+    /**
+     * Applies the valid segments, in order, to the given data. The replay stops at the first segment that is
+     * corrupted or truncated, as the following ones may depend on it.
+     *
+     * @param dataFile the base snapshot to update
+     * @return the number of segments applied
+     * @throws IOException if a segment file cannot be read
+     */
+    public synchronized int replay(DataFile dataFile) throws IOException {
+        int applied = 0;
+        for (Path path : segments()) {
+            DeltaSegment segment = read(path);
+            if (segment == null) {
+                log.error("Stopping replay at corrupted delta segment '{}' after {} segment(s)", path, applied);
+                break;
+            }
+            segment.applyTo(dataFile);
+            applied++;
+        }
+        log.info("Replayed {} delta segment(s) from '{}'", applied, directory);
+        return applied;
+    }
+
+    /**
+     * @return the segment files, oldest first
+     * @throws IOException if the folder cannot be listed
+     */
+    public synchronized List<Path> segments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>(files.filter(path -> sequenceOf(path) > 0).toList());
+            segments.sort(Comparator.comparingLong(this::sequenceOf));
+            nextSequence = Math.max(nextSequence, segments.isEmpty() ? 1 : sequenceOf(segments.getLast()) + 1);
+            return segments;
+        }
+    }
+
+    /**
+     * @return the total size of the segment files
+     * @throws IOException if a file cannot be read
+     */
+    public synchronized long size() throws IOException {
+        long size = 0;
+        for (Path path : segments()) {
+            size += Files.size(path);
+        }
+        return size;
+    }
+
+    /**
+     * @return the sequence number of the last captured segment, 0 if none
+     */
+    public synchronized long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * Deletes the segments up to the given sequence number, once they are merged into the base snapshot.
+     *
+     * @param sequence the last merged segment
+     * @throws IOException if a file cannot be deleted
+     */
+    public synchronized void deleteUpTo(long sequence) throws IOException {
+        for (Path path : segments()) {
+            if (sequenceOf(path) <= sequence) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Deletes every segment.
+     *
+     * @throws IOException if a file cannot be deleted
+     */
+    public void deleteAll() throws IOException {
+        deleteUpTo(Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads and checks a segment file.
+     *
+     * @return the segment, or null if the file is truncated or its checksum does not match
+     */
+    private DeltaSegment read(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        int endOfHeader = 0;
+        while (endOfHeader < bytes.length && bytes[endOfHeader] != '\n') {
+            endOfHeader++;
+        }
+        String[] header = new String(bytes, 0, endOfHeader, StandardCharsets.US_ASCII).trim().split(" ");
+        if (header.length != 3 || !header[0].equals(HEADER)) {
+            return null;
+        }
+        try {
+            long checksum = Long.parseLong(header[1], 16);
+            int length = Integer.parseInt(header[2]);
+            int start = endOfHeader + 1;
+            if (bytes.length - start != length) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, start, length);
+            if (crc.getValue() != checksum) {
+                return null;
+            }
+            return objectMapper.readValue(bytes, start, length, DeltaSegment.class);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(prefix + sequence);
+    }
+
+    private long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The records changed in a period of time, as written to a delta segment file by the {@link DeltaLog}.
+ *
+ * <p>Records are identified by their key: first and last name for persons and medical records, address for
+ * fire stations. For every changed key, the segment holds all the records having that key when it was written,
+ * so a key without records was deleted. Applying a segment replaces the records of each key, which makes it
+ * idempotent. A collection that was changed in a way that cannot be tracked by key, such as deleting every
+ * fire station of a station number, is written in full and marked as replaced.</p>
+ *
+ * <p>Changed records are applied at the end of their list, so the order of the records may differ from the
+ * order they had in memory.</p>
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class DeltaSegment {
+
+    private long sequence;
+    private Set<DataCollection> replaced = EnumSet.noneOf(DataCollection.class);
+    private Map<DataCollection, Set<String>> keys = new EnumMap<>(DataCollection.class);
+    private DataFile records = new DataFile();
+
+    /**
+     * Returns the key of the record changed by a mutation.
+     *
+     * @param entry the mutation
+     * @return the key of the changed record, or null if the mutation may change several keys
+     */
+    static String keyOf(JournalEntry entry) {
+        return switch (entry.getOp()) {
+            case PERSON_ADD, PERSON_UPDATE -> nameKey(entry.getPerson().getFirstName(), entry.getPerson().getLastName());
+            case PERSON_DELETE, PERSON_DELETE_FIRST, MEDICALRECORD_DELETE -> nameKey(entry.getFirstName(), entry.getLastName());
+            case MEDICALRECORD_ADD, MEDICALRECORD_UPDATE ->
+                    nameKey(entry.getMedicalRecord().getFirstName(), entry.getMedicalRecord().getLastName());
+            case FIRESTATION_ADD, FIRESTATION_UPDATE -> addressKey(entry.getFireStation().getAddress());
+            case FIRESTATION_DELETE_ADDRESS -> addressKey(entry.getAddress());
+            case FIRESTATION_DELETE_STATION -> null;
+        };
+    }
+
+    /**
+     * Selects the records of one collection whose key is among the given keys.
+     *
+     * @param data       the data to read
+     * @param collection the collection to read
+     * @param keys       the keys to select, or null to select every record
+     * @return a DataFile holding only the selected records of the collection, in their order
+     */
+    static DataFile select(DataFile data, DataCollection collection, Set<String> keys) {
+        DataFile selected = new DataFile();
+        switch (collection) {
+            case PERSONS -> selected.setPersons(select(data.getPersons(), keys, DeltaSegment::key));
+            case FIRE_STATIONS -> selected.setFireStations(select(data.getFireStations(), keys, DeltaSegment::key));
+            case MEDICAL_RECORDS -> selected.setMedicalRecords(select(data.getMedicalRecords(), keys, DeltaSegment::key));
+        }
+        return selected;
+    }
+
+    /**
+     * Applies this segment to the lists of the given DataFile.
+     *
+     * @param dataFile the data to modify
+     */
+    public void applyTo(DataFile dataFile) {
+        dataFile.setPersons(apply(DataCollection.PERSONS, dataFile.getPersons(), records.getPersons(), DeltaSegment::key));
+        dataFile.setFireStations(apply(DataCollection.FIRE_STATIONS, dataFile.getFireStations(),
+                records.getFireStations(), DeltaSegment::key));
+        dataFile.setMedicalRecords(apply(DataCollection.MEDICAL_RECORDS, dataFile.getMedicalRecords(),
+                records.getMedicalRecords(), DeltaSegment::key));
+    }
+
+    private <T> List<T> apply(DataCollection collection, List<T> current, List<T> changed, Function<T, String> key) {
+        List<T> updates = changed == null ? List.of() : changed;
+        if (replaced.contains(collection)) {
+            return new ArrayList<>(updates);
+        }
+        Set<String> changedKeys = keys.get(collection);
+        if (changedKeys == null || changedKeys.isEmpty()) {
+            return current;
+        }
+        current.removeIf(record -> changedKeys.contains(key.apply(record)));
+        current.addAll(updates);
+        return current;
+    }
+
+    private static <T> List<T> select(List<T> records, Set<String> keys, Function<T, String> key) {
+        List<T> selected = new ArrayList<>();
+        for (T record : records) {
+            if (keys == null || keys.contains(key.apply(record))) {
+                selected.add(record);
+            }
+        }
+        return selected;
+    }
+
+    private static String key(Person person) {
+        return nameKey(person.getFirstName(), person.getLastName());
+    }
+
+    private static String key(FireStation fireStation) {
+        return addressKey(fireStation.getAddress());
+    }
+
+    private static String key(MedicalRecord medicalRecord) {
+        return nameKey(medicalRecord.getFirstName(), medicalRecord.getLastName());
+    }
+
+    private static String nameKey(String firstName, String lastName) {
+        return CanonicalKeys.of(firstName) + "|" + CanonicalKeys.of(lastName);
+    }
+
+    private static String addressKey(String address) {
+        return CanonicalKeys.of(address);
+    }
+}
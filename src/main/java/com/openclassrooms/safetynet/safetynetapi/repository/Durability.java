@@ -0,0 +1,34 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+/**
+ * How and when the DataLoader persists the mutations made by the repositories ("data.durability").
+ *
+ * <p>The modes trade write latency for the amount of data that can be lost if the process stops abruptly.</p>
+ */
+public enum Durability {
+    /** Every mutation is written to the data file before the request returns. Nothing can be lost. */
+    SYNC,
+    /**
+     * Mutations mark the data dirty and a background flush writes them at the end of the write-behind window
+     * ("data.write-behind.window-ms"). At most one window of mutations can be lost.
+     */
+    WRITE_BEHIND,
+    /**
+     * Mutations mark the data dirty and the dirty collections are written every
+     * "data.snapshot.interval-seconds". At most one interval of mutations can be lost.
+     */
+    PERIODIC,
+    /**
+     * Mutations are appended to a journal next to the data file, which is compacted into the data file in the
+     * background. The loss window depends on "data.journal.fsync".
+     */
+    JOURNAL,
+    /**
+     * Like WRITE_BEHIND, but a flush only writes the records changed during the window, to a checksummed delta
+     * segment next to the data file. Segments are merged into the data file in the background.
+     * At most one window of mutations can be lost.
+     */
+    DELTA,
+    /** Nothing is ever written: the data file is only read at startup and every change is lost on shutdown. */
+    MEMORY_ONLY
+}
@@ -4,6 +4,7 @@ import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 @Repository
 public interface FireStationRepository {
@@ -22,4 +23,8 @@ public interface FireStationRepository {
     boolean deleteByStationNumber(int stationNumber);
 
     List<String> getAddressesByStation(Integer stationNumber);
+
+    List<FireStation> suggestByAddress(String prefix, int limit);
+
+    <T> T inBatch(Supplier<T> mutations);
 }
@@ -0,0 +1,94 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing the background flushes performed by the DataLoader in write-behind mode,
+ * and the number of bytes written to snapshot files in every mode.
+ *
+ * <p>The flush lag is the time elapsed between the first mutation that marked the dataset dirty
+ * and the moment the coalesced snapshot was written to disk.</p>
+ *
+ * <p>They are exported to Micrometer by the {@link PersistenceMetrics}.</p>
+ */
+public class FlushMetrics {
+
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong failedFlushCount = new AtomicLong();
+    private final AtomicLong coalescedMutationCount = new AtomicLong();
+    private final AtomicLong lastFlushLagMillis = new AtomicLong();
+    private final AtomicLong maxFlushLagMillis = new AtomicLong();
+    private final AtomicLong lastFlushEpochMillis = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    /**
+     * Records a successful flush.
+     *
+     * @param mutations the number of mutations written by this flush
+     * @param lagMillis the time in milliseconds between the first pending mutation and the end of the flush
+     */
+    void recordFlush(long mutations, long lagMillis) {
+        flushCount.incrementAndGet();
+        coalescedMutationCount.addAndGet(mutations);
+        lastFlushLagMillis.set(lagMillis);
+        maxFlushLagMillis.accumulateAndGet(lagMillis, Math::max);
+        lastFlushEpochMillis.set(System.currentTimeMillis());
+    }
+
+    /**
+     * Records a flush that failed and will be retried.
+     */
+    void recordFailure() {
+        failedFlushCount.incrementAndGet();
+    }
+
+    /**
+     * Records the size of a snapshot file written to disk.
+     *
+     * @param bytes the number of bytes written
+     */
+    void recordWrite(long bytes) {
+        bytesWritten.addAndGet(bytes);
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getFailedFlushCount() {
+        return failedFlushCount.get();
+    }
+
+    public long getCoalescedMutationCount() {
+        return coalescedMutationCount.get();
+    }
+
+    public long getLastFlushLagMillis() {
+        return lastFlushLagMillis.get();
+    }
+
+    public long getMaxFlushLagMillis() {
+        return maxFlushLagMillis.get();
+    }
+
+    /**
+     * @return the time of the last successful flush, in milliseconds since the epoch, or 0 if none happened yet
+     */
+    public long getLastFlushEpochMillis() {
+        return lastFlushEpochMillis.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    @Override
+    public String toString() {
+        return "flushes=" + getFlushCount()
+                + ", failed=" + getFailedFlushCount()
+                + ", mutations=" + getCoalescedMutationCount()
+                + ", lastLagMs=" + getLastFlushLagMillis()
+                + ", maxLagMs=" + getMaxFlushLagMillis()
+                + ", bytesWritten=" + getBytesWritten();
+    }
+}
@@ -0,0 +1,119 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import com.openclassrooms.safetynet.safetynetapi.util.AgeUtil;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The persons living at one address, each with their medical record, along with the fire station covering the
+ * address and the number of adults and children living there.
+ *
+ * <p>Households are maintained by the repositories, one per canonical address, and replaced by a new household
+ * whenever a person, medical record or fire station mutation changes them, so that a household is never modified
+ * once published. The number of adults and children depends on the day, so it is only counted on first use of each
+ * day.</p>
+ */
+public final class Household {
+
+    /**
+     * The age up to which a resident is a child.
+     */
+    public static final int CHILD_MAX_AGE = 18;
+
+    private final String address;
+    private final Integer station;
+    private final List<Resident> residents;
+    private volatile Census census;
+
+    /**
+     * @param address   the address of the household
+     * @param station   the number of the fire station covering the address, or null if none does
+     * @param residents the residents, in the order of the persons
+     */
+    public Household(String address, Integer station, List<Resident> residents) {
+        this.address = address;
+        this.station = station;
+        this.residents = List.copyOf(residents);
+    }
+
+    /**
+     * @return the address of the household, as written by its first resident or its fire station
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * @return the number of the fire station covering the address, or null if none does
+     */
+    public Integer getStation() {
+        return station;
+    }
+
+    /**
+     * @return the residents, in the order of the persons; empty if the address only has a fire station
+     */
+    public List<Resident> getResidents() {
+        return residents;
+    }
+
+    /**
+     * @return the number of residents older than {@link #CHILD_MAX_AGE} today, among those having a medical record
+     */
+    public int getAdultCount() {
+        return census().adults();
+    }
+
+    /**
+     * @return the number of residents aged {@link #CHILD_MAX_AGE} or under today, among those having a medical record
+     */
+    public int getChildCount() {
+        return census().children();
+    }
+
+    private Census census() {
+        LocalDate today = LocalDate.now();
+        Census current = census;
+        if (current == null || !current.day().equals(today)) {
+            int children = 0;
+            int adults = 0;
+            for (Resident resident : residents) {
+                if (resident.medicalRecord() != null) {
+                    if (AgeUtil.calculateAge(resident.medicalRecord().getBirthdate(), today) <= CHILD_MAX_AGE) {
+                        children++;
+                    } else {
+                        adults++;
+                    }
+                }
+            }
+            current = new Census(today, adults, children);
+            census = current;
+        }
+        return current;
+    }
+
+    /**
+     * A person of the household along with its medical record.
+     *
+     * @param person        the person
+     * @param medicalRecord the medical record of the person, or null if it has none
+     */
+    public record Resident(Person person, MedicalRecord medicalRecord) {
+
+        /**
+         * @return the age of the person today, or -1 if it has no medical record
+         */
+        public int getAge() {
+            return medicalRecord == null ? -1 : AgeUtil.calculateAge(medicalRecord.getBirthdate());
+        }
+    }
+
+    /**
+     * The number of adults and children of the household on one day.
+     */
+    private record Census(LocalDate day, int adults, int children) {
+    }
+}
@@ -0,0 +1,142 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link Household} of every address having residents or a fire station, keyed by canonical address and
+ * attached to the DataFile it was built from.
+ *
+ * <p>The households are built once every repository has prepared the data. Every person, medical record or fire
+ * station mutation then refreshes the households of the addresses it touches, from the indexes of the
+ * repositories and the {@link MedicalRecordLinks}, so that a mutation costs the size of the households it changes.
+ * Like the indexes, the households are immutable: a refresh attaches new households, kept in a {@link ShardedMap},
+ * to the next version of the data, and readers never lock.</p>
+ *
+ * <p>Read-only data has no households attached, so that none of its records is kept on the heap: its household at
+ * an address is built on each lookup, from the key tables of the mapped snapshot.</p>
+ */
+final class Households {
+
+    private final ShardedMap<String, Household> byAddress;
+
+    private Households(ShardedMap<String, Household> byAddress) {
+        this.byAddress = byAddress;
+    }
+
+    /**
+     * Builds the households of the given data and attaches them to the DataFile, replacing any previous ones.
+     *
+     * @param data the prepared data
+     * @return the built households
+     */
+    static Households build(DataFile data) {
+        Households households = create(data);
+        data.putIndex(Households.class, households);
+        return households;
+    }
+
+    private static Households create(DataFile data) {
+        Map<String, List<Household.Resident>> residents = new LinkedHashMap<>();
+        Map<String, String> addresses = new LinkedHashMap<>();
+        for (Person person : orEmpty(data.getPersons())) {
+            String key = CanonicalKeys.intern(person.getAddress());
+            addresses.putIfAbsent(key, person.getAddress());
+            residents.computeIfAbsent(key, k -> new ArrayList<>())
+                    .add(new Household.Resident(person, MedicalRecordLinks.medicalRecordOf(data, person)));
+        }
+        // The first fire station of an address covers it, as the unique address index would find it
+        Map<String, FireStation> stations = new LinkedHashMap<>();
+        for (FireStation fireStation : orEmpty(data.getFireStations())) {
+            String key = CanonicalKeys.intern(fireStation.getAddress());
+            addresses.putIfAbsent(key, fireStation.getAddress());
+            stations.putIfAbsent(key, fireStation);
+        }
+        Map<String, Household> byAddress = new HashMap<>();
+        for (Map.Entry<String, String> address : addresses.entrySet()) {
+            FireStation fireStation = stations.get(address.getKey());
+            byAddress.put(address.getKey(), new Household(address.getValue(),
+                    fireStation == null ? null : fireStation.getStation(),
+                    residents.getOrDefault(address.getKey(), List.of())));
+        }
+        return new Households(ShardedMap.of(byAddress));
+    }
+
+    /**
+     * Returns the household at an address of the given data. Data without households attached, such as read-only
+     * data or data that was never prepared, has its household built from the lookups of the repositories on every
+     * call, and not attached.
+     *
+     * @param data    the data the household belongs to
+     * @param address the address to look up (case-insensitive, ignoring extra whitespace)
+     * @return the household at this address, or null if no person nor fire station has this address
+     */
+    static Household get(DataFile data, String address) {
+        Households households = (Households) data.getIndex(Households.class);
+        return households != null ? households.byAddress.get(CanonicalKeys.of(address)) : household(data, address);
+    }
+
+    /**
+     * Refreshes the households of the given addresses after a mutation, and attaches them to the mutated data.
+     * Data without households attached is left alone, as its households are built from the data on use.
+     *
+     * @param data      the next version of the data, being mutated
+     * @param addresses the addresses whose residents or fire station changed
+     */
+    static void refresh(DataFile data, String... addresses) {
+        Households households = (Households) data.getIndex(Households.class);
+        if (households == null) {
+            return;
+        }
+        ShardedMap<String, Household> byAddress = households.byAddress;
+        for (String address : addresses) {
+            byAddress = byAddress.with(CanonicalKeys.intern(address), household(data, address));
+        }
+        data.putIndex(Households.class, new Households(byAddress));
+    }
+
+    /**
+     * Refreshes the households of the persons of a name, after a medical record of this name was added, updated
+     * or deleted.
+     *
+     * @param data      the next version of the data, being mutated
+     * @param firstName the first name of the medical record
+     * @param lastName  the last name of the medical record
+     */
+    static void refreshNamed(DataFile data, String firstName, String lastName) {
+        if (data.getIndex(Households.class) == null) {
+            return;
+        }
+        List<Person> persons = InMemoryPersonRepository.INDEXES.of(data)
+                .get(InMemoryPersonRepository.BY_NAME).find(firstName, lastName);
+        refresh(data, persons.stream().map(Person::getAddress).distinct().toArray(String[]::new));
+    }
+
+    /**
+     * @return the household of the address in the given data, or null if nobody nor any fire station is there
+     */
+    private static Household household(DataFile data, String address) {
+        List<Person> persons = InMemoryPersonRepository.findByAddress(data, address);
+        FireStation fireStation = InMemoryFireStationRepository.findByAddress(data, address);
+        if (persons.isEmpty() && fireStation == null) {
+            return null;
+        }
+        List<Household.Resident> residents = new ArrayList<>(persons.size());
+        for (Person person : persons) {
+            residents.add(new Household.Resident(person, MedicalRecordLinks.medicalRecordOf(data, person)));
+        }
+        String written = persons.isEmpty() ? fireStation.getAddress() : persons.getFirst().getAddress();
+        return new Household(written, fireStation == null ? null : fireStation.getStation(), residents);
+    }
+
+    private static <T> List<T> orEmpty(List<T> records) {
+        return records == null ? List.of() : records;
+    }
+}
@@ -1,74 +1,139 @@
 package com.openclassrooms.safetynet.safetynetapi.repository;
 
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
 import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
-import jakarta.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.function.Supplier;
 
 @Log4j2
 @Repository
-public class InMemoryFireStationRepository implements FireStationRepository {
+public class InMemoryFireStationRepository implements FireStationRepository, InitializingRepository {
+
+    private static final IndexDefinition<FireStation, KeyIndex<FireStation>> BY_STATION =
+            IndexDefinition.multi("fire station number", KeyIndex.Matching.EXACT, FireStation::getStation);
+    static final IndexDefinition<FireStation, KeyIndex<FireStation>> BY_ADDRESS =
+            IndexDefinition.unique("fire station address", KeyIndex.Matching.CANONICAL, FireStation::getAddress);
+    private static final IndexDefinition<FireStation, PrefixIndex<FireStation>> ADDRESS_PREFIX =
+            IndexDefinition.prefix("fire station address prefix", FireStation::getAddress);
+    static final CollectionIndexes<FireStation> INDEXES =
+            new CollectionIndexes<>(DataFile::getFireStations, DataFile::setFireStations, BY_STATION, BY_ADDRESS, ADDRESS_PREFIX);
 
     @Autowired
     private DataLoader dataLoader;
 
-    private List<FireStation> fireStations;
+    @Override
+    public DataCollection getCollection() {
+        return DataCollection.FIRE_STATIONS;
+    }
 
     /**
-     * Initializes the in-memory mutable list of fire stations.
-     * This method runs after dependency injection, loading fire stations from the JSON data file via DataLoader.
-     * It copies them into a new ArrayList to allow modifications during runtime.
-     * Logs the count of fire stations loaded at debug level.
+     * Publishes the fire stations of the given data as an immutable list, then builds the fire station indexes
+     * and attaches them to the DataFile. Fire stations mapped from a read-only snapshot are looked up in its key
+     * tables instead.
+     * Called by the {@link RepositoryBootstrap}, concurrently with the other repositories.
+     *
+     * @param data the loaded data
      */
-    @PostConstruct
-    public void init() {
-        fireStations = new ArrayList<>(dataLoader.getDataFile().getFireStations());
-        log.debug("Fire Stations loaded: {}", fireStations.size());
+    @Override
+    public void prepare(DataFile data) {
+        INDEXES.build(data);
+        log.debug("Fire Stations loaded: {}", data.getFireStations().size());
     }
 
     /**
-     * Retrieves all fire stations stored in memory.
+     * Returns the in-memory list of fire stations.
+     * The list is used as is, without a copy: it is the immutable list published by {@link #prepare(DataFile)} or
+     * by the last mutation, or, when the data is read-only, backed by the mapped snapshot so that fire stations
+     * are only decoded when accessed.
+     * It is looked up on every call, so that a new version of the data is used as soon as the DataLoader swaps it in.
+     *
+     * @return the list of fire stations of the current data
+     */
+    private List<FireStation> fireStations() {
+        return dataLoader.getDataFile().getFireStations();
+    }
+
+    /**
+     * Returns the fire station indexes of the given data, published along with its list of fire stations.
+     *
+     * @param data the data the indexes belong to
+     * @return the indexes of the fire stations of this data
+     */
+    private RecordIndexes<FireStation> index(DataFile data) {
+        return INDEXES.of(data);
+    }
+
+    /**
+     * @param data the data to look up
+     * @return the fire stations of the data if they are mapped from a read-only snapshot, or null
+     */
+    private static MappedRecordList<FireStation> mapped(DataFile data) {
+        return data.getFireStations() instanceof MappedRecordList<FireStation> mapped ? mapped : null;
+    }
+
+    /**
+     * Finds the fire station of an address of the given data, in the address index, or in the address key table
+     * of mapped data, so that only the fire station found is decoded.
+     *
+     * @param data    the data to look up
+     * @param address the address (case-insensitive, ignoring extra whitespace)
+     * @return the first fire station of this address, or null if none
+     */
+    static FireStation findByAddress(DataFile data, String address) {
+        MappedRecordList<FireStation> mapped = mapped(data);
+        if (mapped == null) {
+            return INDEXES.of(data).get(BY_ADDRESS).get(address);
+        }
+        int[] matches = mapped.keyTable(MappedKey.FIRE_STATION_ADDRESS).find(CanonicalKeys.of(address));
+        return matches.length == 0 ? null : mapped.get(matches[0]);
+    }
+
+    private static List<FireStation> findByStation(DataFile data, int station) {
+        MappedRecordList<FireStation> mapped = mapped(data);
+        return mapped != null
+                ? mapped.find(MappedKey.FIRE_STATION_NUMBER, MappedKey.station(station))
+                : INDEXES.of(data).get(BY_STATION).find(station);
+    }
+
+    /**
+     * Retrieves all fire stations stored in memory, as the current version of the list: it is immutable and is not
+     * modified by later mutations.
      *
      * @return a list of all FireStation objects; never null but can be empty
      */
     @Override
     public List<FireStation> getFireStations() {
+        List<FireStation> fireStations = fireStations();
         log.debug("Fetching all fire stations. Total: {}", fireStations.size());
         return fireStations;
     }
 
     /**
-     * Retrieves a list of fire stations matching the given station number.
+     * Retrieves a list of fire stations matching the given station number, with a lookup in the fire station index.
      *
      * @param station the station number to search for
      * @return a list of FireStation objects with the specified station number; never null but possibly empty
      */
     @Override
     public List<FireStation> getFireStationByStationNumber(int station) {
-        List<FireStation> fireStations = getFireStations().stream()
-                .filter(fs -> fs.getStation() == station)
-                .toList();
+        List<FireStation> fireStations = findByStation(dataLoader.getDataFile(), station);
         log.debug("Found {} firestation(s) with station number {}", fireStations.size(), station);
         return fireStations;
     }
 
     /**
-     * Retrieves the fire station matching the specified address.
+     * Retrieves the fire station matching the specified address, with a lookup in the fire station index.
      *
-     * @param address the address to search for (case-insensitive)
+     * @param address the address to search for (case-insensitive, ignoring extra whitespace)
      * @return the FireStation object with the specified address, or null if none is found
      */
     @Override
     public FireStation getFireStationByAddress(String address) {
-        FireStation fireStation = getFireStations().stream()
-                .filter(fs -> fs.getAddress().equalsIgnoreCase(address))
-                .findFirst()
-                .orElse(null);
+        FireStation fireStation = findByAddress(dataLoader.getDataFile(), address);
         log.debug("FireStation with address '{}' was {}", address, fireStation != null ? "found" : "not found");
         return fireStation;
     }
@@ -81,21 +146,25 @@ public class InMemoryFireStationRepository implements FireStationRepository {
      */
     @Override
     public void saveFireStation(FireStation fireStation) {
-        fireStations.add(fireStation);
-        log.debug("FireStation with address '{}' and station number {} saved", fireStation.getAddress(), fireStation.getStation());
+        dataLoader.mutate(() -> {
+            DataFile data = dataLoader.getDataFile();
+            INDEXES.add(data, fireStation);
+            Households.refresh(data, fireStation.getAddress());
+            log.debug("FireStation with address '{}' and station number {} saved", fireStation.getAddress(), fireStation.getStation());
 
-        // Update the source DataFile
-        dataLoader.getDataFile().setFireStations(fireStations);
+            // Persist changes to the JSON file
+            dataLoader.recordMutation(JournalEntry.fireStationAdded(fireStation));
 
-        // Persist changes to the JSON file
-        dataLoader.saveJsonFile();
+            return fireStation;
+        });
     }
 
     /**
      * Updates an existing fire station identified by its address.
      * <p>
-     * If a fire station with the specified address is found, updates its station number,
-     * persists the changes to the JSON data file, and returns the updated FireStation.
+     * If a fire station with the specified address is found, replaces it by a fire station with the new station
+     * number, persists the changes to the JSON data file, and returns the updated FireStation. The fire station is
+     * replaced rather than modified, so that the versions of the list already handed out never change.
      * </p>
      *
      * @param fireStation the fire station containing updated information
@@ -103,23 +172,23 @@ public class InMemoryFireStationRepository implements FireStationRepository {
      */
     @Override
     public FireStation updateFireStation(FireStation fireStation) {
-        for (FireStation fs : fireStations) {
-            if (fs.getAddress().equalsIgnoreCase(fireStation.getAddress())) {
-                fs.setStation(fireStation.getStation());
+        return dataLoader.mutate(() -> {
+            DataFile data = dataLoader.getDataFile();
+            FireStation current = index(data).get(BY_ADDRESS).get(fireStation.getAddress());
+            FireStation fs = current == null ? null : new FireStation(current.getAddress(), fireStation.getStation());
+            // The station number is part of the index key
+            if (fs != null && INDEXES.replace(data, current, fs)) {
+                Households.refresh(data, fs.getAddress());
                 log.debug("FireStation at address '{}' updated with station number {}", fs.getAddress(), fs.getStation());
 
-                // Update the source DataFile
-                dataLoader.getDataFile().setFireStations(fireStations);
-
                 // Persist changes to the JSON file
-                dataLoader.saveJsonFile();
+                dataLoader.recordMutation(JournalEntry.fireStationUpdated(fs));
 
                 return fs;
             }
-        }
-        log.debug("No firestation found at address '{}', update skipped", fireStation.getAddress());
-        return null;
-
+            log.debug("No firestation found at address '{}', update skipped", fireStation.getAddress());
+            return null;
+        });
     }
 
     /**
@@ -134,22 +203,21 @@ public class InMemoryFireStationRepository implements FireStationRepository {
      */
     @Override
     public boolean deleteFirstOccurrenceFireStationByAddress(String address) {
-        Iterator<FireStation> iterator = fireStations.iterator();
-        while (iterator.hasNext()) {
-            FireStation fs = iterator.next();
-            if (fs.getAddress().equalsIgnoreCase(address)) {
-                iterator.remove();
+        return dataLoader.mutate(() -> {
+            DataFile data = dataLoader.getDataFile();
+            FireStation fs = index(data).get(BY_ADDRESS).get(address);
+            if (fs != null && INDEXES.remove(data, List.of(fs))) {
+                Households.refresh(data, fs.getAddress());
                 log.debug("The first occurence of FireStation with address '{}' deleted", address);
 
-                // Update source DataFile and save JSON
-                dataLoader.getDataFile().setFireStations(fireStations);
-                dataLoader.saveJsonFile();
+                // Save JSON
+                dataLoader.recordMutation(JournalEntry.fireStationDeletedByAddress(address));
 
                 return true; // Deletion performed
             }
-        }
-        log.debug("No firestation found with address '{}', nothing deleted", address);
-        return false; // No deletion
+            log.debug("No firestation found with address '{}', nothing deleted", address);
+            return false; // No deletion
+        });
     }
 
     /**
@@ -164,23 +232,33 @@ public class InMemoryFireStationRepository implements FireStationRepository {
      */
     @Override
     public boolean deleteByStationNumber(int stationNumber) {
-        boolean removed = fireStations.removeIf(fs -> fs.getStation() == stationNumber);
-        if (removed) {
-            log.debug("All firestations with station number {} deleted", stationNumber);
-
-            // Update source DataFile and save JSON
-            dataLoader.getDataFile().setFireStations(fireStations);
-            dataLoader.saveJsonFile();
-        } else {
-            log.debug("No firestations with station number {} found, nothing deleted", stationNumber);
-        }
-        return removed;
+        return dataLoader.mutate(() -> {
+            DataFile data = dataLoader.getDataFile();
+            List<FireStation> matches = index(data).get(BY_STATION).find(stationNumber);
+            boolean removed = !matches.isEmpty() && INDEXES.remove(data, matches);
+            if (removed) {
+                Households.refresh(data, matches.stream().map(FireStation::getAddress).distinct().toArray(String[]::new));
+                log.debug("All firestations with station number {} deleted", stationNumber);
+
+                // Save JSON
+                dataLoader.recordMutation(JournalEntry.fireStationsDeletedByStation(stationNumber));
+            } else {
+                log.debug("No firestations with station number {} found, nothing deleted", stationNumber);
+            }
+            return removed;
+        });
     }
 
+    /**
+     * Retrieves the addresses covered by the given station, with a lookup in the fire station index,
+     * so it takes a time proportional to the number of addresses.
+     *
+     * @param stationNumber the station number to search for
+     * @return the addresses of the station, in the order of the list; never null but possibly empty
+     */
     @Override
     public List<String> getAddressesByStation(Integer stationNumber) {
-        List<String> addresses = getFireStations().stream()
-                .filter(fs -> fs.getStation() == stationNumber)
+        List<String> addresses = findByStation(dataLoader.getDataFile(), stationNumber).stream()
                 .map(FireStation::getAddress)
                 .toList();
 
@@ -188,4 +266,33 @@ public class InMemoryFireStationRepository implements FireStationRepository {
         return addresses;
     }
 
+    /**
+     * Suggests the fire station mappings whose address starts with the given prefix,
+     * with a lookup in the address prefix index.
+     *
+     * @param prefix the typed prefix (case-insensitive, ignoring extra whitespace)
+     * @param limit  the maximum number of mappings
+     * @return one mapping per matching address, in the alphabetical order of the addresses; empty list if none found
+     */
+    @Override
+    public List<FireStation> suggestByAddress(String prefix, int limit) {
+        DataFile data = dataLoader.getDataFile();
+        MappedRecordList<FireStation> mapped = mapped(data);
+        return mapped != null
+                ? mapped.suggest(MappedKey.FIRE_STATION_ADDRESS, CanonicalKeys.of(prefix), limit)
+                : index(data).get(ADDRESS_PREFIX).suggest(prefix, limit);
+    }
+
+    /**
+     * Runs several mutations as one batch, persisted once when the batch ends.
+     * See {@link DataLoader#inBatch(Supplier)}; the batch may also modify other repositories.
+     *
+     * @param mutations the repository calls to run
+     * @param <T>       the type of the result
+     * @return the result of the mutations
+     */
+    @Override
+    public <T> T inBatch(Supplier<T> mutations) {
+        return dataLoader.inBatch(mutations);
+    }
 }
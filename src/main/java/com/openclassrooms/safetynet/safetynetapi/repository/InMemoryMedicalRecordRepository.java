@@ -1,53 +1,108 @@
 package com.openclassrooms.safetynet.safetynetapi.repository;
 
 import com.openclassrooms.safetynet.safetynetapi.exception.MedicalRecordNotFoundException;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
 import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
-import jakarta.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 @Log4j2
 @Repository
-public class InMemoryMedicalRecordRepository implements MedicalRecordRepository {
+public class InMemoryMedicalRecordRepository implements MedicalRecordRepository, InitializingRepository {
+
+    static final IndexDefinition<MedicalRecord, KeyIndex<MedicalRecord>> BY_NAME =
+            IndexDefinition.unique("medical record name", KeyIndex.Matching.CANONICAL,
+                    MedicalRecord::getFirstName, MedicalRecord::getLastName);
+    static final CollectionIndexes<MedicalRecord> INDEXES =
+            new CollectionIndexes<>(DataFile::getMedicalRecords, DataFile::setMedicalRecords, BY_NAME);
+
     @Autowired
     private DataLoader dataLoader;
 
-    private List<MedicalRecord> medicalRecords;
+    @Override
+    public DataCollection getCollection() {
+        return DataCollection.MEDICAL_RECORDS;
+    }
+
+    /**
+     * Publishes the medical records of the given data as an immutable list, then builds the medical record index
+     * and attaches it to the DataFile. Medical records mapped from a read-only snapshot are looked up in its name
+     * key table instead.
+     * Called by the {@link RepositoryBootstrap}, concurrently with the other repositories.
+     *
+     * @param data the loaded data
+     */
+    @Override
+    public void prepare(DataFile data) {
+        INDEXES.build(data);
+        log.debug("Medical records loaded: {}", data.getMedicalRecords().size());
+    }
+
+    /**
+     * Returns the in-memory list of medical records.
+     * The list is used as is, without a copy: it is the immutable list published by {@link #prepare(DataFile)} or
+     * by the last mutation, or, when the data is read-only, backed by the mapped snapshot so that medical records
+     * are only decoded when accessed.
+     * It is looked up on every call, so that a new version of the data is used as soon as the DataLoader swaps it in.
+     *
+     * @return the list of medical records of the current data
+     */
+    private List<MedicalRecord> medicalRecords() {
+        return dataLoader.getDataFile().getMedicalRecords();
+    }
+
+    /**
+     * Returns the medical record index of the given data, published along with its list of medical records.
+     *
+     * @param data the data the index belongs to
+     * @return the index of the medical records of this data
+     */
+    private RecordIndexes<MedicalRecord> index(DataFile data) {
+        return INDEXES.of(data);
+    }
 
     /**
-     * Initializes the in-memory mutable list of medical records.
-     * This method runs after dependency injection, loading medical records from the JSON data file via DataLoader.
-     * It copies them into a new ArrayList to allow modifications during runtime.
-     * Logs the count of medical records loaded at debug level.
+     * Finds the medical record of a name in the given data, in the name index, or in the name key table of mapped
+     * data, so that only the medical record found is decoded.
+     *
+     * @param data      the data to look up
+     * @param firstName the first name (case-insensitive, ignoring extra whitespace)
+     * @param lastName  the last name (case-insensitive, ignoring extra whitespace)
+     * @return the first medical record of this name, or null if none
      */
-    @PostConstruct
-    public void init() {
-        this.medicalRecords = new ArrayList<>(dataLoader.getDataFile().getMedicalRecords());
-        log.debug("Medical records loaded: {}", medicalRecords.size());
+    static MedicalRecord findByName(DataFile data, String firstName, String lastName) {
+        if (!(data.getMedicalRecords() instanceof MappedRecordList<MedicalRecord> mapped)) {
+            return INDEXES.of(data).get(BY_NAME).get(firstName, lastName);
+        }
+        int[] matches = mapped.keyTable(MappedKey.MEDICAL_RECORD_NAME).find(MappedKey.name(firstName, lastName));
+        return matches.length == 0 ? null : mapped.get(matches[0]);
     }
 
     /**
-     * Updates the DataFile with the current list of medical records and saves changes to the JSON file.
+     * Persists the given mutation, already applied to the DataFile.
+     * Must be called from a mutation run by {@link DataLoader#mutate(Supplier)}.
+     *
+     * @param mutation the change that was applied to the in-memory list
      */
-    private void persistChanges() {
-        // Update the source DataFile
-        dataLoader.getDataFile().setMedicalRecords(medicalRecords);
+    private void persistChanges(JournalEntry mutation) {
         // Persist changes to the JSON file
-        dataLoader.saveJsonFile();
+        dataLoader.recordMutation(mutation);
     }
 
     /**
      * Retrieves all medical records stored in memory.
      *
      * @return a list of all MedicalRecord objects; never null but can be empty.
-     *         The returned list is a copy and modifications on it won't affect the internal list.
+     *         The returned list is a copy of the current version and modifications on it won't affect the internal list.
      */
     @Override
     public List<MedicalRecord> getAllMedicalRecords() {
+        List<MedicalRecord> medicalRecords = medicalRecords();
         log.debug("Fetching all medical records. Total: {}", medicalRecords.size());
         return new ArrayList<>(medicalRecords);
     }
@@ -55,8 +110,8 @@ public class InMemoryMedicalRecordRepository implements MedicalRecordRepository
     /**
      * Retrieves the medical record matching the given first name and last name.
      *
-     * <p>This method performs a case-insensitive search on both first name and last name
-     * and returns the first matching record found in the in-memory list.</p>
+     * <p>This method performs a case-insensitive lookup on both first name and last name, ignoring extra whitespace,
+     * in the medical record index, and returns the first matching record of the in-memory list.</p>
      *
      * @param firstName the first name to search for (case-insensitive)
      * @param lastName the last name to search for (case-insensitive)
@@ -64,16 +119,11 @@ public class InMemoryMedicalRecordRepository implements MedicalRecordRepository
      */
     @Override
     public MedicalRecord getMedicalRecordByFirstNameAndLastName(String firstName, String lastName) {
-        String trimmedFirstName = firstName.trim().replaceAll("\\s+", " ");
-        String trimmedLastName = lastName.trim().replaceAll("\\s+", " ");
-        List<MedicalRecord> results = medicalRecords.stream()
-                .filter(mr -> mr.getFirstName().equalsIgnoreCase(trimmedFirstName)
-                        && mr.getLastName().equalsIgnoreCase(trimmedLastName))
-                .toList();
-
-        if (!results.isEmpty()) {
+        MedicalRecord medicalRecord = findByName(dataLoader.getDataFile(), firstName, lastName);
+
+        if (medicalRecord != null) {
             log.debug("Medical record found for {} {}", firstName, lastName);
-            return results.getFirst(); // We return the first one found
+            return medicalRecord; // We return the first one found
         } else {
             log.debug("No medical record found for {} {}", firstName, lastName);
             return null;
@@ -87,25 +137,30 @@ public class InMemoryMedicalRecordRepository implements MedicalRecordRepository
      */
     @Override
     public MedicalRecord saveMedicalRecord(MedicalRecord medicalRecord) {
-
-        medicalRecords.add(medicalRecord);
-        log.debug("Medical record for {} {} saved with birthdate {}, medications {}, and allergies {}",
-                medicalRecord.getFirstName(),
-                medicalRecord.getLastName(),
-                medicalRecord.getBirthdate(),
-                medicalRecord.getMedications(),
-                medicalRecord.getAllergies());
-
-        persistChanges();
-
-        return medicalRecord;
+        return dataLoader.mutate(() -> {
+            DataFile data = dataLoader.getDataFile();
+            INDEXES.add(data, medicalRecord);
+            MedicalRecordLinks.relink(data, medicalRecord.getFirstName(), medicalRecord.getLastName());
+            Households.refreshNamed(data, medicalRecord.getFirstName(), medicalRecord.getLastName());
+            log.debug("Medical record for {} {} saved with birthdate {}, medications {}, and allergies {}",
+                    medicalRecord.getFirstName(),
+                    medicalRecord.getLastName(),
+                    medicalRecord.getBirthdate(),
+                    medicalRecord.getMedications(),
+                    medicalRecord.getAllergies());
+
+            persistChanges(JournalEntry.medicalRecordAdded(medicalRecord));
+
+            return medicalRecord;
+        });
     }
 
     /**
      * Updates an existing medical record matching the first name and last name.
      * <p>
-     * If a matching record is found, updates its birthdate, medications, and allergies,
-     * then persists the changes to the JSON data file.
+     * If a matching record is found, replaces it by a record with the new birthdate, medications, and allergies,
+     * then persists the changes to the JSON data file. The record is replaced rather than modified, so that
+     * readers never see a record half updated, and the persons of its name are linked to the new record.
      * </p>
      *
      * @param medicalRecord the medical record containing updated information
@@ -114,28 +169,31 @@ public class InMemoryMedicalRecordRepository implements MedicalRecordRepository
      */
     @Override
     public MedicalRecord updateMedicalRecord(MedicalRecord medicalRecord) {
-        MedicalRecord toUpdate = medicalRecords.stream()
-                .filter(mr ->
-                        mr.getFirstName().equalsIgnoreCase(medicalRecord.getFirstName()) &&
-                                mr.getLastName().equalsIgnoreCase(medicalRecord.getLastName()))
-                .limit(1)
-                .findFirst()
-                .orElseThrow(() -> new MedicalRecordNotFoundException("Medical record not found"));
-
-        toUpdate.setBirthdate(medicalRecord.getBirthdate());
-        toUpdate.setMedications(medicalRecord.getMedications());
-        toUpdate.setAllergies(medicalRecord.getAllergies());
-
-        log.debug("Medical record for {} {} updated: birthdate={}, medications={}, allergies={}",
-                toUpdate.getFirstName(),
-                toUpdate.getLastName(),
-                toUpdate.getBirthdate(),
-                toUpdate.getMedications(),
-                toUpdate.getAllergies());
-
-        persistChanges();
-
-        return toUpdate;
+        return dataLoader.mutate(() -> {
+            DataFile data = dataLoader.getDataFile();
+            MedicalRecord current = index(data).get(BY_NAME).get(medicalRecord.getFirstName(), medicalRecord.getLastName());
+            MedicalRecord toUpdate = current == null ? null : new MedicalRecord(current.getFirstName(),
+                    current.getLastName(), medicalRecord.getBirthdate(), medicalRecord.getMedications(),
+                    medicalRecord.getAllergies());
+            if (toUpdate == null || !INDEXES.replace(data, current, toUpdate)) {
+                throw new MedicalRecordNotFoundException("Medical record not found");
+            }
+
+            MedicalRecordLinks.relink(data, toUpdate.getFirstName(), toUpdate.getLastName());
+            // The birthdate may change the adults and children of the households
+            Households.refreshNamed(data, toUpdate.getFirstName(), toUpdate.getLastName());
+
+            log.debug("Medical record for {} {} updated: birthdate={}, medications={}, allergies={}",
+                    toUpdate.getFirstName(),
+                    toUpdate.getLastName(),
+                    toUpdate.getBirthdate(),
+                    toUpdate.getMedications(),
+                    toUpdate.getAllergies());
+
+            persistChanges(JournalEntry.medicalRecordUpdated(toUpdate));
+
+            return toUpdate;
+        });
     }
 
     /**
@@ -148,18 +206,35 @@ public class InMemoryMedicalRecordRepository implements MedicalRecordRepository
      */
     @Override
     public boolean deleteMedicalRecord(String firstName, String lastName) {
-        boolean removed = medicalRecords.removeIf(mr ->
-                mr.getFirstName().equalsIgnoreCase(firstName) &&
-                        mr.getLastName().equalsIgnoreCase(lastName));
-
-        if (removed) {
-            log.debug("Medical record for {} {} deleted", firstName, lastName);
-
-            persistChanges();
-        } else {
-            log.debug("No medical record found for {} {}, nothing deleted", firstName, lastName);
-        }
+        return dataLoader.mutate(() -> {
+            DataFile data = dataLoader.getDataFile();
+            List<MedicalRecord> matches = index(data).get(BY_NAME).find(firstName, lastName);
+            boolean removed = !matches.isEmpty() && INDEXES.remove(data, matches);
+
+            if (removed) {
+                MedicalRecordLinks.relink(data, firstName, lastName);
+                Households.refreshNamed(data, firstName, lastName);
+                log.debug("Medical record for {} {} deleted", firstName, lastName);
+
+                persistChanges(JournalEntry.medicalRecordDeleted(firstName, lastName));
+            } else {
+                log.debug("No medical record found for {} {}, nothing deleted", firstName, lastName);
+            }
+
+            return removed;
+        });
+    }
 
-        return removed;
+    /**
+     * Runs several mutations as one batch, persisted once when the batch ends.
+     * See {@link DataLoader#inBatch(Supplier)}; the batch may also modify other repositories.
+     *
+     * @param mutations the repository calls to run
+     * @param <T>       the type of the result
+     * @return the result of the mutations
+     */
+    @Override
+    public <T> T inBatch(Supplier<T> mutations) {
+        return dataLoader.inBatch(mutations);
     }
 }
@@ -1,64 +1,176 @@
 package com.openclassrooms.safetynet.safetynetapi.repository;
 
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
 import com.openclassrooms.safetynet.safetynetapi.model.Person;
-import jakarta.annotation.PostConstruct;
-import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Log4j2
 @Repository
-public class InMemoryPersonRepository implements PersonRepository {
+public class InMemoryPersonRepository implements PersonRepository, InitializingRepository {
+
+    static final IndexDefinition<Person, KeyIndex<Person>> BY_NAME =
+            IndexDefinition.multi("person name", KeyIndex.Matching.CANONICAL, Person::getFirstName, Person::getLastName);
+    static final IndexDefinition<Person, KeyIndex<Person>> BY_ADDRESS =
+            IndexDefinition.multi("person address", KeyIndex.Matching.CANONICAL, Person::getAddress);
+    private static final IndexDefinition<Person, KeyIndex<Person>> BY_LAST_NAME =
+            IndexDefinition.multi("person last name", KeyIndex.Matching.CANONICAL, Person::getLastName);
+    private static final IndexDefinition<Person, PhoneticIndex<Person>> LAST_NAME_SOUND =
+            IndexDefinition.phonetic("person last name sound", Person::getLastName);
+    private static final IndexDefinition<Person, PrefixIndex<Person>> NAME_PREFIX =
+            IndexDefinition.prefix("person name prefix",
+                    person -> person.getFirstName() + " " + person.getLastName(),
+                    person -> person.getLastName() + " " + person.getFirstName());
+    private static final IndexDefinition<Person, PrefixIndex<Person>> ADDRESS_PREFIX =
+            IndexDefinition.prefix("person address prefix", Person::getAddress);
+    private static final IndexDefinition<Person, CityIndex> BY_CITY =
+            IndexDefinition.custom("person city", CityIndex::new);
+    static final CollectionIndexes<Person> INDEXES =
+            new CollectionIndexes<>(DataFile::getPersons, DataFile::setPersons, BY_NAME, BY_ADDRESS, BY_LAST_NAME, BY_CITY,
+                    LAST_NAME_SOUND, NAME_PREFIX, ADDRESS_PREFIX);
+
     @Autowired
     private DataLoader dataLoader;
 
-    @Setter
-    private List<Person> persons;
+    @Override
+    public DataCollection getCollection() {
+        return DataCollection.PERSONS;
+    }
+
+    /**
+     * Publishes the persons of the given data as an immutable list, then builds the person indexes and attaches
+     * them to the DataFile. Persons mapped from a read-only snapshot are looked up in its key tables instead.
+     * Called by the {@link RepositoryBootstrap}, concurrently with the other repositories.
+     *
+     * @param data the loaded data
+     */
+    @Override
+    public void prepare(DataFile data) {
+        INDEXES.build(data);
+        log.debug("Persons loaded: {}", data.getPersons().size());
+    }
+
+    /**
+     * Links every person of the given data to its medical record, once the medical records are prepared too,
+     * then builds the households of the data. Read-only data is neither linked nor grouped in households, as its
+     * persons are decoded on access: its households are looked up in the key tables of the snapshot on each call.
+     *
+     * @param data the prepared data
+     */
+    @Override
+    public void link(DataFile data) {
+        if (dataLoader.isReadOnly()) {
+            return;
+        }
+        MedicalRecordLinks.build(data);
+        Households.build(data);
+    }
+
+    /**
+     * Returns the in-memory list of persons.
+     * The list is used as is, without a copy: it is the immutable list published by {@link #prepare(DataFile)} or
+     * by the last mutation, or, when the data is read-only, backed by the mapped snapshot so that persons are only
+     * decoded when accessed.
+     * It is looked up on every call, so that a new version of the data is used as soon as the DataLoader swaps it in.
+     *
+     * @return the list of persons of the current data
+     */
+    private List<Person> persons() {
+        return dataLoader.getDataFile().getPersons();
+    }
+
+    /**
+     * Returns the person indexes of the given data, published along with its list of persons.
+     *
+     * @param data the data the indexes belong to
+     * @return the indexes of the persons of this data
+     */
+    private RecordIndexes<Person> indexes(DataFile data) {
+        return INDEXES.of(data);
+    }
+
+    /**
+     * @param data the data to look up
+     * @return the persons of the data if they are mapped from a read-only snapshot, or null
+     */
+    private static MappedRecordList<Person> mapped(DataFile data) {
+        return data.getPersons() instanceof MappedRecordList<Person> mapped ? mapped : null;
+    }
 
     /**
-     * Initializes the in-memory mutable list of persons.
-     * This method runs after dependency injection, loading persons from the JSON data file via DataLoader.
-     * It copies them into a new ArrayList to allow modifications during runtime.
-     * Logs the count of persons loaded at debug level.
+     * Finds the persons living at an address of the given data, in the address index, or in the address key table
+     * of mapped data, so that only the persons found are decoded.
+     *
+     * @param data    the data to look up
+     * @param address the address (case-insensitive, ignoring extra whitespace)
+     * @return the persons living at this address, in the order of the list; empty if none
      */
-    @PostConstruct
-    public void init() {
-        persons = new ArrayList<>(dataLoader.getDataFile().getPersons());
-        log.debug("Persons loaded: {}", persons.size());
+    static List<Person> findByAddress(DataFile data, String address) {
+        MappedRecordList<Person> mapped = mapped(data);
+        return mapped != null
+                ? mapped.find(MappedKey.PERSON_ADDRESS, CanonicalKeys.of(address))
+                : INDEXES.of(data).get(BY_ADDRESS).find(address);
+    }
+
+    private static List<Person> findByLastName(DataFile data, String lastName) {
+        MappedRecordList<Person> mapped = mapped(data);
+        return mapped != null
+                ? mapped.findByPrefix(MappedKey.PERSON_NAME, MappedKey.lastName(lastName))
+                : INDEXES.of(data).get(BY_LAST_NAME).find(lastName);
     }
 
     /**
-     * Retrieves all persons stored in memory
+     * Retrieves all persons stored in memory, as the current version of the list: it is immutable and is not
+     * modified by later mutations, so callers can iterate it while other threads write, without any lock.
      *
      * @return a list of all Person objects; never null but can be empty
      */
     @Override
     public List<Person> findAll() {
+        List<Person> persons = persons();
         log.debug("Fetching all persons. Total: {}", persons.size());
         return persons;
     }
 
     /**
-     * Get a list of persons by address
+     * Get a list of persons by address, with a lookup in the person index,
+     * so it takes a time proportional to the household size
      *
-     * @param address String address of the person (case-insensitive)
+     * @param address String address of the person (case-insensitive, ignoring extra whitespace)
      * @return List of Person objects
      */
     public List<Person> getPersonByAddress(String address) {
-        String trimmedAddress = address.trim().replaceAll("\\s+", " ");
-        List<Person> persons = findAll().stream()
-                .filter(p -> p.getAddress().equalsIgnoreCase(trimmedAddress))
-                .toList();
+        List<Person> persons = findByAddress(dataLoader.getDataFile(), address);
         log.debug("{} persons with address {} found", persons.size(), address);
         return persons;
     }
 
+    /**
+     * Returns the household living at the given address, maintained on every person, medical record and fire
+     * station mutation, so that neither its residents nor their medical records are looked up. The household of
+     * read-only data is looked up in the key tables of the snapshot instead.
+     *
+     * @param address the address of the household (case-insensitive, ignoring extra whitespace)
+     * @return the household, or null if no person nor fire station has this address
+     */
+    @Override
+    public Household getHousehold(String address) {
+        Household household = Households.get(dataLoader.getDataFile(), address);
+        log.debug("Household at address {} was {}", address, household != null ? "found" : "not found");
+        return household;
+    }
+
     /**
      * Adds a new Person to the in-memory list and persists the updated list to the external JSON file
      *
@@ -67,22 +179,25 @@ public class InMemoryPersonRepository implements PersonRepository {
      */
     @Override
     public Person save(Person person) {
-        persons.add(person);
-        log.debug("Person saved: {} {}, address: {}, city: {}, zip: {}, phone: {}, email: {}",
-                person.getFirstName(),
-                person.getLastName(),
-                person.getAddress(),
-                person.getCity(),
-                person.getZip(),
-                person.getPhone(),
-                person.getEmail());
-        // Update the source DataFile
-        dataLoader.getDataFile().setPersons(persons);
+        return dataLoader.mutate(() -> {
+            DataFile data = dataLoader.getDataFile();
+            INDEXES.add(data, person);
+            MedicalRecordLinks.link(data, person);
+            Households.refresh(data, person.getAddress());
+            log.debug("Person saved: {} {}, address: {}, city: {}, zip: {}, phone: {}, email: {}",
+                    person.getFirstName(),
+                    person.getLastName(),
+                    person.getAddress(),
+                    person.getCity(),
+                    person.getZip(),
+                    person.getPhone(),
+                    person.getEmail());
 
-        // Persist changes to the JSON file
-        dataLoader.saveJsonFile();
+            // Persist changes to the JSON file
+            dataLoader.recordMutation(JournalEntry.personAdded(person));
 
-        return person;
+            return person;
+        });
     }
 
     /**
@@ -97,37 +212,37 @@ public class InMemoryPersonRepository implements PersonRepository {
      */
     @Override
     public Person update(Person person) {
-        for (int i = 0; i < persons.size(); i++) {
-            Person current = persons.get(i);
-            if (current.getFirstName().equalsIgnoreCase(person.getFirstName()) &&
-                    current.getLastName().equalsIgnoreCase(person.getLastName())) {
-
-                persons.set(i, person); // Update data
-
-                log.debug("Person updated: {} {}, address={}, city={}, zip={}, phone={}, email={}",
-                        person.getFirstName(),
-                        person.getLastName(),
-                        person.getAddress(),
-                        person.getCity(),
-                        person.getZip(),
-                        person.getPhone(),
-                        person.getEmail());
-
-                // Update DataFile
-                dataLoader.getDataFile().setPersons(persons);
-
-                // Persist to JSON
-                dataLoader.saveJsonFile();
-
-                return person;
+        return dataLoader.mutate(() -> {
+            DataFile data = dataLoader.getDataFile();
+            List<Person> matches = indexes(data).get(BY_NAME).find(person.getFirstName(), person.getLastName());
+            if (!matches.isEmpty()) {
+                Person current = matches.getFirst();
+                if (INDEXES.replace(data, current, person)) { // Update data
+                    MedicalRecordLinks.unlink(data, List.of(current));
+                    MedicalRecordLinks.link(data, person);
+                    Households.refresh(data, current.getAddress(), person.getAddress());
+
+                    log.debug("Person updated: {} {}, address={}, city={}, zip={}, phone={}, email={}",
+                            person.getFirstName(),
+                            person.getLastName(),
+                            person.getAddress(),
+                            person.getCity(),
+                            person.getZip(),
+                            person.getPhone(),
+                            person.getEmail());
+
+                    // Persist to JSON
+                    dataLoader.recordMutation(JournalEntry.personUpdated(person));
+
+                    return person;
+                }
             }
-        }
-
-        log.debug("No person found for {} {}, update skipped.",
-                person.getFirstName(), person.getLastName());
 
-        return null; // if Person not found
+            log.debug("No person found for {} {}, update skipped.",
+                    person.getFirstName(), person.getLastName());
 
+            return null; // if Person not found
+        });
     }
 
     /**
@@ -143,58 +258,109 @@ public class InMemoryPersonRepository implements PersonRepository {
      */
     @Override
     public boolean delete(String firstName, String lastName) {
-        boolean removed = persons.removeIf(p ->
-                p.getFirstName().equalsIgnoreCase(firstName) &&
-                        p.getLastName().equalsIgnoreCase(lastName)
-        );
-
-        if (removed) {
-            log.debug("Person(s) with name {} {} deleted", firstName, lastName);
-
-            // Update DataFile
-            dataLoader.getDataFile().setPersons(persons);
-
-            // Persist to JSON file
-            dataLoader.saveJsonFile();
-        } else {
-            log.debug("No person found with name {} {}, nothing deleted", firstName, lastName);
-        }
+        return dataLoader.mutate(() -> {
+            DataFile data = dataLoader.getDataFile();
+            List<Person> matches = indexes(data).get(BY_NAME).find(firstName, lastName);
+            boolean removed = !matches.isEmpty() && INDEXES.remove(data, matches);
+
+            if (removed) {
+                MedicalRecordLinks.unlink(data, matches);
+                Households.refresh(data, matches.stream().map(Person::getAddress).distinct().toArray(String[]::new));
+                log.debug("Person(s) with name {} {} deleted", firstName, lastName);
+
+                // Persist to JSON file
+                dataLoader.recordMutation(JournalEntry.personDeleted(firstName, lastName));
+            } else {
+                log.debug("No person found with name {} {}, nothing deleted", firstName, lastName);
+            }
 
-        return removed;
+            return removed;
+        });
     }
 
     /**
-     * Finds a person by their first and last name (case-insensitive).
+     * Finds a person by their first and last name (case-insensitive, ignoring extra whitespace),
+     * with a lookup in the person index.
      *
      * @param firstName the first name to search for
      * @param lastName the last name to search for
-     * @return the matching Person if found; otherwise, null
+     * @return the first matching Person if found; otherwise, null
      */
     @Override
     public Person findByFirstNameAndLastName(String firstName, String lastName) {
-        for (Person person : persons) {
-            if (person.getFirstName().equalsIgnoreCase(firstName) &&
-                    person.getLastName().equalsIgnoreCase(lastName)) {
-                return person;
-            }
-        }
-        return null;
+        DataFile data = dataLoader.getDataFile();
+        MappedRecordList<Person> mapped = mapped(data);
+        List<Person> matches = mapped != null
+                ? mapped.find(MappedKey.PERSON_NAME, MappedKey.name(firstName, lastName))
+                : indexes(data).get(BY_NAME).find(firstName, lastName);
+        return matches.isEmpty() ? null : matches.getFirst();
     }
 
 
 
     /**
-     * Finds all persons whose last name matches the given lastName (case-insensitive).
+     * Finds all persons whose last name matches the given lastName (case-insensitive, ignoring extra whitespace),
+     * with a lookup in the person index.
      *
      * @param lastName the last name to search for
-     * @return a list of matching Person objects; empty list if none found
+     * @return a list of matching Person objects, in the order of the list; empty list if none found
      */
     @Override
     public List<Person> findByLastName(String lastName) {
-        String trimmedLastName = lastName.trim().replaceAll("\\s+", " ");
-        return persons.stream().
-                filter(person -> person.getLastName().equalsIgnoreCase(trimmedLastName))
-                .collect(Collectors.toList());
+        return findByLastName(dataLoader.getDataFile(), lastName);
+    }
+
+    /**
+     * Finds all persons whose last name matches the given lastName (case-insensitive, ignoring extra whitespace),
+     * each with the medical record it is linked to, so that neither the persons nor their medical records are
+     * looked up one by one. Both come from the same version of the data.
+     *
+     * @param lastName the last name to search for
+     * @return the matching persons with their medical record, in the order of the list; empty list if none found
+     */
+    @Override
+    public List<Household.Resident> findResidentsByLastName(String lastName) {
+        DataFile data = dataLoader.getDataFile();
+        List<Household.Resident> residents = new ArrayList<>();
+        for (Person person : findByLastName(data, lastName)) {
+            residents.add(new Household.Resident(person, MedicalRecordLinks.medicalRecordOf(data, person)));
+        }
+        return residents;
+    }
+
+    /**
+     * Finds the distinct last names that sound like the given one, with a lookup in the phonetic index,
+     * so that a misspelled last name still finds its persons without a scan of the list.
+     *
+     * @param lastName the last name to search for, possibly misspelled
+     * @return the canonical last names having the same Soundex code, in the order they were indexed, or in
+     * alphabetical order for read-only data; empty list if none found
+     */
+    @Override
+    public List<String> findLastNamesSoundingLike(String lastName) {
+        DataFile data = dataLoader.getDataFile();
+        MappedRecordList<Person> mapped = mapped(data);
+        return mapped != null
+                ? lastNamesSoundingLike(mapped.keyTable(MappedKey.PERSON_LAST_NAME_SOUNDEX), lastName)
+                : indexes(data).get(LAST_NAME_SOUND).findSoundingLike(lastName);
+    }
+
+    /**
+     * Finds the distinct last names sounding like the given one in the Soundex key table of a read-only snapshot.
+     * The last names of a code are contiguous in the table, so only the first key of each last name is read, and
+     * no person is decoded.
+     */
+    private static List<String> lastNamesSoundingLike(MappedKeyTable soundex, String lastName) {
+        String code = MappedKey.soundex(lastName);
+        List<String> lastNames = new ArrayList<>();
+        int entry = soundex.lowerBound(code);
+        while (entry < soundex.size() && soundex.startsWith(entry, code)) {
+            String key = soundex.keyAt(entry);
+            lastNames.add(key.substring(code.length()));
+            // Skips to the next last name: the key followed by NUL sorts after every entry of this one
+            entry = soundex.lowerBound(key + MappedKey.NAME_SEPARATOR);
+        }
+        return lastNames;
     }
 
     /**
@@ -208,43 +374,141 @@ public class InMemoryPersonRepository implements PersonRepository {
      */
     @Override
     public void deleteFirstOccurrence(String firstName, String lastName) {
-        Iterator<Person> iterator = persons.iterator();
-        boolean removed = false;
-
-        while (iterator.hasNext()) {
-            Person p = iterator.next();
-            if (p.getFirstName().equalsIgnoreCase(firstName) &&
-                    p.getLastName().equalsIgnoreCase(lastName)) {
-                iterator.remove(); // delete the first person found
-                removed = true;
-                break; // Exit after deleting first occurrence
+        dataLoader.mutate(() -> {
+            DataFile data = dataLoader.getDataFile();
+            List<Person> matches = indexes(data).get(BY_NAME).find(firstName, lastName);
+            // delete the first person found
+            boolean removed = !matches.isEmpty() && INDEXES.remove(data, List.of(matches.getFirst()));
+
+            if (removed) {
+                MedicalRecordLinks.unlink(data, List.of(matches.getFirst()));
+                Households.refresh(data, matches.getFirst().getAddress());
+                log.debug("First occurrence of person {} {} deleted", firstName, lastName);
+
+                // Persist changes to the JSON file
+                dataLoader.recordMutation(JournalEntry.personFirstOccurrenceDeleted(firstName, lastName));
+            } else {
+                log.debug("No person found for {} {}, deletion skipped", firstName, lastName);
             }
-        }
+            return removed;
+        });
+    }
+
+    /**
+     * Retrieves all persons living in the specified city, with a lookup in the person index.
+     *
+     * @param city the city name to filter by (case-insensitive, ignoring extra whitespace)
+     * @return a list of persons residing in the given city; empty list if none found
+     */
+    @Override
+    public List<Person> findByCity(String city) {
+        DataFile data = dataLoader.getDataFile();
+        MappedRecordList<Person> mapped = mapped(data);
+        return mapped != null
+                ? mapped.find(MappedKey.PERSON_CITY, CanonicalKeys.of(city))
+                : indexes(data).get(BY_CITY).findByCity(city);
+    }
 
-        if (removed) {
-            log.debug("First occurrence of person {} {} deleted", firstName, lastName);
+    /**
+     * Retrieves the distinct emails of the persons living in the specified city.
+     * The emails of each city are maintained by the city index on every mutation, so no person is scanned.
+     *
+     * @param city the city name to filter by (case-insensitive, ignoring extra whitespace)
+     * @return the distinct emails of the residents, in the order they were indexed; empty list if none found
+     */
+    @Override
+    public List<String> findEmailsByCity(String city) {
+        DataFile data = dataLoader.getDataFile();
+        MappedRecordList<Person> mapped = mapped(data);
+        if (mapped == null) {
+            return indexes(data).get(BY_CITY).findEmailsByCity(city);
+        }
+        return mapped.find(MappedKey.PERSON_CITY, CanonicalKeys.of(city)).stream()
+                .map(Person::getEmail)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
 
-            // Update the source DataFile
-            dataLoader.getDataFile().setPersons(persons);
+    /**
+     * Suggests the persons whose "first last" or "last first" name starts with the given prefix,
+     * with a lookup in the name prefix index, so it takes a time proportional to the number of suggestions.
+     *
+     * @param prefix the typed prefix (case-insensitive, ignoring extra whitespace)
+     * @param limit  the maximum number of persons
+     * @return one person per matching name, in the alphabetical order of the names; empty list if none found
+     */
+    @Override
+    public List<Person> suggestByName(String prefix, int limit) {
+        DataFile data = dataLoader.getDataFile();
+        MappedRecordList<Person> mapped = mapped(data);
+        return mapped != null
+                ? suggestByName(mapped, CanonicalKeys.of(prefix), limit)
+                : indexes(data).get(NAME_PREFIX).suggest(prefix, limit);
+    }
 
-            // Persist changes to the JSON file
-            dataLoader.saveJsonFile();
-        } else {
-            log.debug("No person found for {} {}, deletion skipped", firstName, lastName);
+    /**
+     * Suggests the persons of a read-only snapshot whose "first last" or "last first" name starts with the given
+     * prefix, as the name prefix index would. The prefix ranges of the two name tables are merged in the order of
+     * the keys, reading the first entry of each name only, so it takes a time proportional to the number of
+     * suggestions, and only the suggested persons are decoded.
+     */
+    private static List<Person> suggestByName(MappedRecordList<Person> mapped, String prefix, int limit) {
+        MappedKeyTable firstLast = mapped.keyTable(MappedKey.PERSON_FIRST_LAST);
+        MappedKeyTable lastFirst = mapped.keyTable(MappedKey.PERSON_LAST_FIRST);
+        int first = firstLast.lowerBound(prefix);
+        int last = lastFirst.lowerBound(prefix);
+        // The first person of each matching name, by name
+        Set<Integer> suggested = new LinkedHashSet<>();
+        while (suggested.size() < limit) {
+            String firstKey = first < firstLast.size() && firstLast.startsWith(first, prefix) ? firstLast.keyAt(first) : null;
+            String lastKey = last < lastFirst.size() && lastFirst.startsWith(last, prefix) ? lastFirst.keyAt(last) : null;
+            if (firstKey == null && lastKey == null) {
+                break;
+            }
+            int order = firstKey == null ? 1 : lastKey == null ? -1 : Arrays.compareUnsigned(
+                    firstKey.getBytes(StandardCharsets.UTF_8), lastKey.getBytes(StandardCharsets.UTF_8));
+            int record = order < 0 ? firstLast.recordAt(first)
+                    : order > 0 ? lastFirst.recordAt(last)
+                    : Math.min(firstLast.recordAt(first), lastFirst.recordAt(last));
+            // Skips the other persons of the name: the key followed by NUL sorts after every entry of this one
+            if (order <= 0) {
+                first = firstLast.lowerBound(firstKey + MappedKey.NAME_SEPARATOR);
+            }
+            if (order >= 0) {
+                last = lastFirst.lowerBound(lastKey + MappedKey.NAME_SEPARATOR);
+            }
+            suggested.add(record);
         }
+        return mapped.decode(suggested.stream().mapToInt(Integer::intValue).toArray());
     }
 
     /**
-     * Retrieves all persons living in the specified city.
+     * Suggests the persons whose address starts with the given prefix, with a lookup in the address prefix index.
      *
-     * @param city the city name to filter by (case-insensitive)
-     * @return a list of persons residing in the given city; empty list if none found
+     * @param prefix the typed prefix (case-insensitive, ignoring extra whitespace)
+     * @param limit  the maximum number of persons
+     * @return one person per matching address, in the alphabetical order of the addresses; empty list if none found
      */
     @Override
-    public List<Person> findByCity(String city) {
-        String trimmedCity = city.trim().replaceAll("\\s+", " ");
-        return persons.stream()
-                .filter(person -> person.getCity().equalsIgnoreCase(trimmedCity))
-                .collect(Collectors.toList());
+    public List<Person> suggestByAddress(String prefix, int limit) {
+        DataFile data = dataLoader.getDataFile();
+        MappedRecordList<Person> mapped = mapped(data);
+        return mapped != null
+                ? mapped.suggest(MappedKey.PERSON_ADDRESS, CanonicalKeys.of(prefix), limit)
+                : indexes(data).get(ADDRESS_PREFIX).suggest(prefix, limit);
+    }
+
+    /**
+     * Runs several mutations as one batch, persisted once when the batch ends.
+     * See {@link DataLoader#inBatch(Supplier)}; the batch may also modify other repositories.
+     *
+     * @param mutations the repository calls to run
+     * @param <T>       the type of the result
+     * @return the result of the mutations
+     */
+    @Override
+    public <T> T inBatch(Supplier<T> mutations) {
+        return dataLoader.inBatch(mutations);
     }
 }
@@ -0,0 +1,119 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The declaration of an index over the records of a collection, from which {@link RecordIndexes} builds one index
+ * per version of the data.
+ *
+ * <p>Repositories declare their indexes as constants, then look records up with the definition:</p>
+ * <pre>{@code
+ * static final IndexDefinition<Person, KeyIndex<Person>> BY_ADDRESS =
+ *         IndexDefinition.multi("address", KeyIndex.Matching.CANONICAL, Person::getAddress);
+ * ...
+ * List<Person> residents = indexes.get(BY_ADDRESS).find(address);
+ * }</pre>
+ *
+ * <p>Field indexes group the records by the value of one or more fields, matched either on their
+ * {@link CanonicalKeys} or exactly. A unique index expects one record per key; a multi-valued index returns every
+ * record having the key. A prefix index suggests the records whose keys start with a typed prefix, and a phonetic
+ * index the values that sound like a misspelled one. Indexes that do not group records by field, such as
+ * aggregates, are declared with {@link #custom(String, Supplier)}.</p>
+ *
+ * @param <T> the type of the records
+ * @param <I> the type of the index
+ */
+final class IndexDefinition<T, I extends SecondaryIndex<T>> {
+
+    private final String name;
+    private final Supplier<I> factory;
+
+    private IndexDefinition(String name, Supplier<I> factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+
+    /**
+     * Declares an index expecting at most one record per key.
+     *
+     * @param name     the name of the index, for logs
+     * @param matching how the field values are compared
+     * @param fields   the fields making the key
+     * @param <T>      the type of the records
+     * @return the definition
+     */
+    @SafeVarargs
+    static <T> IndexDefinition<T, KeyIndex<T>> unique(String name, KeyIndex.Matching matching,
+                                                          Function<T, ?>... fields) {
+        List<Function<T, ?>> keyFields = List.of(fields);
+        return new IndexDefinition<>(name, () -> new KeyIndex<>(name, true, matching, keyFields));
+    }
+
+    /**
+     * Declares an index grouping every record having the same key.
+     *
+     * @param name     the name of the index, for logs
+     * @param matching how the field values are compared
+     * @param fields   the fields making the key
+     * @param <T>      the type of the records
+     * @return the definition
+     */
+    @SafeVarargs
+    static <T> IndexDefinition<T, KeyIndex<T>> multi(String name, KeyIndex.Matching matching,
+                                                         Function<T, ?>... fields) {
+        List<Function<T, ?>> keyFields = List.of(fields);
+        return new IndexDefinition<>(name, () -> new KeyIndex<>(name, false, matching, keyFields));
+    }
+
+    /**
+     * Declares an index suggesting the records whose canonical key starts with a prefix, each field giving a key.
+     *
+     * @param name   the name of the index, for logs
+     * @param fields the fields each giving a key
+     * @param <T>    the type of the records
+     * @return the definition
+     */
+    @SafeVarargs
+    static <T> IndexDefinition<T, PrefixIndex<T>> prefix(String name, Function<T, String>... fields) {
+        List<Function<T, String>> keyFields = List.of(fields);
+        return new IndexDefinition<>(name, () -> new PrefixIndex<>(keyFields));
+    }
+
+    /**
+     * Declares an index giving the distinct values of a field that sound like a possibly misspelled value.
+     *
+     * @param name  the name of the index, for logs
+     * @param field the indexed field
+     * @param <T>   the type of the records
+     * @return the definition
+     */
+    static <T> IndexDefinition<T, PhoneticIndex<T>> phonetic(String name, Function<T, String> field) {
+        return new IndexDefinition<>(name, () -> new PhoneticIndex<>(field));
+    }
+
+    /**
+     * Declares an index implemented by the repository.
+     *
+     * @param name    the name of the index, for logs
+     * @param factory creates an empty index
+     * @param <T>     the type of the records
+     * @param <I>     the type of the index
+     * @return the definition
+     */
+    static <T, I extends SecondaryIndex<T>> IndexDefinition<T, I> custom(String name, Supplier<I> factory) {
+        return new IndexDefinition<>(name, factory);
+    }
+
+    /**
+     * @return the name of the index
+     */
+    String getName() {
+        return name;
+    }
+
+    I create() {
+        return factory.get();
+    }
+}
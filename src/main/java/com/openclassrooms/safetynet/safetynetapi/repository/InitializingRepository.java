@@ -0,0 +1,35 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+
+/**
+ * A repository that prepares its collection once the DataLoader has loaded the data.
+ *
+ * <p>Repositories are not initialized by their own @PostConstruct method but by the {@link RepositoryBootstrap},
+ * which runs them concurrently.</p>
+ */
+public interface InitializingRepository {
+
+    /**
+     * @return the collection this repository serves
+     */
+    DataCollection getCollection();
+
+    /**
+     * Prepares the repository for the given data, typically by building its indexes and attaching them to it.
+     * Called for the data loaded at startup, before any request is served, and for every data file loaded
+     * again, before it is published.
+     *
+     * @param data the data to prepare, not yet modified by any mutation
+     */
+    void prepare(DataFile data);
+
+    /**
+     * Links the records of the collection to those of other collections, once every repository has prepared the
+     * given data. Does nothing by default.
+     *
+     * @param data the prepared data
+     */
+    default void link(DataFile data) {
+    }
+}
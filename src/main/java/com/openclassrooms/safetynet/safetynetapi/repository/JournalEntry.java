@@ -0,0 +1,169 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+
+/**
+ * A single repository mutation, as written to the mutation journal.
+ *
+ * <p>Only the fields needed by the operation are set, and null fields are not serialized,
+ * so each entry is a compact one-line JSON record.</p>
+ *
+ * <p>Replaying an entry with {@link #applyTo(JournalReplay)} reproduces the repository change on a DataFile.
+ * Each entry carries its sequence in the journal, and every snapshot records the sequence of the last entry it
+ * holds, so that entries already part of the snapshot (e.g. after a crash during compaction) are not replayed
+ * twice.</p>
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JournalEntry {
+
+    /**
+     * The kind of mutation recorded by an entry.
+     */
+    public enum Operation {
+        PERSON_ADD(DataCollection.PERSONS),
+        PERSON_UPDATE(DataCollection.PERSONS),
+        PERSON_DELETE(DataCollection.PERSONS),
+        PERSON_DELETE_FIRST(DataCollection.PERSONS),
+        FIRESTATION_ADD(DataCollection.FIRE_STATIONS),
+        FIRESTATION_UPDATE(DataCollection.FIRE_STATIONS),
+        FIRESTATION_DELETE_ADDRESS(DataCollection.FIRE_STATIONS),
+        FIRESTATION_DELETE_STATION(DataCollection.FIRE_STATIONS),
+        MEDICALRECORD_ADD(DataCollection.MEDICAL_RECORDS),
+        MEDICALRECORD_UPDATE(DataCollection.MEDICAL_RECORDS),
+        MEDICALRECORD_DELETE(DataCollection.MEDICAL_RECORDS);
+
+        private final DataCollection collection;
+
+        Operation(DataCollection collection) {
+            this.collection = collection;
+        }
+
+        /**
+         * @return the collection modified by this kind of mutation
+         */
+        public DataCollection getCollection() {
+            return collection;
+        }
+    }
+
+    private Long sequence;
+    private Operation op;
+    private Person person;
+    private FireStation fireStation;
+    private MedicalRecord medicalRecord;
+    private String firstName;
+    private String lastName;
+    private String address;
+    private Integer station;
+
+    private JournalEntry(Operation op) {
+        this.op = op;
+    }
+
+    public static JournalEntry personAdded(Person person) {
+        JournalEntry entry = new JournalEntry(Operation.PERSON_ADD);
+        entry.person = person;
+        return entry;
+    }
+
+    public static JournalEntry personUpdated(Person person) {
+        JournalEntry entry = new JournalEntry(Operation.PERSON_UPDATE);
+        entry.person = person;
+        return entry;
+    }
+
+    public static JournalEntry personDeleted(String firstName, String lastName) {
+        JournalEntry entry = new JournalEntry(Operation.PERSON_DELETE);
+        entry.firstName = firstName;
+        entry.lastName = lastName;
+        return entry;
+    }
+
+    public static JournalEntry personFirstOccurrenceDeleted(String firstName, String lastName) {
+        JournalEntry entry = new JournalEntry(Operation.PERSON_DELETE_FIRST);
+        entry.firstName = firstName;
+        entry.lastName = lastName;
+        return entry;
+    }
+
+    public static JournalEntry fireStationAdded(FireStation fireStation) {
+        JournalEntry entry = new JournalEntry(Operation.FIRESTATION_ADD);
+        entry.fireStation = fireStation;
+        return entry;
+    }
+
+    public static JournalEntry fireStationUpdated(FireStation fireStation) {
+        JournalEntry entry = new JournalEntry(Operation.FIRESTATION_UPDATE);
+        entry.fireStation = fireStation;
+        return entry;
+    }
+
+    public static JournalEntry fireStationDeletedByAddress(String address) {
+        JournalEntry entry = new JournalEntry(Operation.FIRESTATION_DELETE_ADDRESS);
+        entry.address = address;
+        return entry;
+    }
+
+    public static JournalEntry fireStationsDeletedByStation(int station) {
+        JournalEntry entry = new JournalEntry(Operation.FIRESTATION_DELETE_STATION);
+        entry.station = station;
+        return entry;
+    }
+
+    public static JournalEntry medicalRecordAdded(MedicalRecord medicalRecord) {
+        JournalEntry entry = new JournalEntry(Operation.MEDICALRECORD_ADD);
+        entry.medicalRecord = medicalRecord;
+        return entry;
+    }
+
+    public static JournalEntry medicalRecordUpdated(MedicalRecord medicalRecord) {
+        JournalEntry entry = new JournalEntry(Operation.MEDICALRECORD_UPDATE);
+        entry.medicalRecord = medicalRecord;
+        return entry;
+    }
+
+    public static JournalEntry medicalRecordDeleted(String firstName, String lastName) {
+        JournalEntry entry = new JournalEntry(Operation.MEDICALRECORD_DELETE);
+        entry.firstName = firstName;
+        entry.lastName = lastName;
+        return entry;
+    }
+
+    /**
+     * Applies this mutation to the lists of a replayed DataFile with the same semantics as the repositories:
+     * records are matched on their {@link CanonicalKeys}, additions are appended, updates replace the first match
+     * with a new record, and deletions remove the first or every match.
+     *
+     * @param replay the data being replayed on, which looks the matching records up by key
+     */
+    void applyTo(JournalReplay replay) {
+        switch (op) {
+            case PERSON_ADD -> replay.persons().add(person);
+            case PERSON_UPDATE -> replay.persons().updateFirst(
+                    CanonicalKeys.name(person.getFirstName(), person.getLastName()), current -> person);
+            case PERSON_DELETE -> replay.persons().removeAll(CanonicalKeys.name(firstName, lastName));
+            case PERSON_DELETE_FIRST -> replay.persons().removeFirst(CanonicalKeys.name(firstName, lastName));
+            case FIRESTATION_ADD -> replay.fireStations().add(fireStation);
+            case FIRESTATION_UPDATE -> replay.fireStations().updateFirst(CanonicalKeys.of(fireStation.getAddress()),
+                    current -> new FireStation(current.getAddress(), fireStation.getStation()));
+            case FIRESTATION_DELETE_ADDRESS -> replay.fireStations().removeFirst(CanonicalKeys.of(address));
+            case FIRESTATION_DELETE_STATION -> replay.fireStations().removeGroup(station);
+            case MEDICALRECORD_ADD -> replay.medicalRecords().add(medicalRecord);
+            case MEDICALRECORD_UPDATE -> replay.medicalRecords().updateFirst(
+                    CanonicalKeys.name(medicalRecord.getFirstName(), medicalRecord.getLastName()),
+                    current -> new MedicalRecord(current.getFirstName(), current.getLastName(),
+                            medicalRecord.getBirthdate(), medicalRecord.getMedications(), medicalRecord.getAllergies()));
+            case MEDICALRECORD_DELETE -> replay.medicalRecords().removeAll(CanonicalKeys.name(firstName, lastName));
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * The lists of a DataFile while {@link JournalEntry journal entries} are replayed on them, with the positions of
+ * their records by {@link CanonicalKeys}, so that each entry finds its records without a scan of the list.
+ *
+ * <p>The positions of a list are built once, when the first entry looking a record up in it is replayed, and kept
+ * up to date by the following entries. Removed records are only marked, so that the positions of the others do
+ * not move, and the lists are compacted once, by {@link #finish()}. Replaying a journal thus costs a time
+ * proportional to the size of the data plus the number of entries, rather than to their product.</p>
+ */
+final class JournalReplay {
+
+    private final DataFile dataFile;
+    private final Records<Person> persons;
+    private final Records<FireStation> fireStations;
+    private final Records<MedicalRecord> medicalRecords;
+
+    /**
+     * @param dataFile the data to replay the entries on, whose lists must be mutable
+     */
+    JournalReplay(DataFile dataFile) {
+        this.dataFile = dataFile;
+        this.persons = new Records<>(dataFile.getPersons(),
+                person -> CanonicalKeys.name(person.getFirstName(), person.getLastName()), null);
+        this.fireStations = new Records<>(dataFile.getFireStations(),
+                fireStation -> CanonicalKeys.of(fireStation.getAddress()), FireStation::getStation);
+        this.medicalRecords = new Records<>(dataFile.getMedicalRecords(),
+                medicalRecord -> CanonicalKeys.name(medicalRecord.getFirstName(), medicalRecord.getLastName()), null);
+    }
+
+    Records<Person> persons() {
+        return persons;
+    }
+
+    Records<FireStation> fireStations() {
+        return fireStations;
+    }
+
+    Records<MedicalRecord> medicalRecords() {
+        return medicalRecords;
+    }
+
+    /**
+     * Removes the records marked as removed from the lists of the data. Ends the replay.
+     *
+     * @return the data the entries were replayed on
+     */
+    DataFile finish() {
+        persons.compact();
+        fireStations.compact();
+        medicalRecords.compact();
+        return dataFile;
+    }
+
+    /**
+     * A list being replayed on, with the positions of its records by key and, optionally, by group.
+     *
+     * <p>A key is usually held by one record, so the positions of a key are a small sorted array, its first
+     * position being the first record of the key in the list. A group, such as the fire stations of a station
+     * number, may hold many records, so its positions are a set.</p>
+     *
+     * @param <T> the type of the records
+     */
+    static final class Records<T> {
+
+        private static final int[] NONE = new int[0];
+
+        private final List<T> records;
+        private final Function<T, Object> key;
+        private final Function<T, Object> group;
+        private final BitSet removed = new BitSet();
+        private Map<Object, int[]> byKey;
+        private Map<Object, Set<Integer>> byGroup;
+
+        private Records(List<T> records, Function<T, Object> key, Function<T, Object> group) {
+            this.records = records;
+            this.key = key;
+            this.group = group;
+        }
+
+        /**
+         * @param record the record to append
+         */
+        void add(T record) {
+            records.add(record);
+            if (byKey != null) {
+                index(records.size() - 1, record);
+            }
+        }
+
+        /**
+         * Replaces the first record of the key, if any, with the result of the update, which must keep the key.
+         *
+         * @param key    the canonical key of the record
+         * @param update gives the new record from the current one
+         */
+        void updateFirst(Object key, UnaryOperator<T> update) {
+            int position = first(key);
+            if (position < 0) {
+                return;
+            }
+            T current = records.get(position);
+            T updated = update.apply(current);
+            records.set(position, updated);
+            if (group != null && !group.apply(current).equals(group.apply(updated))) {
+                byGroup.get(group.apply(current)).remove(position);
+                byGroup.computeIfAbsent(group.apply(updated), g -> new LinkedHashSet<>()).add(position);
+            }
+        }
+
+        /**
+         * @param key the canonical key of the record to remove, the first one only
+         */
+        void removeFirst(Object key) {
+            int position = first(key);
+            if (position >= 0) {
+                remove(position);
+            }
+        }
+
+        /**
+         * @param key the canonical key of the records to remove
+         */
+        void removeAll(Object key) {
+            int[] positions = positions().getOrDefault(key, NONE);
+            for (int position : positions) {
+                remove(position);
+            }
+        }
+
+        /**
+         * @param group the group of the records to remove
+         */
+        void removeGroup(Object group) {
+            positions();
+            Set<Integer> positions = byGroup.get(group);
+            if (positions != null) {
+                for (int position : positions.toArray(new Integer[0])) {
+                    remove(position);
+                }
+            }
+        }
+
+        private int first(Object key) {
+            int[] positions = positions().get(key);
+            return positions == null ? -1 : positions[0];
+        }
+
+        private void remove(int position) {
+            T record = records.get(position);
+            removed.set(position);
+            Object recordKey = key.apply(record);
+            int[] positions = byKey.get(recordKey);
+            int[] remaining = new int[positions.length - 1];
+            int index = Arrays.binarySearch(positions, position);
+            System.arraycopy(positions, 0, remaining, 0, index);
+            System.arraycopy(positions, index + 1, remaining, index, remaining.length - index);
+            if (remaining.length == 0) {
+                byKey.remove(recordKey);
+            } else {
+                byKey.put(recordKey, remaining);
+            }
+            if (group != null) {
+                byGroup.get(group.apply(record)).remove(position);
+            }
+        }
+
+        private Map<Object, int[]> positions() {
+            if (byKey == null) {
+                byKey = HashMap.newHashMap(records.size());
+                byGroup = group == null ? null : new HashMap<>();
+                for (int position = 0; position < records.size(); position++) {
+                    index(position, records.get(position));
+                }
+            }
+            return byKey;
+        }
+
+        private void index(int position, T record) {
+            // Positions only grow, so appending keeps the positions of a key sorted
+            byKey.merge(key.apply(record), new int[]{position}, (positions, added) -> {
+                int[] merged = Arrays.copyOf(positions, positions.length + 1);
+                merged[positions.length] = position;
+                return merged;
+            });
+            if (group != null) {
+                byGroup.computeIfAbsent(group.apply(record), g -> new LinkedHashSet<>()).add(position);
+            }
+        }
+
+        private void compact() {
+            if (removed.isEmpty()) {
+                return;
+            }
+            int kept = 0;
+            for (int position = 0; position < records.size(); position++) {
+                if (!removed.get(position)) {
+                    records.set(kept++, records.get(position));
+                }
+            }
+            records.subList(kept, records.size()).clear();
+        }
+    }
+}
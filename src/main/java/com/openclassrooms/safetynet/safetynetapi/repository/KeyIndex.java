@@ -0,0 +1,230 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Records grouped by the value of one or more of their fields, declared with {@link IndexDefinition#unique} or
+ * {@link IndexDefinition#multi}.
+ *
+ * <p>The index is immutable: a change returns a new index sharing most of the groups of the current one, kept in
+ * a {@link ShardedMap}. Each group is an immutable list in the order of the indexed list, replaced on every change.
+ * Groups are expected to be small, as every change copies the group it touches.</p>
+ *
+ * <p>With {@link Matching#CANONICAL}, field values are compared on their {@link CanonicalKeys}: the keys of the
+ * records are interned, so that the keys of the records of a group are shared, while lookup values are only
+ * folded. With {@link Matching#EXACT}, values are compared with their equals method. A key made of several fields
+ * is the list of their values.</p>
+ *
+ * <p>A unique index still keeps every record of a duplicated key, so that no record becomes unreachable, and
+ * returns the first one; duplicates are logged.</p>
+ *
+ * @param <T> the type of the records
+ */
+@Log4j2
+class KeyIndex<T> implements SecondaryIndex<T> {
+
+    /**
+     * How the field values of the records and of the lookups are compared.
+     */
+    enum Matching {
+        /**
+         * Case-insensitive, ignoring extra whitespace; values are compared as strings.
+         */
+        CANONICAL,
+        /**
+         * With the equals method of the values.
+         */
+        EXACT
+    }
+
+    /**
+     * Stands for a null value in the keys of an exact index, as the groups cannot have a null key.
+     */
+    private static final Object NULL_VALUE = new Object();
+
+    private final ShardedMap<Object, List<T>> records;
+    private final String name;
+    private final boolean unique;
+    private final Matching matching;
+    private final List<Function<T, ?>> fields;
+
+    /**
+     * @param name     the name of the index, for logs
+     * @param unique   true if at most one record is expected per key
+     * @param matching how the field values are compared
+     * @param fields   the fields making the key, which must not change while the record is indexed
+     */
+    KeyIndex(String name, boolean unique, Matching matching, List<Function<T, ?>> fields) {
+        this(name, unique, matching, fields, ShardedMap.empty());
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("Index " + name + " has no field");
+        }
+    }
+
+    private KeyIndex(String name, boolean unique, Matching matching, List<Function<T, ?>> fields,
+                     ShardedMap<Object, List<T>> records) {
+        this.name = name;
+        this.unique = unique;
+        this.matching = matching;
+        this.fields = fields;
+        this.records = records;
+    }
+
+    /**
+     * Groups all the records at once, each group being copied only when complete.
+     *
+     * @param all the records to index, in their order
+     * @return the index of these records
+     */
+    @Override
+    public KeyIndex<T> build(List<T> all) {
+        Map<Object, List<T>> groups = new HashMap<>();
+        for (T record : all) {
+            groups.computeIfAbsent(key(record), k -> new ArrayList<>(1)).add(record);
+        }
+        int duplicates = 0;
+        for (Map.Entry<Object, List<T>> group : groups.entrySet()) {
+            duplicates += group.getValue().size() - 1;
+            group.setValue(List.copyOf(group.getValue()));
+        }
+        if (unique && duplicates > 0) {
+            log.warn("Unique index {} has {} duplicate record(s)", name, duplicates);
+        }
+        return with(ShardedMap.of(groups));
+    }
+
+    /**
+     * @param values the value of each field of the key, in the order of the definition
+     * @return the records having this key, in the order of the list; empty if none
+     */
+    List<T> find(Object... values) {
+        return records.getOrDefault(lookupKey(values), List.of());
+    }
+
+    /**
+     * @param values the value of each field of the key, in the order of the definition
+     * @return the first record having this key, or null if none
+     */
+    T get(Object... values) {
+        List<T> group = records.get(lookupKey(values));
+        return group == null ? null : group.getFirst();
+    }
+
+    /**
+     * Indexes a record added at the end of the list.
+     *
+     * @param record the added record
+     * @return the index with this record
+     */
+    @Override
+    public KeyIndex<T> add(T record) {
+        Object key = key(record);
+        ShardedMap<Object, List<T>> next = records.compute(key,
+                (k, group) -> group == null ? List.of(record) : concat(group, List.of(record)));
+        if (unique && next.get(key).size() > 1) {
+            log.warn("Unique index {} has {} records for key {}", name, next.get(key).size(), key);
+        }
+        return with(next);
+    }
+
+    /**
+     * Replaces a record by another one at the same position of the list. If their keys differ, the new record
+     * comes last in its group.
+     *
+     * @param current the indexed record
+     * @param updated the record replacing it
+     * @return the index with the new record
+     */
+    @Override
+    public KeyIndex<T> replace(T current, T updated) {
+        Object currentKey = key(current);
+        if (!currentKey.equals(key(updated))) {
+            return remove(current).add(updated);
+        }
+        return with(records.compute(currentKey, (k, group) -> {
+            if (group == null) {
+                return null;
+            }
+            List<T> replaced = new ArrayList<>(group);
+            replaced.replaceAll(record -> record == current ? updated : record);
+            return List.copyOf(replaced);
+        }));
+    }
+
+    /**
+     * Removes one record, told apart from equal ones by identity.
+     *
+     * @param record the removed record
+     * @return the index without this record
+     */
+    @Override
+    public KeyIndex<T> remove(T record) {
+        return with(records.compute(key(record), (k, group) -> {
+            if (group == null) {
+                return null;
+            }
+            List<T> remaining = group.stream().filter(r -> r != record).toList();
+            return remaining.isEmpty() ? null : remaining;
+        }));
+    }
+
+    private KeyIndex<T> with(ShardedMap<Object, List<T>> next) {
+        return next == records ? this : new KeyIndex<>(name, unique, matching, fields, next);
+    }
+
+    /**
+     * The key of an indexed record, made of interned canonical keys.
+     */
+    private Object key(T record) {
+        if (fields.size() == 1) {
+            return value(fields.getFirst().apply(record), true);
+        }
+        Object[] key = new Object[fields.size()];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = value(fields.get(i).apply(record), true);
+        }
+        return Arrays.asList(key);
+    }
+
+    /**
+     * The key of a lookup, whose canonical keys are not interned.
+     */
+    private Object lookupKey(Object[] values) {
+        if (values.length != fields.size()) {
+            throw new IllegalArgumentException("Index " + name + " expects " + fields.size() + " value(s), got " + values.length);
+        }
+        if (values.length == 1) {
+            return value(values[0], false);
+        }
+        Object[] key = new Object[values.length];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = value(values[i], false);
+        }
+        return Arrays.asList(key);
+    }
+
+    private Object value(Object value, boolean stored) {
+        if (matching == Matching.EXACT) {
+            return value == null ? NULL_VALUE : value;
+        }
+        String text = value == null ? null : value.toString();
+        return stored ? CanonicalKeys.intern(text) : CanonicalKeys.of(text);
+    }
+
+    /**
+     * Appends records to an immutable group.
+     */
+    static <T> List<T> concat(List<T> current, List<T> added) {
+        List<T> group = new ArrayList<>(current.size() + added.size());
+        group.addAll(current);
+        group.addAll(added);
+        return List.copyOf(group);
+    }
+}
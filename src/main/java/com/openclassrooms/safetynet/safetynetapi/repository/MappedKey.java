@@ -0,0 +1,99 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+
+/**
+ * The keys a MAPPED snapshot is indexed by. The {@link MappedSnapshotWriter} writes one {@link MappedKeyTable} per
+ * key, so that read-only lookups only decode the records they match.
+ *
+ * <p>Keys are {@link CanonicalKeys}. A name key is the canonical last name, a NUL character, then the canonical
+ * first name: NUL never appears in a canonical key and sorts first, so the names of a last name are contiguous in
+ * the table, and are the keys starting with the last name followed by NUL.</p>
+ *
+ * <p>Persons are also sorted by their "first last" and "last first" names, as the name prefix index of the heap
+ * keys them, so that a suggestion is a prefix range of each table, and by the {@link Soundex} code of their last
+ * name followed by NUL and the last name, so that the last names sounding alike are contiguous too.</p>
+ */
+enum MappedKey {
+
+    PERSON_NAME(DataCollection.PERSONS),
+    PERSON_ADDRESS(DataCollection.PERSONS),
+    PERSON_CITY(DataCollection.PERSONS),
+    PERSON_FIRST_LAST(DataCollection.PERSONS),
+    PERSON_LAST_FIRST(DataCollection.PERSONS),
+    PERSON_LAST_NAME_SOUNDEX(DataCollection.PERSONS),
+    FIRE_STATION_ADDRESS(DataCollection.FIRE_STATIONS),
+    FIRE_STATION_NUMBER(DataCollection.FIRE_STATIONS),
+    MEDICAL_RECORD_NAME(DataCollection.MEDICAL_RECORDS);
+
+    /**
+     * Separates the last name from the first name in a name key.
+     */
+    static final char NAME_SEPARATOR = '\0';
+
+    private final DataCollection collection;
+
+    MappedKey(DataCollection collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * @return the collection whose records have this key
+     */
+    DataCollection getCollection() {
+        return collection;
+    }
+
+    /**
+     * @param record a record of the collection of this key
+     * @return the key of the record
+     */
+    String keyOf(Object record) {
+        return switch (this) {
+            case PERSON_NAME -> name(((Person) record).getFirstName(), ((Person) record).getLastName());
+            case PERSON_ADDRESS -> CanonicalKeys.of(((Person) record).getAddress());
+            case PERSON_CITY -> CanonicalKeys.of(((Person) record).getCity());
+            case PERSON_FIRST_LAST -> CanonicalKeys.of(((Person) record).getFirstName() + " " + ((Person) record).getLastName());
+            case PERSON_LAST_FIRST -> CanonicalKeys.of(((Person) record).getLastName() + " " + ((Person) record).getFirstName());
+            case PERSON_LAST_NAME_SOUNDEX -> soundex(((Person) record).getLastName()) + CanonicalKeys.of(((Person) record).getLastName());
+            case FIRE_STATION_ADDRESS -> CanonicalKeys.of(((FireStation) record).getAddress());
+            case FIRE_STATION_NUMBER -> station(((FireStation) record).getStation());
+            case MEDICAL_RECORD_NAME -> name(((MedicalRecord) record).getFirstName(), ((MedicalRecord) record).getLastName());
+        };
+    }
+
+    /**
+     * @param firstName the first name, may be null
+     * @param lastName  the last name, may be null
+     * @return the name key of this name
+     */
+    static String name(String firstName, String lastName) {
+        return lastName(lastName) + CanonicalKeys.of(firstName);
+    }
+
+    /**
+     * @param lastName the last name, may be null
+     * @return the prefix of the name keys having this last name
+     */
+    static String lastName(String lastName) {
+        return CanonicalKeys.of(lastName) + NAME_SEPARATOR;
+    }
+
+    /**
+     * @param lastName the last name, may be null, possibly misspelled
+     * @return the prefix of the Soundex keys of the last names sounding like this one
+     */
+    static String soundex(String lastName) {
+        return Soundex.encode(CanonicalKeys.of(lastName)) + NAME_SEPARATOR;
+    }
+
+    /**
+     * @param station the fire station number
+     * @return the key of this fire station number
+     */
+    static String station(int station) {
+        return Integer.toString(station);
+    }
+}
@@ -0,0 +1,220 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The records of one collection of a MAPPED snapshot, sorted by one {@link MappedKey}, read in place from the
+ * mapped region.
+ *
+ * <p>A table starts with its number of entries, followed by the entries, each the position of its key relative to
+ * the table, the length of the key and the index of its record in the collection, as ints, then by the UTF-8 bytes
+ * of the distinct keys. Entries are sorted by the bytes of their key, then by record index, so that a lookup is a
+ * binary search and the records of a key come in the order of the collection. Only the keys compared are read;
+ * nothing is kept on the heap.</p>
+ */
+final class MappedKeyTable {
+
+    static final int ENTRY_SIZE = 3 * Integer.BYTES;
+
+    /**
+     * A table without any entry, for data mapped without key tables.
+     */
+    static final MappedKeyTable EMPTY = new MappedKeyTable(ByteBuffer.allocate(Integer.BYTES), 0);
+
+    private final ByteBuffer buffer;
+    private final int position;
+    private final int size;
+
+    /**
+     * @param buffer   the mapped snapshot
+     * @param position the position of the table in the snapshot
+     */
+    MappedKeyTable(ByteBuffer buffer, int position) {
+        this.buffer = buffer;
+        this.position = position;
+        this.size = buffer.getInt(position);
+    }
+
+    /**
+     * Encodes the key table of the given records.
+     *
+     * @param key     the key of the table
+     * @param records the records of the collection of the key, in their order
+     * @return the encoded table
+     */
+    static byte[] encode(MappedKey key, List<?> records) {
+        List<Entry> entries = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            entries.add(new Entry(key.keyOf(records.get(i)).getBytes(StandardCharsets.UTF_8), i));
+        }
+        entries.sort(Comparator.comparing(Entry::key, Arrays::compareUnsigned).thenComparingInt(Entry::record));
+
+        int keys = Integer.BYTES + entries.size() * ENTRY_SIZE;
+        int keysSize = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            if (i == 0 || !Arrays.equals(entries.get(i).key(), entries.get(i - 1).key())) {
+                keysSize += entries.get(i).key().length;
+            }
+        }
+        ByteBuffer table = ByteBuffer.allocate(keys + keysSize).putInt(entries.size());
+        int keyPosition = keys;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (i > 0 && !Arrays.equals(entry.key(), entries.get(i - 1).key())) {
+                keyPosition += entries.get(i - 1).key().length;
+            }
+            table.putInt(keyPosition).putInt(entry.key().length).putInt(entry.record());
+            table.put(keyPosition, entry.key());
+        }
+        return table.array();
+    }
+
+    /**
+     * @return the number of entries, one per record
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param entry the index of an entry, in the order of the keys
+     * @return the index of the record of this entry in its collection
+     */
+    int recordAt(int entry) {
+        return buffer.getInt(entryPosition(entry) + 2 * Integer.BYTES);
+    }
+
+    /**
+     * @param entry the index of an entry, in the order of the keys
+     * @return the key of this entry
+     */
+    String keyAt(int entry) {
+        byte[] key = new byte[keyLength(entry)];
+        buffer.get(keyPosition(entry), key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param key a canonical key
+     * @return the indexes of the records having this key, in the order of the collection; empty if none
+     */
+    int[] find(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int from = lowerBound(bytes);
+        int to = from;
+        while (to < size && compare(to, bytes) == 0) {
+            to++;
+        }
+        return records(from, to);
+    }
+
+    /**
+     * @param prefix the start of canonical keys
+     * @return the indexes of the records whose key starts with the prefix, in the order of the keys, then of the
+     * collection; empty if none
+     */
+    int[] findByPrefix(String prefix) {
+        byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+        int from = lowerBound(bytes);
+        int to = from;
+        while (to < size && startsWith(to, bytes)) {
+            to++;
+        }
+        return records(from, to);
+    }
+
+    /**
+     * @param prefix the start of canonical keys
+     * @return the first entry whose key starts with the prefix, or comes after it
+     */
+    int lowerBound(String prefix) {
+        return lowerBound(prefix.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param entry  the index of an entry
+     * @param prefix the start of canonical keys
+     * @return true if the key of the entry starts with the prefix
+     */
+    boolean startsWith(int entry, String prefix) {
+        return startsWith(entry, prefix.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param entry the index of an entry, greater than zero
+     * @return true if the entry has the same key as the previous one
+     */
+    boolean sameKeyAsPrevious(int entry) {
+        return keyPosition(entry) == keyPosition(entry - 1);
+    }
+
+    private int[] records(int from, int to) {
+        int[] records = new int[to - from];
+        for (int i = from; i < to; i++) {
+            records[i - from] = recordAt(i);
+        }
+        return records;
+    }
+
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int entry, byte[] key) {
+        int keyPosition = keyPosition(entry);
+        int length = keyLength(entry);
+        for (int i = 0; i < Math.min(length, key.length); i++) {
+            int difference = Byte.toUnsignedInt(buffer.get(keyPosition + i)) - Byte.toUnsignedInt(key[i]);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    private boolean startsWith(int entry, byte[] prefix) {
+        if (keyLength(entry) < prefix.length) {
+            return false;
+        }
+        int keyPosition = keyPosition(entry);
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(keyPosition + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int entryPosition(int entry) {
+        return position + Integer.BYTES + entry * ENTRY_SIZE;
+    }
+
+    private int keyPosition(int entry) {
+        return position + buffer.getInt(entryPosition(entry));
+    }
+
+    private int keyLength(int entry) {
+        return buffer.getInt(entryPosition(entry) + Integer.BYTES);
+    }
+
+    /**
+     * The key of a record, while the table is encoded.
+     */
+    private record Entry(byte[] key, int record) {
+    }
+}
@@ -0,0 +1,149 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.openclassrooms.safetynet.safetynetapi.exception.ReadOnlyDataException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list backed by one collection of a memory-mapped snapshot.
+ *
+ * <p>Records are not kept on the heap: each call to {@link #get(int)} decodes the record from the mapped region.
+ * Reads only use absolute positions on the buffer, so the list can be shared between threads.
+ * Any attempt to modify it throws a {@link ReadOnlyDataException}.</p>
+ *
+ * <p>The list comes with the {@link MappedKeyTable key tables} of its collection, so that the repositories look
+ * records up by key and only decode the records found, instead of building indexes on the heap.</p>
+ *
+ * @param <T> the record type
+ */
+class MappedRecordList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final String READ_ONLY_MESSAGE = "Data is served from a read-only snapshot, changes are not accepted";
+
+    private final ByteBuffer buffer;
+    private final int offsetTable;
+    private final int size;
+    private final ObjectReader reader;
+    private final Map<MappedKey, MappedKeyTable> keyTables;
+
+    /**
+     * @param buffer      the mapped snapshot
+     * @param offsetTable the position of the offset table of the collection
+     * @param size        the number of records in the collection
+     * @param reader      the reader decoding one Smile record
+     * @param keyTables   the key tables of the collection
+     */
+    MappedRecordList(ByteBuffer buffer, int offsetTable, int size, ObjectReader reader,
+                     Map<MappedKey, MappedKeyTable> keyTables) {
+        this.buffer = buffer;
+        this.offsetTable = offsetTable;
+        this.size = size;
+        this.reader = reader;
+        this.keyTables = keyTables;
+    }
+
+    /**
+     * @param key a key of the collection of this list
+     * @return the key table of this key; empty if the snapshot has none
+     */
+    MappedKeyTable keyTable(MappedKey key) {
+        return keyTables.getOrDefault(key, MappedKeyTable.EMPTY);
+    }
+
+    /**
+     * @param key   a key of the collection of this list
+     * @param value the canonical key to look up
+     * @return the records having this key, in the order of the list; empty if none
+     */
+    List<T> find(MappedKey key, String value) {
+        return decode(keyTable(key).find(value));
+    }
+
+    /**
+     * @param key    a key of the collection of this list
+     * @param prefix the start of the canonical keys to look up
+     * @return the records whose key starts with the prefix, in the order of the list; empty if none
+     */
+    List<T> findByPrefix(MappedKey key, String prefix) {
+        int[] records = keyTable(key).findByPrefix(prefix);
+        Arrays.sort(records);
+        return decode(records);
+    }
+
+    /**
+     * Suggests the records whose key starts with the given prefix, the first record of each key, in the order of
+     * the keys, as a {@link PrefixIndex} would.
+     *
+     * @param key    a key of the collection of this list
+     * @param prefix the start of the canonical keys to look up
+     * @param limit  the maximum number of records
+     * @return the suggested records; empty if none
+     */
+    List<T> suggest(MappedKey key, String prefix, int limit) {
+        MappedKeyTable table = keyTable(key);
+        List<T> suggestions = new ArrayList<>();
+        for (int entry = table.lowerBound(prefix);
+             entry < table.size() && suggestions.size() < limit && table.startsWith(entry, prefix); entry++) {
+            if (entry == 0 || !table.sameKeyAsPrevious(entry)) {
+                suggestions.add(get(table.recordAt(entry)));
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * @param records the indexes of records of this list
+     * @return the decoded records, in the order of the indexes
+     */
+    List<T> decode(int... records) {
+        List<T> decoded = new ArrayList<>(records.length);
+        for (int record : records) {
+            decoded.add(get(record));
+        }
+        return decoded;
+    }
+
+    @Override
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        int start = (int) buffer.getLong(offsetTable + index * Long.BYTES);
+        int end = (int) buffer.getLong(offsetTable + (index + 1) * Long.BYTES);
+        byte[] record = new byte[end - start];
+        buffer.get(start, record);
+        try {
+            return reader.readValue(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot decode record " + index + " of the mapped snapshot", e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public T set(int index, T element) {
+        throw new ReadOnlyDataException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public void add(int index, T element) {
+        throw new ReadOnlyDataException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public T remove(int index) {
+        throw new ReadOnlyDataException(READ_ONLY_MESSAGE);
+    }
+}
@@ -0,0 +1,118 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Layout of the MAPPED snapshot format, and the code to map such a file in memory.
+ *
+ * <p>The file starts with a header holding the magic bytes, the journal sequence of the snapshot (-1 if it has
+ * none), the number of persons, fire stations and medical records, and the absolute position of the key table of
+ * each {@link MappedKey}, as longs. Then comes one offset table per collection (count + 1 absolute positions, as
+ * longs), followed by the records, each encoded as a standalone Smile document, then by the key tables (see
+ * {@link MappedKeyTable}). Any record can therefore be decoded on its own, without reading the rest of the file,
+ * and looked up by key without decoding any other record.</p>
+ *
+ * <p>A mapped snapshot is limited to 2 GiB, the size of a single mapped region.</p>
+ */
+final class MappedSnapshot {
+
+    static final byte[] MAGIC = "SNMAP03\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int KEY_TABLES = MAGIC.length + Long.BYTES + 3 * Integer.BYTES;
+    static final int HEADER_SIZE = KEY_TABLES + MappedKey.values().length * Long.BYTES;
+    static final long NO_JOURNAL_SEQUENCE = -1;
+
+    private MappedSnapshot() {
+    }
+
+    /**
+     * Maps a MAPPED snapshot file and returns its content as lazy, read-only lists.
+     *
+     * <p>Only the header is read here. Records are decoded from the mapped region each time they are accessed, and
+     * the key tables are read in place on each lookup.
+     * The mapping stays valid after the file is replaced or deleted, until the lists are garbage collected.</p>
+     *
+     * @param smileMapper the ObjectMapper, with a Smile factory, used to decode the records
+     * @param file        the snapshot file
+     * @return a DataFile whose lists are backed by the mapped file
+     * @throws IOException if the file cannot be mapped or is not a MAPPED snapshot
+     */
+    static DataFile map(ObjectMapper smileMapper, Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot '" + file + "' is too large to be mapped (" + size + " bytes)");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        byte[] magic = new byte[MAGIC.length];
+        if (buffer.capacity() >= HEADER_SIZE) {
+            buffer.get(0, magic);
+        }
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("'" + file + "' is not a MAPPED snapshot");
+        }
+        long journalSequence = buffer.getLong(MAGIC.length);
+        int counts = MAGIC.length + Long.BYTES;
+        int personCount = buffer.getInt(counts);
+        int fireStationCount = buffer.getInt(counts + Integer.BYTES);
+        int medicalRecordCount = buffer.getInt(counts + 2 * Integer.BYTES);
+
+        int personTable = HEADER_SIZE;
+        int fireStationTable = personTable + tableSize(personCount);
+        int medicalRecordTable = fireStationTable + tableSize(fireStationCount);
+
+        DataFile dataFile = new DataFile();
+        dataFile.setPersons(new MappedRecordList<>(buffer, personTable, personCount,
+                smileMapper.readerFor(Person.class), keyTables(buffer, DataCollection.PERSONS)));
+        dataFile.setFireStations(new MappedRecordList<>(buffer, fireStationTable, fireStationCount,
+                smileMapper.readerFor(FireStation.class), keyTables(buffer, DataCollection.FIRE_STATIONS)));
+        dataFile.setMedicalRecords(new MappedRecordList<>(buffer, medicalRecordTable, medicalRecordCount,
+                smileMapper.readerFor(MedicalRecord.class), keyTables(buffer, DataCollection.MEDICAL_RECORDS)));
+        dataFile.setJournalSequence(journalSequence == NO_JOURNAL_SEQUENCE ? null : journalSequence);
+        return dataFile;
+    }
+
+    /**
+     * Reads the positions of the key tables of a collection from the header.
+     */
+    private static Map<MappedKey, MappedKeyTable> keyTables(ByteBuffer buffer, DataCollection collection) {
+        Map<MappedKey, MappedKeyTable> tables = new EnumMap<>(MappedKey.class);
+        for (MappedKey key : MappedKey.values()) {
+            if (key.getCollection() == collection) {
+                tables.put(key, new MappedKeyTable(buffer, (int) buffer.getLong(keyTablePosition(key))));
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Returns the position in the header of the position of the key table of a key.
+     */
+    static int keyTablePosition(MappedKey key) {
+        return KEY_TABLES + key.ordinal() * Long.BYTES;
+    }
+
+    /**
+     * Returns the size in bytes of the offset table of a collection.
+     */
+    static int tableSize(int count) {
+        return (count + 1) * Long.BYTES;
+    }
+}
@@ -0,0 +1,87 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Writes snapshots in the MAPPED format described in {@link MappedSnapshot}.
+ *
+ * <p>The records are streamed first, after room left for the header and the offset tables, followed by the key
+ * tables, which sort the records of each collection by their {@link MappedKey keys}. The header and the offset
+ * tables are then written at the start of the file, once every record and key table position is known.</p>
+ */
+public class MappedSnapshotWriter extends SnapshotWriter {
+
+    private final ObjectWriter recordWriter;
+
+    /**
+     * @param smileMapper the ObjectMapper, with a Smile factory, used to encode the records
+     */
+    public MappedSnapshotWriter(ObjectMapper smileMapper) {
+        super(smileMapper);
+        this.recordWriter = smileMapper.writer();
+    }
+
+    @Override
+    protected long writeContent(DataFile snapshot, FileChannel channel) throws IOException {
+        // In the order of DataCollection, as the key tables are looked up by collection
+        List<?>[] collections = {
+                orEmpty(snapshot.getPersons()),
+                orEmpty(snapshot.getFireStations()),
+                orEmpty(snapshot.getMedicalRecords())
+        };
+        int headerAndTables = MappedSnapshot.HEADER_SIZE;
+        for (List<?> records : collections) {
+            headerAndTables += MappedSnapshot.tableSize(records.size());
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(headerAndTables).put(MappedSnapshot.MAGIC)
+                .putLong(snapshot.getJournalSequence() == null
+                        ? MappedSnapshot.NO_JOURNAL_SEQUENCE : snapshot.getJournalSequence());
+        for (List<?> records : collections) {
+            header.putInt(records.size());
+        }
+        // The key table positions are only known once the records are written
+        header.position(MappedSnapshot.HEADER_SIZE);
+
+        long position = headerAndTables;
+        channel.position(position);
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        for (List<?> records : collections) {
+            for (Object record : records) {
+                header.putLong(position);
+                byte[] encoded = recordWriter.writeValueAsBytes(record);
+                out.write(encoded);
+                position += encoded.length;
+            }
+            header.putLong(position);
+        }
+        for (MappedKey key : MappedKey.values()) {
+            header.putLong(MappedSnapshot.keyTablePosition(key), position);
+            byte[] table = MappedKeyTable.encode(key, collections[key.getCollection().ordinal()]);
+            out.write(table);
+            position += table.length;
+        }
+        out.flush();
+
+        header.flip();
+        long headerPosition = 0;
+        while (header.hasRemaining()) {
+            headerPosition += channel.write(header, headerPosition);
+        }
+        return position;
+    }
+
+    private static List<?> orEmpty(List<?> records) {
+        return records == null ? List.of() : records;
+    }
+}
@@ -0,0 +1,129 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * The link from each person to its medical record, the first medical record having its name, as
+ * {@link InMemoryMedicalRecordRepository#getMedicalRecordByFirstNameAndLastName} would find it, attached to the
+ * DataFile it was built from.
+ *
+ * <p>The links are built once both collections are prepared, then changed whenever a person is saved, replaced or
+ * deleted, and whenever a medical record of their name is added, replaced by an update or deleted. Like the
+ * indexes, the links are immutable: a change attaches new links, kept in a {@link ShardedMap} keyed by person
+ * identity, to the next version of the data, and neither persons nor medical records are ever modified.</p>
+ *
+ * <p>Read-only data is not linked: its persons are decoded on access, so a link would not last. Their medical
+ * record is looked up by name instead, in the key table of the snapshot.</p>
+ */
+final class MedicalRecordLinks {
+
+    /**
+     * The medical record of every person having one; persons without a medical record are left out.
+     */
+    private final ShardedMap<Person, MedicalRecord> byPerson;
+
+    private MedicalRecordLinks(ShardedMap<Person, MedicalRecord> byPerson) {
+        this.byPerson = byPerson;
+    }
+
+    /**
+     * Links every person of the data to its medical record, and attaches the links to the DataFile, replacing any
+     * previous ones.
+     *
+     * @param data the prepared data
+     */
+    static void build(DataFile data) {
+        KeyIndex<MedicalRecord> medicalRecords = medicalRecordsByName(data);
+        Map<Person, MedicalRecord> byPerson = new HashMap<>();
+        for (Person person : data.getPersons()) {
+            MedicalRecord medicalRecord = medicalRecords.get(person.getFirstName(), person.getLastName());
+            if (medicalRecord != null) {
+                byPerson.put(person, medicalRecord);
+            }
+        }
+        data.putIndex(MedicalRecordLinks.class, new MedicalRecordLinks(ShardedMap.of(byPerson)));
+    }
+
+    /**
+     * Returns the medical record of a person of the given data, through its link, or by name when the data has
+     * no links attached, such as read-only data or data that was never prepared.
+     *
+     * @param data   the data the person belongs to
+     * @param person the person
+     * @return the medical record of the person, or null if it has none
+     */
+    static MedicalRecord medicalRecordOf(DataFile data, Person person) {
+        MedicalRecordLinks links = (MedicalRecordLinks) data.getIndex(MedicalRecordLinks.class);
+        if (links != null) {
+            return links.byPerson.get(person);
+        }
+        return InMemoryMedicalRecordRepository.findByName(data, person.getFirstName(), person.getLastName());
+    }
+
+    /**
+     * Links a saved person to its medical record.
+     *
+     * @param data   the next version of the data, being mutated
+     * @param person the saved person
+     */
+    static void link(DataFile data, Person person) {
+        change(data, byPerson -> byPerson.with(person,
+                medicalRecordsByName(data).get(person.getFirstName(), person.getLastName())));
+    }
+
+    /**
+     * Removes the links of persons deleted or replaced.
+     *
+     * @param data    the next version of the data, being mutated
+     * @param persons the persons no longer in the data
+     */
+    static void unlink(DataFile data, List<Person> persons) {
+        change(data, byPerson -> {
+            for (Person person : persons) {
+                byPerson = byPerson.with(person, null);
+            }
+            return byPerson;
+        });
+    }
+
+    /**
+     * Links the persons of a name again, after a medical record of this name was added, updated or deleted.
+     *
+     * @param data      the next version of the data, being mutated
+     * @param firstName the first name of the medical record
+     * @param lastName  the last name of the medical record
+     */
+    static void relink(DataFile data, String firstName, String lastName) {
+        MedicalRecord medicalRecord = medicalRecordsByName(data).get(firstName, lastName);
+        List<Person> persons = InMemoryPersonRepository.INDEXES.of(data)
+                .get(InMemoryPersonRepository.BY_NAME).find(firstName, lastName);
+        change(data, byPerson -> {
+            for (Person person : persons) {
+                byPerson = byPerson.with(person, medicalRecord);
+            }
+            return byPerson;
+        });
+    }
+
+    /**
+     * Attaches changed links to the data being mutated. Data without links attached is left alone, as its
+     * medical records are looked up by name.
+     */
+    private static void change(DataFile data, UnaryOperator<ShardedMap<Person, MedicalRecord>> change) {
+        MedicalRecordLinks links = (MedicalRecordLinks) data.getIndex(MedicalRecordLinks.class);
+        if (links != null) {
+            data.putIndex(MedicalRecordLinks.class, new MedicalRecordLinks(change.apply(links.byPerson)));
+        }
+    }
+
+    private static KeyIndex<MedicalRecord> medicalRecordsByName(DataFile data) {
+        return InMemoryMedicalRecordRepository.INDEXES.of(data).get(InMemoryMedicalRecordRepository.BY_NAME);
+    }
+}
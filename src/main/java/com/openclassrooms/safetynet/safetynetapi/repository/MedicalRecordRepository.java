@@ -4,6 +4,7 @@ import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 
 @Repository
@@ -17,4 +18,6 @@ public interface MedicalRecordRepository {
     MedicalRecord updateMedicalRecord(MedicalRecord medicalRecord);
 
     boolean deleteMedicalRecord(String firstName, String lastName);
+
+    <T> T inBatch(Supplier<T> mutations);
 }
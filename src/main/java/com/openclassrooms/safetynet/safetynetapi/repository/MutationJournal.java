@@ -0,0 +1,290 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only file of repository mutations, one compact JSON {@link JournalEntry} per line.
+ *
+ * <p>The journal sits next to the data file ("data.json.journal"). Appending costs the size of the change
+ * rather than the size of the dataset. Its content is replayed on top of the last snapshot at startup,
+ * and it is folded into a new snapshot by compaction.</p>
+ *
+ * <p>Compaction first rotates the journal to a ".compacting" file so that new mutations keep being appended
+ * to a fresh journal while the snapshot is written. The rotated file is deleted once the snapshot is safely
+ * on disk; if the process stops in between, it is replayed on the next startup.</p>
+ *
+ * <p>Every appended entry is given the next sequence of the journal. A snapshot records the sequence of the last
+ * entry it holds, and replay skips the entries up to that sequence, so an entry is never applied twice, even when
+ * the snapshot was written but the process stopped before the journal was deleted.</p>
+ */
+@Log4j2
+public class MutationJournal {
+
+    /**
+     * When appended entries are forced to the storage device.
+     */
+    public enum FsyncPolicy {
+        /** Force after every append: no acknowledged mutation can be lost. */
+        ALWAYS,
+        /** Force periodically from the background thread: bounded loss window. */
+        INTERVAL,
+        /** Never force explicitly and rely on the operating system. */
+        NEVER
+    }
+
+    private static final byte NEW_LINE = '\n';
+
+    private final ObjectMapper objectMapper;
+    private final Path path;
+    private final Path compactingPath;
+    private final FsyncPolicy fsyncPolicy;
+
+    private FileChannel channel;
+    private long size;
+    private boolean unsynced;
+    private long lastSequence;
+
+    /**
+     * Creates a journal stored at the given path.
+     *
+     * @param objectMapper the ObjectMapper used to serialize and read entries
+     * @param path         the journal file
+     * @param fsyncPolicy  when appended entries are forced to disk
+     */
+    public MutationJournal(ObjectMapper objectMapper, Path path, FsyncPolicy fsyncPolicy) {
+        this.objectMapper = objectMapper;
+        this.path = path;
+        this.compactingPath = path.resolveSibling(path.getFileName() + ".compacting");
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    /**
+     * Opens the journal for appending, creating the file if needed.
+     *
+     * @throws IOException if the file cannot be opened
+     */
+    public synchronized void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+
+    /**
+     * Appends an entry as one line, forcing it to disk when the fsync policy is ALWAYS.
+     *
+     * @param entry the mutation to record
+     * @return the size of the journal in bytes after the append
+     * @throws IOException if the entry cannot be written
+     */
+    public synchronized long append(JournalEntry entry) throws IOException {
+        return append(List.of(entry));
+    }
+
+    /**
+     * Appends several entries, one line each, with a single write and at most one force to disk.
+     * Each entry is given the next sequence of the journal.
+     *
+     * @param entries the mutations to record, in the order they were applied
+     * @return the size of the journal in bytes after the append
+     * @throws IOException if the entries cannot be written
+     */
+    public synchronized long append(List<JournalEntry> entries) throws IOException {
+        if (channel == null) {
+            throw new IOException("Journal '" + path + "' is not open");
+        }
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        for (JournalEntry entry : entries) {
+            entry.setSequence(++lastSequence);
+            lines.write(objectMapper.writeValueAsBytes(entry));
+            lines.write(NEW_LINE);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        size += lines.size();
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            channel.force(false);
+        } else {
+            unsynced = true;
+        }
+        return size;
+    }
+
+    /**
+     * Forces the appended entries to disk if some are not synced yet.
+     */
+    public synchronized void sync() {
+        if (channel == null || !unsynced) {
+            return;
+        }
+        try {
+            channel.force(false);
+            unsynced = false;
+        } catch (IOException e) {
+            log.error("Failed to sync journal '{}': {}", path, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Moves the current journal content aside for compaction and starts a new empty journal.
+     *
+     * <p>If a previous compaction did not complete, the current content is appended to the pending
+     * ".compacting" file so that no entry is lost.</p>
+     *
+     * @return the file holding every entry written before the rotation
+     * @throws IOException if the journal cannot be rotated
+     */
+    public synchronized Path rotate() throws IOException {
+        close();
+        if (Files.exists(path)) {
+            if (Files.exists(compactingPath)) {
+                try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ);
+                     FileChannel target = FileChannel.open(compactingPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    long position = 0;
+                    long length = source.size();
+                    while (position < length) {
+                        position += source.transferTo(position, length - position, target);
+                    }
+                    target.force(false);
+                }
+                Files.delete(path);
+            } else {
+                Files.move(path, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        open();
+        return compactingPath;
+    }
+
+    /**
+     * Replays the pending ".compacting" file and then the journal on top of the given data.
+     *
+     * <p>Entries whose sequence is not past the sequence already held by the snapshot of their collection are
+     * skipped. Replay stops at the first line that cannot be parsed, which is the expected state of the last
+     * line after a crash in the middle of an append. New entries are then given sequences past every replayed
+     * or skipped one. The records matched by the entries are looked up by key in a {@link JournalReplay}, so that
+     * the replay does not scan the lists once per entry.</p>
+     *
+     * @param dataFile      the snapshot data to bring up to date
+     * @param heldSequences the journal sequence held by the snapshot of each collection, if any
+     * @return the number of entries applied
+     * @throws IOException if a journal file cannot be read
+     */
+    public synchronized int replay(DataFile dataFile, Map<DataCollection, Long> heldSequences) throws IOException {
+        heldSequences.values().forEach(this::continueAfter);
+        JournalReplay replay = new JournalReplay(dataFile);
+        try {
+            return replayFile(compactingPath, replay, heldSequences) + replayFile(path, replay, heldSequences);
+        } finally {
+            replay.finish();
+        }
+    }
+
+    /**
+     * Makes sure the next entries are given sequences past the given one, e.g. that of a snapshot loaded
+     * without replaying the journal.
+     *
+     * @param sequence a sequence already used, or null
+     */
+    public synchronized void continueAfter(Long sequence) {
+        if (sequence != null && sequence > lastSequence) {
+            lastSequence = sequence;
+        }
+    }
+
+    /**
+     * @return the sequence of the last entry appended or replayed, which a snapshot taken now holds
+     */
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Deletes the journal and any pending ".compacting" file. The journal must be closed.
+     *
+     * @throws IOException if a file cannot be deleted
+     */
+    public synchronized void delete() throws IOException {
+        Files.deleteIfExists(compactingPath);
+        Files.deleteIfExists(path);
+        size = 0;
+    }
+
+    /**
+     * Syncs and closes the journal. Does nothing if it is not open.
+     */
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        sync();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error("Failed to close journal '{}': {}", path, e.getMessage(), e);
+        }
+        channel = null;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    private int replayFile(Path file, JournalReplay replay, Map<DataCollection, Long> heldSequences) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        int applied = 0;
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JournalEntry entry;
+                try {
+                    entry = objectMapper.readValue(line, JournalEntry.class);
+                } catch (IOException e) {
+                    log.warn("Stopping replay of '{}' at a truncated or corrupted entry after {} entries", file, applied);
+                    break;
+                }
+                Long sequence = entry.getSequence();
+                if (sequence != null) {
+                    continueAfter(sequence);
+                    Long held = heldSequences.get(entry.getOp().getCollection());
+                    if (held != null && sequence <= held) {
+                        skipped++;
+                        continue;
+                    }
+                }
+                entry.applyTo(replay);
+                applied++;
+            }
+        }
+        log.info("Replayed {} journal entries from '{}', skipped {} already in the snapshot", applied, file, skipped);
+        return applied;
+    }
+}
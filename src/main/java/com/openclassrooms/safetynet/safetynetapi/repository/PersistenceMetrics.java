@@ -0,0 +1,68 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports the persistence state of the {@link DataLoader} and its {@link FlushMetrics} to Micrometer, so that they
+ * can be read from "/actuator/metrics" or scraped by a monitoring system.
+ *
+ * <p>The gauges read the DataLoader when the registry is polled, so recording a mutation or a flush costs nothing
+ * more than before:</p>
+ * <ul>
+ *     <li>"safetynet.data.pending.mutations": mutations applied in memory but not flushed yet</li>
+ *     <li>"safetynet.data.pending.lag": age of the oldest of these mutations</li>
+ *     <li>"safetynet.data.flush.lag" and "safetynet.data.flush.lag.max": lag of the last flush and the longest one</li>
+ *     <li>"safetynet.data.flush.last": time of the last flush, in seconds since the epoch, 0 before the first one</li>
+ *     <li>"safetynet.data.flushes", "safetynet.data.flush.failures" and "safetynet.data.written": counters</li>
+ * </ul>
+ */
+@Component
+public class PersistenceMetrics implements MeterBinder {
+
+    private final DataLoader dataLoader;
+
+    /**
+     * @param dataLoader the DataLoader whose persistence is measured
+     */
+    public PersistenceMetrics(DataLoader dataLoader) {
+        this.dataLoader = dataLoader;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FlushMetrics flushMetrics = dataLoader.getFlushMetrics();
+        Gauge.builder("safetynet.data.pending.mutations", dataLoader, DataLoader::getPendingMutationCount)
+                .description("Mutations applied in memory and not flushed yet")
+                .register(registry);
+        TimeGauge.builder("safetynet.data.pending.lag", dataLoader, TimeUnit.MILLISECONDS, DataLoader::getPendingLagMillis)
+                .description("Age of the oldest mutation not flushed yet")
+                .register(registry);
+        TimeGauge.builder("safetynet.data.flush.lag", flushMetrics, TimeUnit.MILLISECONDS, FlushMetrics::getLastFlushLagMillis)
+                .description("Time between the first coalesced mutation and the end of the last flush")
+                .register(registry);
+        TimeGauge.builder("safetynet.data.flush.lag.max", flushMetrics, TimeUnit.MILLISECONDS, FlushMetrics::getMaxFlushLagMillis)
+                .description("Longest flush lag since startup")
+                .register(registry);
+        Gauge.builder("safetynet.data.flush.last", flushMetrics, metrics -> metrics.getLastFlushEpochMillis() / 1000.0)
+                .description("Time of the last successful flush, in seconds since the epoch")
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder("safetynet.data.flushes", flushMetrics, FlushMetrics::getFlushCount)
+                .description("Successful background flushes")
+                .register(registry);
+        FunctionCounter.builder("safetynet.data.flush.failures", flushMetrics, FlushMetrics::getFailedFlushCount)
+                .description("Background flushes that failed and were retried")
+                .register(registry);
+        FunctionCounter.builder("safetynet.data.written", flushMetrics, FlushMetrics::getBytesWritten)
+                .description("Bytes written to snapshot files")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
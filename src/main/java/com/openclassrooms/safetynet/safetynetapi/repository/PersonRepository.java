@@ -4,6 +4,7 @@ import com.openclassrooms.safetynet.safetynetapi.model.Person;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 @Repository
 public interface PersonRepository {
@@ -15,6 +16,13 @@ public interface PersonRepository {
     void deleteFirstOccurrence(String firstName, String lastName);
     Person findByFirstNameAndLastName(String firstName, String lastName);
     List<Person> getPersonByAddress(String address) ;
+    Household getHousehold(String address);
     List<Person> findByCity(String city);
+    List<String> findEmailsByCity(String city);
     List<Person> findByLastName(String lastName);
+    List<Household.Resident> findResidentsByLastName(String lastName);
+    List<String> findLastNamesSoundingLike(String lastName);
+    List<Person> suggestByName(String prefix, int limit);
+    List<Person> suggestByAddress(String prefix, int limit);
+    <T> T inBatch(Supplier<T> mutations);
 }
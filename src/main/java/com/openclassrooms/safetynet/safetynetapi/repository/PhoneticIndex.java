@@ -0,0 +1,99 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The distinct canonical values of a field, grouped by {@link Soundex} code, declared with
+ * {@link IndexDefinition#phonetic}.
+ *
+ * <p>The index does not hold the records: a misspelled value gives the few distinct values sounding like it, which
+ * are then ranked and looked up in an exact index. A code may cover many records, but only a handful of distinct
+ * values, so each code keeps its values in the order they were indexed, counted so that a value only disappears
+ * with its last record. The index is immutable: a change copies the values of its code only, the codes being kept
+ * in a {@link ShardedMap}.</p>
+ *
+ * @param <T> the type of the records
+ */
+class PhoneticIndex<T> implements SecondaryIndex<T> {
+
+    private final ShardedMap<String, Map<String, Integer>> byCode;
+    private final Function<T, String> field;
+
+    /**
+     * @param field the indexed field, which must not change while the record is indexed
+     */
+    PhoneticIndex(Function<T, String> field) {
+        this(field, ShardedMap.empty());
+    }
+
+    private PhoneticIndex(Function<T, String> field, ShardedMap<String, Map<String, Integer>> byCode) {
+        this.field = field;
+        this.byCode = byCode;
+    }
+
+    @Override
+    public PhoneticIndex<T> build(List<T> records) {
+        Map<String, Map<String, Integer>> codes = new HashMap<>();
+        for (T record : records) {
+            String value = CanonicalKeys.intern(field.apply(record));
+            codes.computeIfAbsent(Soundex.encode(value), c -> new LinkedHashMap<>()).merge(value, 1, Integer::sum);
+        }
+        codes.replaceAll((code, counts) -> Collections.unmodifiableMap(counts));
+        return new PhoneticIndex<>(field, ShardedMap.of(codes));
+    }
+
+    @Override
+    public PhoneticIndex<T> add(T record) {
+        String value = CanonicalKeys.intern(field.apply(record));
+        return new PhoneticIndex<>(field, byCode.compute(Soundex.encode(value), (code, counts) -> {
+            Map<String, Integer> next = counts == null ? new LinkedHashMap<>() : new LinkedHashMap<>(counts);
+            next.merge(value, 1, Integer::sum);
+            return Collections.unmodifiableMap(next);
+        }));
+    }
+
+    @Override
+    public PhoneticIndex<T> remove(T record) {
+        String value = CanonicalKeys.intern(field.apply(record));
+        return new PhoneticIndex<>(field, byCode.compute(Soundex.encode(value), (code, counts) -> {
+            if (counts == null) {
+                return null;
+            }
+            Map<String, Integer> next = new LinkedHashMap<>(counts);
+            next.computeIfPresent(value, (v, count) -> count == 1 ? null : count - 1);
+            return next.isEmpty() ? null : Collections.unmodifiableMap(next);
+        }));
+    }
+
+    /**
+     * Keeps the index as it is when the value of the record does not change, as the values of a code are counted
+     * rather than tied to records.
+     *
+     * @param current the indexed record
+     * @param updated the record replacing it
+     * @return the index with the new record
+     */
+    @Override
+    public PhoneticIndex<T> replace(T current, T updated) {
+        if (CanonicalKeys.of(field.apply(current)).equals(CanonicalKeys.of(field.apply(updated)))) {
+            return this;
+        }
+        return remove(current).add(updated);
+    }
+
+    /**
+     * @param value the value to look up, possibly misspelled
+     * @return a copy of the canonical values having the same Soundex code, in the order they were indexed;
+     * empty if none
+     */
+    List<String> findSoundingLike(String value) {
+        Map<String, Integer> counts = byCode.get(Soundex.encode(value));
+        return counts == null ? new ArrayList<>() : new ArrayList<>(counts.keySet());
+    }
+}
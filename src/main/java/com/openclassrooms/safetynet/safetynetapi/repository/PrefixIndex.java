@@ -0,0 +1,125 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Records sorted by the canonical keys of one or more of their fields, to suggest the records whose key starts with
+ * a typed prefix, declared with {@link IndexDefinition#prefix}.
+ *
+ * <p>The keys are kept in a {@link ShardedSortedMap}, so that the records of a prefix are the contiguous keys
+ * following it: a suggestion reads as many keys as it returns, whatever the number of records. Each field gives a
+ * key of its own, so that a name can be found by its first or its last word.</p>
+ *
+ * <p>As a {@link KeyIndex}, the index is immutable, and each key holds an immutable group of records in the order
+ * of the list, replaced on every change. Keys are not interned: a record usually has a key of its own, which would
+ * only grow the pool.</p>
+ *
+ * @param <T> the type of the records
+ */
+class PrefixIndex<T> implements SecondaryIndex<T> {
+
+    private final ShardedSortedMap<String, List<T>> records;
+    private final List<Function<T, String>> fields;
+
+    /**
+     * @param fields the fields each giving a key of the record, which must not change while the record is indexed
+     */
+    PrefixIndex(List<Function<T, String>> fields) {
+        this(fields, ShardedSortedMap.empty());
+    }
+
+    private PrefixIndex(List<Function<T, String>> fields, ShardedSortedMap<String, List<T>> records) {
+        this.fields = fields;
+        this.records = records;
+    }
+
+    /**
+     * Sorts the keys of all the records at once, then adds each group in the order of the keys.
+     * The sort is stable, so the records of a group stay in the order of the list.
+     *
+     * @param all the records to index, in their order
+     * @return the index of these records
+     */
+    @Override
+    public PrefixIndex<T> build(List<T> all) {
+        List<Map.Entry<String, T>> entries = new ArrayList<>(all.size() * fields.size());
+        for (T record : all) {
+            for (Function<T, String> field : fields) {
+                entries.add(Map.entry(CanonicalKeys.of(field.apply(record)), record));
+            }
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        List<Map.Entry<String, List<T>>> groups = new ArrayList<>();
+        int from = 0;
+        while (from < entries.size()) {
+            String key = entries.get(from).getKey();
+            int to = from + 1;
+            while (to < entries.size() && entries.get(to).getKey().equals(key)) {
+                to++;
+            }
+            List<T> group = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                group.add(entries.get(i).getValue());
+            }
+            groups.add(Map.entry(key, List.copyOf(group)));
+            from = to;
+        }
+        return new PrefixIndex<>(fields, ShardedSortedMap.ofSorted(groups));
+    }
+
+    /**
+     * Returns the records whose key starts with the given prefix, the first record of each key, in the order of
+     * the keys. A record matching through several keys is only returned once.
+     *
+     * @param prefix the typed prefix (case-insensitive, ignoring extra whitespace)
+     * @param limit  the maximum number of records
+     * @return the suggested records; empty if none
+     */
+    List<T> suggest(String prefix, int limit) {
+        String key = CanonicalKeys.of(prefix);
+        List<T> suggestions = new ArrayList<>(Math.min(limit, 16));
+        Set<T> suggested = Collections.newSetFromMap(new IdentityHashMap<>());
+        records.forEachFrom(key, entry -> {
+            if (suggestions.size() >= limit || !entry.getKey().startsWith(key)) {
+                return false;
+            }
+            T record = entry.getValue().getFirst();
+            if (suggested.add(record)) {
+                suggestions.add(record);
+            }
+            return true;
+        });
+        return suggestions;
+    }
+
+    @Override
+    public PrefixIndex<T> add(T record) {
+        ShardedSortedMap<String, List<T>> next = records;
+        for (Function<T, String> field : fields) {
+            next = next.compute(CanonicalKeys.of(field.apply(record)),
+                    (k, group) -> group == null ? List.of(record) : KeyIndex.concat(group, List.of(record)));
+        }
+        return new PrefixIndex<>(fields, next);
+    }
+
+    @Override
+    public PrefixIndex<T> remove(T record) {
+        ShardedSortedMap<String, List<T>> next = records;
+        for (Function<T, String> field : fields) {
+            next = next.compute(CanonicalKeys.of(field.apply(record)), (k, group) -> {
+                if (group == null) {
+                    return null;
+                }
+                List<T> remaining = group.stream().filter(r -> r != record).toList();
+                return remaining.isEmpty() ? null : remaining;
+            });
+        }
+        return new PrefixIndex<>(fields, next);
+    }
+}
@@ -0,0 +1,92 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * The indexes declared by a repository, built over the records of one version of the data and attached to its
+ * DataFile by {@link CollectionIndexes}.
+ *
+ * <p>Repositories look records up with {@link #get(IndexDefinition)}. The indexes are immutable: every change made
+ * to the list of records gives new indexes, which {@link CollectionIndexes} publishes along with the new list, so
+ * that an index never holds a record the list does not.</p>
+ *
+ * @param <T> the type of the records
+ */
+final class RecordIndexes<T> {
+
+    private final Map<IndexDefinition<T, ?>, SecondaryIndex<T>> indexes;
+
+    /**
+     * Builds the declared indexes over the given records.
+     *
+     * @param definitions the declared indexes
+     * @param records     the records, in their order
+     */
+    RecordIndexes(List<IndexDefinition<T, ?>> definitions, List<T> records) {
+        Map<IndexDefinition<T, ?>, SecondaryIndex<T>> built = new LinkedHashMap<>();
+        for (IndexDefinition<T, ?> definition : definitions) {
+            built.put(definition, definition.create().build(records));
+        }
+        this.indexes = Collections.unmodifiableMap(built);
+    }
+
+    private RecordIndexes(Map<IndexDefinition<T, ?>, SecondaryIndex<T>> indexes) {
+        this.indexes = indexes;
+    }
+
+    /**
+     * @param definition the declaration of the index
+     * @param <I>        the type of the index
+     * @return the index built from this declaration
+     * @throws IllegalArgumentException if the index was not declared along with the others
+     */
+    @SuppressWarnings("unchecked")
+    <I extends SecondaryIndex<T>> I get(IndexDefinition<T, I> definition) {
+        SecondaryIndex<T> index = indexes.get(definition);
+        if (index == null) {
+            throw new IllegalArgumentException("Index " + definition.getName() + " is not declared");
+        }
+        return (I) index;
+    }
+
+    /**
+     * Indexes a record added at the end of the list.
+     *
+     * @param record the added record
+     * @return the indexes with this record
+     */
+    RecordIndexes<T> add(T record) {
+        return map(index -> index.add(record));
+    }
+
+    /**
+     * Removes a record deleted from the list.
+     *
+     * @param record the removed record
+     * @return the indexes without this record
+     */
+    RecordIndexes<T> remove(T record) {
+        return map(index -> index.remove(record));
+    }
+
+    /**
+     * Replaces a record by another one set at the same position of the list.
+     *
+     * @param current the indexed record
+     * @param updated the record replacing it
+     * @return the indexes with the new record
+     */
+    RecordIndexes<T> replace(T current, T updated) {
+        return map(index -> index.replace(current, updated));
+    }
+
+    private RecordIndexes<T> map(UnaryOperator<SecondaryIndex<T>> change) {
+        Map<IndexDefinition<T, ?>, SecondaryIndex<T>> changed = new LinkedHashMap<>();
+        indexes.forEach((definition, index) -> changed.put(definition, change.apply(index)));
+        return new RecordIndexes<>(Collections.unmodifiableMap(changed));
+    }
+}
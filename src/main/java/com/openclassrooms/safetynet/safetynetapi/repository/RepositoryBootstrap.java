@@ -0,0 +1,104 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Initializes the repositories concurrently at startup.
+ *
+ * <p>Every {@link InitializingRepository} is initialized on a pool bounded by the number of processors, and this
+ * bean waits for all of them. As it is a singleton created while the application context starts, the application
+ * only reports ready, and starts serving requests, once every repository is initialized. If one of them fails,
+ * the startup fails.</p>
+ *
+ * <p>Once every repository is prepared, they link their records to those of the other collections, again
+ * concurrently. The time taken by each collection is logged, along with the total startup time of the repositories.</p>
+ *
+ * <p>The same preparation runs for every data file reloaded by the DataLoader, off to the side, so that the new
+ * data is only published once the repositories have built their indexes over it.</p>
+ */
+@Log4j2
+@Component
+public class RepositoryBootstrap {
+
+    private final DataLoader dataLoader;
+    private final List<InitializingRepository> repositories;
+
+    /**
+     * @param dataLoader   the DataLoader, which has already loaded the data
+     * @param repositories the repositories to initialize
+     */
+    public RepositoryBootstrap(DataLoader dataLoader, List<InitializingRepository> repositories) {
+        this.dataLoader = dataLoader;
+        this.repositories = repositories;
+    }
+
+    /**
+     * Initializes all repositories with the loaded data and waits for them, then registers them with the DataLoader
+     * so that they also prepare the data it loads again.
+     *
+     * @throws IllegalStateException if a repository fails to initialize
+     */
+    @PostConstruct
+    public void initRepositories() {
+        prepare(dataLoader.getDataFile());
+        dataLoader.setDataPreparer(this::prepare);
+    }
+
+    /**
+     * Prepares all repositories for the given data, concurrently, and waits for them.
+     *
+     * @param data the data to prepare
+     * @throws IllegalStateException if a repository fails to prepare the data
+     */
+    public void prepare(DataFile data) {
+        int threads = Math.max(1, Math.min(repositories.size(), Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads,
+                r -> new Thread(r, "repository-init-" + threadCount.incrementAndGet()));
+        long start = System.nanoTime();
+        try {
+            List<Future<Long>> timings = new ArrayList<>();
+            for (InitializingRepository repository : repositories) {
+                timings.add(pool.submit(() -> {
+                    long repositoryStart = System.nanoTime();
+                    repository.prepare(data);
+                    return System.nanoTime() - repositoryStart;
+                }));
+            }
+            for (int i = 0; i < repositories.size(); i++) {
+                long elapsed = timings.get(i).get();
+                log.info("Repository of {} initialized in {} ms", repositories.get(i).getCollection().getFieldName(),
+                        TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+            // Links read the indexes of other collections, so they wait for every repository to be prepared
+            List<Future<?>> links = new ArrayList<>();
+            for (InitializingRepository repository : repositories) {
+                links.add(pool.submit(() -> repository.link(data)));
+            }
+            for (Future<?> link : links) {
+                link.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Repository initialization failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Repository initialization interrupted", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        log.info("{} repositories initialized in {} ms on {} thread(s)", repositories.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), threads);
+    }
+}
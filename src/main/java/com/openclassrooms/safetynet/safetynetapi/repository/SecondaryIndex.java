@@ -0,0 +1,51 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import java.util.List;
+
+/**
+ * An immutable index over the records of one collection, for one version of the data, maintained by
+ * {@link RecordIndexes}.
+ *
+ * <p>An index is published along with the list of records it indexes, and is never modified afterwards, so that
+ * readers never lock: every change returns a new index, which should share most of its state with the current
+ * one.</p>
+ *
+ * @param <T> the type of the records
+ */
+interface SecondaryIndex<T> {
+
+    /**
+     * Indexes all the records of the collection, before the index is used.
+     *
+     * @param records the records, in their order
+     * @return the index of these records
+     */
+    SecondaryIndex<T> build(List<T> records);
+
+    /**
+     * Indexes a record added at the end of the list.
+     *
+     * @param record the added record
+     * @return the index with this record
+     */
+    SecondaryIndex<T> add(T record);
+
+    /**
+     * Removes a record from the index, told apart from equal ones by identity.
+     *
+     * @param record the removed record
+     * @return the index without this record
+     */
+    SecondaryIndex<T> remove(T record);
+
+    /**
+     * Replaces a record by another one at the same position of the list.
+     *
+     * @param current the indexed record
+     * @param updated the record replacing it
+     * @return the index with the new record
+     */
+    default SecondaryIndex<T> replace(T current, T updated) {
+        return remove(current).add(updated);
+    }
+}
@@ -0,0 +1,153 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * An immutable hash map whose changed copies share most of their entries, for the indexes of the repositories.
+ *
+ * <p>The entries are split by hash into shards, each a map that is never modified once published. A change copies
+ * the shard of its key and the array of shards, and shares every other shard with the current map, so that it
+ * costs the size of a shard rather than the size of the map. The number of shards grows with the square root of
+ * the size, which keeps the shards and the array of shards about the same size.</p>
+ *
+ * <p>Readers never lock: a map published along with its DataFile is never modified. Keys are compared with their
+ * equals method, so records without one are told apart by identity.</p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values, which are never null
+ */
+final class ShardedMap<K, V> {
+
+    private static final int MIN_SHARDS = 16;
+    private static final ShardedMap<?, ?> EMPTY = new ShardedMap<>(newShards(MIN_SHARDS), 0);
+
+    private final Map<K, V>[] shards;
+    private final int shift;
+    private final int size;
+
+    private ShardedMap(Map<K, V>[] shards, int size) {
+        this.shards = shards;
+        this.shift = Integer.SIZE - Integer.numberOfTrailingZeros(shards.length);
+        this.size = size;
+    }
+
+    /**
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> ShardedMap<K, V> empty() {
+        return (ShardedMap<K, V>) EMPTY;
+    }
+
+    /**
+     * @param entries the entries of the map, none having a null value
+     * @param <K>     the type of the keys
+     * @param <V>     the type of the values
+     * @return a map of these entries, which does not depend on the given map
+     */
+    static <K, V> ShardedMap<K, V> of(Map<K, V> entries) {
+        Map<K, V>[] shards = newShards(shardCount(entries.size()));
+        ShardedMap<K, V> map = new ShardedMap<>(shards, entries.size());
+        for (Map.Entry<K, V> entry : entries.entrySet()) {
+            shards[map.shardOf(entry.getKey())].put(entry.getKey(), entry.getValue());
+        }
+        return map;
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the value of this key, or null if the map does not have it
+     */
+    V get(Object key) {
+        return shards[shardOf(key)].get(key);
+    }
+
+    /**
+     * @param key          the key to look up
+     * @param defaultValue the value returned if the map does not have the key
+     * @return the value of this key, or the default value
+     */
+    V getOrDefault(Object key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * @return the number of keys
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param key   the key to set
+     * @param value its new value, or null to remove the key
+     * @return a map with this change; this map is left unchanged
+     */
+    ShardedMap<K, V> with(K key, V value) {
+        return compute(key, (k, current) -> value);
+    }
+
+    /**
+     * @param key       the key to change
+     * @param remapping computes the new value of the key from its current value, null if the key is missing;
+     *                  returns null to remove the key
+     * @return a map with this change, or this map if the value did not change
+     */
+    ShardedMap<K, V> compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        int index = shardOf(key);
+        Map<K, V> shard = shards[index];
+        V current = shard.get(key);
+        V value = remapping.apply(key, current);
+        if (value == current) {
+            return this;
+        }
+        int nextSize = size + (current == null ? 1 : 0) - (value == null ? 1 : 0);
+        if (shardCount(nextSize) > shards.length) {
+            Map<K, V> entries = new HashMap<>(entries());
+            entries.put(key, value);
+            return of(entries);
+        }
+        Map<K, V> next = new HashMap<>(shard);
+        if (value == null) {
+            next.remove(key);
+        } else {
+            next.put(key, value);
+        }
+        Map<K, V>[] nextShards = shards.clone();
+        nextShards[index] = next;
+        return new ShardedMap<>(nextShards, nextSize);
+    }
+
+    private Map<K, V> entries() {
+        Map<K, V> entries = HashMap.newHashMap(size + 1);
+        for (Map<K, V> shard : shards) {
+            entries.putAll(shard);
+        }
+        return entries;
+    }
+
+    private int shardOf(Object key) {
+        return (key.hashCode() * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * A power of two close to the square root of the size.
+     */
+    private static int shardCount(int size) {
+        return Math.max(MIN_SHARDS, Integer.highestOneBit((int) Math.sqrt(size)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Map<K, V>[] newShards(int count) {
+        Map<K, V>[] shards = new Map[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new HashMap<>();
+        }
+        return shards;
+    }
+}
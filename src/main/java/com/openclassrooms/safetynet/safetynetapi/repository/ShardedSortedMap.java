@@ -0,0 +1,188 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * An immutable sorted map whose changed copies share most of their entries, for the sorted indexes of the
+ * repositories.
+ *
+ * <p>The entries are split into shards of contiguous keys, each a sorted map that is never modified once
+ * published, along with the lowest key of each shard. Like a {@link ShardedMap}, a change copies the shard of its key
+ * and the arrays of shards, so that it costs about the square root of the size of the map. A shard grown past twice
+ * that size is split in two, and an emptied shard is dropped.</p>
+ *
+ * <p>Readers never lock: a map published along with its DataFile is never modified.</p>
+ *
+ * @param <K> the type of the keys, in their natural order
+ * @param <V> the type of the values, which are never null
+ */
+final class ShardedSortedMap<K extends Comparable<? super K>, V> {
+
+    private static final int MIN_SHARD_SIZE = 64;
+
+    private final NavigableMap<K, V>[] shards;
+    /**
+     * The lowest key of each shard but the first, which holds every key lower than the second one.
+     */
+    private final K[] lowKeys;
+    private final int size;
+
+    private ShardedSortedMap(NavigableMap<K, V>[] shards, K[] lowKeys, int size) {
+        this.shards = shards;
+        this.lowKeys = lowKeys;
+        this.size = size;
+    }
+
+    /**
+     * @param entries the entries of the map, sorted by key, without duplicate keys nor null values
+     * @param <K>     the type of the keys
+     * @param <V>     the type of the values
+     * @return a map of these entries
+     */
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<? super K>, V> ShardedSortedMap<K, V> ofSorted(List<? extends Map.Entry<K, V>> entries) {
+        int shardSize = shardSize(entries.size());
+        int count = Math.max(1, (entries.size() + shardSize - 1) / shardSize);
+        NavigableMap<K, V>[] shards = new NavigableMap[count];
+        K[] lowKeys = (K[]) new Comparable[count];
+        for (int s = 0; s < count; s++) {
+            NavigableMap<K, V> shard = new TreeMap<>();
+            for (int i = s * shardSize; i < Math.min(entries.size(), (s + 1) * shardSize); i++) {
+                shard.put(entries.get(i).getKey(), entries.get(i).getValue());
+            }
+            shards[s] = shard;
+            lowKeys[s] = shard.isEmpty() ? null : shard.firstKey();
+        }
+        return new ShardedSortedMap<>(shards, lowKeys, entries.size());
+    }
+
+    /**
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return the empty map
+     */
+    static <K extends Comparable<? super K>, V> ShardedSortedMap<K, V> empty() {
+        return ofSorted(List.of());
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the value of this key, or null if the map does not have it
+     */
+    V get(K key) {
+        return shards[shardOf(key)].get(key);
+    }
+
+    /**
+     * @return the number of keys
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Passes the entries to the given action in the order of their keys, from the given key, until the action
+     * returns false or no entry is left.
+     *
+     * @param from   the lowest key to start from, included, or null to start from the first key
+     * @param action the action, returning false to stop
+     */
+    void forEachFrom(K from, Predicate<Map.Entry<K, V>> action) {
+        int first = from == null ? 0 : shardOf(from);
+        for (int s = first; s < shards.length; s++) {
+            NavigableMap<K, V> shard = s == first && from != null ? shards[s].tailMap(from, true) : shards[s];
+            for (Map.Entry<K, V> entry : shard.entrySet()) {
+                if (!action.test(entry)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the values in the order of their keys
+     */
+    List<V> values() {
+        List<V> values = new ArrayList<>(size);
+        forEachFrom(null, entry -> values.add(entry.getValue()));
+        return values;
+    }
+
+    /**
+     * @param key   the key to set
+     * @param value its new value, or null to remove the key
+     * @return a map with this change; this map is left unchanged
+     */
+    ShardedSortedMap<K, V> with(K key, V value) {
+        return compute(key, (k, current) -> value);
+    }
+
+    /**
+     * @param key       the key to change
+     * @param remapping computes the new value of the key from its current value, null if the key is missing;
+     *                  returns null to remove the key
+     * @return a map with this change, or this map if the value did not change
+     */
+    @SuppressWarnings("unchecked")
+    ShardedSortedMap<K, V> compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        int index = shardOf(key);
+        V current = shards[index].get(key);
+        V value = remapping.apply(key, current);
+        if (value == current) {
+            return this;
+        }
+        int nextSize = size + (current == null ? 1 : 0) - (value == null ? 1 : 0);
+        NavigableMap<K, V> shard = new TreeMap<>(shards[index]);
+        if (value == null) {
+            shard.remove(key);
+        } else {
+            shard.put(key, value);
+        }
+        List<NavigableMap<K, V>> nextShards = new ArrayList<>(Arrays.asList(shards));
+        if (shard.isEmpty() && shards.length > 1) {
+            nextShards.remove(index);
+        } else if (shard.size() > 2 * shardSize(nextSize)) {
+            K middle = new ArrayList<>(shard.keySet()).get(shard.size() / 2);
+            nextShards.set(index, new TreeMap<>(shard.headMap(middle, false)));
+            nextShards.add(index + 1, new TreeMap<>(shard.tailMap(middle, true)));
+        } else {
+            nextShards.set(index, shard);
+        }
+        K[] nextLowKeys = (K[]) new Comparable[nextShards.size()];
+        for (int s = 0; s < nextLowKeys.length; s++) {
+            NavigableMap<K, V> next = nextShards.get(s);
+            nextLowKeys[s] = next.isEmpty() ? null : next.firstKey();
+        }
+        return new ShardedSortedMap<>(nextShards.toArray(new NavigableMap[0]), nextLowKeys, nextSize);
+    }
+
+    /**
+     * The last shard whose lowest key is not above the given key, or the first shard.
+     */
+    private int shardOf(K key) {
+        int low = 1;
+        int high = lowKeys.length - 1;
+        int found = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (lowKeys[middle].compareTo(key) <= 0) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    private static int shardSize(int size) {
+        return Math.max(MIN_SHARD_SIZE, (int) Math.sqrt(size));
+    }
+}
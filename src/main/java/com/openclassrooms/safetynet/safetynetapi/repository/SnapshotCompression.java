@@ -0,0 +1,104 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression applied to JSON and Smile snapshots.
+ *
+ * <p>GZIP streams the snapshot through the JDK deflater while it is written, and inflates it while it is parsed,
+ * so neither side ever holds the whole uncompressed file. Repeated field names and values compress very well,
+ * which cuts the bytes moved to and from slow disks at the cost of some CPU. Compression is detected from the
+ * gzip header on read, so compressed and plain files can always be loaded whatever is configured for writing.</p>
+ *
+ * <p>MAPPED snapshots are never compressed, since their records are read in place.</p>
+ */
+public enum SnapshotCompression {
+    NONE,
+    GZIP;
+
+    /** Every gzip stream starts with these two bytes. */
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    /**
+     * Detects whether an existing data file is compressed.
+     *
+     * @param file the data file
+     * @return GZIP if the file starts with the gzip header, NONE otherwise
+     * @throws IOException if the file cannot be read
+     */
+    public static SnapshotCompression detect(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return in.read() == GZIP_MAGIC_1 && in.read() == GZIP_MAGIC_2 ? GZIP : NONE;
+        }
+    }
+
+    /**
+     * Opens a data file for reading, inflating it if it is compressed.
+     *
+     * @param file the data file
+     * @return the uncompressed content of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public static InputStream open(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), SnapshotWriter.BUFFER_SIZE);
+        if (detect(file) == GZIP) {
+            return new GZIPInputStream(in, SnapshotWriter.BUFFER_SIZE);
+        }
+        return in;
+    }
+
+    /**
+     * Wraps the stream a snapshot is written to.
+     *
+     * @param out   the stream of the snapshot file
+     * @param level the deflate level, from 1 (fastest) to 9 (smallest), used by GZIP
+     * @return the stream to write the snapshot content to; it must be finished with {@link #finish(OutputStream)}
+     * @throws IOException if the compressed stream cannot be started
+     */
+    OutputStream wrap(OutputStream out, int level) throws IOException {
+        if (this == NONE) {
+            return out;
+        }
+        return new GZIPOutputStream(out, SnapshotWriter.BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    /**
+     * Writes whatever the compressor still buffers, without closing the underlying stream.
+     *
+     * @param out the stream returned by {@link #wrap(OutputStream, int)}
+     * @throws IOException if the remaining data cannot be written
+     */
+    static void finish(OutputStream out) throws IOException {
+        if (out instanceof GZIPOutputStream gzip) {
+            gzip.finish();
+        }
+        out.flush();
+    }
+
+    /**
+     * Checks that a deflate level is valid.
+     *
+     * @param level the configured level
+     * @return the level
+     * @throws IllegalArgumentException if the level is not between 1 and 9
+     */
+    static int checkLevel(int level) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between 1 and 9, got " + level);
+        }
+        return level;
+    }
+}
@@ -0,0 +1,54 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Encodings supported for the data file.
+ *
+ * <p>JSON is the human-readable import/export format. SMILE is Jackson's binary JSON encoding: same data model,
+ * but smaller and much faster to parse, which shortens startup on large datasets. The format of an existing file
+ * is detected from its header, so either format can be loaded whatever format is configured for writing.
+ * Both can be compressed (see {@link SnapshotCompression}); the format is then detected from the inflated content.</p>
+ *
+ * <p>MAPPED stores every record as its own Smile document behind offset tables (see {@link MappedSnapshot}).
+ * The file can be memory-mapped and its records decoded one at a time, which is what read-only instances use.</p>
+ */
+public enum SnapshotFormat {
+    JSON,
+    SMILE,
+    MAPPED;
+
+    /** Every Smile document starts with ":)\n". */
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+    /**
+     * Detects the format of an existing data file from its first bytes.
+     *
+     * @param file the data file
+     * @return MAPPED or SMILE if the file starts with their header, JSON otherwise
+     * @throws IOException if the file cannot be read
+     */
+    public static SnapshotFormat detect(Path file) throws IOException {
+        try (InputStream in = SnapshotCompression.open(file)) {
+            byte[] header = in.readNBytes(MappedSnapshot.MAGIC.length);
+            if (startsWith(header, MappedSnapshot.MAGIC)) {
+                return MAPPED;
+            }
+            return startsWith(header, SMILE_HEADER) ? SMILE : JSON;
+        }
+    }
+
+    private static boolean startsWith(byte[] header, byte[] prefix) {
+        if (header.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (header[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,112 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a JSON or Smile snapshot token by token.
+ *
+ * <p>The parser walks the "persons", "firestations" and "medicalrecords" arrays and binds one record at a time,
+ * appending it to the list that the repositories will use as their storage. No intermediate tree or
+ * DataFile graph is built, and no copy is needed afterwards, so the heap used while loading is close to
+ * the size of the loaded data. The journal sequence of the snapshot is read as well, and unknown top-level fields
+ * are skipped.</p>
+ *
+ * <p>Compressed files are inflated while they are parsed (see {@link SnapshotCompression}).</p>
+ */
+public class SnapshotReader {
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader personReader;
+    private final ObjectReader fireStationReader;
+    private final ObjectReader medicalRecordReader;
+
+    /**
+     * @param objectMapper the ObjectMapper whose factory matches the snapshot encoding
+     */
+    public SnapshotReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.personReader = objectMapper.readerFor(Person.class);
+        this.fireStationReader = objectMapper.readerFor(FireStation.class);
+        this.medicalRecordReader = objectMapper.readerFor(MedicalRecord.class);
+    }
+
+    /**
+     * Reads the snapshot stored in the given file, compressed or not.
+     *
+     * @param file the snapshot file
+     * @return the loaded data, held in mutable lists
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public DataFile read(Path file) throws IOException {
+        return read(SnapshotCompression.open(file));
+    }
+
+    /**
+     * Reads a snapshot from the given stream, which is closed afterwards.
+     *
+     * @param in the snapshot content
+     * @return the loaded data, held in mutable lists
+     * @throws IOException if the stream cannot be read or is not a valid snapshot
+     */
+    public DataFile read(InputStream in) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            return read(parser);
+        }
+    }
+
+    private DataFile read(JsonParser parser) throws IOException {
+        DataFile dataFile = new DataFile();
+        dataFile.setPersons(new ArrayList<>());
+        dataFile.setFireStations(new ArrayList<>());
+        dataFile.setMedicalRecords(new ArrayList<>());
+
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected an object at the root of the snapshot");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "persons" -> readArray(parser, personReader, dataFile.getPersons());
+                case "firestations" -> readArray(parser, fireStationReader, dataFile.getFireStations());
+                case "medicalrecords" -> readArray(parser, medicalRecordReader, dataFile.getMedicalRecords());
+                case "journalSequence" -> dataFile.setJournalSequence(
+                        parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getLongValue());
+                default -> parser.skipChildren();
+            }
+        }
+        return dataFile;
+    }
+
+    private <T> void readArray(JsonParser parser, ObjectReader reader, List<T> records) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return;
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected an array of records for '" + parser.currentName() + "'");
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new JsonParseException(parser, "Unexpected end of snapshot");
+            }
+            if (token != JsonToken.VALUE_NULL) {
+                records.add(reader.readValue(parser));
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a snapshot of the data to disk without ever exposing a partially written file.
+ *
+ * <p>The snapshot is streamed record by record with a compact JsonGenerator into a temporary file
+ * in the target folder, through a buffered FileChannel. The file is forced to disk and then atomically
+ * renamed over the target, so a reader sees either the previous snapshot or the new one.</p>
+ *
+ * <p>The content can be compressed on the fly (see {@link SnapshotCompression}).</p>
+ */
+public class SnapshotWriter {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    protected final ObjectMapper objectMapper;
+    private final ObjectWriter recordWriter;
+    private final SnapshotCompression compression;
+    private final int compressionLevel;
+
+    public SnapshotWriter(ObjectMapper objectMapper) {
+        this(objectMapper, SnapshotCompression.NONE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param objectMapper     the ObjectMapper whose factory sets the snapshot encoding
+     * @param compression      the compression applied to the snapshot
+     * @param compressionLevel the deflate level, from 1 to 9, when the snapshot is compressed
+     */
+    public SnapshotWriter(ObjectMapper objectMapper, SnapshotCompression compression, int compressionLevel) {
+        this.objectMapper = objectMapper;
+        // Records are flushed by the buffer, not one by one
+        this.recordWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.compression = compression;
+        this.compressionLevel = compression == SnapshotCompression.NONE
+                ? compressionLevel
+                : SnapshotCompression.checkLevel(compressionLevel);
+    }
+
+    /**
+     * Writes the given snapshot to the target file.
+     *
+     * @param snapshot the data to write; it must not be modified while it is written
+     * @param target   the file to replace
+     * @return the number of bytes written
+     * @throws IOException if the snapshot cannot be written or moved into place
+     */
+    public long write(DataFile snapshot, Path target) throws IOException {
+        Path folder = target.toAbsolutePath().getParent();
+        Files.createDirectories(folder);
+        Path temp = Files.createTempFile(folder, target.getFileName().toString(), ".tmp");
+        try {
+            long written;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                written = writeContent(snapshot, channel);
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return written;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes the snapshot content to the temporary file.
+     *
+     * <p>The default layout is one document holding the "persons", "firestations" and "medicalrecords" arrays,
+     * streamed record by record. A collection left null in the snapshot is not written, which is how the
+     * file of a single collection is produced.</p>
+     *
+     * @param snapshot the data to write
+     * @param channel  the channel of the empty temporary file; it is forced and closed by the caller
+     * @return the number of bytes written to the file, after compression
+     * @throws IOException if the content cannot be written
+     */
+    protected long writeContent(DataFile snapshot, FileChannel channel) throws IOException {
+        OutputStream out = compression.wrap(
+                new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), compressionLevel);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.writeStartObject();
+            if (snapshot.getJournalSequence() != null) {
+                generator.writeNumberField("journalSequence", snapshot.getJournalSequence());
+            }
+            writeArray(generator, "persons", snapshot.getPersons());
+            writeArray(generator, "firestations", snapshot.getFireStations());
+            writeArray(generator, "medicalrecords", snapshot.getMedicalRecords());
+            generator.writeEndObject();
+            generator.flush();
+        }
+        SnapshotCompression.finish(out);
+        return channel.position();
+    }
+
+    private void writeArray(JsonGenerator generator, String name, List<?> records) throws IOException {
+        if (records == null) {
+            return;
+        }
+        generator.writeArrayFieldStart(name);
+        for (Object record : records) {
+            recordWriter.writeValue(generator, record);
+        }
+        generator.writeEndArray();
+    }
+}
@@ -0,0 +1,54 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+/**
+ * American Soundex codes, which are equal for names that sound alike in English, such as "Boyd" and "Boid".
+ *
+ * <p>A code is the first letter of the name followed by three digits, one per group of consonants that sound
+ * alike; vowels separate two consonants of the same group, while H and W do not. Characters other than ASCII
+ * letters are ignored.</p>
+ */
+final class Soundex {
+
+    /**
+     * The digit of each letter from A to Z; 0 for vowels and Y, which separate consonants, and - for H and W.
+     */
+    private static final String DIGITS = "0123012-02245501262301-202";
+
+    private Soundex() {
+    }
+
+    /**
+     * @param value the value to encode, may be null
+     * @return the Soundex code of the value, in upper case; empty if it has no ASCII letter
+     */
+    static String encode(String value) {
+        if (value == null) {
+            return "";
+        }
+        char[] code = new char[4];
+        int size = 0;
+        char previous = 0;
+        for (int i = 0; i < value.length() && size < code.length; i++) {
+            char letter = Character.toUpperCase(value.charAt(i));
+            if (letter < 'A' || letter > 'Z') {
+                continue;
+            }
+            char digit = DIGITS.charAt(letter - 'A');
+            if (size == 0) {
+                code[size++] = letter;
+            } else if (digit != '0' && digit != '-' && digit != previous) {
+                code[size++] = digit;
+            }
+            if (digit != '-') {
+                previous = digit;
+            }
+        }
+        if (size == 0) {
+            return "";
+        }
+        while (size < code.length) {
+            code[size++] = '0';
+        }
+        return new String(code);
+    }
+}
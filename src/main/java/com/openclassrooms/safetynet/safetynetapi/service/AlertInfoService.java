@@ -5,10 +5,13 @@ import com.openclassrooms.safetynet.safetynetapi.exception.FireStationNotFoundEx
 import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
 import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
 import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import com.openclassrooms.safetynet.safetynetapi.repository.CanonicalKeys;
 import com.openclassrooms.safetynet.safetynetapi.repository.FireStationRepository;
+import com.openclassrooms.safetynet.safetynetapi.repository.Household;
 import com.openclassrooms.safetynet.safetynetapi.repository.MedicalRecordRepository;
 import com.openclassrooms.safetynet.safetynetapi.repository.PersonRepository;
 import com.openclassrooms.safetynet.safetynetapi.util.AgeUtil;
+import com.openclassrooms.safetynet.safetynetapi.util.EditDistanceUtil;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -32,33 +35,74 @@ public class AlertInfoService {
     /**
      * Retrieves a list of unique email addresses of all persons living in the specified city.
      * <p>
-     * This method filters persons by city, extracts their emails, and removes duplicates.
+     * The distinct emails of each city are maintained by the repository, so no person is filtered here.
      * </p>
      *
      * @param city the name of the city for which to retrieve email addresses
      * @return a list of distinct email addresses of residents in the given city
      */
     public List<String> getEmailsByCity(String city) {
-        List<Person> persons = personRepository.findByCity(city);
-        return persons.stream().map(Person::getEmail).distinct().collect(Collectors.toList());
+        return personRepository.findEmailsByCity(city);
     }
 
     /**
      * Retrieves a list of PersonInfoDto objects for all persons matching the given last name.
      * <p>
-     * For each person found, this method fetches their medical record to include
+     * Each person found comes with the medical record the repository linked it to, which gives
      * age (calculated from birthdate), medications, and allergies.
      *
      * @param lastName the last name to search for
      * @return a list of PersonInfoDto containing personal and medical information
      */
     public List<PersonInfoDto> getPersonInfoByLastName(String lastName) {
-        List<Person> persons = personRepository.findByLastName(lastName);
+        return toPersonInfo(personRepository.findResidentsByLastName(lastName));
+    }
+
+    /**
+     * Retrieves a list of PersonInfoDto objects for all persons matching the given last name, or, in fuzzy mode,
+     * a last name sounding like it.
+     * <p>
+     * In fuzzy mode, the candidate last names come from the phonetic index of the repository, so that a misspelled
+     * last name such as "Boid" still finds the Boyd family. The candidates are ranked by their edit distance to the
+     * given last name, the exact last name first, and their persons are returned in that order.
+     * </p>
+     *
+     * @param lastName the last name to search for
+     * @param fuzzy    true to also return the persons whose last name sounds like the given one
+     * @return a list of PersonInfoDto containing personal and medical information
+     */
+    public List<PersonInfoDto> getPersonInfoByLastName(String lastName, boolean fuzzy) {
+        if (!fuzzy) {
+            return getPersonInfoByLastName(lastName);
+        }
+        String key = CanonicalKeys.of(lastName);
+        Map<String, Integer> distances = new HashMap<>();
+        for (String candidate : personRepository.findLastNamesSoundingLike(lastName)) {
+            distances.put(candidate, EditDistanceUtil.levenshtein(key, candidate));
+        }
+        List<String> candidates = new ArrayList<>(distances.keySet());
+        candidates.sort(Comparator.comparing((String candidate) -> distances.get(candidate)).thenComparing(Comparator.naturalOrder()));
+        log.debug("Last names sounding like {}: {}", lastName, candidates);
+
+        List<PersonInfoDto> result = new ArrayList<>();
+        for (String candidate : candidates) {
+            result.addAll(getPersonInfoByLastName(candidate));
+        }
+        return result;
+    }
+
+    /**
+     * Builds the PersonInfoDto of each person having a medical record.
+     *
+     * @param residents the persons found, with their medical record
+     * @return the personal and medical information of the persons, in their order
+     */
+    private List<PersonInfoDto> toPersonInfo(List<Household.Resident> residents) {
         List<PersonInfoDto> result = new ArrayList<>();
 
-        for (Person person : persons) {
-            MedicalRecord record = medicalRecordRepository.getMedicalRecordByFirstNameAndLastName(
-                    person.getFirstName(), person.getLastName());
+        for (Household.Resident resident : residents) {
+            Person person = resident.person();
+            MedicalRecord record = resident.medicalRecord();
 
             if (record != null) {
                 int age = AgeUtil.calculateAge(record.getBirthdate());
@@ -86,10 +130,11 @@ public class AlertInfoService {
      * Retrieves a list of children (aged 18 or under) living at the specified address,
      * along with their household members.
      *
-     * <p>For each person found at the address, the method attempts to retrieve their medical record
-     * to determine their age. If the person is 18 years old or younger, they are considered a child.
+     * <p>The household at the address is maintained by the repositories, each resident along with their medical
+     * record. A resident having a medical record and aged 18 or younger is considered a child.
      * The result includes their first name, last name, age, and a list of other household members
-     * (excluding the child himself).</p>
+     * (excluding the child himself). The members are built once for the household, and each child gets
+     * those of another name.</p>
      *
      * @param address the address to search for children
      * @return a list of ChildDTO objects representing each child and their household members.
@@ -97,49 +142,57 @@ public class AlertInfoService {
      */
     public List<ChildDTO> getChildrenByAddress(String address) {
 
-        // 1- Retrieve all persons living at the given address
-        List<Person> personsAtAddress = personRepository.getPersonByAddress(address);
+        // 1- Retrieve the household living at the given address
+        Household household = personRepository.getHousehold(address);
 
-        if (personsAtAddress.isEmpty()) {
+        if (household == null || household.getResidents().isEmpty()) {
             log.warn("[getChildrenByAddress] No residents found at address {}", address);
             return Collections.emptyList();
         }
-        // 2- For each person:
-        //    -- calculate their age using their medical record
+        List<Household.Resident> residents = household.getResidents();
+
+        // 2- Build the household members once, along with their names
+        List<HouseholdMembersDTO> members = new ArrayList<>(residents.size());
+        List<CanonicalKeys.Name> names = new ArrayList<>(residents.size());
+        for (Household.Resident resident : residents) {
+            HouseholdMembersDTO dto = new HouseholdMembersDTO();
+            dto.setFirstName(resident.person().getFirstName());
+            dto.setLastName(resident.person().getLastName());
+            members.add(dto);
+            names.add(CanonicalKeys.name(resident.person().getFirstName(), resident.person().getLastName()));
+        }
+
+        // 3- For each resident:
         //    -- if age ≤ 18 → they are considered a child
-        //    -- add other household members (excluding the child) to the DTO
+        //    -- add the members of another name (excluding the child) to the DTO
         List<ChildDTO> children = new ArrayList<>();
-        for (Person person : personsAtAddress) {
-            MedicalRecord record = medicalRecordRepository.getMedicalRecordByFirstNameAndLastName(person.getFirstName(), person.getLastName());
-            if (record == null) {
+        for (int i = 0; i < residents.size(); i++) {
+            Household.Resident resident = residents.get(i);
+            Person person = resident.person();
+            if (resident.medicalRecord() == null) {
                 log.warn("[getChildrenByAddress] No medical record found for {} {}", person.getFirstName(), person.getLastName());
                 continue;
             } // No medical record → skip
-            int age = AgeUtil.calculateAge(record.getBirthdate());
-            if (age <= 18) {
+            int age = resident.getAge();
+            if (age <= Household.CHILD_MAX_AGE) {
                 ChildDTO child = new ChildDTO();
                 child.setFirstName(person.getFirstName());
                 child.setLastName(person.getLastName());
                 child.setAge(age);
 
                 // Household members excluding the child
-                List<HouseholdMembersDTO> otherMembers = personsAtAddress.stream()
-                        .filter(p -> !(p.getFirstName().equalsIgnoreCase(person.getFirstName())
-                                && p.getLastName().equalsIgnoreCase(person.getLastName())))
-                        .map(p -> {
-                            HouseholdMembersDTO dto = new HouseholdMembersDTO();
-                            dto.setFirstName(p.getFirstName());
-                            dto.setLastName(p.getLastName());
-                            return dto;
-                        })
-                        .collect(Collectors.toList());
-
+                List<HouseholdMembersDTO> otherMembers = new ArrayList<>(members.size() - 1);
+                for (int j = 0; j < members.size(); j++) {
+                    if (!names.get(j).equals(names.get(i))) {
+                        otherMembers.add(members.get(j));
+                    }
+                }
                 child.setHouseholdMembers(otherMembers);
 
                 children.add(child);
             }
         }
-        // 3- Return the list of ChildDTO
+        // 4- Return the list of ChildDTO
         return children;
     }
 
@@ -150,8 +203,8 @@ public class AlertInfoService {
      * <ol>
      *   <li>Fetches all fire stations associated with the provided station number.</li>
      *   <li>Extracts the addresses covered by these fire stations.</li>
-     *   <li>Retrieves all persons living at those addresses.</li>
-     *   <li>Extracts and returns a list of distinct phone numbers from these persons.</li>
+     *   <li>Retrieves the household living at each of those addresses.</li>
+     *   <li>Extracts and returns a list of distinct phone numbers from their residents.</li>
      * </ol>
      *
      * @param stationNumber the fire station number to search for
@@ -175,7 +228,9 @@ public class AlertInfoService {
         // 3. Retrieve all persons living at these addresses
         List<Person> personsCovered = new ArrayList<>();
         for (String address : addresses) {
-            personsCovered.addAll(personRepository.getPersonByAddress(address));
+            for (Household.Resident resident : residentsAt(address)) {
+                personsCovered.add(resident.person());
+            }
         }
         log.debug("Found {} persons covered by this station", personsCovered.size());
 
@@ -197,7 +252,7 @@ public class AlertInfoService {
      * This includes:
      * <ul>
      *   <li>All persons living at addresses associated with the fire station</li>
-     *   <li>Counts of adults (age > 18) and children (age ≤ 18)</li>
+     *   <li>Counts of adults (age > 18) and children (age ≤ 18), as counted by each household</li>
      *   <li>A list of basic person information (first name, last name, address, phone)</li>
      * </ul>
      *
@@ -219,43 +274,36 @@ public class AlertInfoService {
             throw new FireStationNotFoundException("No addresses found for station number: " + stationNumber);
         }
 
-        // 2- Retrieve all persons living at these addresses
-        List<Person> personsCovered = new ArrayList<>();
-        for (String address : addresses) {
-            personsCovered.addAll(personRepository.getPersonByAddress(address));
-        }
-        log.debug("Found {} persons covered by station number {}", personsCovered.size(), stationNumber);
-
-        // 3- Count adults and children, and build DTO list
+        // 2- Add up the adults and children of the household at each address, and build DTO list
         int nbChildren = 0;
         int nbAdults = 0;
         List<CoveredPersonsDTO> dtoList = new ArrayList<>();
 
-        for (Person person : personsCovered) {
-            MedicalRecord record = medicalRecordRepository.getMedicalRecordByFirstNameAndLastName(person.getFirstName(), person.getLastName());
-
-            if (record == null) {
-                log.warn("[getPersonsCoveredByStation] No medical record found for {} {}", person.getFirstName(), person.getLastName());
-                continue; // Skip person if no medical record
+        for (String address : addresses) {
+            Household household = personRepository.getHousehold(address);
+            if (household == null) {
+                continue;
             }
-            int age = AgeUtil.calculateAge(record.getBirthdate());
-            if (age <= 18) {
-                nbChildren++;
-                log.debug("Incrementing the number of children");
-            } else {
-                nbAdults++;
-                log.debug("Incrementing the number of adults");
+            nbChildren += household.getChildCount();
+            nbAdults += household.getAdultCount();
+
+            for (Household.Resident resident : household.getResidents()) {
+                Person person = resident.person();
+                if (resident.medicalRecord() == null) {
+                    log.warn("[getPersonsCoveredByStation] No medical record found for {} {}", person.getFirstName(), person.getLastName());
+                    continue; // Skip person if no medical record
+                }
+                CoveredPersonsDTO dto = new CoveredPersonsDTO();
+                dto.setFirstName(person.getFirstName());
+                dto.setLastName(person.getLastName());
+                dto.setAddress(person.getAddress());
+                dto.setPhone(person.getPhone());
+                dtoList.add(dto);
             }
-
-            CoveredPersonsDTO dto = new CoveredPersonsDTO();
-            dto.setFirstName(person.getFirstName());
-            dto.setLastName(person.getLastName());
-            dto.setAddress(person.getAddress());
-            dto.setPhone(person.getPhone());
-            dtoList.add(dto);
         }
+        log.debug("Found {} persons covered by station number {}", dtoList.size(), stationNumber);
 
-        // 4- Build and return the final response DTO
+        // 3- Build and return the final response DTO
 
         CoveredPersonsByStationDTO responseDTO = new CoveredPersonsByStationDTO();
         responseDTO.setCoveredPersons(dtoList);
@@ -266,7 +314,10 @@ public class AlertInfoService {
 
     protected FirePersonInfoDTO buildFirePersonInfoDTO(Person person){
         MedicalRecord medicalRecord = medicalRecordRepository.getMedicalRecordByFirstNameAndLastName(person.getFirstName(), person.getLastName());
+        return buildFirePersonInfoDTO(person, medicalRecord);
+    }
 
+    private FirePersonInfoDTO buildFirePersonInfoDTO(Person person, MedicalRecord medicalRecord) {
         int age = -1;
         List<String> medications = Collections.emptyList();
         List<String> allergies = Collections.emptyList();
@@ -296,9 +347,8 @@ public class AlertInfoService {
      *
      * <p>This method performs the following operations:
      * <ul>
-     *   <li>Finds the fire station assigned to the given address.</li>
-     *   <li>Fetches all persons residing at that address.</li>
-     *   <li>Retrieves each person's age, medications, and allergies using their medical records.</li>
+     *   <li>Retrieves the household at the address, which knows the fire station covering it.</li>
+     *   <li>Retrieves each resident's age, medications, and allergies from their medical record.</li>
      *   <li>Builds and returns a FireStationResidentsDTO containing the station number and a list of detailed resident info.</li>
      * </ul>
      *
@@ -308,17 +358,17 @@ public class AlertInfoService {
      */
     public FireStationResidentsDTO getResidentsByAddress(String address) {
 
-        //1 - Find the fire station using the address
-        FireStation fireStation = fireStationRepository.getFireStationByAddress(address);
-        if (fireStation == null) {
+        //1 - Find the household and its fire station using the address
+        Household household = personRepository.getHousehold(address);
+        if (household == null || household.getStation() == null) {
             log.warn("[getResidentsByAddress] No fire station found for address {}", address);
             throw new FireStationNotFoundException("No fire station found for address: " + address);
         }
 
-        int stationNumber = fireStation.getStation();
+        int stationNumber = household.getStation();
 
         //2 - Find the residents at the address
-        List<Person> residents = personRepository.getPersonByAddress(address);
+        List<Household.Resident> residents = household.getResidents();
         log.info("{} resident(s) found at address {}", residents.size(), address);
 
         if (residents.isEmpty()) {
@@ -330,15 +380,10 @@ public class AlertInfoService {
 
         //3 - Build the detailed list of residents
         List<FirePersonInfoDTO> detailedResidents = new ArrayList<>();
-        for (Person person : residents) {
-            FirePersonInfoDTO infoDto = buildFirePersonInfoDTO(person);
+        for (Household.Resident resident : residents) {
+            FirePersonInfoDTO infoDto = buildFirePersonInfoDTO(resident.person(), resident.medicalRecord());
             detailedResidents.add(infoDto);
         }
-/*
-    List<FirePersonInfoDTO> detailedResidents = residents.stream()
-            .map(this::buildFirePersonInfoDTO)
-            .collect(Collectors.toList());
-        */
         //4 - Return le DTO final
         return new FireStationResidentsDTO(stationNumber, detailedResidents);
     }
@@ -369,11 +414,9 @@ public class AlertInfoService {
         //3. For each address, build the residents with their medical info and add them to the resul
 
         for (String address : addresses) {
-            List<Person> residents = personRepository.getPersonByAddress(address);
-
             List<FirePersonInfoDTO> residentDtos = new ArrayList<>();
-            for (Person person : residents) {
-                FirePersonInfoDTO dto = buildFirePersonInfoDTO(person);
+            for (Household.Resident resident : residentsAt(address)) {
+                FirePersonInfoDTO dto = buildFirePersonInfoDTO(resident.person(), resident.medicalRecord());
                 residentDtos.add(dto);
             }
 
@@ -384,4 +427,13 @@ public class AlertInfoService {
         // 4. Return the complete list
         return result;
     }
+
+    /**
+     * @param address the address of the household
+     * @return the residents of the household at this address; empty if nobody lives there
+     */
+    private List<Household.Resident> residentsAt(String address) {
+        Household household = personRepository.getHousehold(address);
+        return household == null ? Collections.emptyList() : household.getResidents();
+    }
 }
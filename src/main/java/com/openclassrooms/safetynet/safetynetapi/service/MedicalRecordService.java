@@ -5,6 +5,7 @@ import com.openclassrooms.safetynet.safetynetapi.exception.MedicalRecordAlreadyE
 import com.openclassrooms.safetynet.safetynetapi.exception.MedicalRecordNotFoundException;
 import com.openclassrooms.safetynet.safetynetapi.exception.PersonNotFoundException;
 import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.repository.CanonicalKeys;
 import com.openclassrooms.safetynet.safetynetapi.repository.MedicalRecordRepository;
 import com.openclassrooms.safetynet.safetynetapi.repository.PersonRepository;
 import com.openclassrooms.safetynet.safetynetapi.service.mapper.MedicalRecordMapper;
@@ -12,7 +13,9 @@ import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Service layer for managing medical records.
@@ -118,6 +121,48 @@ public class MedicalRecordService {
         return medicalRecordMapper.toDTO(updated);
     }
 
+    /**
+     * Saves several new medical records as one batch, persisted with a single write.
+     *
+     * <p>The whole batch is validated inside the batch, before any record is saved: if a person does not exist, or already has a
+     * medical record, or appears twice in the batch, nothing is saved.</p>
+     *
+     * @param medicalRecordDTOs the medical records to save
+     * @return the saved MedicalRecordDTO objects
+     * @throws PersonNotFoundException             if a person does not exist
+     * @throws MedicalRecordAlreadyExistsException if a medical record already exists or is duplicated in the batch
+     */
+    public List<MedicalRecordDTO> saveAllMedicalRecords(List<MedicalRecordDTO> medicalRecordDTOs) {
+        log.info("Request received to save {} medical records", medicalRecordDTOs.size());
+
+        // Validated inside the batch, which holds the mutation lock, so that no concurrent change slips in between
+        List<MedicalRecord> saved = medicalRecordRepository.inBatch(() -> {
+            Set<CanonicalKeys.Name> names = new HashSet<>();
+            for (MedicalRecordDTO medicalRecordDTO : medicalRecordDTOs) {
+                if (!isPersonExists(medicalRecordDTO.getFirstName(), medicalRecordDTO.getLastName())) {
+                    log.error("Person does not exist: {} {}", medicalRecordDTO.getFirstName(), medicalRecordDTO.getLastName());
+                    throw new PersonNotFoundException("Person not found: " + medicalRecordDTO.getFirstName() + " " + medicalRecordDTO.getLastName());
+                }
+                CanonicalKeys.Name name = CanonicalKeys.name(medicalRecordDTO.getFirstName(), medicalRecordDTO.getLastName());
+                if (!names.add(name) || isMedicalRecodExists(medicalRecordDTO)) {
+                    log.error("Medical record already exists for {} {}",
+                            medicalRecordDTO.getFirstName(), medicalRecordDTO.getLastName());
+                    throw new MedicalRecordAlreadyExistsException(
+                            "Medical record already exists for " +
+                                    medicalRecordDTO.getFirstName() + " " + medicalRecordDTO.getLastName());
+                }
+            }
+
+            return medicalRecordDTOs.stream()
+                    .map(medicalRecordMapper::toEntity)
+                    .map(medicalRecordRepository::saveMedicalRecord)
+                    .toList();
+        });
+
+        log.info("{} medical records saved in one batch", saved.size());
+        return saved.stream().map(medicalRecordMapper::toDTO).toList();
+    }
+
     /**
      * Updates an existing medical record in the system.
      *
@@ -132,7 +177,7 @@ public class MedicalRecordService {
             log.error("Medical record does not exist for {} {}",
                     medicalRecordDTO.getFirstName(), medicalRecordDTO.getLastName());
             throw new MedicalRecordNotFoundException(
-                    "Medical does not exist for " +
+                    "Medical record does not exist for " +
                             medicalRecordDTO.getFirstName() + " " + medicalRecordDTO.getLastName());
         }
 
@@ -149,6 +194,40 @@ public class MedicalRecordService {
         return medicalRecordMapper.toDTO(updated);
     }
 
+    /**
+     * Updates several existing medical records as one batch, persisted with a single write.
+     *
+     * <p>The whole batch is validated inside the batch, before any record is updated: if one of them does not
+     * exist, nothing is updated.</p>
+     *
+     * @param medicalRecordDTOs the medical records containing updated data
+     * @return the updated MedicalRecordDTO objects
+     * @throws MedicalRecordNotFoundException if a medical record to update does not exist
+     */
+    public List<MedicalRecordDTO> updateAllMedicalRecords(List<MedicalRecordDTO> medicalRecordDTOs) {
+        log.info("Request received to update {} medical records", medicalRecordDTOs.size());
+
+        List<MedicalRecord> updated = medicalRecordRepository.inBatch(() -> {
+            for (MedicalRecordDTO medicalRecordDTO : medicalRecordDTOs) {
+                if (!isMedicalRecodExists(medicalRecordDTO)) {
+                    log.error("Medical record does not exist for {} {}",
+                            medicalRecordDTO.getFirstName(), medicalRecordDTO.getLastName());
+                    throw new MedicalRecordNotFoundException(
+                            "Medical record does not exist for " +
+                                    medicalRecordDTO.getFirstName() + " " + medicalRecordDTO.getLastName());
+                }
+            }
+
+            return medicalRecordDTOs.stream()
+                    .map(medicalRecordMapper::toEntity)
+                    .map(medicalRecordRepository::updateMedicalRecord)
+                    .toList();
+        });
+
+        log.info("{} medical records updated in one batch", updated.size());
+        return updated.stream().map(medicalRecordMapper::toDTO).toList();
+    }
+
     /**
      * Deletes a medical record identified by the given first and last name.
      *
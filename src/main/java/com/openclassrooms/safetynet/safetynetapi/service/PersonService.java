@@ -4,6 +4,7 @@ import com.openclassrooms.safetynet.safetynetapi.dto.PersonDTO;
 import com.openclassrooms.safetynet.safetynetapi.exception.PersonAlreadyExistsException;
 import com.openclassrooms.safetynet.safetynetapi.exception.PersonNotFoundException;
 import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import com.openclassrooms.safetynet.safetynetapi.repository.CanonicalKeys;
 import com.openclassrooms.safetynet.safetynetapi.repository.MedicalRecordRepository;
 import com.openclassrooms.safetynet.safetynetapi.repository.PersonRepository;
 import com.openclassrooms.safetynet.safetynetapi.service.mapper.PersonMapper;
@@ -12,7 +13,9 @@ import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -84,6 +87,33 @@ public class PersonService {
         return personMapper.toDTO(savedPerson);
     }
 
+    /**
+     * Saves several new persons as one batch, persisted with a single write.
+     * <p>
+     * The whole batch is validated inside the batch, before any person is saved: if one of them already exists,
+     * or appears twice in the batch, nothing is saved.
+     *
+     * @param personDTOs the persons to save
+     * @return the saved PersonDTO objects
+     * @throws PersonAlreadyExistsException if a person already exists or is duplicated in the batch
+     */
+    public List<PersonDTO> saveAll(List<PersonDTO> personDTOs) {
+        List<Person> persons = personDTOs.stream().map(personMapper::toEntity).toList();
+        // Validated inside the batch, which holds the mutation lock, so that no concurrent change slips in between
+        List<Person> saved = personRepository.inBatch(() -> {
+            Set<CanonicalKeys.Name> names = new HashSet<>();
+            for (Person person : persons) {
+                if (!names.add(nameKey(person))
+                        || personRepository.findByFirstNameAndLastName(person.getFirstName(), person.getLastName()) != null) {
+                    throw new PersonAlreadyExistsException("Person " + person.getFirstName() + " " + person.getLastName() + " already exists");
+                }
+            }
+            return persons.stream().map(personRepository::save).toList();
+        });
+        log.info("{} person(s) saved in one batch", saved.size());
+        return saved.stream().map(personMapper::toDTO).toList();
+    }
+
     /**
      * Updates an existing person in the repository.
      * <p>
@@ -104,6 +134,31 @@ public class PersonService {
         return personMapper.toDTO(updatedPerson);
     }
 
+    /**
+     * Updates several existing persons as one batch, persisted with a single write.
+     * <p>
+     * The whole batch is validated inside the batch, before any person is updated: if one of them does not exist,
+     * nothing is updated.
+     *
+     * @param personDTOs the person data to update
+     * @return the updated PersonDTO objects
+     * @throws PersonNotFoundException if a person does not exist
+     */
+    public List<PersonDTO> updateAll(List<PersonDTO> personDTOs) {
+        List<Person> persons = personDTOs.stream().map(personMapper::toEntity).toList();
+        List<Person> updated = personRepository.inBatch(() -> {
+            for (Person person : persons) {
+                if (personRepository.findByFirstNameAndLastName(person.getFirstName(), person.getLastName()) == null) {
+                    throw new PersonNotFoundException("Cannot update, person not found: " +
+                            person.getFirstName() + " " + person.getLastName());
+                }
+            }
+            return persons.stream().map(personRepository::update).toList();
+        });
+        log.info("{} person(s) updated in one batch", updated.size());
+        return updated.stream().map(personMapper::toDTO).toList();
+    }
+
     /**
      * Deletes a person identified by first name and last name.
      * <p>
@@ -125,4 +180,7 @@ public class PersonService {
         personRepository.deleteFirstOccurrence(firstName, lastName);
     }
 
+    private static CanonicalKeys.Name nameKey(Person person) {
+        return CanonicalKeys.name(person.getFirstName(), person.getLastName());
+    }
 }
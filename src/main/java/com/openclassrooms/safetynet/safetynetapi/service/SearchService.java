@@ -0,0 +1,56 @@
+package com.openclassrooms.safetynet.safetynetapi.service;
+
+import com.openclassrooms.safetynet.safetynetapi.dto.SuggestionsDTO;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import com.openclassrooms.safetynet.safetynetapi.repository.CanonicalKeys;
+import com.openclassrooms.safetynet.safetynetapi.repository.FireStationRepository;
+import com.openclassrooms.safetynet.safetynetapi.repository.PersonRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.TreeMap;
+
+@Log4j2
+@Service
+public class SearchService {
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private FireStationRepository fireStationRepository;
+
+    /**
+     * Suggests the names and addresses starting with a partially typed query.
+     * <p>
+     * Names come from the persons, matched on their first or last name. Addresses come from both the persons and
+     * the fire station mappings, so that an address covered by a station but without residents is suggested too.
+     * Each repository returns at most {@code limit} suggestions from its prefix index, so the time taken does not
+     * depend on the number of records.
+     * </p>
+     *
+     * @param query the typed prefix (case-insensitive, ignoring extra whitespace)
+     * @param limit the maximum number of names, and of addresses
+     * @return the suggested names and addresses, each in alphabetical order
+     */
+    public SuggestionsDTO suggest(String query, int limit) {
+        List<String> names = personRepository.suggestByName(query, limit).stream()
+                .map(person -> person.getFirstName() + " " + person.getLastName())
+                .toList();
+
+        // Merge the addresses of both repositories, by canonical key to drop the duplicates
+        TreeMap<String, String> addresses = new TreeMap<>();
+        for (Person person : personRepository.suggestByAddress(query, limit)) {
+            addresses.putIfAbsent(CanonicalKeys.of(person.getAddress()), person.getAddress());
+        }
+        for (FireStation fireStation : fireStationRepository.suggestByAddress(query, limit)) {
+            addresses.putIfAbsent(CanonicalKeys.of(fireStation.getAddress()), fireStation.getAddress());
+        }
+
+        log.debug("{} name(s) and {} address(es) suggested for '{}'", names.size(), Math.min(addresses.size(), limit), query);
+        return new SuggestionsDTO(names, addresses.values().stream().limit(limit).toList());
+    }
+}
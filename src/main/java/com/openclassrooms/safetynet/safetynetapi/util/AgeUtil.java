@@ -11,6 +11,17 @@ public class AgeUtil {
      * @return the calculated age in years
      */
     public static int calculateAge(LocalDate birthDate) {
-        return Period.between(birthDate, LocalDate.now()).getYears();
+        return calculateAge(birthDate, LocalDate.now());
+    }
+
+    /**
+     * Calculates the age in years reached on the given date.
+     *
+     * @param birthDate the birthdate
+     * @param date      the date of the age
+     * @return the calculated age in years
+     */
+    public static int calculateAge(LocalDate birthDate, LocalDate date) {
+        return Period.between(birthDate, date).getYears();
     }
 }
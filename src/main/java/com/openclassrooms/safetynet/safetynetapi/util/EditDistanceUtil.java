@@ -0,0 +1,30 @@
+package com.openclassrooms.safetynet.safetynetapi.util;
+
+public class EditDistanceUtil {
+    /**
+     * Calculates the Levenshtein distance between two strings: the number of characters to insert, delete or
+     * replace to turn one into the other.
+     *
+     * @param source the first string
+     * @param target the second string
+     * @return the edit distance, 0 if the strings are equal
+     */
+    public static int levenshtein(String source, String target) {
+        int[] previous = new int[target.length() + 1];
+        int[] current = new int[target.length() + 1];
+        for (int j = 0; j <= target.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= source.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= target.length(); j++) {
+                int cost = source.charAt(i - 1) == target.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[target.length()];
+    }
+}
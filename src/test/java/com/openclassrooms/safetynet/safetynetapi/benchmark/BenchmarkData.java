@@ -0,0 +1,99 @@
+package com.openclassrooms.safetynet.safetynetapi.benchmark;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic datasets for the benchmarks.
+ *
+ * <p>Persons live in households of about four people, every household address is covered by one of
+ * a hundred fire stations, and every person has a medical record. The generator is seeded, so
+ * a given size always produces the same data.</p>
+ */
+public final class BenchmarkData {
+
+    static final int PERSONS_PER_HOUSEHOLD = 4;
+    static final int STATIONS = 100;
+    static final int CITIES = 50;
+
+    private static final String[] MEDICATIONS = {"aznol:350mg", "hydrapermazol:100mg", "pharmacol:5000mg", "terazine:10mg"};
+    private static final String[] ALLERGIES = {"nillacilan", "peanut", "shellfish"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Returns the dataset sizes to run, from the "benchmark.persons" system property
+     * (comma-separated) or the given defaults.
+     */
+    static int[] sizes(int... defaults) {
+        String property = System.getProperty("benchmark.persons");
+        if (property == null || property.isBlank()) {
+            return defaults;
+        }
+        return Arrays.stream(property.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    static DataFile generate(int personCount) {
+        Random random = new Random(personCount);
+        int households = Math.max(1, personCount / PERSONS_PER_HOUSEHOLD);
+
+        List<Person> persons = new ArrayList<>(personCount);
+        List<MedicalRecord> medicalRecords = new ArrayList<>(personCount);
+        for (int i = 0; i < personCount; i++) {
+            int household = i % households;
+            String firstName = "First" + i;
+            String lastName = lastName(household);
+            persons.add(new Person(firstName, lastName, address(household), city(household),
+                    String.valueOf(10000 + household % 90000),
+                    String.format("841-%03d-%04d", household % 1000, i % 10000),
+                    firstName.toLowerCase() + "." + lastName.toLowerCase() + "@email.com"));
+            medicalRecords.add(new MedicalRecord(firstName, lastName,
+                    LocalDate.of(1930 + random.nextInt(95), 1 + random.nextInt(12), 1 + random.nextInt(28)),
+                    List.of(MEDICATIONS[random.nextInt(MEDICATIONS.length)]),
+                    random.nextBoolean() ? List.of(ALLERGIES[random.nextInt(ALLERGIES.length)]) : List.of()));
+        }
+
+        List<FireStation> fireStations = new ArrayList<>(households);
+        for (int household = 0; household < households; household++) {
+            fireStations.add(new FireStation(address(household), 1 + household % STATIONS));
+        }
+
+        DataFile dataFile = new DataFile();
+        dataFile.setPersons(persons);
+        dataFile.setFireStations(fireStations);
+        dataFile.setMedicalRecords(medicalRecords);
+        return dataFile;
+    }
+
+    static String address(int household) {
+        return (1 + household % 9999) + " Benchmark St " + household / 9999;
+    }
+
+    /**
+     * Spells the household number in letters, least significant first, so that last names spread over many
+     * Soundex codes as real ones do.
+     */
+    static String lastName(int household) {
+        StringBuilder name = new StringBuilder();
+        int remaining = household;
+        do {
+            name.append((char) ('a' + remaining % 26));
+            remaining /= 26;
+        } while (remaining > 0);
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.append("son").toString();
+    }
+
+    static String city(int household) {
+        return "City" + household % CITIES;
+    }
+}
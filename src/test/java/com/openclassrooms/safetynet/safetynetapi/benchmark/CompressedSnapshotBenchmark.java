@@ -0,0 +1,72 @@
+package com.openclassrooms.safetynet.safetynetapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotCompression;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotFormat;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotReader;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the size, save time and load time of plain and gzip-compressed JSON and Smile snapshots.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=CompressedSnapshotBenchmark}; other sizes can be given with
+ * {@code -Dbenchmark.persons=10000}.</p>
+ */
+class CompressedSnapshotBenchmark {
+
+    private static final int[] LEVELS = {1, 6, 9};
+    private static final int WARMUP_RUNS = 1;
+    private static final int MEASURED_RUNS = 3;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final ObjectMapper smileMapper = objectMapper.copyWith(new SmileFactory());
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void saveAndLoad_plainVersusGzip() throws Exception {
+        System.out.printf("%-10s %-6s %-11s %12s %10s %10s%n", "persons", "format", "compression", "size (KB)", "save (ms)", "load (ms)");
+        for (int persons : BenchmarkData.sizes(100_000)) {
+            DataFile data = BenchmarkData.generate(persons);
+            for (SnapshotFormat format : new SnapshotFormat[]{SnapshotFormat.JSON, SnapshotFormat.SMILE}) {
+                ObjectMapper mapper = format == SnapshotFormat.JSON ? objectMapper : smileMapper;
+                report(persons, format, "none", data, new SnapshotWriter(mapper), new SnapshotReader(mapper));
+                for (int level : LEVELS) {
+                    report(persons, format, "gzip-" + level, data,
+                            new SnapshotWriter(mapper, SnapshotCompression.GZIP, level), new SnapshotReader(mapper));
+                }
+            }
+        }
+    }
+
+    private void report(int persons, SnapshotFormat format, String compression, DataFile data,
+                        SnapshotWriter writer, SnapshotReader reader) throws Exception {
+        Path file = tempDir.resolve(format + "-" + compression + "-" + persons);
+        long bytes = 0;
+        long bestSave = Long.MAX_VALUE;
+        long bestLoad = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP_RUNS + MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            bytes = writer.write(data, file);
+            long saved = System.nanoTime();
+            DataFile loaded = reader.read(file);
+            long end = System.nanoTime();
+            assertEquals(persons, loaded.getPersons().size());
+            if (i >= WARMUP_RUNS) {
+                bestSave = Math.min(bestSave, saved - start);
+                bestLoad = Math.min(bestLoad, end - saved);
+            }
+        }
+        System.out.printf("%-10d %-6s %-11s %12d %10d %10d%n", persons, format, compression, bytes / 1024,
+                bestSave / 1_000_000, bestLoad / 1_000_000);
+    }
+}
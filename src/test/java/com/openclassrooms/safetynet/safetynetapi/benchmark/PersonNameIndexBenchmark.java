@@ -0,0 +1,100 @@
+package com.openclassrooms.safetynet.safetynetapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import com.openclassrooms.safetynet.safetynetapi.repository.DataLayout;
+import com.openclassrooms.safetynet.safetynetapi.repository.DataLoader;
+import com.openclassrooms.safetynet.safetynetapi.repository.Durability;
+import com.openclassrooms.safetynet.safetynetapi.repository.InMemoryPersonRepository;
+import com.openclassrooms.safetynet.safetynetapi.repository.MutationJournal;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotCompression;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotFormat;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Compares a lookup by name through the person index with the linear scan it replaced.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=PersonNameIndexBenchmark}; other sizes can be given with
+ * {@code -Dbenchmark.persons=10000}.</p>
+ */
+class PersonNameIndexBenchmark {
+
+    private static final int BUILD_RUNS = 3;
+    private static final int SCAN_LOOKUPS = 50;
+    private static final int INDEX_LOOKUPS = 200_000;
+    private static final int UPDATES = 1_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void findByFirstNameAndLastName_indexVersusScan() throws Exception {
+        System.out.printf("%-10s %12s %14s %14s %14s%n", "persons", "build (ms)", "scan (ns/op)", "index (ns/op)", "update (ns/op)");
+        for (int persons : BenchmarkData.sizes(1_000_000)) {
+            Path file = tempDir.resolve("persons-" + persons + ".json");
+            new SnapshotWriter(objectMapper).write(BenchmarkData.generate(persons), file);
+            DataLoader dataLoader = new DataLoader(objectMapper, file.toString(), Durability.MEMORY_ONLY, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+            dataLoader.loadJsonFile();
+            DataFile data = dataLoader.getDataFile();
+            List<Person> list = data.getPersons();
+
+            InMemoryPersonRepository repository = new InMemoryPersonRepository();
+            ReflectionTestUtils.setField(repository, "dataLoader", dataLoader);
+            long build = Long.MAX_VALUE;
+            for (int i = 0; i < BUILD_RUNS; i++) {
+                long start = System.nanoTime();
+                repository.prepare(data);
+                build = Math.min(build, System.nanoTime() - start);
+            }
+
+            Random random = new Random(persons);
+            long start = System.nanoTime();
+            for (int i = 0; i < SCAN_LOOKUPS; i++) {
+                Person expected = list.get(random.nextInt(persons));
+                assertSame(expected, scan(list, expected.getFirstName().toUpperCase(), expected.getLastName()));
+            }
+            long scan = (System.nanoTime() - start) / SCAN_LOOKUPS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < INDEX_LOOKUPS; i++) {
+                Person expected = list.get(random.nextInt(persons));
+                assertSame(expected, repository.findByFirstNameAndLastName(expected.getFirstName().toUpperCase(), expected.getLastName()));
+            }
+            long index = (System.nanoTime() - start) / INDEX_LOOKUPS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < UPDATES; i++) {
+                Person current = list.get(random.nextInt(persons));
+                repository.update(new Person(current.getFirstName(), current.getLastName(), current.getAddress(),
+                        current.getCity(), current.getZip(), "841-999-0000", current.getEmail()));
+            }
+            long update = (System.nanoTime() - start) / UPDATES;
+
+            System.out.printf("%-10d %12d %14d %14d %14d%n", persons, build / 1_000_000, scan, index, update);
+        }
+    }
+
+    /**
+     * The lookup the repository made before the index: a scan comparing the names of every person.
+     */
+    private static Person scan(List<Person> persons, String firstName, String lastName) {
+        for (Person person : persons) {
+            if (person.getFirstName().equalsIgnoreCase(firstName) && person.getLastName().equalsIgnoreCase(lastName)) {
+                return person;
+            }
+        }
+        return null;
+    }
+}
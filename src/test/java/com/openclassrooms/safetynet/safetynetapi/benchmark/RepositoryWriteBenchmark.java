@@ -0,0 +1,129 @@
+package com.openclassrooms.safetynet.safetynetapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import com.openclassrooms.safetynet.safetynetapi.repository.DataLayout;
+import com.openclassrooms.safetynet.safetynetapi.repository.DataLoader;
+import com.openclassrooms.safetynet.safetynetapi.repository.Durability;
+import com.openclassrooms.safetynet.safetynetapi.repository.InMemoryFireStationRepository;
+import com.openclassrooms.safetynet.safetynetapi.repository.InMemoryMedicalRecordRepository;
+import com.openclassrooms.safetynet.safetynetapi.repository.InMemoryPersonRepository;
+import com.openclassrooms.safetynet.safetynetapi.repository.MutationJournal;
+import com.openclassrooms.safetynet.safetynetapi.repository.RepositoryBootstrap;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotCompression;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotFormat;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the cost of a save, an update and a delete of a person, each publishing a new version of the data,
+ * next to a copy of the whole list of persons, which every mutation used to make. Persons are saved into existing
+ * households, so that the groups of the indexes keep their size. Medians are reported, as a million persons and
+ * their indexes nearly fill the heap of the benchmark profile, so full collections would hide the cost of a write.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=RepositoryWriteBenchmark}; other sizes can be given with
+ * {@code -Dbenchmark.persons=10000}.</p>
+ */
+class RepositoryWriteBenchmark {
+
+    private static final int WARMUP = 2_000;
+    private static final int WRITES = 5_000;
+    private static final int COPIES = 20;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void saveUpdateDelete_versusListCopy() throws Exception {
+        System.out.printf("%-10s %14s %14s %14s %14s%n", "persons", "save (ns)", "update (ns)", "delete (ns)", "copy (ns)");
+        for (int persons : BenchmarkData.sizes(10_000, 100_000, 1_000_000)) {
+            Path file = tempDir.resolve("persons-" + persons + ".json");
+            new SnapshotWriter(objectMapper).write(BenchmarkData.generate(persons), file);
+            DataLoader dataLoader = new DataLoader(objectMapper, file.toString(), Durability.MEMORY_ONLY, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+            dataLoader.loadJsonFile();
+            InMemoryPersonRepository repository = new InMemoryPersonRepository();
+            InMemoryFireStationRepository fireStations = new InMemoryFireStationRepository();
+            InMemoryMedicalRecordRepository medicalRecords = new InMemoryMedicalRecordRepository();
+            for (Object bean : List.of(repository, fireStations, medicalRecords)) {
+                ReflectionTestUtils.setField(bean, "dataLoader", dataLoader);
+            }
+            new RepositoryBootstrap(dataLoader, List.of(repository, fireStations, medicalRecords)).initRepositories();
+
+            run(repository, WARMUP, persons);
+            long[] timings = run(repository, WRITES, persons);
+            assertEquals(persons, dataLoader.getDataFile().getPersons().size());
+
+            List<Person> list = dataLoader.getDataFile().getPersons();
+            long[] copies = new long[COPIES];
+            for (int i = 0; i < COPIES; i++) {
+                long start = System.nanoTime();
+                assertTrue(list.toArray().length > 0);
+                copies[i] = System.nanoTime() - start;
+            }
+            long copy = median(copies);
+
+            System.out.printf("%-10d %14d %14d %14d %14d%n", persons, timings[0], timings[1], timings[2], copy);
+        }
+    }
+
+    /**
+     * Saves new persons into random households, updates existing persons, then deletes the saved ones, so that the
+     * size is unchanged.
+     *
+     * @return the median time of a save, an update and a delete, in nanoseconds
+     */
+    private static long[] run(InMemoryPersonRepository repository, int writes, int persons) {
+        Random random = new Random(writes);
+        int households = Math.max(1, persons / BenchmarkData.PERSONS_PER_HOUSEHOLD);
+        String[] names = new String[writes];
+        String[] lastNames = new String[writes];
+        long[] saves = new long[writes];
+        for (int i = 0; i < writes; i++) {
+            int household = random.nextInt(households);
+            names[i] = "Written" + i;
+            lastNames[i] = BenchmarkData.lastName(household);
+            Person person = new Person(names[i], lastNames[i], BenchmarkData.address(household),
+                    BenchmarkData.city(household), "10000", "841-000-0000", "written" + i + "@email.com");
+            long start = System.nanoTime();
+            repository.save(person);
+            saves[i] = System.nanoTime() - start;
+        }
+
+        long[] updates = new long[writes];
+        for (int i = 0; i < writes; i++) {
+            int person = random.nextInt(persons);
+            Person current = repository.findByFirstNameAndLastName("First" + person, BenchmarkData.lastName(person % households));
+            Person updated = new Person(current.getFirstName(), current.getLastName(), current.getAddress(),
+                    current.getCity(), current.getZip(), "841-999-0000", current.getEmail());
+            long start = System.nanoTime();
+            repository.update(updated);
+            updates[i] = System.nanoTime() - start;
+        }
+
+        long[] deletes = new long[writes];
+        for (int i = 0; i < writes; i++) {
+            long start = System.nanoTime();
+            repository.delete(names[i], lastNames[i]);
+            deletes[i] = System.nanoTime() - start;
+        }
+        return new long[]{median(saves), median(updates), median(deletes)};
+    }
+
+    private static long median(long[] timings) {
+        long[] sorted = timings.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,74 @@
+package com.openclassrooms.safetynet.safetynetapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.repository.DataLayout;
+import com.openclassrooms.safetynet.safetynetapi.repository.DataLoader;
+import com.openclassrooms.safetynet.safetynetapi.repository.Durability;
+import com.openclassrooms.safetynet.safetynetapi.repository.MappedSnapshotWriter;
+import com.openclassrooms.safetynet.safetynetapi.repository.MutationJournal;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotCompression;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotFormat;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the startup time of the DataLoader on JSON and Smile snapshots of 100k and 1M persons,
+ * and on MAPPED snapshots mapped read-only.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=SnapshotStartupBenchmark}; other sizes can be given with
+ * {@code -Dbenchmark.persons=50000,200000}.</p>
+ */
+class SnapshotStartupBenchmark {
+
+    private static final int WARMUP_RUNS = 1;
+    private static final int MEASURED_RUNS = 3;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void loadJsonFile_jsonVersusSmileVersusMapped() throws Exception {
+        System.out.printf("%-10s %-6s %12s %12s%n", "persons", "format", "size (KB)", "load (ms)");
+        for (int persons : BenchmarkData.sizes(100_000, 1_000_000)) {
+            Path json = tempDir.resolve("data-" + persons + ".json");
+            Path smile = tempDir.resolve("data-" + persons + ".smile");
+            Path mapped = tempDir.resolve("data-" + persons + ".mapped");
+            DataFile data = BenchmarkData.generate(persons);
+            new SnapshotWriter(objectMapper).write(data, json);
+            new SnapshotWriter(objectMapper.copyWith(new SmileFactory())).write(data, smile);
+            new MappedSnapshotWriter(objectMapper.copyWith(new SmileFactory())).write(data, mapped);
+            data = null;
+
+            report(persons, SnapshotFormat.JSON, json);
+            report(persons, SnapshotFormat.SMILE, smile);
+            report(persons, SnapshotFormat.MAPPED, mapped);
+        }
+    }
+
+    private void report(int persons, SnapshotFormat format, Path file) throws Exception {
+        assertEquals(format, SnapshotFormat.detect(file));
+        DataLoader dataLoader = new DataLoader(objectMapper, file.toString(), Durability.SYNC, 500, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, format,
+                format == SnapshotFormat.MAPPED, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            dataLoader.loadJsonFile();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            dataLoader.loadJsonFile();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        assertEquals(persons, dataLoader.getDataFile().getPersons().size());
+        System.out.printf("%-10d %-6s %12d %12d%n", persons, format, Files.size(file) / 1024, best / 1_000_000);
+    }
+}
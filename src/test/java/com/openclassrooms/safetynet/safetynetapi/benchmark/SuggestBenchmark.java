@@ -0,0 +1,102 @@
+package com.openclassrooms.safetynet.safetynetapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import com.openclassrooms.safetynet.safetynetapi.repository.DataLayout;
+import com.openclassrooms.safetynet.safetynetapi.repository.DataLoader;
+import com.openclassrooms.safetynet.safetynetapi.repository.Durability;
+import com.openclassrooms.safetynet.safetynetapi.repository.InMemoryPersonRepository;
+import com.openclassrooms.safetynet.safetynetapi.repository.MutationJournal;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotCompression;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotFormat;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Measures the suggestions of names and addresses for a typed prefix, served by the prefix indexes of the person
+ * repository, against the scan of every person they avoid.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=SuggestBenchmark}; other sizes can be given with
+ * {@code -Dbenchmark.persons=10000}.</p>
+ */
+class SuggestBenchmark {
+
+    private static final int BUILD_RUNS = 3;
+    private static final int LIMIT = 10;
+    private static final int SCAN_LOOKUPS = 20;
+    private static final int SUGGESTIONS = 100_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void suggest_prefixIndexVersusScan() throws Exception {
+        System.out.printf("%-10s %12s %14s %14s %16s%n", "persons", "build (ms)", "scan (ns/op)", "name (ns/op)", "address (ns/op)");
+        for (int persons : BenchmarkData.sizes(1_000_000)) {
+            Path file = tempDir.resolve("persons-" + persons + ".json");
+            new SnapshotWriter(objectMapper).write(BenchmarkData.generate(persons), file);
+            DataLoader dataLoader = new DataLoader(objectMapper, file.toString(), Durability.MEMORY_ONLY, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+            dataLoader.loadJsonFile();
+            DataFile data = dataLoader.getDataFile();
+            List<Person> list = data.getPersons();
+
+            InMemoryPersonRepository repository = new InMemoryPersonRepository();
+            ReflectionTestUtils.setField(repository, "dataLoader", dataLoader);
+            long build = Long.MAX_VALUE;
+            for (int i = 0; i < BUILD_RUNS; i++) {
+                long start = System.nanoTime();
+                repository.prepare(data);
+                build = Math.min(build, System.nanoTime() - start);
+            }
+
+            Random random = new Random(persons);
+            long start = System.nanoTime();
+            for (int i = 0; i < SCAN_LOOKUPS; i++) {
+                assertFalse(scan(list, prefix(list.get(random.nextInt(persons)).getLastName())).isEmpty());
+            }
+            long scan = (System.nanoTime() - start) / SCAN_LOOKUPS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < SUGGESTIONS; i++) {
+                assertFalse(repository.suggestByName(prefix(list.get(random.nextInt(persons)).getLastName()), LIMIT).isEmpty());
+            }
+            long name = (System.nanoTime() - start) / SUGGESTIONS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < SUGGESTIONS; i++) {
+                assertFalse(repository.suggestByAddress(prefix(list.get(random.nextInt(persons)).getAddress()), LIMIT).isEmpty());
+            }
+            long address = (System.nanoTime() - start) / SUGGESTIONS;
+
+            System.out.printf("%-10d %12d %14d %14d %16d%n", persons, build / 1_000_000, scan, name, address);
+        }
+    }
+
+    /**
+     * What a dispatcher would have typed: the value without its last characters, in lower case.
+     */
+    private static String prefix(String value) {
+        return value.substring(0, Math.max(1, value.length() - 2)).toLowerCase();
+    }
+
+    /**
+     * The suggestions without an index: a scan of every person, keeping the first matching names.
+     */
+    private static List<Person> scan(List<Person> persons, String prefix) {
+        return persons.stream()
+                .filter(person -> person.getLastName().toLowerCase().startsWith(prefix))
+                .limit(LIMIT)
+                .toList();
+    }
+}
@@ -0,0 +1,84 @@
+package com.openclassrooms.safetynet.safetynetapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import com.openclassrooms.safetynet.safetynetapi.repository.DataLayout;
+import com.openclassrooms.safetynet.safetynetapi.repository.DataLoader;
+import com.openclassrooms.safetynet.safetynetapi.repository.Durability;
+import com.openclassrooms.safetynet.safetynetapi.repository.JournalEntry;
+import com.openclassrooms.safetynet.safetynetapi.repository.MutationJournal;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotCompression;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotFormat;
+import com.openclassrooms.safetynet.safetynetapi.repository.SnapshotWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Measures the bytes written per mutation with a single data file and with one file per collection.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=WriteAmplificationBenchmark}; other sizes can be given with
+ * {@code -Dbenchmark.persons=10000}.</p>
+ */
+class WriteAmplificationBenchmark {
+
+    private static final int MUTATIONS = 20;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void recordMutation_singleVersusSplitLayout() throws Exception {
+        System.out.printf("%-10s %-7s %-15s %14s %12s%n", "persons", "layout", "mutation", "KB/mutation", "ms/mutation");
+        for (int persons : BenchmarkData.sizes(100_000)) {
+            for (DataLayout layout : DataLayout.values()) {
+                Path file = tempDir.resolve(layout + "-" + persons + ".json");
+                new SnapshotWriter(objectMapper).write(BenchmarkData.generate(persons), file);
+                DataLoader dataLoader = new DataLoader(objectMapper, file.toString(), Durability.SYNC, 500, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, layout, SnapshotCompression.NONE, 6, 1024);
+                dataLoader.loadJsonFile();
+                DataFile data = dataLoader.getDataFile();
+
+                measure(dataLoader, persons, layout, "person update", i -> {
+                    Person person = data.getPersons().get(i);
+                    person.setPhone("841-999-" + String.format("%04d", i));
+                    return JournalEntry.personUpdated(person);
+                });
+                measure(dataLoader, persons, layout, "station update", i -> {
+                    FireStation fireStation = data.getFireStations().get(i);
+                    fireStation.setStation(fireStation.getStation() % BenchmarkData.STATIONS + 1);
+                    return JournalEntry.fireStationUpdated(fireStation);
+                });
+                measure(dataLoader, persons, layout, "record update", i -> {
+                    MedicalRecord medicalRecord = data.getMedicalRecords().get(i);
+                    medicalRecord.setAllergies(List.of("benchmark"));
+                    return JournalEntry.medicalRecordUpdated(medicalRecord);
+                });
+            }
+        }
+    }
+
+    private void measure(DataLoader dataLoader, int persons, DataLayout layout, String name,
+                         IntFunction<JournalEntry> mutation) {
+        long bytesBefore = dataLoader.getFlushMetrics().getBytesWritten();
+        long start = System.nanoTime();
+        for (int i = 0; i < MUTATIONS; i++) {
+            int mutated = i;
+            dataLoader.mutate(() -> {
+                dataLoader.recordMutation(mutation.apply(mutated));
+                return null;
+            });
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = dataLoader.getFlushMetrics().getBytesWritten() - bytesBefore;
+        System.out.printf("%-10d %-7s %-15s %14d %12d%n", persons, layout, name,
+                bytes / MUTATIONS / 1024, elapsed / MUTATIONS / 1_000_000);
+    }
+}
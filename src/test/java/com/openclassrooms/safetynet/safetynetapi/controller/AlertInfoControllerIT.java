@@ -91,6 +91,23 @@ public class AlertInfoControllerIT {
                 .andExpect(status().isNoContent());
     }
 
+    @Test
+    public void getPersonInfo_shouldReturnPersonsOfSimilarLastName_whenFuzzy() throws Exception {
+        mockMvc.perform(get("/personInfo")
+                        .param("lastName", "Boid")
+                        .param("fuzzy", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()").value(6))
+                .andExpect(jsonPath("$[0].lastName").value("Boyd"));
+    }
+
+    @Test
+    public void getPersonInfo_shouldReturnNotFound_whenLastNameIsMisspelledAndNotFuzzy() throws Exception {
+        mockMvc.perform(get("/personInfo")
+                        .param("lastName", "Boid"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     public void getPersonInfo_shouldReturnPersonInfo_whenLastNameExists() throws Exception {
         mockMvc.perform(get("/personInfo")
@@ -12,6 +12,8 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.List;
+
 import static org.hamcrest.Matchers.greaterThan;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -122,6 +124,28 @@ public class PersonControllerIT {
                     .andExpect(jsonPath("$.email").value("sue.bdh@yahoo.fr"));
         }
 
+    @Test
+    public void givenValidPersons_whenAddPersons_thenReturnCreated() throws Exception {
+        // GIVEN: Two new persons to import at once
+        PersonDTO lina = PersonDTO.builder().firstName("Lina").lastName("Batch").address("9 rue revolt")
+                .city("Paris").zip("75018").phone("005-016-1872").email("lina.batch@yahoo.fr").build();
+        PersonDTO adam = PersonDTO.builder().firstName("Adam").lastName("Batch").address("9 rue revolt")
+                .city("Paris").zip("75018").phone("005-016-1873").email("adam.batch@yahoo.fr").build();
+
+        // WHEN: Sending a POST request with both persons
+        mockMvc.perform(post("/persons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(lina, adam))))
+                .andDo(print())
+                // THEN: Both persons are created (201)
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].firstName").value("Adam"));
+
+        mockMvc.perform(get("/person").param("firstName", "Adam").param("lastName", "Batch"))
+                .andExpect(status().isOk());
+    }
+
     @Test
     public void givenExistingPerson_whenUpdatePerson_thenReturnUpdated() throws Exception {
         // Step 1: Add an initial person
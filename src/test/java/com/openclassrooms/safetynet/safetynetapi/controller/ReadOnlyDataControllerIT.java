@@ -0,0 +1,59 @@
+package com.openclassrooms.safetynet.safetynetapi.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.safetynet.safetynetapi.dto.PersonDTO;
+import com.openclassrooms.safetynet.safetynetapi.exception.ReadOnlyDataException;
+import com.openclassrooms.safetynet.safetynetapi.service.PersonService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the responses of the controllers when the data is served from a read-only snapshot.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles(profiles = "test")
+public class ReadOnlyDataControllerIT {
+
+    @Autowired
+    public MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @MockitoBean
+    private PersonService personService;
+
+    @Test
+    public void givenReadOnlyData_whenAddPerson_thenReturnServiceUnavailable() throws Exception {
+        // GIVEN: An instance serving a read-only snapshot
+        Mockito.when(personService.save(any()))
+                .thenThrow(new ReadOnlyDataException("Data is served from a read-only snapshot, changes are not accepted"));
+        PersonDTO personDto = PersonDTO.builder().firstName("Sue").lastName("BDH").build();
+
+        // WHEN: Sending a POST request to create a person
+        mockMvc.perform(post("/person")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(personDto)))
+                .andDo(print())
+                // THEN: The write is not accepted by this instance, though the method is allowed
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().doesNotExist("Allow"))
+                .andExpect(content().string(containsString("read-only snapshot")));
+    }
+}
@@ -0,0 +1,61 @@
+package com.openclassrooms.safetynet.safetynetapi.controller;
+
+import com.openclassrooms.safetynet.safetynetapi.repository.DataLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for SearchController, on the test dataset loaded before each test.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles(profiles = "test")
+public class SearchControllerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DataLoader dataLoader;
+
+    @BeforeEach
+    void setUp() {
+        dataLoader.dropJsonFile();
+        dataLoader.loadJsonFile();
+    }
+
+    @Test
+    public void suggest_shouldReturnNamesAndAddressesStartingWithQuery() throws Exception {
+        mockMvc.perform(get("/search/suggest")
+                        .param("q", "BOYD  T")
+                        .param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.names").value(contains("Tenley Boyd")))
+                .andExpect(jsonPath("$.addresses.size()").value(0));
+    }
+
+    @Test
+    public void suggest_shouldCompleteAddressesUpToLimit() throws Exception {
+        mockMvc.perform(get("/search/suggest")
+                        .param("q", "15")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.addresses").value(contains("1509 Culver St")));
+    }
+
+    @Test
+    public void suggest_shouldReturnBadRequest_whenQueryIsMissing() throws Exception {
+        mockMvc.perform(get("/search/suggest"))
+                .andExpect(status().isBadRequest());
+    }
+}
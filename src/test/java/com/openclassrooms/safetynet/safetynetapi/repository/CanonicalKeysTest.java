@@ -0,0 +1,47 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CanonicalKeysTest {
+
+    @Test
+    public void of_shouldTrimCollapseWhitespaceAndFoldCase() {
+        assertEquals("1509 culver st", CanonicalKeys.of("  1509\tCulver   ST "));
+        assertEquals("élodie", CanonicalKeys.of(" ÉLODIE"));
+        assertEquals("", CanonicalKeys.of(null));
+        assertEquals("", CanonicalKeys.of("   "));
+    }
+
+    @Test
+    public void of_whenValueIsAlreadyCanonical_shouldReturnItAsIs() {
+        String value = new String("1509 culver st");
+
+        assertSame(value, CanonicalKeys.of(value));
+    }
+
+    @Test
+    public void intern_shouldShareEqualKeys() {
+        String first = CanonicalKeys.intern("Culver");
+        String second = CanonicalKeys.intern(new String(" culver "));
+
+        assertSame(first, second);
+        assertTrue(CanonicalKeys.matches("CULVER", first));
+        assertEquals(CanonicalKeys.name(" john", "BOYD"), CanonicalKeys.internName("John", "Boyd"));
+    }
+
+    @Test
+    public void intern_whenKeysAreNoLongerReferenced_shouldEvictThem() throws InterruptedException {
+        int before = CanonicalKeys.poolSize();
+        for (int i = 0; i < 10_000; i++) {
+            CanonicalKeys.intern("Evicted Street " + i);
+        }
+
+        for (int attempt = 0; attempt < 50 && CanonicalKeys.poolSize() >= before + 10_000; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertTrue(CanonicalKeys.poolSize() < before + 10_000);
+    }
+}
@@ -0,0 +1,69 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkedListTest {
+
+    @Test
+    public void changes_shouldReturnNewListsWithoutChangingTheCurrentOne() {
+        Object a = new Object();
+        Object b = new Object();
+        Object c = new Object();
+        Object d = new Object();
+        ChunkedList<Object> list = ChunkedList.of(List.of(a, b, c));
+
+        ChunkedList<Object> changed = list.with(d).replace(b, c).without(a);
+
+        assertEquals(List.of(c, c, d), changed);
+        assertEquals(List.of(a, b, c), list);
+        assertThrows(UnsupportedOperationException.class, () -> list.add(d));
+    }
+
+    @Test
+    public void replaceAndWithout_whenTheRecordIsMissing_shouldReturnNull() {
+        Object a = new Object();
+        ChunkedList<Object> list = ChunkedList.<Object>empty().with(a);
+
+        assertNull(list.replace(new Object(), a));
+        assertNull(list.without(new Object()));
+        assertNull(list.without(a).without(a));
+    }
+
+    @Test
+    public void changes_whenTheListGrowsAndShrinks_shouldKeepTheOrderOfTheRecords() {
+        Random random = new Random(42);
+        ChunkedList<Object> list = ChunkedList.empty();
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            Object record = new Object();
+            list = list.with(record);
+            expected.add(record);
+            if (i % 3 == 0) {
+                Object removed = expected.remove(random.nextInt(expected.size()));
+                list = list.without(removed);
+            }
+            if (i % 5 == 0 && !expected.isEmpty()) {
+                int position = random.nextInt(expected.size());
+                Object updated = new Object();
+                list = list.replace(expected.set(position, updated), updated);
+            }
+        }
+        // Empties most chunks, so that the list is split again
+        for (int i = 0; i < 12_000; i++) {
+            list = list.without(expected.remove(random.nextInt(expected.size())));
+        }
+
+        assertEquals(expected.size(), list.size());
+        assertEquals(expected, list);
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), list.get(i));
+        }
+        assertEquals(expected, new ArrayList<>(list));
+    }
+}
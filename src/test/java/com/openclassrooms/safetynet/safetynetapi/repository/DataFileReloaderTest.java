@@ -0,0 +1,60 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataFileReloaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void start_whenDataFileIsReplaced_shouldReloadItInTheBackground() throws Exception {
+        Path file = tempDir.resolve("data.json");
+        DataLoader dataLoader = new DataLoader(objectMapper, file.toString(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+        DataFileReloader reloader = new DataFileReloader(dataLoader, true, 50);
+        reloader.start();
+        try {
+            DataFile upstream = new DataFile();
+            upstream.setPersons(List.of(new Person("New", "Upstream", "1 Main St", "Culver", "97451", "841-000-0000", "new@email.com")));
+            upstream.setFireStations(List.of());
+            upstream.setMedicalRecords(List.of());
+            new SnapshotWriter(objectMapper).write(upstream, file);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (dataLoader.getDataFile().getPersons().size() != 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals("Upstream", dataLoader.getDataFile().getPersons().getFirst().getLastName());
+        } finally {
+            reloader.stop();
+        }
+    }
+
+    @Test
+    public void start_whenDisabled_shouldNotWatch() throws Exception {
+        Path file = tempDir.resolve("data.json");
+        DataLoader dataLoader = new DataLoader(objectMapper, file.toString(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+        DataFile loaded = dataLoader.getDataFile();
+        DataFileReloader reloader = new DataFileReloader(dataLoader, false, 50);
+        reloader.start();
+
+        new SnapshotWriter(objectMapper).write(new DataFile(), file);
+        Thread.sleep(200);
+
+        assertSame(loaded, dataLoader.getDataFile());
+        reloader.stop();
+    }
+}
@@ -0,0 +1,639 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.safetynet.safetynetapi.exception.ReadOnlyDataException;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataLoaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void loadJsonFile_whenExternalFileMissing_shouldCreateItFromDefaults() {
+        File file = tempDir.resolve("data/data.json").toFile();
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+
+        dataLoader.loadJsonFile();
+
+        assertTrue(file.exists());
+        assertFalse(dataLoader.getDataFile().getPersons().isEmpty());
+    }
+
+    @Test
+    public void saveJsonFile_shouldReplaceFileAtomicallyWithCompactJson() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+
+        dataLoader.getDataFile().getPersons().add(
+                new Person("Jane", "Snapshot", "1 Main St", "Culver", "97451", "000", "jane@email.com"));
+        dataLoader.saveJsonFile();
+
+        String content = Files.readString(file.toPath());
+        assertFalse(content.contains("\n"));
+        assertTrue(content.contains("\"lastName\":\"Snapshot\""));
+        // Only the data file is left in the folder, the temporary file was renamed over it
+        assertArrayEquals(new String[]{"data.json"}, tempDir.toFile().list());
+    }
+
+    @Test
+    public void saveJsonFile_inWriteBehindMode_shouldCoalesceMutationsIntoOneFlush() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.WRITE_BEHIND, 60_000, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+        long modifiedAtLoad = file.lastModified();
+
+        // Several mutations within the same window only mark the data dirty
+        for (int i = 0; i < 5; i++) {
+            dataLoader.getDataFile().getPersons().add(
+                    new Person("First" + i, "Burst", "1 Main St", "Culver", "97451", "000", "burst@email.com"));
+            dataLoader.saveJsonFile();
+        }
+        assertEquals(0, dataLoader.getFlushMetrics().getFlushCount());
+        assertEquals(modifiedAtLoad, file.lastModified());
+
+        // Shutdown flushes everything that is pending in a single write
+        dataLoader.shutdown();
+
+        assertEquals(1, dataLoader.getFlushMetrics().getFlushCount());
+        assertEquals(5, dataLoader.getFlushMetrics().getCoalescedMutationCount());
+        DataFile saved = objectMapper.readValue(file, DataFile.class);
+        assertEquals(5, saved.getPersons().stream().filter(p -> p.getLastName().equals("Burst")).count());
+    }
+
+    @Test
+    public void flush_whenNothingIsPending_shouldNotWrite() {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.WRITE_BEHIND, 60_000, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+
+        dataLoader.flush();
+
+        assertEquals(0, dataLoader.getFlushMetrics().getFlushCount());
+        dataLoader.shutdown();
+    }
+
+    @Test
+    public void recordMutation_inJournalMode_shouldAppendAndReplayOnNextLoad() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = journalingDataLoader(file);
+        dataLoader.loadJsonFile();
+        long snapshotLength = file.length();
+
+        Person person = new Person("Jane", "Journal", "1 Main St", "Culver", "97451", "000", "jane@email.com");
+        dataLoader.getDataFile().getPersons().add(person);
+        dataLoader.recordMutation(JournalEntry.personAdded(person));
+        dataLoader.getDataFile().getPersons().removeIf(p -> p.getFirstName().equals("John") && p.getLastName().equals("Boyd"));
+        dataLoader.recordMutation(JournalEntry.personDeleted("John", "Boyd"));
+
+        // The snapshot is untouched, the mutations only went to the journal
+        assertEquals(snapshotLength, file.length());
+        assertTrue(tempDir.resolve("data.json.journal").toFile().length() > 0);
+
+        // A new loader (e.g. after a crash) replays the journal on top of the snapshot
+        DataLoader restarted = journalingDataLoader(file);
+        restarted.loadJsonFile();
+
+        assertTrue(restarted.getDataFile().getPersons().stream().anyMatch(p -> p.getLastName().equals("Journal")));
+        assertTrue(restarted.getDataFile().getPersons().stream()
+                .noneMatch(p -> p.getFirstName().equals("John") && p.getLastName().equals("Boyd")));
+        assertEquals(0, tempDir.resolve("data.json.journal").toFile().length());
+        restarted.shutdown();
+        dataLoader.shutdown();
+    }
+
+    @Test
+    public void loadJsonFile_inJournalMode_shouldReplayDuplicateAddsAndUpdatesLikeTheRepositories() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = journalingDataLoader(file);
+        dataLoader.loadJsonFile();
+        InMemoryPersonRepository personRepository = new InMemoryPersonRepository();
+        InMemoryMedicalRecordRepository medicalRecordRepository = new InMemoryMedicalRecordRepository();
+        InMemoryFireStationRepository fireStationRepository = new InMemoryFireStationRepository();
+        for (Object repository : List.of(personRepository, medicalRecordRepository, fireStationRepository)) {
+            ReflectionTestUtils.setField(repository, "dataLoader", dataLoader);
+        }
+        new RepositoryBootstrap(dataLoader, List.of(personRepository, medicalRecordRepository, fireStationRepository))
+                .prepare(dataLoader.getDataFile());
+
+        personRepository.save(new Person("Twin", "Journal", "1 Main St", "Culver", "97451", "000", "one@email.com"));
+        personRepository.save(new Person("twin", "JOURNAL", "2 Main St", "Culver", "97451", "000", "two@email.com"));
+        personRepository.update(new Person("Twin", "Journal", "3 Main St", "Culver", "97451", "000", "three@email.com"));
+        // The snapshot written now holds the entries above, which must not be replayed on top of it
+        dataLoader.saveJsonFile();
+        fireStationRepository.saveFireStation(new FireStation("1 Main St", 1));
+        fireStationRepository.saveFireStation(new FireStation("1 main st", 2));
+        fireStationRepository.updateFireStation(new FireStation("1 MAIN ST", 3));
+        medicalRecordRepository.saveMedicalRecord(new MedicalRecord("Twin", "Journal", LocalDate.of(1980, 1, 1), List.of(), List.of()));
+        medicalRecordRepository.saveMedicalRecord(new MedicalRecord("Twin", "Journal", LocalDate.of(1990, 1, 1), List.of(), List.of()));
+        medicalRecordRepository.updateMedicalRecord(new MedicalRecord("twin", "journal", LocalDate.of(2000, 1, 1), List.of("aznol:350mg"), List.of()));
+        personRepository.save(new Person("Twin", "Journal", "4 Main St", "Culver", "97451", "000", "four@email.com"));
+
+        DataFile live = dataLoader.getDataFile();
+        DataLoader restarted = journalingDataLoader(file);
+        restarted.loadJsonFile();
+        DataFile replayed = restarted.getDataFile();
+
+        assertEquals(objectMapper.writeValueAsString(live.getPersons()), objectMapper.writeValueAsString(replayed.getPersons()));
+        assertEquals(objectMapper.writeValueAsString(live.getFireStations()), objectMapper.writeValueAsString(replayed.getFireStations()));
+        assertEquals(objectMapper.writeValueAsString(live.getMedicalRecords()), objectMapper.writeValueAsString(replayed.getMedicalRecords()));
+        assertEquals(3, replayed.getPersons().stream().filter(p -> p.getLastName().equalsIgnoreCase("Journal")).count());
+        restarted.shutdown();
+        dataLoader.shutdown();
+    }
+
+    @Test
+    public void compactJournal_shouldFoldJournalIntoSnapshot() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = journalingDataLoader(file);
+        dataLoader.loadJsonFile();
+
+        Person person = new Person("Jane", "Compacted", "1 Main St", "Culver", "97451", "000", "jane@email.com");
+        dataLoader.getDataFile().getPersons().add(person);
+        dataLoader.recordMutation(JournalEntry.personAdded(person));
+
+        dataLoader.compactJournal();
+
+        DataFile saved = objectMapper.readValue(file, DataFile.class);
+        assertTrue(saved.getPersons().stream().anyMatch(p -> p.getLastName().equals("Compacted")));
+        assertEquals(0, tempDir.resolve("data.json.journal").toFile().length());
+        assertFalse(tempDir.resolve("data.json.journal.compacting").toFile().exists());
+        dataLoader.shutdown();
+    }
+
+    @Test
+    public void loadJsonFile_shouldDetectSmileSnapshotAndImportJson() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        // First run writes the default JSON data, which is then imported by a loader configured for Smile
+        new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024)
+                .loadJsonFile();
+        DataLoader smileLoader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.SMILE, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        smileLoader.loadJsonFile();
+        int personCount = smileLoader.getDataFile().getPersons().size();
+        assertEquals(SnapshotFormat.JSON, SnapshotFormat.detect(file.toPath()));
+
+        smileLoader.saveJsonFile();
+        assertEquals(SnapshotFormat.SMILE, SnapshotFormat.detect(file.toPath()));
+
+        // The Smile file is detected by its header, whatever the configured format
+        DataLoader jsonLoader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        jsonLoader.loadJsonFile();
+        assertEquals(personCount, jsonLoader.getDataFile().getPersons().size());
+        assertNotNull(jsonLoader.getDataFile().getMedicalRecords().getFirst().getBirthdate());
+    }
+
+    @Test
+    public void saveJsonFile_withGzipCompression_shouldWriteCompressedFileThatLoadsBack() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024)
+                .loadJsonFile();
+        long plainSize = file.length();
+
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.GZIP, 9, 1024);
+        dataLoader.loadJsonFile();
+        int personCount = dataLoader.getDataFile().getPersons().size();
+        dataLoader.saveJsonFile();
+
+        assertEquals(SnapshotCompression.GZIP, SnapshotCompression.detect(file.toPath()));
+        assertEquals(SnapshotFormat.JSON, SnapshotFormat.detect(file.toPath()));
+        assertTrue(file.length() < plainSize / 2);
+        assertEquals(file.length(), dataLoader.getFlushMetrics().getBytesWritten());
+
+        // A plain JSON instance still reads the compressed file
+        DataLoader reader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        reader.loadJsonFile();
+        assertEquals(personCount, reader.getDataFile().getPersons().size());
+    }
+
+    @Test
+    public void loadJsonFile_shouldStreamRecordsIntoMutableLists() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        Files.writeString(file.toPath(), """
+                {"version": {"schema": [1, 2]},
+                 "persons": [{"firstName": "John", "lastName": "Boyd", "address": "1509 Culver St", "city": "Culver",
+                              "zip": "97451", "phone": "841-874-6512", "email": "jaboyd@email.com"}],
+                 "firestations": [{"address": "1509 Culver St", "station": "3"}],
+                 "medicalrecords": null}
+                """);
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+
+        dataLoader.loadJsonFile();
+
+        DataFile data = dataLoader.getDataFile();
+        assertEquals("Boyd", data.getPersons().getFirst().getLastName());
+        assertEquals(3, data.getFireStations().getFirst().getStation());
+        assertTrue(data.getMedicalRecords().isEmpty());
+        // Repositories adopt these lists as their storage
+        data.getMedicalRecords().add(new MedicalRecord());
+        assertEquals(1, data.getMedicalRecords().size());
+    }
+
+    @Test
+    public void loadJsonFile_inReadOnlyMode_shouldMapSnapshotAndRejectChanges() {
+        File file = tempDir.resolve("data.bin").toFile();
+        DataLoader writer = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.MAPPED, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        writer.loadJsonFile();
+        List<Person> expected = writer.getDataFile().getPersons();
+
+        DataLoader replica = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.MAPPED, true, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        replica.loadJsonFile();
+
+        List<Person> persons = replica.getDataFile().getPersons();
+        assertEquals(expected.size(), persons.size());
+        assertEquals(expected.getLast().getEmail(), persons.getLast().getEmail());
+        assertEquals(writer.getDataFile().getMedicalRecords().getFirst().getBirthdate(),
+                replica.getDataFile().getMedicalRecords().getFirst().getBirthdate());
+        assertThrows(ReadOnlyDataException.class, () -> persons.add(new Person()));
+        assertThrows(ReadOnlyDataException.class, () -> persons.removeIf(p -> true));
+        assertThrows(ReadOnlyDataException.class, () -> replica.mutate(() -> null));
+        assertSame(persons, replica.getDataFile().getPersons());
+    }
+
+    @Test
+    public void loadJsonFile_inReadOnlyMode_shouldRequireMappedSnapshot() {
+        File file = tempDir.resolve("data.json").toFile();
+        new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024)
+                .loadJsonFile();
+
+        DataLoader replica = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, true, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        assertThrows(IllegalStateException.class, replica::loadJsonFile);
+    }
+
+    @Test
+    public void loadJsonFile_inSplitLayout_shouldMigrateSingleFile() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024)
+                .loadJsonFile();
+        int personCount = objectMapper.readValue(file, DataFile.class).getPersons().size();
+
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SPLIT, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+
+        assertFalse(file.exists());
+        assertTrue(tempDir.resolve("data.json.migrated").toFile().exists());
+        DataFile persons = objectMapper.readValue(tempDir.resolve("data.persons.json").toFile(), DataFile.class);
+        assertEquals(personCount, persons.getPersons().size());
+        assertNull(persons.getFireStations());
+
+        DataLoader reloaded = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SPLIT, SnapshotCompression.NONE, 6, 1024);
+        reloaded.loadJsonFile();
+        assertEquals(personCount, reloaded.getDataFile().getPersons().size());
+        assertEquals(dataLoader.getDataFile().getMedicalRecords().size(), reloaded.getDataFile().getMedicalRecords().size());
+    }
+
+    @Test
+    public void recordMutation_inSplitLayout_shouldOnlyRewriteModifiedCollection() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SPLIT, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+        Path fireStations = tempDir.resolve("data.firestations.json");
+        Path medicalRecords = tempDir.resolve("data.medicalrecords.json");
+        Files.setLastModifiedTime(fireStations, FileTime.fromMillis(0));
+        Files.setLastModifiedTime(medicalRecords, FileTime.fromMillis(0));
+        long personsSize = Files.size(tempDir.resolve("data.persons.json"));
+        long bytesBefore = dataLoader.getFlushMetrics().getBytesWritten();
+
+        Person person = new Person("Split", "Layout", "1 Main St", "Culver", "97451", "841-000-0000", "split@email.com");
+        dataLoader.getDataFile().getPersons().add(person);
+        dataLoader.recordMutation(JournalEntry.personAdded(person));
+
+        assertEquals(0, Files.getLastModifiedTime(fireStations).toMillis());
+        assertEquals(0, Files.getLastModifiedTime(medicalRecords).toMillis());
+        long written = dataLoader.getFlushMetrics().getBytesWritten() - bytesBefore;
+        assertEquals(Files.size(tempDir.resolve("data.persons.json")), written);
+        assertTrue(written > personsSize);
+    }
+
+    @Test
+    public void inBatch_shouldPersistAllMutationsWithOneWrite() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+        long bytesBefore = dataLoader.getFlushMetrics().getBytesWritten();
+
+        int added = dataLoader.inBatch(() -> {
+            for (int i = 0; i < 3; i++) {
+                Person person = new Person("Batch" + i, "Import", "1 Main St", "Culver", "97451", "841-000-0000", "batch@email.com");
+                dataLoader.getDataFile().getPersons().add(person);
+                dataLoader.recordMutation(JournalEntry.personAdded(person));
+            }
+            assertEquals(bytesBefore, dataLoader.getFlushMetrics().getBytesWritten());
+            return 3;
+        });
+
+        assertEquals(3, added);
+        assertEquals(Files.size(file.toPath()), dataLoader.getFlushMetrics().getBytesWritten() - bytesBefore);
+        DataFile saved = objectMapper.readValue(file, DataFile.class);
+        assertEquals(3, saved.getPersons().stream().filter(p -> p.getLastName().equals("Import")).count());
+    }
+
+    @Test
+    public void inBatch_whenTheBatchThrows_shouldNeitherPublishNorPersistAnyMutation() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+        DataFile before = dataLoader.getDataFile();
+        long bytesBefore = dataLoader.getFlushMetrics().getBytesWritten();
+
+        assertThrows(IllegalStateException.class, () -> dataLoader.inBatch(() -> {
+            Person person = new Person("Failed", "Batch", "1 Main St", "Culver", "97451", "841-000-0000", "failed@email.com");
+            List<Person> persons = new ArrayList<>(dataLoader.getDataFile().getPersons());
+            persons.add(person);
+            dataLoader.getDataFile().setPersons(persons);
+            dataLoader.recordMutation(JournalEntry.personAdded(person));
+            throw new IllegalStateException("Invalid second change");
+        }));
+
+        assertSame(before, dataLoader.getDataFile());
+        assertTrue(before.getPersons().stream().noneMatch(p -> p.getLastName().equals("Batch")));
+        assertEquals(bytesBefore, dataLoader.getFlushMetrics().getBytesWritten());
+    }
+
+    @Test
+    public void mutate_inSyncMode_shouldWriteOutsideTheMutationLockWithoutDeadlockingConcurrentSaves() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> mutations = pool.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    Person person = new Person("Sync" + i, "Order", "1 Main St", "Culver", "97451", "841-000-0000", "sync@email.com");
+                    dataLoader.mutate(() -> {
+                        dataLoader.getDataFile().getPersons().add(person);
+                        dataLoader.recordMutation(JournalEntry.personAdded(person));
+                        return null;
+                    });
+                }
+            });
+            Future<?> saves = pool.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    dataLoader.saveJsonFile();
+                }
+            });
+            mutations.get(30, TimeUnit.SECONDS);
+            saves.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // The last capture was written last, whatever the order the writers took the I/O lock in
+        DataFile saved = objectMapper.readValue(file, DataFile.class);
+        assertEquals(200, saved.getPersons().stream().filter(p -> p.getLastName().equals("Order")).count());
+    }
+
+    @Test
+    public void inBatch_inJournalMode_shouldAppendAllEntriesTogether() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = journalingDataLoader(file);
+        dataLoader.loadJsonFile();
+
+        dataLoader.inBatch(() -> {
+            Person person = new Person("Batch", "Journal", "1 Main St", "Culver", "97451", "841-000-0000", "batch@email.com");
+            dataLoader.getDataFile().getPersons().add(person);
+            dataLoader.recordMutation(JournalEntry.personAdded(person));
+            dataLoader.recordMutation(JournalEntry.personDeleted("Batch", "Journal"));
+            assertEquals(0, tempDir.resolve("data.json.journal").toFile().length());
+            return null;
+        });
+
+        assertEquals(2, Files.readAllLines(tempDir.resolve("data.json.journal")).size());
+        dataLoader.shutdown();
+    }
+
+    @Test
+    public void mutate_inJournalMode_whenTheAppendFails_shouldNotPublishTheMutation() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = journalingDataLoader(file);
+        dataLoader.loadJsonFile();
+        DataFile before = dataLoader.getDataFile();
+        ((MutationJournal) ReflectionTestUtils.getField(dataLoader, "journal")).close();
+
+        assertThrows(RuntimeException.class, () -> dataLoader.mutate(() -> {
+            Person person = new Person("Unlogged", "Journal", "1 Main St", "Culver", "97451", "841-000-0000", "unlogged@email.com");
+            List<Person> persons = new ArrayList<>(dataLoader.getDataFile().getPersons());
+            persons.add(person);
+            dataLoader.getDataFile().setPersons(persons);
+            dataLoader.recordMutation(JournalEntry.personAdded(person));
+            // Appended when the mutation returns, before it is published
+            assertEquals(0, tempDir.resolve("data.json.journal").toFile().length());
+            return null;
+        }));
+
+        assertSame(before, dataLoader.getDataFile());
+        assertTrue(before.getPersons().stream().noneMatch(p -> p.getLastName().equals("Journal")));
+        dataLoader.shutdown();
+    }
+
+    @Test
+    public void recordMutation_inPeriodicMode_shouldDeferWriteToNextSnapshot() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.PERIODIC, 0, 3600, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+        long bytesAfterLoad = dataLoader.getFlushMetrics().getBytesWritten();
+
+        Person person = new Person("Periodic", "Snapshot", "1 Main St", "Culver", "97451", "841-000-0000", "periodic@email.com");
+        dataLoader.mutate(() -> {
+            dataLoader.getDataFile().getPersons().add(person);
+            dataLoader.recordMutation(JournalEntry.personAdded(person));
+            return null;
+        });
+        assertEquals(bytesAfterLoad, dataLoader.getFlushMetrics().getBytesWritten());
+
+        dataLoader.shutdown();
+        assertEquals(1, dataLoader.getFlushMetrics().getFlushCount());
+        DataFile saved = objectMapper.readValue(file, DataFile.class);
+        assertTrue(saved.getPersons().stream().anyMatch(p -> p.getLastName().equals("Snapshot")));
+    }
+
+    @Test
+    public void recordMutation_inMemoryOnlyMode_shouldNeverWrite() {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.MEMORY_ONLY, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+
+        Person person = new Person("Memory", "Only", "1 Main St", "Culver", "97451", "841-000-0000", "memory@email.com");
+        dataLoader.getDataFile().getPersons().add(person);
+        dataLoader.recordMutation(JournalEntry.personAdded(person));
+        dataLoader.shutdown();
+
+        assertFalse(file.exists());
+        assertEquals(0, dataLoader.getFlushMetrics().getBytesWritten());
+    }
+
+    @Test
+    public void reloadIfChanged_shouldSwapInReplacedFileWhilePinnedReadsKeepTheirData() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+        dataLoader.pinDataFile();
+        DataFile before = dataLoader.getDataFile();
+
+        new SnapshotWriter(objectMapper).write(dataFileWith(
+                new Person("New", "Upstream", "1 Main St", "Culver", "97451", "841-000-0000", "new@email.com")), file.toPath());
+
+        assertTrue(dataLoader.hasExternalChanges());
+        assertTrue(dataLoader.reloadIfChanged());
+        assertSame(before, dataLoader.getDataFile());
+        dataLoader.unpinDataFile();
+        assertEquals(List.of("Upstream"), dataLoader.getDataFile().getPersons().stream().map(Person::getLastName).toList());
+        assertFalse(dataLoader.hasExternalChanges());
+        assertFalse(dataLoader.reloadIfChanged());
+    }
+
+    @Test
+    public void reloadIfChanged_shouldIgnoreFilesWrittenByTheDataLoader() {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.SYNC, 0, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SPLIT, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+        DataFile loaded = dataLoader.getDataFile();
+
+        Person person = new Person("Own", "Write", "1 Main St", "Culver", "97451", "841-000-0000", "own@email.com");
+        loaded.getPersons().add(person);
+        dataLoader.recordMutation(JournalEntry.personAdded(person));
+
+        assertFalse(dataLoader.hasExternalChanges());
+        assertFalse(dataLoader.reloadIfChanged());
+        assertSame(loaded, dataLoader.getDataFile());
+    }
+
+    @Test
+    public void reloadIfChanged_inWriteBehindMode_shouldDiscardPendingMutations() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = new DataLoader(objectMapper, file.getPath(), Durability.WRITE_BEHIND, 60_000, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+        Person pending = new Person("Pending", "Change", "1 Main St", "Culver", "97451", "841-000-0000", "pending@email.com");
+        dataLoader.getDataFile().getPersons().add(pending);
+        dataLoader.recordMutation(JournalEntry.personAdded(pending));
+
+        new SnapshotWriter(objectMapper).write(dataFileWith(
+                new Person("New", "Upstream", "1 Main St", "Culver", "97451", "841-000-0000", "new@email.com")), file.toPath());
+        assertTrue(dataLoader.reloadIfChanged());
+        dataLoader.shutdown();
+
+        assertEquals(0, dataLoader.getFlushMetrics().getFlushCount());
+        DataFile saved = objectMapper.readValue(file, DataFile.class);
+        assertEquals(List.of("Upstream"), saved.getPersons().stream().map(Person::getLastName).toList());
+    }
+
+    @Test
+    public void flush_inDeltaMode_shouldWriteOnlyChangedRecordsAndReplayThemOnNextLoad() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = deltaDataLoader(file, Long.MAX_VALUE);
+        dataLoader.loadJsonFile();
+        long baseModified = file.lastModified();
+        int personCount = dataLoader.getDataFile().getPersons().size();
+
+        Person added = new Person("Delta", "Segment", "1 Main St", "Culver", "97451", "841-000-0000", "delta@email.com");
+        Person first = dataLoader.getDataFile().getPersons().getFirst();
+        dataLoader.mutate(() -> {
+            dataLoader.getDataFile().getPersons().add(added);
+            dataLoader.recordMutation(JournalEntry.personAdded(added));
+            dataLoader.getDataFile().getPersons().remove(first);
+            dataLoader.recordMutation(JournalEntry.personDeleted(first.getFirstName(), first.getLastName()));
+            return null;
+        });
+        dataLoader.flush();
+
+        assertEquals(baseModified, file.lastModified());
+        Path segment = tempDir.resolve("data.json.delta.1");
+        assertTrue(Files.exists(segment));
+        assertTrue(Files.size(segment) < file.length() / 4);
+
+        DataLoader reloaded = deltaDataLoader(file, Long.MAX_VALUE);
+        reloaded.loadJsonFile();
+        List<Person> persons = reloaded.getDataFile().getPersons();
+        assertEquals(personCount, persons.size());
+        assertTrue(persons.stream().anyMatch(p -> p.getLastName().equals("Segment")));
+        assertTrue(persons.stream().noneMatch(p -> p.getFirstName().equals(first.getFirstName())
+                && p.getLastName().equals(first.getLastName())));
+        // The segments were folded into the data file
+        assertFalse(Files.exists(segment));
+    }
+
+    @Test
+    public void loadJsonFile_inDeltaMode_shouldStopReplayAtCorruptedSegment() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = deltaDataLoader(file, Long.MAX_VALUE);
+        dataLoader.loadJsonFile();
+        for (String lastName : List.of("Valid", "Corrupted")) {
+            Person person = new Person("Delta", lastName, "1 Main St", "Culver", "97451", "841-000-0000", "delta@email.com");
+            dataLoader.mutate(() -> {
+                dataLoader.getDataFile().getPersons().add(person);
+                dataLoader.recordMutation(JournalEntry.personAdded(person));
+                return null;
+            });
+            dataLoader.flush();
+        }
+        Path corrupted = tempDir.resolve("data.json.delta.2");
+        Files.writeString(corrupted, Files.readString(corrupted).replace("Corrupted", "Tampered!"));
+
+        DataLoader reloaded = deltaDataLoader(file, Long.MAX_VALUE);
+        reloaded.loadJsonFile();
+
+        List<String> lastNames = reloaded.getDataFile().getPersons().stream().map(Person::getLastName).toList();
+        assertTrue(lastNames.contains("Valid"));
+        assertFalse(lastNames.contains("Corrupted"));
+        assertFalse(lastNames.contains("Tampered!"));
+    }
+
+    @Test
+    public void flush_inDeltaMode_shouldMergeSegmentsIntoBaseOncePastThreshold() throws Exception {
+        File file = tempDir.resolve("data.json").toFile();
+        DataLoader dataLoader = deltaDataLoader(file, 1);
+        dataLoader.loadJsonFile();
+
+        Person person = new Person("Merged", "Delta", "1 Main St", "Culver", "97451", "841-000-0000", "merged@email.com");
+        dataLoader.mutate(() -> {
+            dataLoader.getDataFile().getPersons().add(person);
+            dataLoader.recordMutation(JournalEntry.personAdded(person));
+            return null;
+        });
+        dataLoader.flush();
+        dataLoader.shutdown();
+
+        assertFalse(Files.exists(tempDir.resolve("data.json.delta.1")));
+        DataFile saved = objectMapper.readValue(file, DataFile.class);
+        assertTrue(saved.getPersons().stream().anyMatch(p -> p.getFirstName().equals("Merged")));
+    }
+
+    private static DataFile dataFileWith(Person person) {
+        DataFile dataFile = new DataFile();
+        dataFile.setPersons(List.of(person));
+        dataFile.setFireStations(List.of());
+        dataFile.setMedicalRecords(List.of());
+        return dataFile;
+    }
+
+    private DataLoader deltaDataLoader(File file, long mergeThresholdBytes) {
+        return new DataLoader(objectMapper, file.getPath(), Durability.DELTA, 60_000, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, mergeThresholdBytes);
+    }
+
+    private DataLoader journalingDataLoader(File file) {
+        return new DataLoader(objectMapper, file.getPath(), Durability.JOURNAL, 0, 60, MutationJournal.FsyncPolicy.ALWAYS, 1000, Long.MAX_VALUE, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+    }
+}
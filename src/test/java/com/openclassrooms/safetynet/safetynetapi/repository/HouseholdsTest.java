@@ -0,0 +1,118 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class HouseholdsTest {
+
+    @Mock
+    private DataLoader dataLoader;
+
+    @InjectMocks
+    private InMemoryPersonRepository personRepository;
+
+    @InjectMocks
+    private InMemoryMedicalRecordRepository medicalRecordRepository;
+
+    @InjectMocks
+    private InMemoryFireStationRepository fireStationRepository;
+
+    private final DataFile data = new DataFile();
+
+    private final Person john = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+    private final Person tenley = new Person("Tenley", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "tenz@email.com");
+    private final MedicalRecord johnRecord = new MedicalRecord("John", "Boyd", LocalDate.now().minusYears(40), List.of(), List.of());
+    private final MedicalRecord tenleyRecord = new MedicalRecord("Tenley", "Boyd", LocalDate.now().minusYears(12), List.of(), List.of());
+
+    @BeforeEach
+    public void setUp() {
+        lenient().when(dataLoader.mutate(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        lenient().when(dataLoader.getDataFile()).thenReturn(data);
+        data.setPersons(new ArrayList<>(List.of(john, tenley)));
+        data.setMedicalRecords(new ArrayList<>(List.of(johnRecord, tenleyRecord)));
+        data.setFireStations(new ArrayList<>(List.of(new FireStation("1509 Culver St", 3), new FireStation("29 15th St", 2))));
+        new RepositoryBootstrap(dataLoader, List.of(personRepository, medicalRecordRepository, fireStationRepository)).prepare(data);
+    }
+
+    @Test
+    public void prepare_shouldBuildTheHouseholdOfEveryAddress() {
+        Household household = personRepository.getHousehold(" 1509 CULVER st");
+
+        assertEquals("1509 Culver St", household.getAddress());
+        assertEquals(3, household.getStation());
+        assertEquals(List.of(john, tenley), household.getResidents().stream().map(Household.Resident::person).toList());
+        assertSame(tenleyRecord, household.getResidents().get(1).medicalRecord());
+        assertEquals(1, household.getAdultCount());
+        assertEquals(1, household.getChildCount());
+
+        Household stationOnly = personRepository.getHousehold("29 15th St");
+        assertEquals(2, stationOnly.getStation());
+        assertTrue(stationOnly.getResidents().isEmpty());
+        assertNull(personRepository.getHousehold("1 Unknown St"));
+    }
+
+    @Test
+    public void personMutations_shouldRefreshTheHouseholdsOfTheirAddresses() {
+        personRepository.update(new Person("Tenley", "Boyd", "29 15th St", "Culver", "97451", "841-874-6512", "tenz@email.com"));
+
+        assertEquals(0, personRepository.getHousehold("1509 Culver St").getChildCount());
+        Household moved = personRepository.getHousehold("29 15th St");
+        assertEquals(1, moved.getChildCount());
+        assertEquals("Tenley", moved.getResidents().getFirst().person().getFirstName());
+
+        personRepository.delete("Tenley", "Boyd");
+        assertTrue(personRepository.getHousehold("29 15th St").getResidents().isEmpty());
+
+        personRepository.save(new Person("Roger", "Boyd", "1 New St", "Culver", "97451", "841-874-6512", "jaboyd@email.com"));
+        Household created = personRepository.getHousehold("1 new st");
+        assertNull(created.getStation());
+        assertNull(created.getResidents().getFirst().medicalRecord());
+        assertEquals(0, created.getAdultCount() + created.getChildCount());
+    }
+
+    @Test
+    public void medicalRecordMutations_shouldRecountAdultsAndChildren() {
+        medicalRecordRepository.updateMedicalRecord(new MedicalRecord("Tenley", "Boyd", LocalDate.now().minusYears(19), List.of(), List.of()));
+        assertEquals(2, personRepository.getHousehold("1509 Culver St").getAdultCount());
+
+        medicalRecordRepository.deleteMedicalRecord("John", "Boyd");
+        Household household = personRepository.getHousehold("1509 Culver St");
+        assertEquals(1, household.getAdultCount());
+        assertNull(household.getResidents().getFirst().medicalRecord());
+
+        medicalRecordRepository.saveMedicalRecord(new MedicalRecord("John", "Boyd", LocalDate.now().minusYears(5), List.of(), List.of()));
+        assertEquals(1, personRepository.getHousehold("1509 Culver St").getChildCount());
+    }
+
+    @Test
+    public void fireStationMutations_shouldRefreshTheStationOfTheHouseholds() {
+        fireStationRepository.updateFireStation(new FireStation("1509 culver st", 4));
+        assertEquals(4, personRepository.getHousehold("1509 Culver St").getStation());
+
+        fireStationRepository.deleteByStationNumber(4);
+        assertNull(personRepository.getHousehold("1509 Culver St").getStation());
+
+        fireStationRepository.deleteFirstOccurrenceFireStationByAddress("29 15th St");
+        assertNull(personRepository.getHousehold("29 15th St"));
+
+        fireStationRepository.saveFireStation(new FireStation("1509 Culver St", 1));
+        assertEquals(1, personRepository.getHousehold("1509 Culver St").getStation());
+    }
+}
@@ -0,0 +1,66 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class InMemoryFireStationRepositoryTest {
+
+    @Mock
+    private DataLoader dataLoader;
+
+    @InjectMocks
+    private InMemoryFireStationRepository fireStationRepository;
+
+    private final DataFile data = new DataFile();
+
+    @BeforeEach
+    public void setUp() {
+        lenient().when(dataLoader.mutate(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        when(dataLoader.getDataFile()).thenReturn(data);
+    }
+
+    @Test
+    public void stationIndexes_shouldFollowMutations() {
+        FireStation culver = new FireStation("1509 Culver St", 3);
+        FireStation steppes = new FireStation("112 Steppes Pl", 3);
+        FireStation downing = new FireStation("892 Downing Ct", 2);
+        data.setFireStations(new ArrayList<>(List.of(culver, steppes, downing)));
+        fireStationRepository.prepare(data);
+
+        assertEquals(List.of("1509 Culver St", "112 Steppes Pl"), fireStationRepository.getAddressesByStation(3));
+        assertSame(culver, fireStationRepository.getFireStationByAddress(" 1509 CULVER st"));
+
+        FireStation updated = fireStationRepository.updateFireStation(new FireStation("112 Steppes Pl", 2));
+        assertEquals(List.of("1509 Culver St"), fireStationRepository.getAddressesByStation(3));
+        assertEquals(List.of(downing, updated), fireStationRepository.getFireStationByStationNumber(2));
+        // The fire station is replaced, not modified
+        assertEquals(3, steppes.getStation());
+        assertEquals(List.of(culver, updated, downing), data.getFireStations());
+
+        FireStation main = new FireStation("1 Main St", 4);
+        fireStationRepository.saveFireStation(main);
+        assertSame(main, fireStationRepository.getFireStationByAddress("1 Main St"));
+
+        assertTrue(fireStationRepository.deleteByStationNumber(2));
+        assertNull(fireStationRepository.getFireStationByAddress("892 Downing Ct"));
+        assertTrue(fireStationRepository.getAddressesByStation(2).isEmpty());
+
+        assertTrue(fireStationRepository.deleteFirstOccurrenceFireStationByAddress("1509 Culver St"));
+        assertFalse(fireStationRepository.deleteFirstOccurrenceFireStationByAddress("1509 Culver St"));
+        assertEquals(List.of(main), data.getFireStations());
+    }
+}
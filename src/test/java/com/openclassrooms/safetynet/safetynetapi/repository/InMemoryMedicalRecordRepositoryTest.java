@@ -0,0 +1,58 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.exception.MedicalRecordNotFoundException;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class InMemoryMedicalRecordRepositoryTest {
+
+    @Mock
+    private DataLoader dataLoader;
+
+    @InjectMocks
+    private InMemoryMedicalRecordRepository medicalRecordRepository;
+
+    private final DataFile data = new DataFile();
+
+    @BeforeEach
+    public void setUp() {
+        lenient().when(dataLoader.mutate(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        when(dataLoader.getDataFile()).thenReturn(data);
+    }
+
+    @Test
+    public void getMedicalRecordByFirstNameAndLastName_shouldFollowMutations() {
+        MedicalRecord john = new MedicalRecord("John", "Boyd", LocalDate.of(1984, 3, 6), List.of("aznol:350mg"), List.of("nillacilan"));
+        data.setMedicalRecords(new ArrayList<>(List.of(john)));
+        medicalRecordRepository.prepare(data);
+
+        assertSame(john, medicalRecordRepository.getMedicalRecordByFirstNameAndLastName(" john ", "BOYD"));
+
+        MedicalRecord tenley = new MedicalRecord("Tenley", "Boyd", LocalDate.of(2012, 2, 18), List.of(), List.of("peanut"));
+        medicalRecordRepository.saveMedicalRecord(tenley);
+        assertSame(tenley, medicalRecordRepository.getMedicalRecordByFirstNameAndLastName("Tenley", "Boyd"));
+
+        medicalRecordRepository.updateMedicalRecord(new MedicalRecord("John", "Boyd", LocalDate.of(1984, 3, 6), List.of(), List.of()));
+        assertTrue(medicalRecordRepository.getMedicalRecordByFirstNameAndLastName("John", "Boyd").getMedications().isEmpty());
+
+        assertTrue(medicalRecordRepository.deleteMedicalRecord("John", "Boyd"));
+        assertNull(medicalRecordRepository.getMedicalRecordByFirstNameAndLastName("John", "Boyd"));
+        assertEquals(List.of(tenley), data.getMedicalRecords());
+        assertThrows(MedicalRecordNotFoundException.class, () -> medicalRecordRepository.updateMedicalRecord(john));
+    }
+}
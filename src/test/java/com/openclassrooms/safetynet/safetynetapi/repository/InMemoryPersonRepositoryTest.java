@@ -3,6 +3,7 @@ package com.openclassrooms.safetynet.safetynetapi.repository;
 import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
 import com.openclassrooms.safetynet.safetynetapi.model.Person;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
@@ -13,6 +14,7 @@ import org.springframework.test.context.ActiveProfiles;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -29,6 +31,13 @@ public class InMemoryPersonRepositoryTest {
     @InjectMocks
     private InMemoryPersonRepository personRepository;
 
+    @BeforeEach
+    public void setUp() {
+        lenient().when(dataLoader.mutate(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        // Repositories read the current data from the DataLoader
+        lenient().when(dataLoader.getDataFile()).thenReturn(dataFile);
+    }
+
     @Test
     public void deleteFirstOccurrence_whenPersonExists_shouldRemovePersonAndCallSave() {
         // When getDataFile() is called, return the mocked dataFile
@@ -40,21 +49,19 @@ public class InMemoryPersonRepositoryTest {
         // Prepare the initial list
         List<Person> persons = new ArrayList<>(List.of(p1, p2));
 
-        // Inject the list into the repository
-        personRepository.setPersons(persons);
+        // Serve the list from the data file
+        when(dataFile.getPersons()).thenReturn(persons);
 
         // Call the method to test
         personRepository.deleteFirstOccurrence("John", "Johnson");
 
-        // Verify that p1 has been removed
-        assertFalse(persons.contains(p1));
-        assertTrue(persons.contains(p2));
-
-        // Verify that dataFile has been updated
-        verify(dataFile).setPersons(persons);
+        // Verify that dataFile has been updated with a list without p1
+        verify(dataFile).setPersons(List.of(p2));
+        // The list being read is left unchanged
+        assertEquals(List.of(p1, p2), persons);
 
-        // Verify that saveJsonFile was called
-        verify(dataLoader).saveJsonFile();
+        // Verify that the deletion was persisted
+        verify(dataLoader).recordMutation(any(JournalEntry.class));
     }
 
     @Test
@@ -62,7 +69,7 @@ public class InMemoryPersonRepositoryTest {
         // Given: a list containing one person
         List<Person> persons = new ArrayList<>();
         persons.add(new Person("John", "Johnson", "123 Main St", "Springfield", "12345", "123-456-7890", "john.doe@example.com"));
-        personRepository.setPersons(persons);
+        when(dataFile.getPersons()).thenReturn(persons);
 
         // When: attempting to delete a person who does not exist
         personRepository.deleteFirstOccurrence("NonExisting", "Person");
@@ -74,24 +81,24 @@ public class InMemoryPersonRepositoryTest {
         // Optional: verify that dataFile.setPersons() was not called since nothing was deleted
         verify(dataFile, never()).setPersons(any());
 
-        // Optional: verify that saveJsonFile() was not called either
-        verify(dataLoader, never()).saveJsonFile();
+        // Optional: verify that nothing was persisted either
+        verify(dataLoader, never()).recordMutation(any());
     }
 
     @Test
     public void delete_whenNonExistingPerson_shouldReturnFalseAndNotChangeData() {
         List<Person> persons = new ArrayList<>();
         persons.add(new Person("John", "Johnson", "123 Main St", "Springfield", "12345", "123-456-7890", "john.doe@example.com"));
-        personRepository.setPersons(persons);
+        when(dataFile.getPersons()).thenReturn(persons);
 
         boolean result = personRepository.delete("NonExisting", "Person");
 
         assertFalse(result); // nothing removed
         assertEquals(1, persons.size()); // list unchanged
 
-        // Optionally verify that dataFile.setPersons or dataLoader.saveJsonFile were NOT called
+        // Optionally verify that dataFile.setPersons or dataLoader.recordMutation were NOT called
         verify(dataFile, never()).setPersons(any());
-        verify(dataLoader, never()).saveJsonFile();
+        verify(dataLoader, never()).recordMutation(any());
     }
 
     @Test
@@ -99,7 +106,7 @@ public class InMemoryPersonRepositoryTest {
 
         // Setup list with a person different from the one we want to update
         Person existing = new Person("John", "Doe", "123 Main St", "Springfield", "12345", "123-456-7890", "john.doe@example.com");
-        personRepository.setPersons(new ArrayList<>(List.of(existing)));
+        when(dataFile.getPersons()).thenReturn(new ArrayList<>(List.of(existing)));
 
         // Create a person to update who is NOT in the list
         Person toUpdate = new Person("Jane", "Smith", "456 Second St", "Springfield", "12345", "987-654-3210", "jane.smith@example.com");
@@ -113,9 +120,130 @@ public class InMemoryPersonRepositoryTest {
         // Verify that dataFile.setPersons was NOT called because nothing was updated
         verify(dataFile, never()).setPersons(any());
 
-        // Verify that saveJsonFile was NOT called either
-        verify(dataLoader, never()).saveJsonFile();
+        // Verify that recordMutation was NOT called either
+        verify(dataLoader, never()).recordMutation(any());
+    }
+
+    @Test
+    public void findByFirstNameAndLastName_shouldIgnoreCaseAndWhitespace() {
+        Person john = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        when(dataFile.getPersons()).thenReturn(new ArrayList<>(List.of(john)));
+
+        assertSame(john, personRepository.findByFirstNameAndLastName("  JOHN ", "boyd"));
+        assertNull(personRepository.findByFirstNameAndLastName("John", "Boy"));
+    }
+
+    @Test
+    public void mutations_shouldKeepPreparedIndexUpToDate() {
+        Person john = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        Person firstJacob = new Person("Jacob", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6513", "drk@email.com");
+        Person secondJacob = new Person("Jacob", "Boyd", "29 15th St", "Culver", "97451", "841-874-6544", "jb@email.com");
+        DataFile data = new DataFile();
+        data.setPersons(new ArrayList<>(List.of(john, firstJacob, secondJacob)));
+        when(dataLoader.getDataFile()).thenReturn(data);
+        personRepository.prepare(data);
+
+        Person tenley = new Person("Tenley", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "tenz@email.com");
+        personRepository.save(tenley);
+        assertSame(tenley, personRepository.findByFirstNameAndLastName("tenley", "BOYD"));
+
+        Person movedJohn = new Person("John", "Boyd", "892 Downing Ct", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        personRepository.update(movedJohn);
+        assertSame(movedJohn, personRepository.findByFirstNameAndLastName("John", "Boyd"));
+        assertSame(movedJohn, data.getPersons().getFirst());
+
+        personRepository.deleteFirstOccurrence("Jacob", "Boyd");
+        assertSame(secondJacob, personRepository.findByFirstNameAndLastName("Jacob", "Boyd"));
+
+        assertTrue(personRepository.delete("John", "Boyd"));
+        assertNull(personRepository.findByFirstNameAndLastName("John", "Boyd"));
+        assertEquals(List.of(secondJacob, tenley), data.getPersons());
+    }
+
+    @Test
+    public void getPersonByAddress_shouldFollowPersonsMovingHouse() {
+        Person john = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        Person tenley = new Person("Tenley", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "tenz@email.com");
+        DataFile data = new DataFile();
+        data.setPersons(new ArrayList<>(List.of(john, tenley)));
+        when(dataLoader.getDataFile()).thenReturn(data);
+        personRepository.prepare(data);
+
+        assertEquals(List.of(john, tenley), personRepository.getPersonByAddress(" 1509  culver ST "));
+
+        Person movedTenley = new Person("Tenley", "Boyd", "29 15th St", "Culver", "97451", "841-874-6512", "tenz@email.com");
+        personRepository.update(movedTenley);
+        assertEquals(List.of(john), personRepository.getPersonByAddress("1509 Culver St"));
+        assertEquals(List.of(movedTenley), personRepository.getPersonByAddress("29 15th St"));
+
+        personRepository.delete("John", "Boyd");
+        assertTrue(personRepository.getPersonByAddress("1509 Culver St").isEmpty());
+    }
+
+    @Test
+    public void findEmailsByCity_shouldKeepDistinctEmailsUntilTheirLastResidentLeaves() {
+        Person john = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        Person jacob = new Person("Jacob", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6513", "jaboyd@email.com");
+        Person tenley = new Person("Tenley", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "tenz@email.com");
+        DataFile data = new DataFile();
+        data.setPersons(new ArrayList<>(List.of(john, jacob, tenley)));
+        when(dataLoader.getDataFile()).thenReturn(data);
+        personRepository.prepare(data);
+
+        assertEquals(List.of("jaboyd@email.com", "tenz@email.com"), personRepository.findEmailsByCity(" culver"));
+        assertEquals(List.of(john, jacob, tenley), personRepository.findByLastName("BOYD"));
+
+        personRepository.delete("John", "Boyd");
+        assertEquals(List.of("jaboyd@email.com", "tenz@email.com"), personRepository.findEmailsByCity("Culver"));
+
+        personRepository.update(new Person("Jacob", "Boyd", "1 Main St", "Springfield", "12345", "841-874-6513", "jaboyd@email.com"));
+        assertEquals(List.of("tenz@email.com"), personRepository.findEmailsByCity("Culver"));
+        assertEquals(List.of("jaboyd@email.com"), personRepository.findEmailsByCity("Springfield"));
+        assertEquals(List.of(tenley), personRepository.findByCity("Culver"));
     }
 
+    @Test
+    public void suggestByName_shouldMatchFirstOrLastNamePrefixAndFollowMutations() {
+        Person john = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        Person jacob = new Person("Jacob", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6513", "drk@email.com");
+        Person tessa = new Person("Tessa", "Carman", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "tenz@email.com");
+        DataFile data = new DataFile();
+        data.setPersons(new ArrayList<>(List.of(john, jacob, tessa)));
+        when(dataLoader.getDataFile()).thenReturn(data);
+        personRepository.prepare(data);
+
+        assertEquals(List.of(jacob, john), personRepository.suggestByName(" BOYD ", 10));
+        assertEquals(List.of(jacob), personRepository.suggestByName("boyd", 1));
+        assertEquals(List.of(john), personRepository.suggestByName("jo", 10));
+        // One person per address, the first of the list
+        assertEquals(List.of(john), personRepository.suggestByAddress("1509 cul", 10));
+        assertEquals(List.of(tessa), personRepository.suggestByAddress("8", 10));
+
+        personRepository.delete("Jacob", "Boyd");
+        personRepository.update(new Person("Tessa", "Carman", "1 Main St", "Culver", "97451", "841-874-6512", "tenz@email.com"));
+
+        assertEquals(List.of(john), personRepository.suggestByName("boyd", 10));
+        assertTrue(personRepository.suggestByAddress("834", 10).isEmpty());
+        assertEquals(1, personRepository.suggestByAddress("1 main", 10).size());
+    }
 
+    @Test
+    public void findLastNamesSoundingLike_shouldReturnDistinctLastNamesUntilTheirLastPersonLeaves() {
+        Person john = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        Person jacob = new Person("Jacob", "BOYD", "1509 Culver St", "Culver", "97451", "841-874-6513", "drk@email.com");
+        Person tessa = new Person("Tessa", "Bode", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "tenz@email.com");
+        DataFile data = new DataFile();
+        data.setPersons(new ArrayList<>(List.of(john, jacob, tessa)));
+        when(dataLoader.getDataFile()).thenReturn(data);
+        personRepository.prepare(data);
+
+        assertEquals(List.of("boyd", "bode"), personRepository.findLastNamesSoundingLike("Boid"));
+        assertTrue(personRepository.findLastNamesSoundingLike("Carman").isEmpty());
+
+        personRepository.delete("John", "Boyd");
+        assertEquals(List.of("boyd", "bode"), personRepository.findLastNamesSoundingLike("boyd"));
+
+        personRepository.delete("Jacob", "Boyd");
+        assertEquals(List.of("bode"), personRepository.findLastNamesSoundingLike("boyd"));
+    }
 }
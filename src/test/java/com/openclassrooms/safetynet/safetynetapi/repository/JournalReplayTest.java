@@ -0,0 +1,60 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalReplayTest {
+
+    @Test
+    public void applyTo_shouldReplayEntriesWithTheSemanticsOfTheRepositories() {
+        DataFile data = new DataFile();
+        data.setPersons(new ArrayList<>(List.of(
+                person("John", "Boyd", "841-874-6512"),
+                person("Jacob", "Boyd", "841-874-6513"),
+                person("JOHN", " boyd", "841-874-6514"),
+                person("Tessa", "Carman", "841-874-6515"))));
+        data.setFireStations(new ArrayList<>(List.of(new FireStation("1509 Culver St", 3),
+                new FireStation("834 Binoc Ave", 3), new FireStation("112 Steppes Pl", 4))));
+        data.setMedicalRecords(new ArrayList<>(List.of(
+                new MedicalRecord("John", "Boyd", LocalDate.of(1984, 3, 6), List.of(), List.of()))));
+
+        JournalReplay replay = new JournalReplay(data);
+        for (JournalEntry entry : List.of(
+                // Only the first John Boyd is updated, then removed
+                JournalEntry.personUpdated(person("john", "BOYD", "000")),
+                JournalEntry.personFirstOccurrenceDeleted("John", "Boyd"),
+                JournalEntry.personAdded(person("Ron", "Peters", "111")),
+                JournalEntry.personAdded(person("Ron", "Peters", "222")),
+                JournalEntry.personDeleted("Tessa", "Carman"),
+                JournalEntry.personUpdated(person("Ron", "Peters", "333")),
+                JournalEntry.fireStationUpdated(new FireStation("834 BINOC AVE", 4)),
+                JournalEntry.fireStationsDeletedByStation(3),
+                JournalEntry.fireStationAdded(new FireStation("29 15th St", 3)),
+                JournalEntry.medicalRecordUpdated(new MedicalRecord("JOHN", "Boyd", LocalDate.of(1984, 3, 7),
+                        List.of("aznol:350mg"), List.of())),
+                JournalEntry.medicalRecordDeleted("Unknown", "Person"))) {
+            entry.applyTo(replay);
+        }
+        replay.finish();
+
+        assertEquals(List.of("Jacob 841-874-6513", "JOHN 841-874-6514", "Ron 333", "Ron 222"),
+                data.getPersons().stream().map(p -> p.getFirstName() + " " + p.getPhone()).toList());
+        assertEquals(List.of("834 Binoc Ave 4", "112 Steppes Pl 4", "29 15th St 3"),
+                data.getFireStations().stream().map(fs -> fs.getAddress() + " " + fs.getStation()).toList());
+        assertEquals("John", data.getMedicalRecords().getFirst().getFirstName());
+        assertEquals(List.of("aznol:350mg"), data.getMedicalRecords().getFirst().getMedications());
+    }
+
+    private static Person person(String firstName, String lastName, String phone) {
+        return new Person(firstName, lastName, "1509 Culver St", "Culver", "97451", phone, "jaboyd@email.com");
+    }
+}
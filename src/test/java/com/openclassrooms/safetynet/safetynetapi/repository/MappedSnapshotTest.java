@@ -0,0 +1,152 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MappedSnapshotTest {
+
+    private final ObjectMapper smileMapper = new ObjectMapper().findAndRegisterModules().copyWith(new SmileFactory());
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private DataLoader dataLoader;
+
+    @InjectMocks
+    private InMemoryPersonRepository personRepository;
+
+    @InjectMocks
+    private InMemoryFireStationRepository fireStationRepository;
+
+    @InjectMocks
+    private InMemoryMedicalRecordRepository medicalRecordRepository;
+
+    private DataFile mapped;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        DataFile data = new DataFile();
+        data.setPersons(List.of(
+                new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com"),
+                new Person("Jacob", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6513", "drk@email.com"),
+                new Person("Tessa", "Carman", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "tenz@email.com"),
+                new Person("Tenley", "BOYD", "1509  culver st", "Culver", "97451", "841-874-6512", "jaboyd@email.com"),
+                new Person("Ron", "Boyde", "112 Steppes Pl", "Paris", "97451", "841-874-8888", "ron@email.com")));
+        data.setFireStations(List.of(new FireStation("1509 Culver St", 3), new FireStation("834 Binoc Ave", 3),
+                new FireStation("112 Steppes Pl", 4)));
+        data.setMedicalRecords(List.of(
+                new MedicalRecord("John", "Boyd", LocalDate.of(1984, 3, 6), List.of("aznol:350mg"), List.of()),
+                new MedicalRecord("Tenley", "Boyd", LocalDate.of(2012, 2, 18), List.of(), List.of("peanut"))));
+        Path file = tempDir.resolve("data.mapped");
+        new MappedSnapshotWriter(smileMapper).write(data, file);
+        mapped = MappedSnapshot.map(smileMapper, file);
+
+        lenient().when(dataLoader.getDataFile()).thenReturn(mapped);
+        lenient().when(dataLoader.isReadOnly()).thenReturn(true);
+        new RepositoryBootstrap(dataLoader, List.of(personRepository, fireStationRepository, medicalRecordRepository))
+                .prepare(mapped);
+    }
+
+    @Test
+    public void prepare_shouldNotBuildAnyIndexOverMappedData() {
+        assertNull(mapped.getIndex(InMemoryPersonRepository.INDEXES));
+        assertNull(mapped.getIndex(InMemoryFireStationRepository.INDEXES));
+        assertNull(mapped.getIndex(InMemoryMedicalRecordRepository.INDEXES));
+        assertNull(mapped.getIndex(MedicalRecordLinks.class));
+        assertNull(mapped.getIndex(Households.class));
+        assertThrows(IllegalStateException.class, () -> InMemoryPersonRepository.INDEXES.of(mapped));
+    }
+
+    @Test
+    public void keyTable_shouldFindTheRecordsOfAKeyInTheOrderOfTheList() {
+        MappedKeyTable addresses = ((MappedRecordList<Person>) mapped.getPersons()).keyTable(MappedKey.PERSON_ADDRESS);
+
+        assertEquals(5, addresses.size());
+        assertArrayEquals(new int[]{0, 1, 3}, addresses.find("1509 culver st"));
+        assertArrayEquals(new int[0], addresses.find("1509 culver"));
+        assertArrayEquals(new int[]{0, 1, 3}, addresses.findByPrefix("1509"));
+    }
+
+    @Test
+    public void personLookups_shouldUseTheKeyTables() {
+        assertEquals("Jacob", personRepository.findByFirstNameAndLastName("JACOB", " boyd").getFirstName());
+        assertNull(personRepository.findByFirstNameAndLastName("Jacob", "Carman"));
+        // The last name "boyd" must not match "boyde"
+        assertEquals(List.of("John", "Jacob", "Tenley"),
+                personRepository.findByLastName("Boyd").stream().map(Person::getFirstName).toList());
+        assertEquals(List.of("John", "Jacob", "Tessa", "Tenley"),
+                personRepository.findByCity("culver").stream().map(Person::getFirstName).toList());
+        assertEquals(List.of("jaboyd@email.com", "drk@email.com", "tenz@email.com"),
+                personRepository.findEmailsByCity("Culver"));
+        assertEquals(List.of("boyd", "boyde"), personRepository.findLastNamesSoundingLike("Boid"));
+        assertEquals(List.of("Jacob", "John"),
+                personRepository.suggestByName("j", 5).stream().map(Person::getFirstName).toList());
+        assertEquals(List.of("Tenley"),
+                personRepository.suggestByName("boyd t", 5).stream().map(Person::getFirstName).toList());
+        assertEquals(List.of("John"),
+                personRepository.suggestByAddress("1509", 5).stream().map(Person::getFirstName).toList());
+    }
+
+    @Test
+    public void nameSuggestionsAndSoundex_shouldReadPrefixRangesOfTheKeyTables() {
+        MappedKeyTable soundex = ((MappedRecordList<Person>) mapped.getPersons()).keyTable(MappedKey.PERSON_LAST_NAME_SOUNDEX);
+
+        assertArrayEquals(new int[]{0, 1, 3, 4}, soundex.findByPrefix(MappedKey.soundex("Boid")));
+        assertEquals(List.of("carman"), personRepository.findLastNamesSoundingLike("Carmen"));
+        assertEquals(List.of(), personRepository.findLastNamesSoundingLike("Smith"));
+        // "last first" names only, one person per name, in the order of the names
+        assertEquals(List.of("Jacob", "John", "Tenley", "Ron"),
+                personRepository.suggestByName("b", 5).stream().map(Person::getFirstName).toList());
+        // "tenley boyd" and "tessa carman" come before the "last first" names starting with t
+        assertEquals(List.of("Tenley", "Tessa"),
+                personRepository.suggestByName("te", 5).stream().map(Person::getFirstName).toList());
+        assertEquals(List.of("Jacob", "John", "Tenley"),
+                personRepository.suggestByName("boyd ", 3).stream().map(Person::getFirstName).toList());
+    }
+
+    @Test
+    public void getHousehold_shouldBuildTheHouseholdFromTheKeyTables() {
+        Household household = personRepository.getHousehold("1509 CULVER st");
+
+        assertEquals("1509 Culver St", household.getAddress());
+        assertEquals(3, household.getStation());
+        assertEquals(List.of("John", "Jacob", "Tenley"),
+                household.getResidents().stream().map(resident -> resident.person().getFirstName()).toList());
+        assertEquals(List.of("aznol:350mg"), household.getResidents().get(0).medicalRecord().getMedications());
+        assertNull(household.getResidents().get(1).medicalRecord());
+        assertEquals(List.of("peanut"), household.getResidents().get(2).medicalRecord().getAllergies());
+        assertNull(personRepository.getHousehold("1 Nowhere Rd"));
+    }
+
+    @Test
+    public void fireStationAndMedicalRecordLookups_shouldUseTheKeyTables() {
+        assertEquals(List.of("1509 Culver St", "834 Binoc Ave"), fireStationRepository.getAddressesByStation(3));
+        assertEquals(4, fireStationRepository.getFireStationByAddress("112 steppes pl").getStation());
+        assertNull(fireStationRepository.getFireStationByAddress("1 Nowhere Rd"));
+        assertEquals(List.of("834 Binoc Ave"), fireStationRepository.suggestByAddress("8", 5).stream()
+                .map(FireStation::getAddress).toList());
+        assertEquals(LocalDate.of(2012, 2, 18),
+                medicalRecordRepository.getMedicalRecordByFirstNameAndLastName("tenley", "BOYD").getBirthdate());
+        assertNull(medicalRecordRepository.getMedicalRecordByFirstNameAndLastName("Jacob", "Boyd"));
+    }
+}
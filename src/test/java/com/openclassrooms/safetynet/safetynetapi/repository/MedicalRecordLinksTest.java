@@ -0,0 +1,91 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MedicalRecordLinksTest {
+
+    @Mock
+    private DataLoader dataLoader;
+
+    @InjectMocks
+    private InMemoryPersonRepository personRepository;
+
+    @InjectMocks
+    private InMemoryMedicalRecordRepository medicalRecordRepository;
+
+    private final DataFile data = new DataFile();
+
+    private final Person john = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+    private final MedicalRecord johnRecord = new MedicalRecord("John", "Boyd", LocalDate.of(1984, 3, 6), List.of("aznol:350mg"), List.of());
+
+    @BeforeEach
+    public void setUp() {
+        lenient().when(dataLoader.mutate(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        lenient().when(dataLoader.getDataFile()).thenReturn(data);
+        data.setPersons(new ArrayList<>(List.of(john)));
+        data.setMedicalRecords(new ArrayList<>(List.of(johnRecord)));
+        new RepositoryBootstrap(dataLoader, List.of(personRepository, medicalRecordRepository)).prepare(data);
+    }
+
+    @Test
+    public void prepare_shouldLinkEveryPersonToItsMedicalRecord() {
+        assertSame(johnRecord, MedicalRecordLinks.medicalRecordOf(data, john));
+        assertEquals(List.of(new Household.Resident(john, johnRecord)), personRepository.findResidentsByLastName("BOYD"));
+    }
+
+    @Test
+    public void medicalRecordMutations_shouldLinkThePersonsOfTheirNameAgainWithoutChangingTheCurrentVersion() {
+        DataFile current = data.copy();
+
+        assertTrue(medicalRecordRepository.deleteMedicalRecord("JOHN", "boyd"));
+        assertNull(MedicalRecordLinks.medicalRecordOf(data, john));
+        assertSame(johnRecord, MedicalRecordLinks.medicalRecordOf(current, john));
+
+        MedicalRecord added = new MedicalRecord("John", "Boyd", LocalDate.of(1984, 3, 6), List.of(), List.of());
+        medicalRecordRepository.saveMedicalRecord(added);
+        assertSame(added, MedicalRecordLinks.medicalRecordOf(data, john));
+    }
+
+    @Test
+    public void personMutations_shouldLinkSavedPersonsAndUnlinkReplacedOnes() {
+        Person tenley = new Person("Tenley", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "tenz@email.com");
+        personRepository.save(tenley);
+        assertNull(MedicalRecordLinks.medicalRecordOf(data, tenley));
+
+        Person moved = new Person("John", "Boyd", "1 Main St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        personRepository.update(moved);
+        assertSame(johnRecord, MedicalRecordLinks.medicalRecordOf(data, moved));
+        assertNull(MedicalRecordLinks.medicalRecordOf(data, john));
+    }
+
+    @Test
+    public void prepare_whenDataIsReadOnly_shouldNotLinkButLookMedicalRecordsUpByName() {
+        Person unlinked = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        DataFile readOnly = new DataFile();
+        readOnly.setPersons(List.of(unlinked));
+        readOnly.setMedicalRecords(List.of(johnRecord));
+        when(dataLoader.isReadOnly()).thenReturn(true);
+
+        new RepositoryBootstrap(dataLoader, List.of(personRepository, medicalRecordRepository)).prepare(readOnly);
+
+        assertNull(readOnly.getIndex(MedicalRecordLinks.class));
+        assertSame(johnRecord, MedicalRecordLinks.medicalRecordOf(readOnly, unlinked));
+    }
+}
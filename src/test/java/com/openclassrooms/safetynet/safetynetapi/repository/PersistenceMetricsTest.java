@@ -0,0 +1,50 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistenceMetricsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void bindTo_shouldExportPendingMutationsAndFlushesOfTheDataLoader() {
+        DataLoader dataLoader = new DataLoader(objectMapper, tempDir.resolve("data.json").toString(), Durability.WRITE_BEHIND, 60_000, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+        MeterRegistry registry = new SimpleMeterRegistry();
+        new PersistenceMetrics(dataLoader).bindTo(registry);
+        long bytesAfterLoad = dataLoader.getFlushMetrics().getBytesWritten();
+        assertEquals(0, registry.get("safetynet.data.flush.last").gauge().value());
+
+        Person person = new Person("Metric", "Export", "1 Main St", "Culver", "97451", "841-000-0000", "metric@email.com");
+        dataLoader.mutate(() -> {
+            dataLoader.getDataFile().getPersons().add(person);
+            dataLoader.recordMutation(JournalEntry.personAdded(person));
+            return null;
+        });
+        assertEquals(1, registry.get("safetynet.data.pending.mutations").gauge().value());
+        assertTrue(registry.get("safetynet.data.pending.lag").timeGauge().value() >= 0);
+
+        dataLoader.flush();
+        dataLoader.shutdown();
+
+        assertEquals(0, registry.get("safetynet.data.pending.mutations").gauge().value());
+        assertEquals(0, registry.get("safetynet.data.pending.lag").timeGauge().value());
+        assertEquals(1, registry.get("safetynet.data.flushes").functionCounter().count());
+        assertEquals(0, registry.get("safetynet.data.flush.failures").functionCounter().count());
+        assertTrue(registry.get("safetynet.data.written").functionCounter().count() > bytesAfterLoad);
+        assertTrue(registry.get("safetynet.data.flush.last").gauge().value() > 0);
+        assertTrue(registry.get("safetynet.data.flush.lag.max").timeGauge().value() >= registry.get("safetynet.data.flush.lag").timeGauge().value());
+    }
+}
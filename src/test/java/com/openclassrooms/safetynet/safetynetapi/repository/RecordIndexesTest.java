@@ -0,0 +1,127 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordIndexesTest {
+
+    private static final IndexDefinition<Person, KeyIndex<Person>> BY_NAME =
+            IndexDefinition.multi("name", KeyIndex.Matching.CANONICAL, Person::getFirstName, Person::getLastName);
+    private static final IndexDefinition<Person, KeyIndex<Person>> BY_EMAIL =
+            IndexDefinition.unique("email", KeyIndex.Matching.EXACT, Person::getEmail);
+    private static final IndexDefinition<Person, CityIndex> BY_CITY =
+            IndexDefinition.custom("city", CityIndex::new);
+
+    private final Person john = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+    private final Person jacob = new Person("Jacob", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6513", "drk@email.com");
+    private final Person otherJohn = new Person(" JOHN ", "boyd", "29 15th St", "Culver", "97451", "841-874-6514", "jaboyd@email.com");
+
+    @Test
+    public void get_shouldLookUpDeclaredIndexesByTheirMatching() {
+        RecordIndexes<Person> indexes = new RecordIndexes<>(List.of(BY_NAME, BY_EMAIL, BY_CITY), List.of(john, jacob, otherJohn));
+
+        assertEquals(List.of(john, otherJohn), indexes.get(BY_NAME).find("john", "  BOYD"));
+        assertSame(john, indexes.get(BY_NAME).get("John", "Boyd"));
+        assertSame(john, indexes.get(BY_EMAIL).get("jaboyd@email.com"));
+        assertEquals(List.of(john, otherJohn), indexes.get(BY_EMAIL).find("jaboyd@email.com"));
+        assertNull(indexes.get(BY_EMAIL).get("JABOYD@email.com"));
+        assertEquals(List.of(john, jacob, otherJohn), indexes.get(BY_CITY).findByCity("culver"));
+    }
+
+    @Test
+    public void get_whenIndexIsNotDeclared_shouldThrow() {
+        RecordIndexes<Person> indexes = new RecordIndexes<>(List.of(BY_NAME), List.of(john));
+
+        assertThrows(IllegalArgumentException.class, () -> indexes.get(BY_EMAIL));
+        assertThrows(IllegalArgumentException.class, () -> indexes.get(BY_NAME).find("John"));
+    }
+
+    @Test
+    public void mutations_shouldMaintainEveryIndexWithoutChangingTheCurrentOnes() {
+        RecordIndexes<Person> indexes = new RecordIndexes<>(List.of(BY_NAME, BY_EMAIL, BY_CITY), List.of(john));
+        Person moved = new Person("John", "Boyd", "1 Main St", "Paris", "75000", "841-874-6512", "john@email.com");
+
+        RecordIndexes<Person> changed = indexes.add(jacob).replace(john, moved).remove(jacob);
+
+        assertEquals(List.of(moved), changed.get(BY_NAME).find("john", "boyd"));
+        assertNull(changed.get(BY_EMAIL).get("jaboyd@email.com"));
+        assertSame(moved, changed.get(BY_EMAIL).get("john@email.com"));
+        assertTrue(changed.get(BY_CITY).findByCity("Culver").isEmpty());
+        assertEquals(List.of("john@email.com"), changed.get(BY_CITY).findEmailsByCity("PARIS"));
+
+        assertEquals(List.of(john), indexes.get(BY_NAME).find("john", "boyd"));
+        assertEquals(List.of(john), indexes.get(BY_CITY).findByCity("Culver"));
+        assertTrue(indexes.get(BY_CITY).findByCity("Paris").isEmpty());
+    }
+
+    @Test
+    public void cityIndex_shouldKeepResidentsAndDistinctEmailsInTheirOrder() {
+        Person tenley = new Person("Tenley", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "tenz@email.com");
+        CityIndex index = new CityIndex().build(List.of(john, jacob, otherJohn));
+
+        CityIndex changed = index.remove(john).add(tenley).remove(otherJohn).add(john);
+
+        assertEquals(List.of(jacob, tenley, john), changed.findByCity("Culver"));
+        assertEquals(List.of("drk@email.com", "tenz@email.com", "jaboyd@email.com"), changed.findEmailsByCity("Culver"));
+        assertEquals(List.of("jaboyd@email.com", "drk@email.com"), index.findEmailsByCity("Culver"));
+        assertSame(changed, changed.add(john));
+    }
+
+    @Test
+    public void cityIndex_replace_whenTheCityIsKept_shouldKeepThePersonInPlace() {
+        Person newPhone = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-000-0000", "jaboyd@email.com");
+        Person newEmail = new Person("Jacob", "Boyd", "12 Main St", "Culver", "97451", "841-874-6513", "jacob@email.com");
+        Person moved = new Person(" JOHN ", "boyd", "1 Rue Lepic", "Paris", "75018", "841-874-6514", "jaboyd@email.com");
+        CityIndex index = new CityIndex().build(List.of(john, jacob, otherJohn));
+
+        CityIndex changed = index.replace(john, newPhone).replace(jacob, newEmail);
+
+        assertEquals(List.of(newPhone, newEmail, otherJohn), changed.findByCity("Culver"));
+        assertEquals(List.of("jaboyd@email.com", "jacob@email.com"), changed.findEmailsByCity("Culver"));
+
+        CityIndex movedAway = changed.replace(otherJohn, moved);
+        assertEquals(List.of(newPhone, newEmail), movedAway.findByCity("Culver"));
+        assertEquals(List.of(moved), movedAway.findByCity("Paris"));
+        assertEquals(List.of(john, jacob, otherJohn), index.findByCity("Culver"));
+    }
+
+    @Test
+    public void build_shouldPublishAnImmutableListWithItsIndexes() {
+        CollectionIndexes<Person> collectionIndexes = new CollectionIndexes<>(DataFile::getPersons, DataFile::setPersons, BY_NAME);
+        DataFile data = new DataFile();
+        data.setPersons(new ArrayList<>(List.of(john)));
+
+        RecordIndexes<Person> indexes = collectionIndexes.build(data);
+
+        assertSame(indexes, collectionIndexes.of(data));
+        assertThrows(UnsupportedOperationException.class, () -> data.getPersons().add(jacob));
+
+        DataFile next = data.copy();
+        collectionIndexes.add(next, jacob);
+        assertTrue(collectionIndexes.replace(next, john, otherJohn));
+        assertFalse(collectionIndexes.replace(next, john, otherJohn));
+
+        assertEquals(List.of(otherJohn, jacob), next.getPersons());
+        assertEquals(List.of(otherJohn), collectionIndexes.of(next).get(BY_NAME).find("John", "Boyd"));
+        assertEquals(List.of(john), data.getPersons());
+        assertSame(indexes, collectionIndexes.of(data));
+        assertSame(john, indexes.get(BY_NAME).get("John", "Boyd"));
+    }
+
+    @Test
+    public void of_whenDataWasNotPrepared_shouldBuildIndexesWithoutAttachingThem() {
+        CollectionIndexes<Person> collectionIndexes = new CollectionIndexes<>(DataFile::getPersons, DataFile::setPersons, BY_NAME);
+        DataFile data = new DataFile();
+        data.setPersons(new ArrayList<>(List.of(john)));
+
+        assertSame(john, collectionIndexes.of(data).get(BY_NAME).get("John", "Boyd"));
+        assertNull(data.getIndex(collectionIndexes));
+        assertNull(collectionIndexes.of(new DataFile()).get(BY_NAME).get("John", "Boyd"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class RepositoryBootstrapTest {
+
+    @Test
+    public void initRepositories_shouldInitializeRepositoriesConcurrently() {
+        // Each init waits for the other one, so they only complete if they run at the same time
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Runnable awaitOther = () -> {
+            try {
+                barrier.await(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        RepositoryBootstrap bootstrap = new RepositoryBootstrap(mock(DataLoader.class), List.of(
+                repository(DataCollection.PERSONS, awaitOther),
+                repository(DataCollection.MEDICAL_RECORDS, awaitOther)));
+
+        if (Runtime.getRuntime().availableProcessors() > 1) {
+            assertDoesNotThrow(bootstrap::initRepositories);
+        }
+    }
+
+    @Test
+    public void initRepositories_whenOneRepositoryFails_shouldFailStartup() {
+        RepositoryBootstrap bootstrap = new RepositoryBootstrap(mock(DataLoader.class), List.of(
+                repository(DataCollection.PERSONS, () -> {
+                }),
+                repository(DataCollection.FIRE_STATIONS, () -> {
+                    throw new IllegalArgumentException("broken index");
+                })));
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, bootstrap::initRepositories);
+        assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+    }
+
+    private static InitializingRepository repository(DataCollection collection, Runnable init) {
+        return new InitializingRepository() {
+            @Override
+            public DataCollection getCollection() {
+                return collection;
+            }
+
+            @Override
+            public void prepare(DataFile data) {
+                init.run();
+            }
+        };
+    }
+}
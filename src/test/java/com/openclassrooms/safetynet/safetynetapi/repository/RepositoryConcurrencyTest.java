@@ -0,0 +1,183 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.safetynet.safetynetapi.model.DataFile;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stresses the repositories with readers running while other threads write, to check that every read sees one
+ * consistent version of the data: no ConcurrentModificationException, no list changing while iterated, and no
+ * record half updated.
+ */
+public class RepositoryConcurrencyTest {
+
+    private static final int ADDRESSES = 20;
+    private static final int PERSONS_PER_ADDRESS = 10;
+    private static final int PERSONS = ADDRESSES * PERSONS_PER_ADDRESS;
+    private static final int WRITES = 2_000;
+    private static final int READERS = 3;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void reads_duringWrites_shouldAlwaysSeeOneConsistentVersion() throws Exception {
+        Path file = tempDir.resolve("data.json");
+        new SnapshotWriter(objectMapper).write(data(), file);
+        // Write-behind flushes take snapshots of the data while the writers run
+        DataLoader dataLoader = new DataLoader(objectMapper, file.toString(), Durability.WRITE_BEHIND, 5, 60, MutationJournal.FsyncPolicy.NEVER, 1000, 1024, SnapshotFormat.JSON, false, DataLayout.SINGLE, SnapshotCompression.NONE, 6, 1024);
+        dataLoader.loadJsonFile();
+        InMemoryPersonRepository personRepository = new InMemoryPersonRepository();
+        InMemoryMedicalRecordRepository medicalRecordRepository = new InMemoryMedicalRecordRepository();
+        InMemoryFireStationRepository fireStationRepository = new InMemoryFireStationRepository();
+        for (Object repository : List.of(personRepository, medicalRecordRepository, fireStationRepository)) {
+            ReflectionTestUtils.setField(repository, "dataLoader", dataLoader);
+        }
+        new RepositoryBootstrap(dataLoader, List.of(personRepository, medicalRecordRepository, fireStationRepository))
+                .prepare(dataLoader.getDataFile());
+
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(READERS + 3);
+        try {
+            List<Future<?>> writers = List.of(
+                    // Persons come and go: there are PERSONS or PERSONS + 1 of them
+                    pool.submit(() -> {
+                        for (int i = 0; i < WRITES; i++) {
+                            personRepository.save(person("Visitor" + i, "Stress", i % ADDRESSES));
+                            assertTrue(personRepository.delete("Visitor" + i, "Stress"));
+                        }
+                    }),
+                    // Every record carries its birthdate in its medications and allergies
+                    pool.submit(() -> {
+                        for (int i = 0; i < WRITES; i++) {
+                            medicalRecordRepository.updateMedicalRecord(medicalRecord("First" + i % PERSONS, LocalDate.of(1950, 1, 1).plusDays(i)));
+                        }
+                    }),
+                    pool.submit(() -> {
+                        for (int i = 0; i < WRITES; i++) {
+                            fireStationRepository.updateFireStation(new FireStation(address(i % ADDRESSES), i % 4 + 1));
+                        }
+                    }));
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < READERS; r++) {
+                readers.add(pool.submit(() -> {
+                    while (writing.get()) {
+                        read(personRepository, medicalRecordRepository, fireStationRepository, failures);
+                    }
+                }));
+            }
+
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+            dataLoader.shutdown();
+        }
+
+        assertTrue(failures.isEmpty(), () -> failures.size() + " inconsistent read(s), first: " + failures.peek());
+        assertEquals(PERSONS, personRepository.findAll().size());
+        // The last flush wrote one consistent version too
+        DataFile saved = objectMapper.readValue(file.toFile(), DataFile.class);
+        assertEquals(PERSONS, saved.getPersons().size());
+        saved.getMedicalRecords().forEach(record -> assertConsistent(record));
+    }
+
+    private static void read(PersonRepository personRepository, MedicalRecordRepository medicalRecordRepository,
+                             FireStationRepository fireStationRepository, Queue<Throwable> failures) {
+        try {
+            List<Person> persons = personRepository.findAll();
+            int size = persons.size();
+            int iterated = 0;
+            for (Person person : persons) {
+                assertNotNull(person);
+                iterated++;
+            }
+            assertEquals(size, iterated);
+            assertTrue(size == PERSONS || size == PERSONS + 1, () -> size + " persons");
+
+            List<MedicalRecord> medicalRecords = medicalRecordRepository.getAllMedicalRecords();
+            assertEquals(PERSONS, medicalRecords.size());
+            medicalRecords.forEach(RepositoryConcurrencyTest::assertConsistent);
+
+            List<FireStation> fireStations = fireStationRepository.getFireStations();
+            assertEquals(ADDRESSES, fireStations.stream().map(FireStation::getAddress).distinct().count());
+
+            Household household = personRepository.getHousehold(address(0));
+            int withRecord = 0;
+            for (Household.Resident resident : household.getResidents()) {
+                assertEquals(address(0), resident.person().getAddress());
+                if (resident.medicalRecord() != null) {
+                    assertConsistent(resident.medicalRecord());
+                    withRecord++;
+                }
+            }
+            assertEquals(withRecord, household.getAdultCount() + household.getChildCount());
+            assertNotNull(household.getStation());
+        } catch (Throwable e) {
+            failures.add(e);
+        }
+    }
+
+    private static void assertConsistent(MedicalRecord record) {
+        String birthdate = record.getBirthdate().toString();
+        assertEquals(List.of(birthdate), record.getMedications());
+        assertEquals(List.of(birthdate), record.getAllergies());
+    }
+
+    private static DataFile data() {
+        DataFile data = new DataFile();
+        List<Person> persons = new ArrayList<>();
+        List<MedicalRecord> medicalRecords = new ArrayList<>();
+        List<FireStation> fireStations = new ArrayList<>();
+        for (int i = 0; i < PERSONS; i++) {
+            persons.add(person("First" + i, "Stress", i % ADDRESSES));
+            medicalRecords.add(medicalRecord("First" + i, LocalDate.of(1940, 1, 1).plusYears(i % 80)));
+        }
+        for (int a = 0; a < ADDRESSES; a++) {
+            fireStations.add(new FireStation(address(a), a % 4 + 1));
+        }
+        data.setPersons(persons);
+        data.setMedicalRecords(medicalRecords);
+        data.setFireStations(fireStations);
+        return data;
+    }
+
+    private static Person person(String firstName, String lastName, int address) {
+        return new Person(firstName, lastName, address(address), "Culver", "97451", "841-874-6512", "stress@email.com");
+    }
+
+    private static MedicalRecord medicalRecord(String firstName, LocalDate birthdate) {
+        return new MedicalRecord(firstName, "Stress", birthdate, List.of(birthdate.toString()), List.of(birthdate.toString()));
+    }
+
+    private static String address(int address) {
+        return address + " Stress St";
+    }
+}
@@ -0,0 +1,54 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedMapTest {
+
+    @Test
+    public void changes_shouldReturnNewMapsWithoutChangingTheCurrentOne() {
+        ShardedMap<String, Integer> map = ShardedMap.of(Map.of("a", 1, "b", 2));
+
+        ShardedMap<String, Integer> changed = map.with("c", 3).with("a", null).compute("b", (k, v) -> v + 10);
+
+        assertEquals(2, changed.size());
+        assertNull(changed.get("a"));
+        assertEquals(12, changed.get("b"));
+        assertEquals(3, changed.getOrDefault("c", 0));
+        assertEquals(2, map.size());
+        assertEquals(1, map.get("a"));
+        assertEquals(2, map.get("b"));
+        assertEquals(0, map.getOrDefault("c", 0));
+    }
+
+    @Test
+    public void changes_whenNothingChanges_shouldReturnTheSameMap() {
+        ShardedMap<String, Integer> map = ShardedMap.<String, Integer>empty().with("a", 1);
+
+        assertSame(map, map.with("b", null));
+        assertSame(map, map.compute("a", (k, v) -> v));
+    }
+
+    @Test
+    public void with_whenTheMapGrows_shouldKeepEveryKey() {
+        ShardedMap<Integer, Integer> map = ShardedMap.empty();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            map = map.with(i, i * 2);
+            expected.put(i, i * 2);
+            if (i % 3 == 0) {
+                map = map.with(i / 3, null);
+                expected.remove(i / 3);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals(expected.get(i), map.get(i));
+        }
+    }
+}
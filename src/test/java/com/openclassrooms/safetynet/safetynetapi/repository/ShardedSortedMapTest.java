@@ -0,0 +1,52 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedSortedMapTest {
+
+    @Test
+    public void forEachFrom_shouldReadTheEntriesInOrderUntilStopped() {
+        ShardedSortedMap<String, Integer> map = ShardedSortedMap.ofSorted(
+                List.of(Map.entry("apple", 1), Map.entry("apricot", 2), Map.entry("banana", 3), Map.entry("cherry", 4)));
+
+        List<String> keys = new ArrayList<>();
+        map.forEachFrom("ap", entry -> entry.getKey().startsWith("ap") && keys.add(entry.getKey()));
+
+        assertEquals(List.of("apple", "apricot"), keys);
+        assertEquals(List.of(1, 2, 3, 4), map.values());
+        assertEquals(3, map.get("banana"));
+    }
+
+    @Test
+    public void changes_shouldSplitAndDropShardsWithoutChangingTheCurrentMap() {
+        ShardedSortedMap<Integer, Integer> map = ShardedSortedMap.empty();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            int key = (i * 7919) % 2_000;
+            map = map.with(key, i);
+            expected.put(key, i);
+        }
+        ShardedSortedMap<Integer, Integer> full = map;
+        for (int key = 0; key < 1_500; key++) {
+            map = map.compute(key, (k, value) -> null);
+            expected.remove(key);
+        }
+
+        assertEquals(List.copyOf(expected.values()), map.values());
+        assertEquals(expected.size(), map.size());
+        assertNull(map.get(10));
+        assertEquals(2_000, full.size());
+        assertNotNull(full.get(10));
+
+        List<Integer> tail = new ArrayList<>();
+        map.forEachFrom(1_990, entry -> tail.add(entry.getKey()));
+        assertEquals(List.of(1_990, 1_991, 1_992, 1_993, 1_994, 1_995, 1_996, 1_997, 1_998, 1_999), tail);
+    }
+}
@@ -0,0 +1,30 @@
+package com.openclassrooms.safetynet.safetynetapi.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SoundexTest {
+
+    @Test
+    public void encode_shouldGiveTheSameCodeToNamesSoundingAlike() {
+        assertEquals("R163", Soundex.encode("Robert"));
+        assertEquals("R163", Soundex.encode("rupert"));
+        assertEquals("B300", Soundex.encode("Boyd"));
+        assertEquals("B300", Soundex.encode("boid"));
+        assertEquals("T522", Soundex.encode("Tymczak"));
+    }
+
+    @Test
+    public void encode_shouldCodeConsonantsSeparatedByHOrWOnce() {
+        assertEquals("A261", Soundex.encode("Ashcraft"));
+        assertEquals("P236", Soundex.encode("Pfister"));
+        assertEquals("H555", Soundex.encode("Honeyman"));
+    }
+
+    @Test
+    public void encode_whenValueHasNoLetter_shouldReturnEmptyCode() {
+        assertEquals("", Soundex.encode(null));
+        assertEquals("", Soundex.encode(" 42 "));
+    }
+}
@@ -4,11 +4,14 @@ import com.openclassrooms.safetynet.safetynetapi.dto.ChildDTO;
 import com.openclassrooms.safetynet.safetynetapi.dto.CoveredPersonsByStationDTO;
 import com.openclassrooms.safetynet.safetynetapi.dto.FirePersonInfoDTO;
 import com.openclassrooms.safetynet.safetynetapi.dto.FireStationResidentsDTO;
+import com.openclassrooms.safetynet.safetynetapi.dto.HouseholdMembersDTO;
+import com.openclassrooms.safetynet.safetynetapi.dto.PersonInfoDto;
 import com.openclassrooms.safetynet.safetynetapi.exception.FireStationNotFoundException;
 import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
 import com.openclassrooms.safetynet.safetynetapi.model.MedicalRecord;
 import com.openclassrooms.safetynet.safetynetapi.model.Person;
 import com.openclassrooms.safetynet.safetynetapi.repository.FireStationRepository;
+import com.openclassrooms.safetynet.safetynetapi.repository.Household;
 import com.openclassrooms.safetynet.safetynetapi.repository.MedicalRecordRepository;
 import com.openclassrooms.safetynet.safetynetapi.repository.PersonRepository;
 import org.junit.jupiter.api.Test;
@@ -24,7 +27,10 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -47,28 +53,21 @@ public class AlertInfoServiceTest {
     public void testGetResidentsByAddress_ShouldThrowFireStationNotFoundException_WhenNoFireStation() {
         String address = "123 Unknown Street";
 
-        // Mock fireStationRepository to return null for this address
-        when(fireStationRepository.getFireStationByAddress(address)).thenReturn(null);
+        // Mock a household without a fire station at this address
+        when(personRepository.getHousehold(address)).thenReturn(new Household(address, null, List.of()));
 
         FireStationNotFoundException exception = assertThrows(FireStationNotFoundException.class, () -> alertInfoService.getResidentsByAddress(address));
 
         assertTrue(exception.getMessage().contains("No fire station found for address"));
-        verify(fireStationRepository).getFireStationByAddress(address);
+        verify(personRepository).getHousehold(address);
     }
 
     @Test
     void testGetResidentsByAddress_whenNoResidents() {
         String address = "NoResidents Street";
 
-        // Mock a valid FireStation
-        FireStation fireStation = new FireStation();
-        fireStation.setAddress(address);
-        fireStation.setStation(5);
-
-        when(fireStationRepository.getFireStationByAddress(address)).thenReturn(fireStation);
-
-        // Mock an empty list of residents
-        when(personRepository.getPersonByAddress(address)).thenReturn(Collections.emptyList());
+        // Mock a household covered by station 5, with an empty list of residents
+        when(personRepository.getHousehold(address)).thenReturn(new Household(address, 5, Collections.emptyList()));
 
         // Call the method to test
         FireStationResidentsDTO result = alertInfoService.getResidentsByAddress(address);
@@ -117,18 +116,17 @@ public class AlertInfoServiceTest {
         person2.setFirstName("Bob");
         person2.setLastName("Miller");
 
-        List<Person> personsAtAddress = Arrays.asList(person1, person2);
-
-        // 1. Simulate retrieval of persons at the address
-        when(personRepository.getPersonByAddress(address)).thenReturn(personsAtAddress);
-
-        // 2. For person1, return a valid MedicalRecord (child)
+        // 1. For person1, a valid MedicalRecord (child)
         MedicalRecord record1 = new MedicalRecord();
         record1.setBirthdate(LocalDate.now().minusYears(10)); // 10-year-old child
-        when(medicalRecordRepository.getMedicalRecordByFirstNameAndLastName("Sara", "Smith")).thenReturn(record1);
 
-        // 3. For person2, simulate a missing medical record (null)
-        when(medicalRecordRepository.getMedicalRecordByFirstNameAndLastName("Bob", "Miller")).thenReturn(null);
+        // 2. For person2, a missing medical record (null)
+        List<Household.Resident> residents = Arrays.asList(
+                new Household.Resident(person1, record1),
+                new Household.Resident(person2, null));
+
+        // 3. Simulate retrieval of the household at the address
+        when(personRepository.getHousehold(address)).thenReturn(new Household(address, null, residents));
 
         // Act
         List<ChildDTO> children = alertInfoService.getChildrenByAddress(address);
@@ -140,6 +138,35 @@ public class AlertInfoServiceTest {
         assertEquals("Sara", child.getFirstName());
         assertEquals("Smith", child.getLastName());
         assertTrue(child.getAge() <= 18);
+        assertEquals(1, child.getHouseholdMembers().size());
+        assertEquals("Bob", child.getHouseholdMembers().getFirst().getFirstName());
+        verifyNoInteractions(medicalRecordRepository);
+    }
+
+    @Test
+    public void getChildrenByAddress_shouldLeaveOutTheMembersOfTheChildName() {
+        String address = "1509 Culver St";
+        Person john = new Person("John", "Boyd", address, "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        Person tenley = new Person("Tenley", "Boyd", address, "Culver", "97451", "841-874-6512", "tenz@email.com");
+        Person roger = new Person("Roger", "Boyd", address, "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        Person tenleyAgain = new Person("TENLEY", "boyd", address, "Culver", "97451", "841-874-6512", "tenz@email.com");
+        MedicalRecord adult = new MedicalRecord("John", "Boyd", LocalDate.now().minusYears(40), List.of(), List.of());
+        MedicalRecord child = new MedicalRecord("Tenley", "Boyd", LocalDate.now().minusYears(12), List.of(), List.of());
+        MedicalRecord baby = new MedicalRecord("Roger", "Boyd", LocalDate.now().minusMonths(6), List.of(), List.of());
+        when(personRepository.getHousehold(address)).thenReturn(new Household(address, 3, List.of(
+                new Household.Resident(john, adult),
+                new Household.Resident(tenley, child),
+                new Household.Resident(roger, baby),
+                new Household.Resident(tenleyAgain, child))));
+
+        List<ChildDTO> children = alertInfoService.getChildrenByAddress(address);
+
+        assertEquals(3, children.size());
+        assertEquals(List.of("John", "Roger"), children.getFirst().getHouseholdMembers().stream()
+                .map(HouseholdMembersDTO::getFirstName).toList());
+        assertEquals(List.of("John", "Tenley", "TENLEY"), children.get(1).getHouseholdMembers().stream()
+                .map(HouseholdMembersDTO::getFirstName).toList());
+        assertEquals(0, children.get(1).getAge());
     }
 
     @Test
@@ -160,12 +187,9 @@ public class AlertInfoServiceTest {
         personWithoutMedicalRecord.setAddress(address);
         personWithoutMedicalRecord.setPhone("123-456-7890");
 
-        when(personRepository.getPersonByAddress(address))
-                .thenReturn(List.of(personWithoutMedicalRecord));
-
-        // Mock MedicalRecordRepository: return null (no medical record)
-        when(medicalRecordRepository.getMedicalRecordByFirstNameAndLastName("John", "Doe"))
-                .thenReturn(null);
+        // The household holds the person without a medical record
+        when(personRepository.getHousehold(address))
+                .thenReturn(new Household(address, stationNumber, List.of(new Household.Resident(personWithoutMedicalRecord, null))));
 
         // Call the method under test
         CoveredPersonsByStationDTO result = alertInfoService.getPersonsCoveredByStation(stationNumber);
@@ -180,7 +204,43 @@ public class AlertInfoServiceTest {
 
     }
 
+    @Test
+    public void getPersonInfoByLastName_whenFuzzy_shouldRankLastNamesSoundingAlikeByEditDistance() {
+        Person boyd = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        Person bode = new Person("Tessa", "Bode", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "tenz@email.com");
+        when(personRepository.findLastNamesSoundingLike("Boid")).thenReturn(List.of("bode", "boyd"));
+        when(personRepository.findResidentsByLastName("boyd")).thenReturn(List.of(new Household.Resident(boyd,
+                new MedicalRecord("John", "Boyd", LocalDate.of(1984, 3, 6), List.of(), List.of()))));
+        when(personRepository.findResidentsByLastName("bode")).thenReturn(List.of(new Household.Resident(bode,
+                new MedicalRecord("Tessa", "Bode", LocalDate.of(2012, 2, 18), List.of(), List.of()))));
+
+        List<PersonInfoDto> result = alertInfoService.getPersonInfoByLastName("Boid", true);
+
+        // "boyd" is one substitution away from "boid", "bode" two
+        assertEquals(List.of("Boyd", "Bode"), result.stream().map(PersonInfoDto::getLastName).toList());
+    }
 
+    @Test
+    public void getPersonInfoByLastName_whenNotFuzzy_shouldNotLookUpLastNamesSoundingAlike() {
+        when(personRepository.findResidentsByLastName("Boid")).thenReturn(List.of());
 
+        assertTrue(alertInfoService.getPersonInfoByLastName("Boid", false).isEmpty());
+        verify(personRepository, never()).findLastNamesSoundingLike(anyString());
+    }
 
+    @Test
+    public void getPersonInfoByLastName_shouldUseTheLinkedMedicalRecordsWithoutLookingThemUp() {
+        Person john = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        Person tenley = new Person("Tenley", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "tenz@email.com");
+        when(personRepository.findResidentsByLastName("Boyd")).thenReturn(List.of(
+                new Household.Resident(john, new MedicalRecord("John", "Boyd", LocalDate.of(1984, 3, 6), List.of("aznol:350mg"), List.of())),
+                new Household.Resident(tenley, null)));
+
+        List<PersonInfoDto> result = alertInfoService.getPersonInfoByLastName("Boyd");
+
+        // Persons without a medical record are left out
+        assertEquals(1, result.size());
+        assertEquals(List.of("aznol:350mg"), result.getFirst().getMedications());
+        verifyNoInteractions(medicalRecordRepository);
+    }
 }
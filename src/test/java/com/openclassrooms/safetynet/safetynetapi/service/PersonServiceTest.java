@@ -1,16 +1,26 @@
 package com.openclassrooms.safetynet.safetynetapi.service;
 
+import com.openclassrooms.safetynet.safetynetapi.dto.PersonDTO;
+import com.openclassrooms.safetynet.safetynetapi.exception.PersonAlreadyExistsException;
 import com.openclassrooms.safetynet.safetynetapi.exception.PersonNotFoundException;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
 import com.openclassrooms.safetynet.safetynetapi.repository.PersonRepository;
+import com.openclassrooms.safetynet.safetynetapi.service.mapper.PersonMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 
 @ExtendWith(MockitoExtension.class)
 @ActiveProfiles(profiles = "test")
@@ -19,6 +29,9 @@ public class PersonServiceTest {
     @Mock
     PersonRepository personRepository;
 
+    @Spy
+    PersonMapper personMapper = new PersonMapper();
+
     @InjectMocks
     PersonService personService;
 
@@ -52,4 +65,32 @@ public class PersonServiceTest {
         // Then
         Mockito.verify(personRepository).deleteFirstOccurrence(firstName, lastName);
     }
+
+    @Test
+    public void saveAll_shouldRejectWholeBatch_whenAPersonIsDuplicated() {
+        // Given
+        PersonDTO person = PersonDTO.builder().firstName("Louise").lastName("SBH").build();
+        Mockito.when(personRepository.inBatch(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+
+        // When + Then
+        assertThrows(PersonAlreadyExistsException.class, () -> personService.saveAll(List.of(person, person)));
+        Mockito.verify(personRepository, Mockito.never()).save(any());
+    }
+
+    @Test
+    public void saveAll_shouldSavePersonsInOneBatch() {
+        // Given
+        PersonDTO louise = PersonDTO.builder().firstName("Louise").lastName("SBH").build();
+        PersonDTO jad = PersonDTO.builder().firstName("Jad").lastName("SBH").build();
+        Mockito.when(personRepository.inBatch(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        Mockito.when(personRepository.save(any(Person.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        List<PersonDTO> saved = personService.saveAll(List.of(louise, jad));
+
+        // Then
+        assertEquals(2, saved.size());
+        Mockito.verify(personRepository).inBatch(any());
+        Mockito.verify(personRepository, Mockito.times(2)).save(any(Person.class));
+    }
 }
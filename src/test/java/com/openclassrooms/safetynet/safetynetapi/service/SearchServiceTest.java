@@ -0,0 +1,58 @@
+package com.openclassrooms.safetynet.safetynetapi.service;
+
+import com.openclassrooms.safetynet.safetynetapi.dto.SuggestionsDTO;
+import com.openclassrooms.safetynet.safetynetapi.model.FireStation;
+import com.openclassrooms.safetynet.safetynetapi.model.Person;
+import com.openclassrooms.safetynet.safetynetapi.repository.FireStationRepository;
+import com.openclassrooms.safetynet.safetynetapi.repository.PersonRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SearchServiceTest {
+
+    @Mock
+    PersonRepository personRepository;
+
+    @Mock
+    FireStationRepository fireStationRepository;
+
+    @InjectMocks
+    SearchService searchService;
+
+    @Test
+    public void suggest_shouldMergeAddressesOfPersonsAndFireStationsWithoutDuplicates() {
+        Person john = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        Person peter = new Person("Peter", "Duncan", "1 Culver Ave", "Culver", "97451", "841-874-6544", "jpeter@email.com");
+        when(personRepository.suggestByName("1", 2)).thenReturn(List.of());
+        when(personRepository.suggestByAddress("1", 2)).thenReturn(List.of(peter, john));
+        when(fireStationRepository.suggestByAddress("1", 2)).thenReturn(List.of(
+                new FireStation("1 Culver Av", 4), new FireStation("1509 CULVER ST", 3)));
+
+        SuggestionsDTO suggestions = searchService.suggest("1", 2);
+
+        assertEquals(List.of(), suggestions.getNames());
+        assertEquals(List.of("1 Culver Av", "1 Culver Ave"), suggestions.getAddresses());
+    }
+
+    @Test
+    public void suggest_shouldFormatNamesAsFirstAndLastName() {
+        Person john = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        when(personRepository.suggestByName("bo", 10)).thenReturn(List.of(john));
+        when(personRepository.suggestByAddress("bo", 10)).thenReturn(List.of());
+        when(fireStationRepository.suggestByAddress("bo", 10)).thenReturn(List.of());
+
+        SuggestionsDTO suggestions = searchService.suggest("bo", 10);
+
+        assertEquals(List.of("John Boyd"), suggestions.getNames());
+        assertEquals(List.of(), suggestions.getAddresses());
+    }
+}